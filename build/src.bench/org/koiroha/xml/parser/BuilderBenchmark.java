@@ -0,0 +1,111 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// BuilderBenchmark: DOM 構築ベンチマーク
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link HTMLDocumentBuilder} による DOM 構築の性能を各コーパスで計測するベンチマーク
+ * です。標準の DOM 実装とコンパクト DOM の両方を計測します。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class BuilderBenchmark {
+
+	// ======================================================================
+	// コーパス名
+	// ======================================================================
+	/**
+	 * 計測に使用するコーパスの名前です。
+	 * <p>
+	 */
+	@Param({ "spec", "deep", "attributes", "script", "entities", "warnings" })
+	public String corpus;
+
+	// ======================================================================
+	// コンパクト DOM
+	// ======================================================================
+	/**
+	 * コンパクト DOM を構築する場合 true です。
+	 * <p>
+	 */
+	@Param({ "false", "true" })
+	public boolean compact;
+
+	// ======================================================================
+	// 入力テキスト
+	// ======================================================================
+	/**
+	 * 解析する HTML です。
+	 * <p>
+	 */
+	private String text = null;
+
+	// ======================================================================
+	// ドキュメントビルダー
+	// ======================================================================
+	/**
+	 * 繰り返し使用するドキュメントビルダーです。
+	 * <p>
+	 */
+	private DocumentBuilder builder = null;
+
+	// ======================================================================
+	// 初期化
+	// ======================================================================
+	/**
+	 * コーパスを読み込みドキュメントビルダーを構築します。警告は破棄されます。
+	 * <p>
+	 * @throws Exception 初期化に失敗した場合
+	 */
+	@Setup
+	public void setup() throws Exception{
+		text = Corpus.get(corpus);
+		HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory();
+		factory.setCompactDom(compact);
+		builder = factory.newDocumentBuilder();
+		builder.setErrorHandler(new DefaultHandler());
+		return;
+	}
+
+	// ======================================================================
+	// DOM 構築
+	// ======================================================================
+	/**
+	 * コーパスを解析して DOM を構築します。
+	 * <p>
+	 * @return 構築したドキュメント
+	 * @throws Exception 解析に失敗した場合
+	 */
+	@Benchmark
+	public Document parse() throws Exception{
+		builder.reset();
+		return builder.parse(new InputSource(new StringReader(text)));
+	}
+
+}
@@ -0,0 +1,253 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.*;
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// Corpus: ベンチマーク用コーパス
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * ベンチマークの入力となる HTML を名前で参照するためのクラスです。仕様ファイルから構成する
+ * 実データと、パーサの最悪ケースを狙って生成する病的なデータを提供します。
+ * <p>
+ * <table>
+ * <tr><th>名前</th><th>内容</th></tr>
+ * <tr><td>spec</td><td>build/spec/*.xml の仕様ファイルを連結したもの</td></tr>
+ * <tr><td>deep</td><td>終了タグを持たない要素の深い入れ子</td></tr>
+ * <tr><td>attributes</td><td>数百個の属性を持つ要素の繰り返し</td></tr>
+ * <tr><td>script</td><td>タグに似た文字列を含む巨大なインラインスクリプト</td></tr>
+ * <tr><td>entities</td><td>実体参照と文字参照が密集したテキスト</td></tr>
+ * <tr><td>warnings</td><td>警告を大量に発生させる不正な入れ子と終了タグ</td></tr>
+ * </table>
+ * <p>
+ * 仕様ファイルのディレクトリはシステムプロパティ {@code xenon.spec} で変更できます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public final class Corpus {
+
+	// ======================================================================
+	// コーパス名
+	// ======================================================================
+	/**
+	 * 参照可能なコーパスの名前です。
+	 * <p>
+	 */
+	public static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+		"spec", "deep", "attributes", "script", "entities", "warnings"));
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * コンストラクタはクラス内部からも使用されません。
+	 * <p>
+	 */
+	private Corpus() {
+		return;
+	}
+
+	// ======================================================================
+	// コーパスの参照
+	// ======================================================================
+	/**
+	 * 指定された名前のコーパスを文字列として参照します。
+	 * <p>
+	 * @param name コーパス名
+	 * @return コーパスの内容
+	 * @throws IOException 仕様ファイルの読み込みに失敗した場合
+	 * @throws IllegalArgumentException 名前が不正な場合
+	 */
+	public static String get(String name) throws IOException{
+		if(name.equals("spec")){
+			return spec(new File(System.getProperty("xenon.spec", "build/spec")));
+		}
+		if(name.equals("deep")){
+			return deep(10000);
+		}
+		if(name.equals("attributes")){
+			return attributes(100, 500);
+		}
+		if(name.equals("script")){
+			return script(1024 * 1024);
+		}
+		if(name.equals("entities")){
+			return entities(1024 * 1024);
+		}
+		if(name.equals("warnings")){
+			return warnings(20000);
+		}
+		throw new IllegalArgumentException("unknown corpus: " + name);
+	}
+
+	// ======================================================================
+	// コーパスの参照
+	// ======================================================================
+	/**
+	 * 指定された名前のコーパスを UTF-8 でエンコードしたバイナリとして参照します。
+	 * <p>
+	 * @param name コーパス名
+	 * @return コーパスの内容
+	 * @throws IOException 仕様ファイルの読み込みに失敗した場合
+	 */
+	public static byte[] getBytes(String name) throws IOException{
+		return get(name).getBytes("UTF-8");
+	}
+
+	// ======================================================================
+	// 仕様ファイルコーパスの構築
+	// ======================================================================
+	/**
+	 * 指定されたディレクトリ内の XML ファイルをファイル名順に連結します。
+	 * <p>
+	 * @param dir 仕様ファイルのディレクトリ
+	 * @return コーパスの内容
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	static String spec(File dir) throws IOException{
+		File[] files = dir.listFiles(new FilenameFilter(){
+			public boolean accept(File d, String name) {
+				return name.endsWith(".xml");
+			}
+		});
+		if(files == null || files.length == 0){
+			throw new FileNotFoundException(dir + "/*.xml");
+		}
+		Arrays.sort(files);
+		StringBuilder buffer = new StringBuilder();
+		char[] buf = new char[8 * 1024];
+		for(File file: files){
+			Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try{
+				int len = in.read(buf);
+				while(len > 0){
+					buffer.append(buf, 0, len);
+					len = in.read(buf);
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// 深い入れ子の構築
+	// ======================================================================
+	/**
+	 * 終了タグを持たない要素を指定された深さまで入れ子にした HTML を構築します。
+	 * <p>
+	 * @param depth 入れ子の深さ
+	 * @return コーパスの内容
+	 */
+	static String deep(int depth){
+		StringBuilder buffer = new StringBuilder("<html><body>");
+		for(int i=0; i<depth; i++){
+			buffer.append((i % 2 == 0)? "<div>": "<span>").append(i);
+		}
+		buffer.append("</body></html>");
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// 多数の属性の構築
+	// ======================================================================
+	/**
+	 * 多数の属性を持つ要素を繰り返した HTML を構築します。属性には引用符の有無と重複を混在
+	 * させています。
+	 * <p>
+	 * @param count 要素の数
+	 * @param attributes 要素ごとの属性の数
+	 * @return コーパスの内容
+	 */
+	static String attributes(int count, int attributes){
+		StringBuilder buffer = new StringBuilder("<html><body>");
+		for(int i=0; i<count; i++){
+			buffer.append("<div");
+			for(int j=0; j<attributes; j++){
+				switch(j % 3){
+				case 0:		buffer.append(" data-a").append(j).append("=\"v").append(j).append('\"');	break;
+				case 1:		buffer.append(" data-b").append(j).append("=v").append(j);	break;
+				default:	buffer.append(" data-a").append(j - 2).append("='dup'");	break;
+				}
+			}
+			buffer.append(">x</div>\n");
+		}
+		buffer.append("</body></html>");
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// 巨大なスクリプトの構築
+	// ======================================================================
+	/**
+	 * タグや終了タグに似た文字列を含む巨大なインラインスクリプトを持つ HTML を構築します。
+	 * <p>
+	 * @param length スクリプトのおおよその文字数
+	 * @return コーパスの内容
+	 */
+	static String script(int length){
+		StringBuilder buffer = new StringBuilder("<html><head><script type=\"text/javascript\">\n");
+		int begin = buffer.length();
+		int i = 0;
+		while(buffer.length() - begin < length){
+			buffer.append("if(a[").append(i).append("] < b && c > 0){ document.write(\"<div id='d")
+				.append(i).append("'></\" + \"div>\"); } // <!-- </scrip -->\n");
+			i ++;
+		}
+		buffer.append("</script></head><body>x</body></html>");
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// 実体参照の密集したテキストの構築
+	// ======================================================================
+	/**
+	 * 実体参照と文字参照が密集したテキストを持つ HTML を構築します。
+	 * <p>
+	 * @param length テキストのおおよその文字数
+	 * @return コーパスの内容
+	 */
+	static String entities(int length){
+		String[] refs = { "&amp;", "&lt;", "&gt;", "&quot;", "&nbsp;", "&copy;", "&#12354;", "&#x3042;", "&hellip;", "&unknown;", "&amp" };
+		StringBuilder buffer = new StringBuilder("<html><body><p title=\"&lt;&amp;&gt;\">");
+		int begin = buffer.length();
+		int i = 0;
+		while(buffer.length() - begin < length){
+			buffer.append(refs[i % refs.length]).append((char)('a' + i % 26));
+			i ++;
+		}
+		buffer.append("</p></body></html>");
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// 警告の多発する HTML の構築
+	// ======================================================================
+	/**
+	 * 不正な入れ子、対応しない終了タグ、属性の重複などにより警告を多発させる HTML を構築
+	 * します。
+	 * <p>
+	 * @param count 繰り返しの数
+	 * @return コーパスの内容
+	 */
+	static String warnings(int count){
+		StringBuilder buffer = new StringBuilder("<html><body>");
+		for(int i=0; i<count; i++){
+			buffer.append("<font a=1 a=2><div>").append(i).append("</b></i></font class=x></p>\n");
+		}
+		buffer.append("</body></html>");
+		return buffer.toString();
+	}
+
+}
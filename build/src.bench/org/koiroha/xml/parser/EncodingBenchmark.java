@@ -0,0 +1,148 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// EncodingBenchmark: 文字セット推測ベンチマーク
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link HTMLParserFactory#guessInputSource(InputStream, String, int)} による文字
+ * セットの推測と、推測した入力ソースからの全文字の読み込みを計測するベンチマークです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class EncodingBenchmark {
+
+	// ======================================================================
+	// 先読みバイト数
+	// ======================================================================
+	/**
+	 * 文字セット推測のために先読みする最大バイト数です。
+	 * <p>
+	 */
+	private static final int PREREAD_LENGTH = 8 * 1024;
+
+	// ======================================================================
+	// コーパス名
+	// ======================================================================
+	/**
+	 * 計測に使用するコーパスの名前です。
+	 * <p>
+	 */
+	@Param({ "spec", "script", "entities" })
+	public String corpus;
+
+	// ======================================================================
+	// 入力バイナリ
+	// ======================================================================
+	/**
+	 * 先頭に &lt;meta&gt; 要素を付加した UTF-8 の HTML です。
+	 * <p>
+	 */
+	private byte[] binary = null;
+
+	// ======================================================================
+	// 読み込みバッファ
+	// ======================================================================
+	/**
+	 * 入力ソースから読み込むためのバッファです。
+	 * <p>
+	 */
+	private final char[] buffer = new char[8 * 1024];
+
+	// ======================================================================
+	// パーサファクトリ
+	// ======================================================================
+	/**
+	 * 文字セットを推測するファクトリです。
+	 * <p>
+	 */
+	private final HTMLParserFactory factory = new HTMLParserFactory();
+
+	// ======================================================================
+	// 初期化
+	// ======================================================================
+	/**
+	 * コーパスを読み込みます。
+	 * <p>
+	 * @throws IOException コーパスの読み込みに失敗した場合
+	 */
+	@Setup
+	public void setup() throws IOException{
+		String meta = "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"></head>";
+		binary = (meta + Corpus.get(corpus)).getBytes("UTF-8");
+		return;
+	}
+
+	// ======================================================================
+	// ストリームからの推測
+	// ======================================================================
+	/**
+	 * 入力ストリームから文字セットを推測し全文字を読み込みます。
+	 * <p>
+	 * @return 読み込んだ文字数
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	@Benchmark
+	public long stream() throws IOException{
+		return read(factory.guessInputSource(new ByteArrayInputStream(binary), "ISO-8859-1", PREREAD_LENGTH));
+	}
+
+	// ======================================================================
+	// バッファからの推測
+	// ======================================================================
+	/**
+	 * バイトバッファから文字セットを推測し全文字を読み込みます。
+	 * <p>
+	 * @return 読み込んだ文字数
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	@Benchmark
+	public long buffer() throws IOException{
+		return read(factory.guessInputSource(ByteBuffer.wrap(binary), "ISO-8859-1", PREREAD_LENGTH));
+	}
+
+	// ======================================================================
+	// 全文字の読み込み
+	// ======================================================================
+	/**
+	 * 指定された入力ソースから全ての文字を読み込みます。
+	 * <p>
+	 * @param is 入力ソース
+	 * @return 読み込んだ文字数
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private long read(InputSource is) throws IOException{
+		Reader in = is.getCharacterStream();
+		long count = 0;
+		int len = in.read(buffer);
+		while(len >= 0){
+			count += len;
+			len = in.read(buffer);
+		}
+		in.close();
+		return count;
+	}
+
+}
@@ -0,0 +1,95 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.koiroha.xml.Html;
+import org.openjdk.jmh.annotations.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// EscapeBenchmark: エスケープベンチマーク
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link Html#escape(CharSequence)} と {@link Html#unescape(CharSequence)} の性能を
+ * 各コーパスで計測するベンチマークです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class EscapeBenchmark {
+
+	// ======================================================================
+	// コーパス名
+	// ======================================================================
+	/**
+	 * 計測に使用するコーパスの名前です。
+	 * <p>
+	 */
+	@Param({ "spec", "script", "entities" })
+	public String corpus;
+
+	// ======================================================================
+	// 入力テキスト
+	// ======================================================================
+	/**
+	 * エスケープまたはエスケープ解除する文字列です。
+	 * <p>
+	 */
+	private String text = null;
+
+	// ======================================================================
+	// 初期化
+	// ======================================================================
+	/**
+	 * コーパスを読み込みます。
+	 * <p>
+	 * @throws IOException コーパスの読み込みに失敗した場合
+	 */
+	@Setup
+	public void setup() throws IOException{
+		text = Corpus.get(corpus);
+		return;
+	}
+
+	// ======================================================================
+	// エスケープ
+	// ======================================================================
+	/**
+	 * コーパスを HTML エスケープします。
+	 * <p>
+	 * @return エスケープした文字列
+	 */
+	@Benchmark
+	public String escape(){
+		return Html.escape(text);
+	}
+
+	// ======================================================================
+	// エスケープの解除
+	// ======================================================================
+	/**
+	 * コーパスの実体参照を解除します。
+	 * <p>
+	 * @return エスケープを解除した文字列
+	 */
+	@Benchmark
+	public String unescape(){
+		return Html.unescape(text);
+	}
+
+}
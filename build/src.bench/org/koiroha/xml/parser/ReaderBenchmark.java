@@ -0,0 +1,195 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// ReaderBenchmark: SAX 解析ベンチマーク
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link LooseXMLReader} による SAX 解析の性能を各コーパスで計測するベンチマークです。
+ * 統計プロパティを設定した場合の解析も計測し、統計集計のオーバーヘッドを比較できます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class ReaderBenchmark {
+
+	// ======================================================================
+	// コーパス名
+	// ======================================================================
+	/**
+	 * 計測に使用するコーパスの名前です。
+	 * <p>
+	 */
+	@Param({ "spec", "deep", "attributes", "script", "entities", "warnings" })
+	public String corpus;
+
+	// ======================================================================
+	// 入力テキスト
+	// ======================================================================
+	/**
+	 * 解析する HTML です。
+	 * <p>
+	 */
+	private String text = null;
+
+	// ======================================================================
+	// SAX リーダー
+	// ======================================================================
+	/**
+	 * 繰り返し使用する SAX リーダーです。
+	 * <p>
+	 */
+	private LooseXMLReader reader = null;
+
+	// ======================================================================
+	// ハンドラ
+	// ======================================================================
+	/**
+	 * 通知されたノードと警告を計数するハンドラです。
+	 * <p>
+	 */
+	private final Counter counter = new Counter();
+
+	// ======================================================================
+	// 統計情報
+	// ======================================================================
+	/**
+	 * 統計付きの解析で使用する統計情報です。
+	 * <p>
+	 */
+	private final ParseStatistics statistics = new ParseStatistics();
+
+	// ======================================================================
+	// 初期化
+	// ======================================================================
+	/**
+	 * コーパスを読み込みリーダーを構築します。
+	 * <p>
+	 * @throws IOException コーパスの読み込みに失敗した場合
+	 */
+	@Setup
+	public void setup() throws IOException{
+		text = Corpus.get(corpus);
+		reader = new LooseXMLReader();
+		reader.setContentHandler(counter);
+		reader.setErrorHandler(counter);
+		return;
+	}
+
+	// ======================================================================
+	// SAX 解析
+	// ======================================================================
+	/**
+	 * 統計を集計せずに SAX 解析を行います。
+	 * <p>
+	 * @return 通知されたイベント数
+	 * @throws Exception 解析に失敗した場合
+	 */
+	@Benchmark
+	public long parse() throws Exception{
+		reader.setProperty(AbstractXMLReader.PROPERTY_STATISTICS, null);
+		counter.count = 0;
+		reader.parse(new InputSource(new StringReader(text)));
+		return counter.count;
+	}
+
+	// ======================================================================
+	// 統計付き SAX 解析
+	// ======================================================================
+	/**
+	 * 統計を集計しながら SAX 解析を行います。
+	 * <p>
+	 * @return 通知されたノード数
+	 * @throws Exception 解析に失敗した場合
+	 */
+	@Benchmark
+	public long parseWithStatistics() throws Exception{
+		statistics.reset();
+		reader.setProperty(AbstractXMLReader.PROPERTY_STATISTICS, statistics);
+		reader.parse(new InputSource(new StringReader(text)));
+		return statistics.getNodes();
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Counter: イベント計数ハンドラ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 解析結果が最適化で除去されないよう通知されたイベントを計数するハンドラです。
+	 * <p>
+	 */
+	private static final class Counter extends DefaultHandler {
+
+		/** 通知されたイベントの数です。 */
+		public long count = 0;
+
+		// ==================================================================
+		// 要素開始の通知
+		// ==================================================================
+		/**
+		 * 要素の開始を計数します。
+		 * <p>
+		 * @param uri 名前空間 URI
+		 * @param localName ローカル名
+		 * @param qName 修飾名
+		 * @param attributes 属性
+		 */
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			count += 1 + attributes.getLength();
+			return;
+		}
+
+		// ==================================================================
+		// 文字の通知
+		// ==================================================================
+		/**
+		 * 文字を計数します。
+		 * <p>
+		 * @param ch 文字配列
+		 * @param start 開始位置
+		 * @param length 文字数
+		 */
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			count += length;
+			return;
+		}
+
+		// ==================================================================
+		// 警告の通知
+		// ==================================================================
+		/**
+		 * 警告を計数します。
+		 * <p>
+		 * @param ex 警告
+		 */
+		@Override
+		public void warning(SAXParseException ex) {
+			count ++;
+			return;
+		}
+
+	}
+
+}
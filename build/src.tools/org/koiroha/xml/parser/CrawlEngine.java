@@ -0,0 +1,1359 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.File;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CrawlEngine: Web 巡回エンジン
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 画面を持たない Web 巡回エンジンです。ページの取得、文字セットの判定、HTML の解析、結果
+ * の保存をそれぞれ独立したスレッド群で実行し、段階の間は容量制限付きのキューで接続します。
+ * <p>
+ * 各段階の並列数は個別に設定できます。同一ホストへの接続は {@link #setHostInterval(long)}
+ * で指定した間隔を空けて行われます。解析結果は保存段階で可能な限りまとめられ、
+ * {@link CrawlStore#store(Collection, Collection, Collection)} により一括して保存され
+ * ます。
+ * <p>
+ * <pre>CrawlEngine engine = new CrawlEngine(new WebCrawlerDB("WEBCRAWLERDB"));
+ * engine.setPattern(Pattern.compile("http://www\\.example\\.com/.*"));
+ * engine.run(new URL("http://www.example.com/"));</pre>
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class CrawlEngine {
+
+	// ======================================================================
+	// ログ出力先
+	// ======================================================================
+	/**
+	 * このクラスのログ出力先です。
+	 * <p>
+	 */
+	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(CrawlEngine.class.getName());
+
+	// ======================================================================
+	// 終了タスク
+	// ======================================================================
+	/**
+	 * 段階のスレッドに終了を指示するためのタスクです。
+	 * <p>
+	 */
+	private static final Task END = new Task(null);
+
+	// ======================================================================
+	// 保存先
+	// ======================================================================
+	/**
+	 * 解析対象 URL と解析済みページの保存先です。
+	 * <p>
+	 */
+	private final CrawlStore store;
+
+	// ======================================================================
+	// 取得並列数
+	// ======================================================================
+	/**
+	 * ページを取得するスレッドの数です。
+	 * <p>
+	 */
+	private int fetchConcurrency = 4;
+
+	// ======================================================================
+	// 判定並列数
+	// ======================================================================
+	/**
+	 * 文字セットを判定するスレッドの数です。
+	 * <p>
+	 */
+	private int detectConcurrency = 1;
+
+	// ======================================================================
+	// 解析並列数
+	// ======================================================================
+	/**
+	 * HTML を解析するスレッドの数です。
+	 * <p>
+	 */
+	private int parseConcurrency = Runtime.getRuntime().availableProcessors();
+
+	// ======================================================================
+	// キュー容量
+	// ======================================================================
+	/**
+	 * 段階の間のキューの容量です。処理中の URL の数もこの値に制限されます。
+	 * <p>
+	 */
+	private int queueCapacity = 64;
+
+	// ======================================================================
+	// 一括保存件数
+	// ======================================================================
+	/**
+	 * 一度のトランザクションで保存するページの最大数です。
+	 * <p>
+	 */
+	private int batchSize = 50;
+
+	// ======================================================================
+	// 接続間隔
+	// ======================================================================
+	/**
+	 * 同一ホストへの接続間隔 (ミリ秒) です。
+	 * <p>
+	 */
+	private long hostInterval = 500;
+
+	// ======================================================================
+	// 対象 URL パターン
+	// ======================================================================
+	/**
+	 * キューに追加するリンクのパターンです。null の場合は全てのリンクを追加します。
+	 * <p>
+	 */
+	private Pattern pattern = null;
+
+	// ======================================================================
+	// リスナ
+	// ======================================================================
+	/**
+	 * 巡回の進捗を通知するリスナです。
+	 * <p>
+	 */
+	private Listener listener = null;
+
+	// ======================================================================
+	// ホスト別接続制御
+	// ======================================================================
+	/**
+	 * ホストごとの接続間隔を制御するためのインスタンスです。
+	 * <p>
+	 */
+	private final HostPoliteness politeness = new HostPoliteness();
+
+	// ======================================================================
+	// ドキュメントビルダー
+	// ======================================================================
+	/**
+	 * 解析スレッドごとに繰り返し使用するドキュメントビルダーです。
+	 * <p>
+	 */
+	private final ThreadLocal<DocumentBuilder> builder = new ThreadLocal<DocumentBuilder>(){
+		@Override
+		protected DocumentBuilder initialValue() {
+			return ParsedPage.newDocumentBuilder();
+		}
+	};
+
+	// ======================================================================
+	// 処理中件数
+	// ======================================================================
+	/**
+	 * 実行中の巡回でキューから取り出され保存が完了していないタスクです。巡回の開始時に
+	 * クリアされ、中断時に残っているタスクの URL は保存先のキューに戻されます。
+	 * <p>
+	 */
+	private final Set<Task> pending = Collections.synchronizedSet(new HashSet<Task>());
+
+	// ======================================================================
+	// 保存失敗タスク
+	// ======================================================================
+	/**
+	 * 実行中の巡回で保存に失敗したタスクです。同一の巡回で繰り返し失敗しないよう、巡回の
+	 * 終了時に保存先のキューへ戻されます。
+	 * <p>
+	 */
+	private final List<Task> unsaved = Collections.synchronizedList(new ArrayList<Task>());
+
+	// ======================================================================
+	// 保存件数
+	// ======================================================================
+	/**
+	 * 保存したページの数です。
+	 * <p>
+	 */
+	private final AtomicLong storedCount = new AtomicLong();
+
+	// ======================================================================
+	// 進捗通知
+	// ======================================================================
+	/**
+	 * 保存段階が一括保存を完了したことを巡回スレッドに通知するためのモニタです。
+	 * <p>
+	 */
+	private final Object progress = new Object();
+
+	// ======================================================================
+	// 巡回スレッド
+	// ======================================================================
+	/**
+	 * {@link #run(URL)} を実行しているスレッドです。
+	 * <p>
+	 */
+	private volatile Thread runner = null;
+
+	// ======================================================================
+	// 中断フラグ
+	// ======================================================================
+	/**
+	 * {@link #stop()} が呼び出された場合に true となります。
+	 * <p>
+	 */
+	private volatile boolean stopped = false;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 保存先を指定して構築を行います。
+	 * <p>
+	 * @param store 解析対象 URL と解析済みページの保存先
+	 */
+	public CrawlEngine(CrawlStore store) {
+		this.store = store;
+		return;
+	}
+
+	// ======================================================================
+	// 並列数の設定
+	// ======================================================================
+	/**
+	 * 各段階のスレッド数を設定します。
+	 * <p>
+	 * @param fetch ページを取得するスレッドの数
+	 * @param detect 文字セットを判定するスレッドの数
+	 * @param parse HTML を解析するスレッドの数
+	 * @throws IllegalArgumentException スレッド数が 1 未満の場合
+	 */
+	public void setConcurrency(int fetch, int detect, int parse){
+		if(fetch < 1 || detect < 1 || parse < 1){
+			throw new IllegalArgumentException("fetch=" + fetch + ", detect=" + detect + ", parse=" + parse);
+		}
+		this.fetchConcurrency = fetch;
+		this.detectConcurrency = detect;
+		this.parseConcurrency = parse;
+		return;
+	}
+
+	// ======================================================================
+	// キュー容量の設定
+	// ======================================================================
+	/**
+	 * 段階の間のキューの容量を設定します。同時に処理中となる URL の数もこの値に制限され
+	 * ます。
+	 * <p>
+	 * @param capacity キューの容量
+	 * @throws IllegalArgumentException 容量が 1 未満の場合
+	 */
+	public void setQueueCapacity(int capacity){
+		if(capacity < 1){
+			throw new IllegalArgumentException("capacity=" + capacity);
+		}
+		this.queueCapacity = capacity;
+		return;
+	}
+
+	// ======================================================================
+	// 一括保存件数の設定
+	// ======================================================================
+	/**
+	 * 一度のトランザクションで保存するページの最大数を設定します。
+	 * <p>
+	 * @param size 一括保存するページの最大数
+	 * @throws IllegalArgumentException 件数が 1 未満の場合
+	 */
+	public void setBatchSize(int size){
+		if(size < 1){
+			throw new IllegalArgumentException("size=" + size);
+		}
+		this.batchSize = size;
+		return;
+	}
+
+	// ======================================================================
+	// 接続間隔の設定
+	// ======================================================================
+	/**
+	 * 同一ホストへの接続間隔を設定します。0 を指定した場合は間隔を空けずに接続します。
+	 * <p>
+	 * @param millis 接続間隔 (ミリ秒)
+	 */
+	public void setHostInterval(long millis){
+		this.hostInterval = Math.max(0, millis);
+		return;
+	}
+
+	// ======================================================================
+	// 対象 URL パターンの設定
+	// ======================================================================
+	/**
+	 * キューに追加するリンクのパターンを設定します。パターン全体に一致するリンクのみが
+	 * キューに追加されます。
+	 * <p>
+	 * @param pattern 対象 URL のパターン (全てのリンクを対象とする場合は null)
+	 */
+	public void setPattern(Pattern pattern){
+		this.pattern = pattern;
+		return;
+	}
+
+	// ======================================================================
+	// リスナの設定
+	// ======================================================================
+	/**
+	 * 巡回の進捗を通知するリスナを設定します。
+	 * <p>
+	 * @param listener リスナ
+	 */
+	public void setListener(Listener listener){
+		this.listener = listener;
+		return;
+	}
+
+	// ======================================================================
+	// 保存件数の参照
+	// ======================================================================
+	/**
+	 * このエンジンが保存したページの数を参照します。
+	 * <p>
+	 * @return 保存したページの数
+	 */
+	public long getStoredCount(){
+		return storedCount.get();
+	}
+
+	// ======================================================================
+	// 巡回の実行
+	// ======================================================================
+	/**
+	 * 指定された URL をキューに追加し、キューが空になるか {@link #stop()} が呼び出される
+	 * まで巡回を実行します。
+	 * <p>
+	 * @param start 開始 URL (キューに残っている URL から再開する場合は null)
+	 * @throws SQLException 保存先の参照に失敗した場合
+	 * @throws InterruptedException 巡回が中断された場合
+	 */
+	public void run(URL start) throws SQLException, InterruptedException{
+		if(start != null){
+			store.enqueue(start);
+		}
+		runner = Thread.currentThread();
+		stopped = false;
+		pending.clear();
+		unsaved.clear();
+
+		// 各段階のスレッドを開始
+		BlockingQueue<Task> fetchQueue = new ArrayBlockingQueue<Task>(queueCapacity);
+		BlockingQueue<Task> detectQueue = new ArrayBlockingQueue<Task>(queueCapacity);
+		BlockingQueue<Task> parseQueue = new ArrayBlockingQueue<Task>(queueCapacity);
+		BlockingQueue<Task> storeQueue = new ArrayBlockingQueue<Task>(queueCapacity);
+		Stage[] stages = {
+			new FetchStage(fetchQueue, detectQueue),
+			new DetectStage(detectQueue, parseQueue),
+			new ParseStage(parseQueue, storeQueue),
+			new StoreStage(storeQueue),
+		};
+		int[] concurrency = { fetchConcurrency, detectConcurrency, parseConcurrency, 1 };
+		for(int i=0; i<stages.length; i++){
+			stages[i].start(concurrency[i]);
+		}
+		long start0 = System.currentTimeMillis();
+		long stored0 = storedCount.get();
+
+		try{
+
+			// キューが空になり処理中の URL がなくなるまで取得段階へ投入
+			// ※処理中件数を参照した後でキューが空であれば全てのリンクが保存済み
+			while(! stopped){
+				int busy = pending.size();
+				int room = queueCapacity - busy;
+				List<URL> urls = (room > 0)? store.select(room): Collections.<URL>emptyList();
+				List<Task> tasks = new ArrayList<Task>(urls.size());
+				for(URL url: urls){
+					Task task = new Task(url);
+					pending.add(task);
+					tasks.add(task);
+				}
+				for(Task task: tasks){
+					fetchQueue.put(task);
+				}
+				if(urls.isEmpty()){
+					if(busy == 0){
+						break;
+					}
+					synchronized(progress){
+						progress.wait(100);
+					}
+				}
+			}
+
+			// 各段階を順に終了
+			for(int i=0; i<stages.length && ! stopped; i++){
+				stages[i].finish();
+			}
+		} catch(InterruptedException ex){
+			if(! stopped){
+				throw ex;
+			}
+		} finally {
+			for(int i=0; i<stages.length; i++){
+				stages[i].interrupt();
+			}
+			runner = null;
+
+			// 保存段階の終了を待機し、保存されなかった URL をキューに戻す
+			stages[stages.length - 1].join();
+			release();
+			if(logger.isLoggable(Level.FINE)){
+				logger.fine("crawl finished: " + (storedCount.get() - stored0) + " pages in " + (System.currentTimeMillis() - start0) + "ms");
+			}
+		}
+		if(stopped){
+			Thread.interrupted();
+			throw new InterruptedException();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 未完了 URL の解放
+	// ======================================================================
+	/**
+	 * 保存が完了していないタスクと保存に失敗したタスクの URL を保存先のキューに戻します。
+	 * <p>
+	 */
+	private void release(){
+		List<URL> urls = new ArrayList<URL>();
+		synchronized(pending){
+			for(Task t: pending){
+				urls.add(t.url);
+			}
+			pending.clear();
+		}
+		synchronized(unsaved){
+			for(Task t: unsaved){
+				urls.add(t.url);
+			}
+			unsaved.clear();
+		}
+		if(urls.isEmpty()){
+			return;
+		}
+		try{
+			store.release(urls);
+			if(logger.isLoggable(Level.FINE)){
+				logger.fine(urls.size() + " unfinished urls released");
+			}
+		} catch(SQLException ex){
+			logger.log(Level.SEVERE, "未完了 URL の解放に失敗", ex);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 巡回の中断
+	// ======================================================================
+	/**
+	 * 実行中の巡回を中断します。保存が完了していない URL は保存先のキューに戻され、次回の
+	 * 巡回で再び取り出されます。
+	 * <p>
+	 */
+	public void stop(){
+		stopped = true;
+		Thread t = runner;
+		if(t != null){
+			t.interrupt();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 単一 URL の処理
+	// ======================================================================
+	/**
+	 * 指定された URL を呼び出し元のスレッドで取得、解析し、結果を保存します。
+	 * <p>
+	 * @param url 処理する URL
+	 * @return 解析済みページ (解析対象外の URL の場合は null)
+	 * @throws SQLException 保存に失敗した場合
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	public ParsedPage process(URL url) throws SQLException, InterruptedException{
+		Task task = new Task(url);
+		fetch(task);
+		detect(task);
+		parse(task);
+		persist(Collections.singletonList(task));
+		return task.ignored? null: task.page;
+	}
+
+	// ======================================================================
+	// ページの取得
+	// ======================================================================
+	/**
+	 * タスクの URL からページを取得します。
+	 * <p>
+	 * @param task タスク
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	private void fetch(Task task) throws InterruptedException{
+		politeness.acquire(task.url.getHost(), hostInterval);
+		retrieve(task);
+		return;
+	}
+
+	// ======================================================================
+	// ページの取得
+	// ======================================================================
+	/**
+	 * 接続間隔を待機せずにタスクの URL からページを取得します。
+	 * <p>
+	 * @param task タスク
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	private void retrieve(Task task) throws InterruptedException{
+		Listener l = listener;
+		if(l != null){
+			l.fetching(task.url);
+		}
+		try{
+			task.page.fetch();
+		} catch(IgnoreableException ex){
+			logger.fine(ex.toString());
+			task.ignored = true;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 文字セットの判定
+	// ======================================================================
+	/**
+	 * タスクのページの文字セットを判定します。
+	 * <p>
+	 * @param task タスク
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	private void detect(Task task) throws InterruptedException{
+		if(task.isCompleted()){
+			return;
+		}
+		try{
+			task.page.detect();
+		} catch(InterruptedException ex){
+			throw ex;
+		} catch(Exception ex){
+			task.page.setException(ex);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ページの解析
+	// ======================================================================
+	/**
+	 * タスクのページを解析し、対象 URL パターンに一致するリンクを設定します。
+	 * <p>
+	 * @param task タスク
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	private void parse(Task task) throws InterruptedException{
+		if(task.isCompleted()){
+			return;
+		}
+		List<URL> next = null;
+		try{
+			next = task.page.analyze(builder.get());
+		} catch(InterruptedException ex){
+			throw ex;
+		} catch(Exception ex){
+			task.page.setException(ex);
+			return;
+		} catch(AssertionError ex){
+			task.page.setException(ex);
+			return;
+		}
+
+		// パターンに一致する URL のみをキューに追加
+		Pattern p = pattern;
+		for(URL u: next){
+			if(p == null || p.matcher(u.toString()).matches()){
+				task.links.add(u);
+			} else if(logger.isLoggable(Level.FINEST)){
+				logger.finest("パターン非一致: " + u);
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 巡回結果の保存
+	// ======================================================================
+	/**
+	 * 指定されたタスクの結果を一括して保存します。
+	 * <p>
+	 * @param tasks 保存するタスク
+	 * @throws SQLException 保存に失敗した場合
+	 */
+	private void persist(List<Task> tasks) throws SQLException{
+		List<ParsedPage> pages = new ArrayList<ParsedPage>(tasks.size());
+		List<URL> ignored = new ArrayList<URL>();
+		List<URL> links = new ArrayList<URL>();
+		for(Task t: tasks){
+			if(t.ignored){
+				ignored.add(t.url);
+			} else {
+				pages.add(t.page);
+				links.addAll(t.links);
+			}
+		}
+		store.store(pages, ignored, links);
+		storedCount.addAndGet(pages.size());
+		Listener l = listener;
+		if(l != null){
+			l.stored(pages);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// アプリケーションの実行
+	// ======================================================================
+	/**
+	 * 画面を表示せずに巡回を実行します。
+	 * <p>
+	 * <pre>java org.koiroha.xml.parser.CrawlEngine [database-dir] [start-url] [url-pattern]</pre>
+	 * <p>
+	 * 開始 URL を省略した場合はキューに残っている URL から再開します。並列数などはシステム
+	 * プロパティ crawler.fetch, crawler.detect, crawler.parse, crawler.queue,
+	 * crawler.batch, crawler.interval で指定できます。
+	 * <p>
+	 * @param args コマンドライン引数
+	 * @throws Exception 巡回に失敗した場合
+	 */
+	public static void main(String[] args) throws Exception{
+		if(args.length < 1){
+			System.err.println("USAGE: java " + CrawlEngine.class.getName() + " [database-dir] [start-url] [url-pattern]");
+			System.exit(1);
+		}
+		File dir = new File(args[0]);
+		URL start = (args.length >= 2)? new URL(args[1]): null;
+
+		final WebCrawlerDB db = new WebCrawlerDB(dir.getAbsolutePath());
+		try{
+			CrawlEngine engine = new CrawlEngine(db);
+			engine.setConcurrency(
+				Integer.getInteger("crawler.fetch", engine.fetchConcurrency),
+				Integer.getInteger("crawler.detect", engine.detectConcurrency),
+				Integer.getInteger("crawler.parse", engine.parseConcurrency));
+			engine.setQueueCapacity(Integer.getInteger("crawler.queue", engine.queueCapacity));
+			engine.setBatchSize(Integer.getInteger("crawler.batch", engine.batchSize));
+			engine.setHostInterval(Long.getLong("crawler.interval", engine.hostInterval));
+			if(args.length >= 3){
+				engine.setPattern(WebCrawler.getPattern(args[2]));
+			}
+			engine.setListener(new Listener(){
+				public void fetching(URL url) {
+					return;
+				}
+				public void stored(List<ParsedPage> pages) {
+					if(logger.isLoggable(Level.INFO)){
+						logger.info(String.format("complete=%,d; error=%,d; queue=%,d",
+							db.getParsedPageCount(), db.getErrorPageCount(), db.getQueuePageCount()));
+					}
+					return;
+				}
+			});
+			engine.run(start);
+		} finally {
+			db.disconnect();
+		}
+		return;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Listener: 進捗リスナ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 巡回の進捗を通知するためのリスナです。各メソッドは巡回エンジンの内部スレッドから呼び
+	 * 出されます。
+	 * <p>
+	 */
+	public interface Listener {
+
+		// ==================================================================
+		// 取得開始の通知
+		// ==================================================================
+		/**
+		 * 指定された URL の取得を開始する時に呼び出されます。
+		 * <p>
+		 * @param url 取得する URL
+		 */
+		public void fetching(URL url);
+
+		// ==================================================================
+		// 保存完了の通知
+		// ==================================================================
+		/**
+		 * 解析済みページの一括保存が完了した時に呼び出されます。
+		 * <p>
+		 * @param pages 保存したページ
+		 */
+		public void stored(List<ParsedPage> pages);
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Task: タスク
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 段階の間で受け渡される処理中の URL です。
+	 * <p>
+	 */
+	private static final class Task {
+
+		/** 処理対象の URL です。 */
+		public final URL url;
+
+		/** 解析中のページです。 */
+		public final ParsedPage page;
+
+		/** キューに追加するリンクです。 */
+		public final List<URL> links = new ArrayList<URL>();
+
+		/** 解析対象外の URL の場合 true です。 */
+		public boolean ignored = false;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 処理対象の URL を指定して構築を行います。
+		 * <p>
+		 * @param url 処理対象の URL
+		 */
+		public Task(URL url){
+			this.url = url;
+			this.page = (url == null)? null: new ParsedPage(url);
+			return;
+		}
+
+		// ==================================================================
+		// 処理完了の判定
+		// ==================================================================
+		/**
+		 * 解析対象外であるか例外が発生したために以降の段階を省略できる場合に true を返し
+		 * ます。
+		 * <p>
+		 * @return 以降の処理が不要な場合 true
+		 */
+		public boolean isCompleted(){
+			return ignored || page.getException() != null;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Stage: 処理段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 入力キューからタスクを取り出して処理するスレッド群です。
+	 * <p>
+	 */
+	private abstract class Stage {
+
+		/** スレッド名です。 */
+		private final String name;
+
+		/** 入力キューです。 */
+		protected final BlockingQueue<Task> in;
+
+		/** この段階のスレッドです。 */
+		private final List<Thread> workers = new ArrayList<Thread>();
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 入力キューを指定して構築を行います。
+		 * <p>
+		 * @param name スレッド名
+		 * @param in 入力キュー
+		 */
+		protected Stage(String name, BlockingQueue<Task> in){
+			this.name = name;
+			this.in = in;
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの開始
+		// ==================================================================
+		/**
+		 * 指定された数のスレッドを開始します。
+		 * <p>
+		 * @param concurrency スレッド数
+		 */
+		public void start(int concurrency){
+			for(int i=0; i<concurrency; i++){
+				Thread t = new Thread(name + "-" + i){
+					@Override
+					public void run(){
+						try{
+							work();
+						} catch(InterruptedException ex){
+							logger.finest(getName() + " interrupted");
+						}
+						return;
+					}
+				};
+				t.setDaemon(true);
+				t.start();
+				workers.add(t);
+			}
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの終了
+		// ==================================================================
+		/**
+		 * 入力キューに残っているタスクの処理後にスレッドを終了させ、全てのスレッドの終了を
+		 * 待機します。
+		 * <p>
+		 * @throws InterruptedException 待機中に割り込まれた場合
+		 */
+		public void finish() throws InterruptedException{
+			for(int i=0; i<workers.size(); i++){
+				in.put(END);
+			}
+			join();
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの中断
+		// ==================================================================
+		/**
+		 * 全てのスレッドに割り込みます。
+		 * <p>
+		 */
+		public void interrupt(){
+			for(Thread t: workers){
+				t.interrupt();
+			}
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの終了待機
+		// ==================================================================
+		/**
+		 * 全てのスレッドの終了を待機します。待機中に割り込まれた場合は割り込み状態を維持
+		 * したまま復帰します。
+		 * <p>
+		 */
+		public void join(){
+			boolean interrupted = false;
+			for(Thread t: workers){
+				while(t.isAlive()){
+					try{
+						t.join();
+					} catch(InterruptedException ex){
+						interrupted = true;
+					}
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの処理
+		// ==================================================================
+		/**
+		 * 終了タスクを受け取るまで入力キューのタスクを処理します。
+		 * <p>
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		protected abstract void work() throws InterruptedException;
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// TaskStage: タスク単位の処理段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * タスクを 1 件ずつ処理して出力キューへ渡す段階です。処理中に予期しない例外が発生した
+	 * タスクは例外を設定した上で後続の段階へ渡されます。
+	 * <p>
+	 */
+	private abstract class TaskStage extends Stage {
+
+		/** 出力キューです。 */
+		private final BlockingQueue<Task> out;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 入出力キューを指定して構築を行います。
+		 * <p>
+		 * @param name スレッド名
+		 * @param in 入力キュー
+		 * @param out 出力キュー
+		 */
+		protected TaskStage(String name, BlockingQueue<Task> in, BlockingQueue<Task> out){
+			super(name, in);
+			this.out = out;
+			return;
+		}
+
+		// ==================================================================
+		// スレッドの処理
+		// ==================================================================
+		/**
+		 * 終了タスクを受け取るまで入力キューのタスクを処理し出力キューへ渡します。
+		 * <p>
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void work() throws InterruptedException{
+			while(true){
+				Task task = in.take();
+				if(task == END){
+					break;
+				}
+				handle(task);
+			}
+			return;
+		}
+
+		// ==================================================================
+		// タスクの処理と受け渡し
+		// ==================================================================
+		/**
+		 * 指定されたタスクを処理し出力キューへ渡します。
+		 * <p>
+		 * @param task タスク
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		protected void handle(Task task) throws InterruptedException{
+			try{
+				process(task);
+			} catch(RuntimeException ex){
+				fail(task, ex);
+			} catch(Error ex){
+				fail(task, ex);
+			}
+			out.put(task);
+			return;
+		}
+
+		// ==================================================================
+		// タスクの失敗
+		// ==================================================================
+		/**
+		 * 予期しない例外が発生したタスクをエラーとして記録します。
+		 * <p>
+		 * @param task タスク
+		 * @param ex 発生した例外
+		 */
+		private void fail(Task task, Throwable ex){
+			logger.log(Level.SEVERE, "予期しない例外: " + task.url, ex);
+			task.ignored = false;
+			task.links.clear();
+			task.page.setException(ex);
+			return;
+		}
+
+		// ==================================================================
+		// タスクの処理
+		// ==================================================================
+		/**
+		 * 指定されたタスクを処理します。
+		 * <p>
+		 * @param task タスク
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		protected abstract void process(Task task) throws InterruptedException;
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// FetchStage: 取得段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * ページを取得する段階です。
+	 * <p>
+	 * 接続間隔が経過していないホストのタスクはスレッドを待機させずに延期キューへ移し、
+	 * その間は他のホストのタスクを処理します。延期したタスクは接続可能時刻に達した時点で
+	 * 入力キューのタスクより優先して処理されます。
+	 * <p>
+	 */
+	private final class FetchStage extends TaskStage {
+
+		/** 接続可能時刻まで延期しているタスクです。 */
+		private final DelayQueue<Deferred> deferred = new DelayQueue<Deferred>();
+
+		/**
+		 * @param in 入力キュー
+		 * @param out 出力キュー
+		 */
+		public FetchStage(BlockingQueue<Task> in, BlockingQueue<Task> out){
+			super("crawler-fetch", in, out);
+			return;
+		}
+
+		/**
+		 * 終了タスクを受け取り延期中のタスクが存在しなくなるまで、接続可能なタスクを処理
+		 * します。
+		 * <p>
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void work() throws InterruptedException{
+			boolean end = false;
+			while(true){
+
+				// 接続可能時刻に達した延期タスクを優先し、なければ入力キューから取得
+				Task task = null;
+				Deferred d = deferred.poll();
+				Deferred head = deferred.peek();
+				if(d != null){
+					task = d.task;
+				} else if(end){
+					if(head == null){
+						break;
+					}
+					d = deferred.poll(head.getDelay(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+					if(d == null){
+						continue;
+					}
+					task = d.task;
+				} else {
+					if(head == null){
+						task = in.take();
+					} else {
+						task = in.poll(head.getDelay(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+						if(task == null){
+							continue;
+						}
+					}
+					if(task == END){
+						end = true;
+						continue;
+					}
+				}
+
+				// 接続可能でなければ延期
+				long wait = politeness.tryAcquire(task.url.getHost(), hostInterval);
+				if(wait > 0){
+					deferred.add(new Deferred(task, wait));
+					continue;
+				}
+				handle(task);
+			}
+			return;
+		}
+
+		/**
+		 * @param task タスク
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void process(Task task) throws InterruptedException {
+			retrieve(task);
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// DetectStage: 文字セット判定段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 文字セットを判定する段階です。
+	 * <p>
+	 */
+	private final class DetectStage extends TaskStage {
+
+		/**
+		 * @param in 入力キュー
+		 * @param out 出力キュー
+		 */
+		public DetectStage(BlockingQueue<Task> in, BlockingQueue<Task> out){
+			super("crawler-detect", in, out);
+			return;
+		}
+
+		/**
+		 * @param task タスク
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void process(Task task) throws InterruptedException {
+			detect(task);
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// ParseStage: 解析段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * HTML を解析する段階です。
+	 * <p>
+	 */
+	private final class ParseStage extends TaskStage {
+
+		/**
+		 * @param in 入力キュー
+		 * @param out 出力キュー
+		 */
+		public ParseStage(BlockingQueue<Task> in, BlockingQueue<Task> out){
+			super("crawler-parse", in, out);
+			return;
+		}
+
+		/**
+		 * @param task タスク
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void process(Task task) throws InterruptedException {
+			parse(task);
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// StoreStage: 保存段階
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 解析結果を保存する段階です。入力キューに蓄積されているタスクを最大
+	 * {@link CrawlEngine#batchSize} 件まとめて保存します。一括保存に失敗した場合は 1 件
+	 * ずつ保存し直し、それでも保存できないページは保存時の例外を持つエラーページとして
+	 * 保存します。エラーページも保存できなかったタスクの URL は巡回の終了時に保存先の
+	 * キューへ戻されます。
+	 * <p>
+	 */
+	private final class StoreStage extends Stage {
+
+		/**
+		 * @param in 入力キュー
+		 */
+		public StoreStage(BlockingQueue<Task> in){
+			super("crawler-store", in);
+			return;
+		}
+
+		/**
+		 * @throws InterruptedException 処理中に割り込まれた場合
+		 */
+		@Override
+		protected void work() throws InterruptedException {
+			List<Task> batch = new ArrayList<Task>(batchSize);
+			boolean end = false;
+			while(! end){
+				batch.add(in.take());
+				in.drainTo(batch, batchSize - 1);
+				end = batch.remove(END);
+				if(batch.isEmpty()){
+					continue;
+				}
+				try{
+					persist(batch);
+				} catch(SQLException ex){
+					logger.log(Level.WARNING, "一括保存に失敗したため 1 件ずつ保存します", ex);
+					persistEach(batch);
+				} catch(RuntimeException ex){
+					logger.log(Level.WARNING, "一括保存に失敗したため 1 件ずつ保存します", ex);
+					persistEach(batch);
+				} finally {
+					pending.removeAll(batch);
+					batch.clear();
+					synchronized(progress){
+						progress.notifyAll();
+					}
+				}
+			}
+			return;
+		}
+
+		// ==================================================================
+		// 個別の保存
+		// ==================================================================
+		/**
+		 * 一括保存に失敗したタスクを 1 件ずつ保存します。保存できないページは例外を設定した
+		 * エラーページとして保存し、それも失敗した場合は未保存のタスクとします。
+		 * <p>
+		 * @param batch 一括保存に失敗したタスク
+		 */
+		private void persistEach(List<Task> batch){
+			for(Task t: batch){
+				Throwable cause = null;
+				try{
+					persist(Collections.singletonList(t));
+					continue;
+				} catch(SQLException ex){
+					cause = ex;
+				} catch(RuntimeException ex){
+					cause = ex;
+				}
+				logger.log(Level.SEVERE, "データベースへ保存に失敗: " + t.url, cause);
+				if(! t.ignored){
+					Task error = new Task(t.url);
+					error.page.setException(cause);
+					try{
+						persist(Collections.singletonList(error));
+						continue;
+					} catch(SQLException ex){
+						logger.log(Level.SEVERE, "エラーページの保存に失敗: " + t.url, ex);
+					} catch(RuntimeException ex){
+						logger.log(Level.SEVERE, "エラーページの保存に失敗: " + t.url, ex);
+					}
+				}
+				unsaved.add(t);
+			}
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Deferred: 延期タスク
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 接続可能時刻まで取得を延期したタスクです。
+	 * <p>
+	 */
+	private static final class Deferred implements Delayed {
+
+		/** 延期したタスクです。 */
+		public final Task task;
+
+		/** 接続可能時刻 (ナノ秒) です。 */
+		private final long at;
+
+		/**
+		 * @param task 延期するタスク
+		 * @param wait 接続可能になるまでの時間 (ナノ秒)
+		 */
+		public Deferred(Task task, long wait){
+			this.task = task;
+			this.at = System.nanoTime() + wait;
+			return;
+		}
+
+		/**
+		 * @param unit 時間の単位
+		 * @return 接続可能になるまでの時間
+		 */
+		public long getDelay(TimeUnit unit){
+			return unit.convert(at - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @param o 比較する延期タスク
+		 * @return 接続可能時刻の比較結果
+		 */
+		public int compareTo(Delayed o){
+			long diff = at - ((Deferred)o).at;
+			return (diff < 0)? -1: (diff > 0)? 1: 0;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// HostPoliteness: ホスト別接続制御
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 同一ホストへの接続が一定の間隔を空けて行われるよう待機させるためのクラスです。
+	 * <p>
+	 */
+	private static final class HostPoliteness {
+
+		/** ホストごとの次回接続可能時刻 (ナノ秒) です。 */
+		private final Map<String,Long> next = new HashMap<String,Long>();
+
+		// ==================================================================
+		// 接続の待機
+		// ==================================================================
+		/**
+		 * 指定されたホストへの接続が可能になるまで待機します。待機しているスレッドが複数
+		 * 存在する場合は呼び出し順に間隔を空けて接続可能となります。
+		 * <p>
+		 * @param host ホスト名
+		 * @param interval 接続間隔 (ミリ秒)
+		 * @throws InterruptedException 待機中に割り込まれた場合
+		 */
+		public void acquire(String host, long interval) throws InterruptedException{
+			if(interval <= 0){
+				return;
+			}
+			long wait = 0;
+			synchronized(next){
+				long now = System.nanoTime();
+				Long time = next.get(host);
+				long at = (time == null)? now: Math.max(now, time);
+				next.put(host, at + TimeUnit.MILLISECONDS.toNanos(interval));
+				wait = at - now;
+			}
+			if(wait > 0){
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			return;
+		}
+
+		// ==================================================================
+		// 接続の試行
+		// ==================================================================
+		/**
+		 * 指定されたホストへ待機せずに接続可能であれば次回の接続可能時刻を予約します。
+		 * 接続可能でない場合は何も予約せず、接続可能になるまでの時間を返します。
+		 * <p>
+		 * @param host ホスト名
+		 * @param interval 接続間隔 (ミリ秒)
+		 * @return 接続可能な場合 0、そうでない場合は接続可能になるまでの時間 (ナノ秒)
+		 */
+		public long tryAcquire(String host, long interval){
+			if(interval <= 0){
+				return 0;
+			}
+			synchronized(next){
+				long now = System.nanoTime();
+				Long time = next.get(host);
+				if(time != null && time > now){
+					return time - now;
+				}
+				next.put(host, now + TimeUnit.MILLISECONDS.toNanos(interval));
+			}
+			return 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,82 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CrawlStore: 巡回結果の保存先
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CrawlEngine} が解析対象 URL のキューと解析済みページを保存するためのインター
+ * フェースです。各メソッドは巡回スレッドと保存段階のスレッドから並行して呼び出されるため、
+ * 実装クラスは同期化されている必要があります。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ * @see WebCrawlerDB
+ */
+public interface CrawlStore {
+
+	// ======================================================================
+	// 解析対象 URL の追加
+	// ======================================================================
+	/**
+	 * 解析対象の URL をキューに追加します。既に解析済みかキューに存在する URL は無視され
+	 * ます。
+	 * <p>
+	 * @param url 解析対象の URL
+	 * @throws SQLException 保存に失敗した場合
+	 */
+	public void enqueue(URL url) throws SQLException;
+
+	// ======================================================================
+	// 解析対象 URL の取り出し
+	// ======================================================================
+	/**
+	 * キューから解析対象の URL を最大 <i>max</i> 件取り出します。取り出した URL は
+	 * {@link #store(Collection, Collection, Collection)} で処理済みとされるまでキュー
+	 * に残りますが、再び取り出されることはありません。
+	 * <p>
+	 * @param max 取り出す最大件数
+	 * @return 解析対象の URL (キューが空の場合は空のリスト)
+	 * @throws SQLException 参照に失敗した場合
+	 */
+	public List<URL> select(int max) throws SQLException;
+
+	// ======================================================================
+	// 解析対象 URL の解放
+	// ======================================================================
+	/**
+	 * {@link #select(int)} で取り出したが処理が完了しなかった URL を、再び取り出される
+	 * ようキューに戻します。
+	 * <p>
+	 * @param urls 処理が完了しなかった URL
+	 * @throws SQLException 保存に失敗した場合
+	 */
+	public void release(Collection<URL> urls) throws SQLException;
+
+	// ======================================================================
+	// 巡回結果の保存
+	// ======================================================================
+	/**
+	 * 解析済みページ、解析対象外と判断した URL、新たに発見したリンクを一括して保存します。
+	 * 解析済みページと解析対象外の URL はキューから削除されます。
+	 * <p>
+	 * @param pages 解析済みのページ
+	 * @param ignored 解析対象外と判断した URL
+	 * @param links 新たにキューに追加するリンク
+	 * @throws SQLException 保存に失敗した場合
+	 */
+	public void store(Collection<ParsedPage> pages, Collection<URL> ignored, Collection<URL> links) throws SQLException;
+
+}
@@ -0,0 +1,340 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.zip.*;
+
+import org.xml.sax.SAXParseException;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// PageCodec: 解析済みページのバイナリ表現
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link ParsedPage} をデータベースに保存するためのバイナリ表現へ変換するクラスです。
+ * Java のシリアライズ機構は使用せず、各フィールドを長さ付きの UTF-8 文字列と整数で記述
+ * したものを Deflate で圧縮します。
+ * <p>
+ * バイナリは 2 バイトのマジック、1 バイトのバージョンに続く圧縮データで構成されます。
+ * 以前のバージョンで Java シリアライズにより保存されたバイナリも復元することができます。
+ * 例外はクラス名、メッセージ、スタックトレースのみが保存され、{@link StoredException}
+ * として復元されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class PageCodec {
+
+	// ======================================================================
+	// マジック
+	// ======================================================================
+	/**
+	 * バイナリの先頭に記述するマジックです。
+	 * <p>
+	 */
+	private static final byte[] MAGIC = { 'X', 'P' };
+
+	// ======================================================================
+	// バージョン
+	// ======================================================================
+	/**
+	 * バイナリ形式のバージョンです。
+	 * <p>
+	 */
+	private static final int VERSION = 1;
+
+	// ======================================================================
+	// 文字化けフラグ
+	// ======================================================================
+	/**
+	 * ページに文字化けが発生していることを示すフラグです。
+	 * <p>
+	 */
+	private static final int FLAG_MOJIBAKE = 1 << 0;
+
+	// ======================================================================
+	// 例外フラグ
+	// ======================================================================
+	/**
+	 * ページの解析で例外が発生していることを示すフラグです。
+	 * <p>
+	 */
+	private static final int FLAG_EXCEPTION = 1 << 1;
+
+	// ======================================================================
+	// 文字セット
+	// ======================================================================
+	/**
+	 * 文字列の記述に使用する文字セットです。
+	 * <p>
+	 */
+	private static final String ENCODING = "UTF-8";
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * コンストラクタはクラス内部からも使用されません。
+	 * <p>
+	 */
+	private PageCodec() {
+		return;
+	}
+
+	// ======================================================================
+	// バイナリへの変換
+	// ======================================================================
+	/**
+	 * 指定された解析済みページをバイナリに変換します。
+	 * <p>
+	 * @param page 解析済みページ
+	 * @return バイナリ
+	 */
+	public static byte[] encode(ParsedPage page){
+		try{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(MAGIC);
+			baos.write(VERSION);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(baos, deflater, 8 * 1024));
+
+			// ページ情報
+			writeString(out, page.getURL().toString());
+			writeString(out, page.getTitle());
+			writeString(out, page.getDoctype());
+			writeString(out, (page.getCharset()==null)? null: page.getCharset().name());
+			int flags = 0;
+			if(page.isMojibake()){
+				flags |= FLAG_MOJIBAKE;
+			}
+			if(page.getException() != null){
+				flags |= FLAG_EXCEPTION;
+			}
+			out.writeByte(flags);
+			writeString(out, page.getContent());
+			writeString(out, page.getParsedContent());
+
+			// 警告
+			SAXParseException[] warn = page.getWarnings();
+			out.writeInt((warn==null)? -1: warn.length);
+			for(int i=0; warn!=null && i<warn.length; i++){
+				writeString(out, warn[i].getMessage());
+				writeString(out, warn[i].getPublicId());
+				writeString(out, warn[i].getSystemId());
+				out.writeInt(warn[i].getLineNumber());
+				out.writeInt(warn[i].getColumnNumber());
+			}
+
+			// 例外
+			Throwable ex = page.getException();
+			if(ex != null){
+				writeString(out, (ex instanceof StoredException)? ((StoredException)ex).className: ex.getClass().getName());
+				writeString(out, ex.getMessage());
+				StackTraceElement[] trace = ex.getStackTrace();
+				out.writeInt(trace.length);
+				for(StackTraceElement e: trace){
+					writeString(out, e.getClassName());
+					writeString(out, e.getMethodName());
+					writeString(out, e.getFileName());
+					out.writeInt(e.getLineNumber());
+				}
+			}
+			out.close();
+			deflater.end();
+			return baos.toByteArray();
+		} catch(IOException ex){
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	// ======================================================================
+	// バイナリからの復元
+	// ======================================================================
+	/**
+	 * 指定されたバイナリから解析済みページを復元します。
+	 * <p>
+	 * @param binary バイナリ
+	 * @return 解析済みページ
+	 * @throws IllegalArgumentException バイナリの形式が不正な場合
+	 */
+	public static ParsedPage decode(byte[] binary){
+
+		// 以前のバージョンで Java シリアライズにより保存されたバイナリ
+		if(binary.length >= 2 && (binary[0] & 0xFF) == 0xAC && (binary[1] & 0xFF) == 0xED){
+			try{
+				ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(binary));
+				return (ParsedPage)in.readObject();
+			} catch(Exception ex){
+				throw new IllegalArgumentException("invalid serialized page", ex);
+			}
+		}
+
+		// マジックとバージョンの確認
+		if(binary.length < 3 || binary[0] != MAGIC[0] || binary[1] != MAGIC[1]){
+			throw new IllegalArgumentException("unknown page binary format");
+		}
+		if(binary[2] != VERSION){
+			throw new IllegalArgumentException("unsupported page binary version: " + binary[2]);
+		}
+
+		Inflater inflater = new Inflater();
+		try{
+			DataInputStream in = new DataInputStream(new InflaterInputStream(
+				new ByteArrayInputStream(binary, 3, binary.length - 3), inflater, 8 * 1024));
+
+			// ページ情報
+			URL url = new URL(readString(in));
+			String title = readString(in);
+			String doctype = readString(in);
+			String charset = readString(in);
+			int flags = in.readUnsignedByte();
+			String content = readString(in);
+			String parsedContent = readString(in);
+
+			// 警告
+			SAXParseException[] warn = null;
+			int count = in.readInt();
+			if(count >= 0){
+				warn = new SAXParseException[count];
+				for(int i=0; i<count; i++){
+					String message = readString(in);
+					String publicId = readString(in);
+					String systemId = readString(in);
+					int line = in.readInt();
+					int column = in.readInt();
+					warn[i] = new SAXParseException(message, publicId, systemId, line, column);
+				}
+			}
+
+			ParsedPage page = new ParsedPage(url, title, doctype,
+				(charset==null)? null: Charset.forName(charset),
+				(flags & FLAG_MOJIBAKE) != 0, content, parsedContent, warn);
+
+			// 例外
+			if((flags & FLAG_EXCEPTION) != 0){
+				String className = readString(in);
+				String message = readString(in);
+				StackTraceElement[] trace = new StackTraceElement[in.readInt()];
+				for(int i=0; i<trace.length; i++){
+					String declaringClass = readString(in);
+					String methodName = readString(in);
+					String fileName = readString(in);
+					int line = in.readInt();
+					trace[i] = new StackTraceElement(declaringClass, methodName, fileName, line);
+				}
+				StoredException ex = new StoredException(className, message);
+				ex.setStackTrace(trace);
+				page.setException(ex);
+			}
+			return page;
+		} catch(IOException ex){
+			throw new IllegalArgumentException("broken page binary", ex);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	// ======================================================================
+	// 文字列の出力
+	// ======================================================================
+	/**
+	 * 指定された文字列を長さ付きの UTF-8 で出力します。null は長さ -1 で表されます。
+	 * <p>
+	 * @param out 出力先のストリーム
+	 * @param str 出力する文字列
+	 * @throws IOException 出力に失敗した場合
+	 */
+	private static void writeString(DataOutputStream out, String str) throws IOException{
+		if(str == null){
+			out.writeInt(-1);
+		} else {
+			byte[] b = str.getBytes(ENCODING);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 文字列の入力
+	// ======================================================================
+	/**
+	 * 長さ付きの UTF-8 で記述された文字列を読み込みます。
+	 * <p>
+	 * @param in 入力ストリーム
+	 * @return 読み込んだ文字列
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static String readString(DataInputStream in) throws IOException{
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, ENCODING);
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// StoredException: 保存された例外
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * バイナリから復元した例外です。元の例外のクラス名、メッセージ、スタックトレースを保持
+	 * します。
+	 * <p>
+	 */
+	public static final class StoredException extends Exception {
+
+		// ==================================================================
+		// シリアルバージョン
+		// ==================================================================
+		/**
+		 * このクラスのシリアルバージョンです。
+		 * <p>
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/** 元の例外のクラス名です。 */
+		public final String className;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 元の例外のクラス名とメッセージを指定して構築を行います。
+		 * <p>
+		 * @param className 元の例外のクラス名
+		 * @param message 元の例外のメッセージ
+		 */
+		public StoredException(String className, String message){
+			super(message);
+			this.className = className;
+			return;
+		}
+
+		// ==================================================================
+		// インスタンスの文字列化
+		// ==================================================================
+		/**
+		 * 元の例外と同じ形式で文字列化します。
+		 * <p>
+		 * @return インスタンスの文字列
+		 */
+		@Override
+		public String toString() {
+			String message = getLocalizedMessage();
+			return (message == null)? className: (className + ": " + message);
+		}
+
+	}
+
+}
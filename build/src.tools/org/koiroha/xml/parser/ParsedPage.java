@@ -52,6 +52,15 @@ public final class ParsedPage implements Serializable, Cloneable{
 	 */
 	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(ParsedPage.class.getName());
 
+	// ======================================================================
+	// HTML パーサファクトリ
+	// ======================================================================
+	/**
+	 * 文字セットの判定に使用する HTML パーサファクトリです。
+	 * <p>
+	 */
+	private static final HTMLParserFactory PARSER_FACTORY = new HTMLParserFactory();
+
 	// ======================================================================
 	// URL
 	// ======================================================================
@@ -133,6 +142,25 @@ public final class ParsedPage implements Serializable, Cloneable{
 	 */
 	private Throwable ex = null;
 
+	// ======================================================================
+	// 取得したバイナリ
+	// ======================================================================
+	/**
+	 * {@link #fetch()} で取得したページのバイナリです。解析の終了後は null となります。
+	 * <p>
+	 */
+	private transient byte[] binary = null;
+
+	// ======================================================================
+	// 入力ソース
+	// ======================================================================
+	/**
+	 * {@link #detect()} で文字セットを判定した入力ソースです。解析の終了後は null となり
+	 * ます。
+	 * <p>
+	 */
+	private transient InputSource source = null;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -322,14 +350,33 @@ public final class ParsedPage implements Serializable, Cloneable{
 	// 処理の実行
 	// ======================================================================
 	/**
-	 * 処理を実行します。
+	 * ページの取得、文字セットの判定、解析を続けて実行します。
 	 * <p>
 	 * @return このページに含まれているリンク
 	 * @throws IgnoreableException この URL が HTML でない場合
 	 * @throws IOException HTML の読み込みに失敗した場合
 	 * @throws InterruptedException 処理が中断された場合
+	 * @see #fetch()
+	 * @see #detect()
+	 * @see #analyze(DocumentBuilder)
 	 */
 	public List<URL> parse() throws IgnoreableException, IOException, InterruptedException{
+		fetch();
+		detect();
+		return analyze(newDocumentBuilder());
+	}
+
+	// ======================================================================
+	// ページの取得
+	// ======================================================================
+	/**
+	 * URL に接続してページの内容をバイナリとして読み込みます。Content-Type に文字セットが
+	 * 指定されている場合はその文字セットを仮の文字セットとします。
+	 * <p>
+	 * @throws IgnoreableException 接続に失敗した場合や URL が HTML でない場合
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	public void fetch() throws IgnoreableException, InterruptedException{
 
 		// URL による接続の準備
 		URLConnection con = null;
@@ -382,24 +429,67 @@ public final class ParsedPage implements Serializable, Cloneable{
 		} catch(IOException ex){
 			throw new IgnoreableException(ex.toString());
 		}
+		this.binary = buffer.toByteArray();
 		checkInterrupted();
+		return;
+	}
+
+	// ======================================================================
+	// 文字セットの判定
+	// ======================================================================
+	/**
+	 * {@link #fetch()} で読み込んだバイナリから文字セットを判定し、解析前のページ内容を
+	 * 設定します。
+	 * <p>
+	 * @throws IOException 文字セットの判定に失敗した場合
+	 * @throws InterruptedException 処理が中断された場合
+	 */
+	public void detect() throws IOException, InterruptedException{
+		if(binary == null){
+			throw new IllegalStateException("content not fetched: " + url);
+		}
 
 		// 入力ストリームの準備
-		byte[] binary = buffer.toByteArray();
 		InputStream in = new ByteArrayInputStream(binary);
-		InputSource is = new HTMLParserFactory().guessInputSource(in, charset, 8 * 1024);
+		InputSource is = PARSER_FACTORY.guessInputSource(in, charset, 8 * 1024);
 		is.setSystemId(url.toString());
 		charset = is.getEncoding();
 		this.content = toString(binary, charset);
+		this.source = is;
+		checkInterrupted();
+		return;
+	}
+
+	// ======================================================================
+	// ページの解析
+	// ======================================================================
+	/**
+	 * {@link #detect()} で準備した入力ソースを指定されたドキュメントビルダーで解析し、
+	 * タイトル、ドキュメント型、警告、再構成したページ内容を設定します。ドキュメントビルダー
+	 * は解析の前にリセットされるため、同一スレッド内で繰り返し使用することができます。
+	 * <p>
+	 * 解析が終了すると読み込んだバイナリは破棄されます。
+	 * <p>
+	 * @param builder ドキュメントビルダー
+	 * @return このページに含まれているリンク
+	 * @throws IOException HTML の読み込みに失敗した場合
+	 * @throws InterruptedException 処理が中断された場合
+	 * @see #newDocumentBuilder()
+	 */
+	public List<URL> analyze(DocumentBuilder builder) throws IOException, InterruptedException{
+		if(source == null){
+			throw new IllegalStateException("charset not detected: " + url);
+		}
+		InputSource is = source;
+		byte[] binary = this.binary;
+		this.source = null;
+		this.binary = null;
 
 		// ドキュメント内容の解析
 		Document doc = null;
 		try{
-			HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory();
-			factory.setNamespaceAware(true);
-			factory.setHtmlOptimize(true);
-			DocumentBuilder builder = factory.newDocumentBuilder();
 			final List<SAXParseException> warning = new ArrayList<SAXParseException>();
+			builder.reset();
 			builder.setErrorHandler(new DefaultHandler2(){
 				/** @param e
 				 * @throws SAXException
@@ -428,14 +518,12 @@ public final class ParsedPage implements Serializable, Cloneable{
 			// 文字化けを判定
 			mojibake = (content.indexOf('\uFFFD') >= 0);
 
-		} catch(ParserConfigurationException ex){
-			throw new IllegalStateException(ex);
 		} catch(SAXException ex){
 			assert(false): ex;
 			throw new IllegalStateException(ex);
 		} finally {
 			if(doc == null){
-				logger.severe(new String(buffer.toByteArray(), charset));
+				logger.severe(new String(binary, charset));
 				logger.severe("URL: "+ url);
 			}
 		}
@@ -487,6 +575,25 @@ public final class ParsedPage implements Serializable, Cloneable{
 		return link;
 	}
 
+	// ======================================================================
+	// ドキュメントビルダーの構築
+	// ======================================================================
+	/**
+	 * {@link #analyze(DocumentBuilder)} で使用するドキュメントビルダーを構築します。
+	 * <p>
+	 * @return ドキュメントビルダー
+	 */
+	public static DocumentBuilder newDocumentBuilder(){
+		try{
+			HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory();
+			factory.setNamespaceAware(true);
+			factory.setHtmlOptimize(true);
+			return factory.newDocumentBuilder();
+		} catch(ParserConfigurationException ex){
+			throw new IllegalStateException(ex);
+		}
+	}
+
 	// ======================================================================
 	// 割り込みの確認
 	// ======================================================================
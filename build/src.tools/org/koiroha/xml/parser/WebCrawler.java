@@ -31,7 +31,9 @@ import javax.swing.event.*;
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 /**
  * Web を巡回してリンクをたどる GUI アプリケーションです。HTML パーサの検証ツールとして使用し
- * ます。
+ * ます。巡回は {@link CrawlEngine} によって行われ、この画面は巡回の開始と停止、解析結果の
+ * 参照を行うビューアとして機能します。画面を使用せずに巡回する場合は
+ * {@link CrawlEngine#main(String[])} を使用してください。
  * <p>
  * @version $Revision: 1.4 $ $Date: 2010/02/24 13:59:38 $
  * @author torao
@@ -102,6 +104,15 @@ public class WebCrawler extends JFrame {
 	 */
 	private final WebCrawlerModel model;
 
+	// ======================================================================
+	// 巡回エンジン
+	// ======================================================================
+	/**
+	 * 巡回を実行するエンジンです。
+	 * <p>
+	 */
+	private final CrawlEngine engine;
+
 	// ======================================================================
 	// 警告
 	// ======================================================================
@@ -210,7 +221,27 @@ public class WebCrawler extends JFrame {
 	 */
 	public WebCrawler(File dir) throws SQLException{
 		this.model = new WebCrawlerModel(dir);
+		this.engine = new CrawlEngine(model.db);
 		this.setTitle("WebCrawler - " + dir);
+		engine.setListener(new CrawlEngine.Listener(){
+			public void fetching(final URL url) {
+				SwingUtilities.invokeLater(new Runnable(){
+					public void run() {
+						parsingURL.setText(url.toString());
+					}
+				});
+				return;
+			}
+			public void stored(List<ParsedPage> pages) {
+				SwingUtilities.invokeLater(new Runnable(){
+					public void run() {
+						model.refresh();
+						updateStatus();
+					}
+				});
+				return;
+			}
+		});
 
 		// 開始 URL 入力と開始ボタン
 		JPanel toolbar = new JPanel();
@@ -248,10 +279,15 @@ public class WebCrawler extends JFrame {
 				}
 				URL url = model.remove(i);
 				try {
-					execute(url, getPattern());
+					engine.setPattern(getPattern(urlPattern.getText()));
+					engine.process(url);
 				} catch (InterruptedException ex) {
 					ex.printStackTrace();
+				} catch (SQLException ex) {
+					error(ex);
 				}
+				model.refresh();
+				updateStatus();
 				parsedPageTable.getSelectionModel().setSelectionInterval(i, i);
 				return;
 			}
@@ -434,7 +470,7 @@ public class WebCrawler extends JFrame {
 
 		// 実行中の処理がある場合は中断
 		if(executor != null){
-			executor.interrupt();
+			engine.stop();
 		}
 
 		// 設定の保存
@@ -462,7 +498,7 @@ public class WebCrawler extends JFrame {
 		logger.finest("execute()");
 
 		if(executor != null){
-			executor.interrupt();
+			engine.stop();
 			return;
 		}
 
@@ -475,7 +511,8 @@ public class WebCrawler extends JFrame {
 				retry.setEnabled(false);
 				parsedPageTable.setEnabled(false);
 				try{
-					executeLoop(new URL(startURL.getText()));
+					engine.setPattern(getPattern(urlPattern.getText()));
+					engine.run(new URL(startURL.getText()));
 				} catch(InterruptedException ex){
 					logger.fine("中断されました");
 				} catch(final Throwable ex){
@@ -491,12 +528,12 @@ public class WebCrawler extends JFrame {
 					clear.setEnabled(true);
 					retry.setEnabled(true);
 					parsedPageTable.setEnabled(true);
+					parsingURL.setText("");
 				}
 				return;
 			}
 		};
 		executor.setDaemon(true);
-		executor.setPriority(Thread.MIN_PRIORITY);
 		executor.start();
 		return;
 	}
@@ -505,13 +542,14 @@ public class WebCrawler extends JFrame {
 	// 対象 URL パターンの参照
 	// ======================================================================
 	/**
-	 * 対象 URL パターンを参照します。
+	 * ワイルドカード '*' を含む対象 URL パターンを正規表現に変換します。
 	 * <p>
+	 * @param wildcard 対象 URL パターン
 	 * @return 対象 URL パターン
 	 */
-	private Pattern getPattern(){
+	static Pattern getPattern(String wildcard){
 		StringBuilder buffer = new StringBuilder();
-		StringTokenizer tk = new StringTokenizer(urlPattern.getText(), "*", true);
+		StringTokenizer tk = new StringTokenizer(wildcard, "*", true);
 		while(tk.hasMoreTokens()){
 			String token = tk.nextToken();
 			if(token.equals("*")){
@@ -524,83 +562,17 @@ public class WebCrawler extends JFrame {
 	}
 
 	// ======================================================================
-	// 処理の実行
-	// ======================================================================
-	/**
-	 * 処理を実行します。
-	 * <p>
-	 * @param url URL
-	 * @throws InterruptedException 処理が中断された場合
-	 */
-	private void executeLoop(URL url) throws InterruptedException {
-		model.enqueue(url);
-		while(! Thread.interrupted()){
-			List<URL> list = model.select();
-			if(list == null)	break;
-			for(int i=0; i<list.size() && ! Thread.interrupted(); i++){
-				execute(list.get(i), getPattern());
-			}
-		}
-		return;
-	}
-
-	// ======================================================================
-	// 処理の実行
+	// 統計情報の表示
 	// ======================================================================
 	/**
-	 * 処理を実行します。
+	 * 解析待ち、解析済み、解析エラーの URL 件数をステータスバーに表示します。
 	 * <p>
-	 * @param url URL
-	 * @param pattern 対象 URL パターン
-	 * @throws InterruptedException 処理が中断された場合
 	 */
-	private void execute(URL url, Pattern pattern) throws InterruptedException {
+	private void updateStatus(){
 		NumberFormat nf = NumberFormat.getNumberInstance();
-		logger.finest("=======================================================");
-		logger.finest(url.toString());
-
-		// 対象 URL をステータスバーに表示
-		parsingURL.setText(url.toString());
-
-		// ページの解析処理を実行
-		List<URL> next = null;
-		ParsedPage page = new ParsedPage(url);
-		try{
-			next = page.parse();
-		} catch(InterruptedException ex){
-			throw ex;
-		} catch(IgnoreableException ex){
-			logger.fine(ex.toString());
-			model.dequeue(url);
-			return;
-		} catch(Exception ex){
-			page.setException(ex);
-			next = Collections.emptyList();
-		} catch(AssertionError ex){
-			page.setException(ex);
-			next = Collections.emptyList();
-		} finally {
-			parsingURL.setText("");
-		}
-
-		// パターンに一致する URL のみをキューに追加
-		for(int i=0; i<next.size(); i++){
-			URL u = next.get(i);
-			if(! pattern.matcher(u.toString()).matches()){
-				logger.finest("パターン非一致: " + u);
-				next.remove(u);
-			}
-		}
-
-		// ページの解析結果と次の解析対象を設定
-		model.addPage(page, next);
-
-		// 統計情報を設定
 		queueSize.setText(nf.format(model.db.getQueuePageCount()));
 		parsedURLCount.setText(nf.format(model.db.getParsedPageCount()));
 		errorURLCount.setText(nf.format(model.db.getErrorPageCount()));
-
-		// キューから次の URL を参照
 		return;
 	}
 
@@ -9,11 +9,11 @@
  */
 package org.koiroha.xml.parser;
 
-import java.io.*;
 import java.net.*;
 import java.nio.charset.Charset;
 import java.sql.*;
 import java.util.*;
+import java.util.logging.Level;
 
 import org.xml.sax.SAXParseException;
 
@@ -27,7 +27,7 @@ import org.xml.sax.SAXParseException;
  * @author torao
  * @since 2009/04/08 Java2 SE 5.0
  */
-public class WebCrawlerDB {
+public class WebCrawlerDB implements CrawlStore {
 
 	// ======================================================================
 	// ログ出力先
@@ -63,7 +63,7 @@ public class WebCrawlerDB {
 	 * 現在の解析済みページ件数です。
 	 * <p>
 	 */
-	private int parsedPageCount = 0;
+	private volatile int parsedPageCount = 0;
 
 	// ======================================================================
 	// キュー投入件数
@@ -72,7 +72,7 @@ public class WebCrawlerDB {
 	 * 現在の解析対象キュー件数です。
 	 * <p>
 	 */
-	private int queuedPageCount = 0;
+	private volatile int queuedPageCount = 0;
 
 	// ======================================================================
 	// エラー発生ページ件数
@@ -81,7 +81,7 @@ public class WebCrawlerDB {
 	 * 現在のエラー発生ページ件数です。
 	 * <p>
 	 */
-	private int errorPageCount = 0;
+	private volatile int errorPageCount = 0;
 
 	// ======================================================================
 	// キャッシュ
@@ -122,6 +122,22 @@ public class WebCrawlerDB {
 	/** 乱数シード */
 	private final Random random = new Random();
 
+	// ======================================================================
+	// 既知 URL キャッシュ
+	// ======================================================================
+	/**
+	 * 解析済みかキューに存在することを確認済みの URL です。リンクの追加時に同じ URL の存在
+	 * 確認を繰り返さないために使用します。
+	 * <p>
+	 */
+	private final Map<String,Boolean> known = new LinkedHashMap<String,Boolean>(1024, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,Boolean> eldest) {
+			return size() > 64 * 1024;
+		}
+	};
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -153,30 +169,13 @@ public class WebCrawlerDB {
 	 * @throws SQLException データベース処理に失敗した場合
 	 */
 	public synchronized void enqueue(URL url) throws SQLException{
-		String u = url.toString();
-		if(u.length() > 3 * 1024){
-			logger.finer("3kB を越える URL は無視されます: " + u);
-			return;
-		}
+		Connection con = connect();
 		try{
-			url = url.toURI().normalize().toURL();
-		} catch(Exception ex){/* */}
-
-		// 指定された URL が既に解析済みなら何もしない
-		if(getScalar("select count(*) from parsed_page where url=?", u) != 0){
-			return;
-		}
-
-		// 指定された URL が既にキューに存在するなら何もしない
-		if(getScalar("select count(*) from queue where url=?", u) != 0){
-			return;
+			queuedPageCount += insertQueue(Collections.singletonList(url));
+			con.commit();
+		} catch(SQLException ex){
+			rollback(ex);
 		}
-
-		// 新規 URL をキューに追加
-		update("insert into queue(url,idx) values(?,?)", u, String.valueOf(Math.abs(random.nextInt())));
-		con.commit();
-		queuedPageCount ++;
-
 		return;
 	}
 
@@ -200,39 +199,56 @@ public class WebCrawlerDB {
 	// 解析対象 URL の参照
 	// ======================================================================
 	/**
-	 * 解析対象のキューに投入されている URL をランダムに参照します。このメソッドを実行しただけ
-	 * では URL はキューから削除されません。
+	 * 解析対象のキューに投入されている URL をランダムに最大 <i>max</i> 件参照します。参照
+	 * した URL はキューに残りますが、再び参照されることはありません。
 	 * <p>
-	 * @return URL キューの先頭に存在する URL
+	 * @param max 参照する最大件数
+	 * @return キューに存在する URL
 	 * @throws SQLException データベース処理に失敗した場合
 	 */
-	public synchronized List<URL> select() throws SQLException{
-		if(queuedPageCount == 0){
-			return null;
+	public synchronized List<URL> select(int max) throws SQLException{
+		List<URL> list = new ArrayList<URL>();
+		if(queuedPageCount == 0 || max <= 0){
+			return list;
 		}
 
-		List<URL> list = new ArrayList<URL>();
 		Connection con = connect();
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
-		String urlStr = null;
+		List<String> broken = new ArrayList<String>();
 		try{
-			stmt = con.prepareStatement("select url,idx from queue where idx is not null order by idx");
+			stmt = con.prepareStatement("select url from queue where idx is not null order by idx");
+			stmt.setMaxRows(max);
 			rs = stmt.executeQuery();
-			for(int i=0; rs.next() && i<10; i++){
-				list.add(new URL(rs.getString(1)));
+			while(rs.next()){
+				String u = rs.getString(1);
+				try{
+					list.add(new URL(u));
+				} catch(MalformedURLException ex){
+					broken.add(u);
+				}
 			}
 			rs.close();
 			stmt.close();
 
-			for(int i=0; i<list.size(); i++){
-				update("update queue set idx=null where url=?", list.get(i).toString());
+			// 参照した URL に取り出し済みを設定し不正な URL を削除
+			stmt = con.prepareStatement("update queue set idx=null where url=?");
+			for(URL url: list){
+				stmt.setString(1, url.toString());
+				stmt.addBatch();
 			}
-			con.commit();
-		} catch(MalformedURLException ex){
-			int count = update("delete from queue where url=?", urlStr);
+			stmt.executeBatch();
+			stmt.close();
+			stmt = con.prepareStatement("delete from queue where url=?");
+			for(String u: broken){
+				stmt.setString(1, u);
+				stmt.addBatch();
+			}
+			int count = sum(stmt.executeBatch());
 			con.commit();
 			queuedPageCount -= count;
+		} catch(SQLException ex){
+			rollback(ex);
 		} finally {
 			close(rs);
 			close(stmt);
@@ -240,6 +256,244 @@ public class WebCrawlerDB {
 		return list;
 	}
 
+	// ======================================================================
+	// 解析対象 URL の解放
+	// ======================================================================
+	/**
+	 * 取り出し済みの URL に新しい順序を設定し、再び参照されるようにします。
+	 * <p>
+	 * @param urls 処理が完了しなかった URL
+	 * @throws SQLException データベース処理に失敗した場合
+	 */
+	public synchronized void release(Collection<URL> urls) throws SQLException{
+		if(urls.isEmpty()){
+			return;
+		}
+		Connection con = connect();
+		PreparedStatement stmt = null;
+		try{
+			stmt = con.prepareStatement("update queue set idx=? where url=? and idx is null");
+			for(URL url: urls){
+				stmt.setInt(1, Math.abs(random.nextInt()));
+				stmt.setString(2, url.toString());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+			con.commit();
+		} catch(SQLException ex){
+			rollback(ex);
+		} finally {
+			close(stmt);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 巡回結果の保存
+	// ======================================================================
+	/**
+	 * 解析済みページ、解析対象外の URL、新たに発見したリンクを 1 つのトランザクションで
+	 * 保存します。各テーブルへの更新はバッチとして実行されます。
+	 * <p>
+	 * @param pages 解析済みのページ
+	 * @param ignored 解析対象外と判断した URL
+	 * @param links 新たにキューに追加するリンク
+	 * @throws SQLException データベース処理に失敗した場合
+	 */
+	public synchronized void store(Collection<ParsedPage> pages, Collection<URL> ignored, Collection<URL> links) throws SQLException{
+		long start = System.currentTimeMillis();
+		Connection con = connect();
+		PreparedStatement stmt = null;
+		int parsed = 0;
+		int error = 0;
+		int queued = 0;
+		try{
+
+			// 解析済みページテーブルへ追加
+			stmt = con.prepareStatement("insert into parsed_page(" +
+					"url,title,doctype,charset,mojibake,warn,error,serialized" +
+					")  values(?,?,?,?,?,?,?,?)");
+			for(ParsedPage page: pages){
+				stmt.setString(1, page.getURL().toString());
+				stmt.setString(2, page.getTitle());
+				stmt.setString(3, page.getDoctype());
+				stmt.setString(4, (page.getCharset()==null)? null: page.getCharset().name());
+				stmt.setBoolean(5, page.isMojibake());
+				stmt.setInt(6, (page.getWarnings()==null)? 0: page.getWarnings().length);
+				stmt.setBoolean(7, page.getException() != null);
+				stmt.setBytes(8, PageCodec.encode(page));
+				stmt.addBatch();
+				if(page.getException() == null){
+					parsed ++;
+				} else {
+					error ++;
+				}
+			}
+			stmt.executeBatch();
+			stmt.close();
+
+			// 処理済みの URL を解析対象ページのキューから削除
+			stmt = con.prepareStatement("delete from queue where url=?");
+			for(ParsedPage page: pages){
+				stmt.setString(1, page.getURL().toString());
+				stmt.addBatch();
+			}
+			for(URL url: ignored){
+				stmt.setString(1, url.toString());
+				stmt.addBatch();
+			}
+			queued -= sum(stmt.executeBatch());
+			stmt.close();
+			stmt = null;
+
+			// 新たなリンクをキューに追加
+			queued += insertQueue(links);
+
+			con.commit();
+		} catch(SQLException ex){
+			rollback(ex);
+		} finally {
+			close(stmt);
+		}
+
+		// 件数とキャッシュの更新
+		for(ParsedPage page: pages){
+			known.put(page.getURL().toString(), Boolean.TRUE);
+		}
+		parsedPageCount += parsed;
+		errorPageCount += error;
+		queuedPageCount += queued;
+		summaryCacheIndex = -1;
+		if(logger.isLoggable(Level.FINER)){
+			logger.finer("store(" + pages.size() + "," + ignored.size() + "," + links.size() + "): " + (System.currentTimeMillis() - start) + "ms");
+		}
+		return;
+	}
+
+	// ======================================================================
+	// キューへの追加
+	// ======================================================================
+	/**
+	 * 解析済みでもキューにも存在しない URL をキューへ追加します。トランザクションのコミット
+	 * は呼び出し側で行う必要があります。失敗した場合は呼び出し側で {@link #rollback(SQLException)}
+	 * を呼び出して既知 URL キャッシュを破棄する必要があります。
+	 * <p>
+	 * @param urls 追加する URL
+	 * @return キューに追加した件数
+	 * @throws SQLException データベース処理に失敗した場合
+	 */
+	private int insertQueue(Collection<URL> urls) throws SQLException{
+
+		// 追加候補の URL を正規化して重複を除去
+		Set<String> candidates = new LinkedHashSet<String>();
+		for(URL url: urls){
+			String u = url.toString();
+			if(u.length() > 3 * 1024){
+				logger.finer("3kB を越える URL は無視されます: " + u);
+				continue;
+			}
+			try{
+				u = url.toURI().normalize().toURL().toString();
+			} catch(Exception ex){/* */}
+			if(! known.containsKey(u)){
+				candidates.add(u);
+			}
+		}
+		if(candidates.isEmpty()){
+			return 0;
+		}
+
+		Connection con = connect();
+		PreparedStatement parsed = null;
+		PreparedStatement queued = null;
+		PreparedStatement insert = null;
+		int count = 0;
+		try{
+			parsed = con.prepareStatement("select count(*) from parsed_page where url=?");
+			queued = con.prepareStatement("select count(*) from queue where url=?");
+			insert = con.prepareStatement("insert into queue(url,idx) values(?,?)");
+			for(String u: candidates){
+
+				// 指定された URL が既に解析済みかキューに存在するなら何もしない
+				known.put(u, Boolean.TRUE);
+				if(exists(parsed, u) || exists(queued, u)){
+					continue;
+				}
+
+				// 新規 URL をキューに追加
+				insert.setString(1, u);
+				insert.setInt(2, Math.abs(random.nextInt()));
+				insert.addBatch();
+				count ++;
+			}
+			insert.executeBatch();
+		} finally {
+			close(parsed);
+			close(queued);
+			close(insert);
+		}
+		return count;
+	}
+
+	// ======================================================================
+	// 存在確認
+	// ======================================================================
+	/**
+	 * 指定された件数取得ステートメントで URL の存在を確認します。
+	 * <p>
+	 * @param stmt 件数を取得するステートメント
+	 * @param url URL
+	 * @return URL が存在する場合 true
+	 * @throws SQLException データベース処理に失敗した場合
+	 */
+	private static boolean exists(PreparedStatement stmt, String url) throws SQLException{
+		stmt.setString(1, url);
+		ResultSet rs = stmt.executeQuery();
+		try{
+			rs.next();
+			return rs.getInt(1) != 0;
+		} finally {
+			close(rs);
+		}
+	}
+
+	// ======================================================================
+	// 更新件数の合計
+	// ======================================================================
+	/**
+	 * バッチ実行結果の更新件数を合計します。件数が不明な結果は 1 件として扱います。
+	 * <p>
+	 * @param counts バッチ実行結果
+	 * @return 更新件数の合計
+	 */
+	private static int sum(int[] counts){
+		int sum = 0;
+		for(int c: counts){
+			sum += (c == Statement.SUCCESS_NO_INFO)? 1: Math.max(0, c);
+		}
+		return sum;
+	}
+
+	// ======================================================================
+	// ロールバック
+	// ======================================================================
+	/**
+	 * 現在のトランザクションをロールバックし、指定された例外を送出します。ロールバックした
+	 * トランザクションで既知とした URL を再び追加できるよう既知 URL キャッシュもクリアします。
+	 * <p>
+	 * @param ex 発生した例外
+	 * @throws SQLException 常に指定された例外を送出
+	 */
+	private void rollback(SQLException ex) throws SQLException{
+		known.clear();
+		try{
+			con.rollback();
+		} catch(SQLException e){
+			logger.log(Level.WARNING, "ロールバックに失敗", e);
+		}
+		throw ex;
+	}
+
 	// ======================================================================
 	// キューのクリア
 	// ======================================================================
@@ -252,6 +506,7 @@ public class WebCrawlerDB {
 		update("delete from queue");
 		con.commit();
 		queuedPageCount = 0;
+		known.clear();
 		return;
 	}
 
@@ -270,6 +525,7 @@ public class WebCrawlerDB {
 		URL url = page.getURL();
 		update("delete from parsed_page where url=?", url.toString());
 		con.commit();
+		known.remove(url.toString());
 		if(page.getException() == null){
 			parsedPageCount --;
 		} else {
@@ -285,73 +541,6 @@ public class WebCrawlerDB {
 		return url;
 	}
 
-	// ======================================================================
-	// 解析済みページの追加
-	// ======================================================================
-	/**
-	 * 指定された解析済みページを追加します。
-	 * <p>
-	 * @param page 解析済みのページ
-	 * @return 追加したページのインデックス
-	 * @throws SQLException データベース処理に失敗した場合
-	 */
-	public synchronized int add(ParsedPage page) throws SQLException{
-
-		// バイナリの作成
-		byte[] binary = serialize(page);
-
-		// 解析済みページテーブルへ追加
-		Connection con = connect();
-		PreparedStatement stmt = null;
-		try{
-			logger.finer("insert into parsed_page(...)");
-			stmt = con.prepareStatement("insert into parsed_page(" +
-					"url,title,doctype,charset,mojibake,warn,error,serialized" +
-					")  values(?,?,?,?,?,?,?,?)");
-			stmt.setString(1, page.getURL().toString());
-			stmt.setString(2, page.getTitle());
-			stmt.setString(3, page.getDoctype());
-			stmt.setString(4, (page.getCharset()==null)? null: page.getCharset().name());
-			stmt.setBoolean(5, page.isMojibake());
-			stmt.setInt(6, (page.getWarnings()==null)? 0: page.getWarnings().length);
-			stmt.setBoolean(7, page.getException() != null);
-			stmt.setBytes(8, binary);
-			stmt.executeUpdate();
-		} finally {
-			close(stmt);
-		}
-
-		// 該当 URL を解析対象ページのキューから削除
-		dequeue(page.getURL());
-
-		con.commit();
-		if(page.getException() == null){
-			parsedPageCount ++;
-		} else {
-			errorPageCount ++;
-		}
-
-		// 追加した URL のインデックスを参照
-		int index = -1;
-		/*
-		if(false){
-			index = getIndex(page);
-
-			// 現在のキャッシュに影響を与える場合
-			if(index < summaryCacheIndex){
-				summaryCacheIndex ++;
-			} else if(index < summaryCacheIndex + summaryCache.length){
-				int i = index - summaryCacheIndex;
-				System.arraycopy(summaryCache, i, summaryCache, i+1, summaryCache.length - i - 1);
-				summaryCache[i] = page.getSummary();
-			}
-		}
-		*/
-		summaryCacheIndex = -1;
-
-		return index;
-	}
-
 	// ======================================================================
 	// レコード件数の参照
 	// ======================================================================
@@ -432,7 +621,7 @@ public class WebCrawlerDB {
 			rs = stmt.executeQuery();
 			rs.next();
 
-			ParsedPage page = (ParsedPage)deserialize(rs.getBytes("serialized"));
+			ParsedPage page = PageCodec.decode(rs.getBytes("serialized"));
 			fullCacheIndex = i;
 			fullCache = page;
 			logger.finest("set cache: " + i);
@@ -758,45 +947,6 @@ public class WebCrawlerDB {
 		return;
 	}
 
-	// ======================================================================
-	// インスタンスのシリアライズ
-	// ======================================================================
-	/**
-	 * インスタンスをシリアライズします。
-	 * <p>
-	 * @param obj シリアライズするオブジェクト
-	 * @return シリアライズしたバイナリ
-	 */
-	private static byte[] serialize(Object obj){
-		try{
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ObjectOutputStream out = new ObjectOutputStream(baos);
-			out.writeObject(obj);
-			out.flush();
-			return baos.toByteArray();
-		} catch(IOException ex){
-			throw new IllegalStateException(ex);
-		}
-	}
-
-	// ======================================================================
-	// インスタンスのデシリアライズ
-	// ======================================================================
-	/**
-	 * インスタンスをデシリアライズします。
-	 * <p>
-	 * @param bin 復元するバイナリ
-	 * @return 復元したオブジェクト
-	 */
-	private static Object deserialize(byte[] bin){
-		try{
-			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bin));
-			return in.readObject();
-		} catch (Exception ex) {
-			throw new IllegalStateException(ex);
-		}
-	}
-
 //	public static void main(String[] args) throws SQLException{
 //		Logger logger = Logger.getLogger("org.koiroha.xml.parser");
 //		for(Handler h: logger.getHandlers()){
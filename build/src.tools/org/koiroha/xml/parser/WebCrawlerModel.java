@@ -11,12 +11,8 @@ package org.koiroha.xml.parser;
 
 import java.awt.Color;
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.concurrent.*;
-import java.util.logging.Level;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -72,6 +68,15 @@ public class WebCrawlerModel extends AbstractTableModel {
 	 */
 	private ParsedPage current = null;
 
+	// ======================================================================
+	// 行数
+	// ======================================================================
+	/**
+	 * 一覧に反映済みの解析済みページの数です。
+	 * <p>
+	 */
+	private int rowCount = 0;
+
 	// ======================================================================
 	// ページ内容
 	// ======================================================================
@@ -99,24 +104,6 @@ public class WebCrawlerModel extends AbstractTableModel {
 	 */
 	public final WarningModel warning = new WarningModel();
 
-	// ======================================================================
-	// 保存スレッド
-	// ======================================================================
-	/**
-	 * 解析済みページをデータベースに保存するためのスレッドです。
-	 * <p>
-	 */
-	private final Thread saver;
-
-	// ======================================================================
-	// 保存キュー
-	// ======================================================================
-	/**
-	 * 保存キューです。
-	 * <p>
-	 */
-	private final BlockingQueue<QueueObj> queue = new ArrayBlockingQueue<QueueObj>(10);
-
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -129,15 +116,7 @@ public class WebCrawlerModel extends AbstractTableModel {
 	public WebCrawlerModel(File dir) throws SQLException{
 		String path = dir.getAbsolutePath();
 		this.db = new WebCrawlerDB(path);
-		this.saver = new Thread(){
-			@Override
-			public void run(){
-				asynchAddPage();
-				return;
-			}
-		};
-		saver.setPriority(Thread.MIN_PRIORITY);
-		saver.start();
+		this.rowCount = db.getParsedPageCount();
 		return;
 	}
 
@@ -186,7 +165,28 @@ public class WebCrawlerModel extends AbstractTableModel {
 	 * @return 行数
 	 */
 	public int getRowCount() {
-		return db.getParsedPageCount();
+		return rowCount;
+	}
+
+	// ======================================================================
+	// 保存済みページの反映
+	// ======================================================================
+	/**
+	 * データベースに保存された解析済みページを一覧に反映します。このメソッドはイベント
+	 * ディスパッチスレッドから呼び出す必要があります。
+	 * <p>
+	 */
+	public void refresh() {
+		int count = db.getParsedPageCount();
+		if(count > rowCount){
+			int first = rowCount;
+			rowCount = count;
+			fireTableRowsInserted(first, count - 1);
+		} else if(count < rowCount){
+			rowCount = count;
+			fireTableDataChanged();
+		}
+		return;
 	}
 
 	// ======================================================================
@@ -236,83 +236,6 @@ public class WebCrawlerModel extends AbstractTableModel {
 		return null;
 	}
 
-	// ======================================================================
-	// 解析済みページの追加
-	// ======================================================================
-	/**
-	 * 解析済みページを追加します。
-	 * <p>
-	 * @param pg 追加する解析済みページ
-	 * @param next キューに投入する URL
-	 * @throws InterruptedException 処理中に割り込まれた場合
-	 */
-	public void addPage(ParsedPage pg, List<URL> next) throws InterruptedException{
-		logger.finest("queueing...");
-		QueueObj obj = new QueueObj();
-		obj.page = pg;
-		obj.next = next;
-		queue.put(obj);
-	}
-
-	// ======================================================================
-	// 解析済みページの追加
-	// ======================================================================
-	/**
-	 * キューに投入されている解析済みページをデータベースに保存します。
-	 * <p>
-	 */
-	private void asynchAddPage(){
-		try{
-			while(true){
-
-				// キューに投入されている解析済みページをデータベースに保存
-				logger.finest("waiting queue...");
-				QueueObj obj = queue.take();
-
-				// 次の URL をキューに投入
-				List<URL> next = obj.next;
-				for(int i=0; i<next.size(); i++){
-					enqueue(next.get(i));
-				}
-
-				// 海瀬木積ページをデータベースに登録
-				ParsedPage page = obj.page;
-				int idx = -1;
-				try{
-					idx = db.add(page);
-				} catch(SQLException ex){
-					logger.log(Level.SEVERE, "データベースへ保存に失敗", ex);
-					StringWriter sw = new StringWriter();
-					PrintWriter pw = new PrintWriter(sw);
-					ex.printStackTrace(pw);
-					JOptionPane.showMessageDialog(
-						null, "データベースへ保存に失敗\n" + page.getURL() + "\n" + sw, "エラー", JOptionPane.ERROR_MESSAGE);
-					continue;
-				}
-
-				// 挿入した結果を Swing に反映
-				if(idx >= 0){
-					final int i = idx;
-					Runnable r = new Runnable(){
-						public void run() {
-							fireTableRowsInserted(i, i);
-						}
-					};
-					if(SwingUtilities.isEventDispatchThread()){
-						r.run();
-					} else {
-						try{
-							SwingUtilities.invokeAndWait(r);
-						} catch(InvocationTargetException ex){
-							throw new IllegalStateException(ex);
-						}
-					}
-				}
-			}
-		} catch(InterruptedException ex){/* */}
-		return;
-	}
-
 	// ======================================================================
 	// 解析済みページの参照
 	// ======================================================================
@@ -365,23 +288,6 @@ public class WebCrawlerModel extends AbstractTableModel {
 		return;
 	}
 
-	// ======================================================================
-	// 解析対象 URL の参照
-	// ======================================================================
-	/**
-	 * 解析対象の URL を参照します。このメソッドを実行しただけでは URL はキューに投入された
-	 * ままです。
-	 * <p>
-	 * @return URL キューの先頭に存在する URL
-	 */
-	public List<URL> select() {
-		try{
-			return db.select();
-		} catch(SQLException ex){
-			throw new IllegalStateException(ex);
-		}
-	}
-
 	// ======================================================================
 	// 解析済みページの削除
 	// ======================================================================
@@ -394,6 +300,7 @@ public class WebCrawlerModel extends AbstractTableModel {
 	public URL remove(int i) {
 		try{
 			URL url = db.remove(i);
+			rowCount = db.getParsedPageCount();
 			fireTableRowsDeleted(i, i);
 			return url;
 		} catch(SQLException ex){
@@ -605,20 +512,6 @@ public class WebCrawlerModel extends AbstractTableModel {
 		return length;
 	}
 
-	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-	// WarningModel: 警告モデル
-	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-	/**
-	 * 警告モデルです。
-	 * <p>
-	 */
-	private static class QueueObj{
-		/** 解析済みページ */
-		public ParsedPage page = null;
-		/** URL */
-		public List<URL> next = null;
-	}
-
 	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 	// WarningModel: 警告モデル
 	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
@@ -0,0 +1,130 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// EntityTableTest: EntityTable クラステストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * EntityTable クラスのテストケースです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class EntityTableTest extends TestCase{
+
+	// ======================================================================
+	// 定義済みテーブルのテスト
+	// ======================================================================
+	/**
+	 * 定義済みテーブルの内容をテストします。
+	 * <p>
+	 */
+	@Test
+	public void testPredefined(){
+		assertEquals("\'", EntityTable.XML.get("apos"));
+		assertNull(EntityTable.XML.get("nbsp"));
+		assertEquals(4, EntityTable.XML.getMaxNameLength());
+
+		assertNull(EntityTable.HTML.get("apos"));
+		assertEquals(" ", EntityTable.HTML.get("nbsp"));
+		assertEquals("€", EntityTable.HTML.get("euro"));
+		assertEquals(8, EntityTable.HTML.getMaxNameLength());
+
+		assertEquals("\'", EntityTable.HTML5.get("apos"));
+		assertEquals("∳", EntityTable.HTML5.get("CounterClockwiseContourIntegral"));
+		assertEquals("𝔄", EntityTable.HTML5.get("Afr"));
+		assertEquals("≪⃒", EntityTable.HTML5.get("nLt"));
+		assertEquals(31, EntityTable.HTML5.getMaxNameLength());
+		return;
+	}
+
+	// ======================================================================
+	// 範囲指定の参照テスト
+	// ======================================================================
+	/**
+	 * 文字シーケンスの範囲を指定した参照をテストします。
+	 * <p>
+	 */
+	@Test
+	public void testGetRange(){
+		String text = "a&amp;b&am;&ampx;";
+		assertEquals("&", EntityTable.HTML.get(text, 2, 5));
+		assertNull(EntityTable.HTML.get(text, 8, 10));
+		assertNull(EntityTable.HTML.get(text, 12, 16));
+		assertNull(EntityTable.HTML.get(text, 2, 2));
+		return;
+	}
+
+	// ======================================================================
+	// 定義の追加と削除のテスト
+	// ======================================================================
+	/**
+	 * 定義の追加と削除が新しいテーブルを生成し元のテーブルに影響しないことをテストします。
+	 * <p>
+	 */
+	@Test
+	public void testDefine(){
+		EntityTable table = EntityTable.XML.define("foo", "bar").undefine("apos");
+		assertEquals("bar", table.get("foo"));
+		assertNull(table.get("apos"));
+		assertNull(EntityTable.XML.get("foo"));
+		assertEquals("\'", EntityTable.XML.get("apos"));
+		assertSame(EntityTable.XML, EntityTable.XML.undefine("nbsp"));
+		assertSame(EntityTable.XML, EntityTable.XML.define("lt", "<"));
+		return;
+	}
+
+	// ======================================================================
+	// 数値参照のテスト
+	// ======================================================================
+	/**
+	 * 数値参照の解析をテストします。
+	 * <p>
+	 */
+	@Test
+	public void testCharacterReference(){
+		assertEquals('A', EntityTable.getCharacterReference("#65", 0, 3));
+		assertEquals('A', EntityTable.getCharacterReference("#x41", 0, 4));
+		assertEquals('A', EntityTable.getCharacterReference("#X41", 0, 4));
+		assertEquals(0xFFFF, EntityTable.getCharacterReference("#65535", 0, 6));
+		assertEquals(-1, EntityTable.getCharacterReference("#65536", 0, 6));
+		assertEquals(-1, EntityTable.getCharacterReference("#x10000", 0, 7));
+		assertEquals(-1, EntityTable.getCharacterReference("#0123456789", 0, 11));
+		assertEquals(-1, EntityTable.getCharacterReference("#", 0, 1));
+		assertEquals(-1, EntityTable.getCharacterReference("#x", 0, 2));
+		assertEquals(-1, EntityTable.getCharacterReference("#+65", 0, 4));
+		assertEquals(-1, EntityTable.getCharacterReference("amp", 0, 3));
+		return;
+	}
+
+	// ======================================================================
+	// エスケープ解除のテスト
+	// ======================================================================
+	/**
+	 * 文字列のエスケープ解除をテストします。
+	 * <p>
+	 * @throws IOException テストに失敗した場合
+	 */
+	@Test
+	public void testUnescape() throws IOException{
+		StringBuilder buffer = new StringBuilder();
+		EntityTable.HTML.unescape(buffer, "&&amp;&nbsp&nbsp;&apos;&#65;&unknown;&");
+		assertEquals("&&&nbsp &apos;A&unknown;&", buffer.toString());
+		return;
+	}
+
+}
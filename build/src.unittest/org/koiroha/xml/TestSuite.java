@@ -28,6 +28,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	DefaultNamespaceContextTest.class,
 	XmlTest.class,
 	HtmlTest.class,
+	EntityTableTest.class,
 })
 public class TestSuite {
 	/* */
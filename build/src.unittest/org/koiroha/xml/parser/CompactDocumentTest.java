@@ -0,0 +1,390 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.parsers.*;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.*;
+
+import org.junit.Test;
+import org.koiroha.xml.TestCase;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.DefaultHandler2;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactDocumentTest: CompactDocument テストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * コンパクト DOM のテストケースです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class CompactDocumentTest extends TestCase{
+
+	// ======================================================================
+	// 仕様パターンの同等性テスト
+	// ======================================================================
+	/**
+	 * 仕様パターンの全てのサンプルについて、コンパクト DOM と JDK 標準の DOM が等価なツリー
+	 * と同じ警告、同じ出現位置を生成することを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testSpecEquivalence() throws Exception{
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		f.setXIncludeAware(true);
+		Document spec = f.newDocumentBuilder().parse(new File("build/spec/spec.xml").toURI().toString());
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		NodeList samples = (NodeList)xpath.evaluate("//spec/sample", spec, XPathConstants.NODESET);
+		assertTrue(samples.getLength() > 0);
+
+		for(int i=0; i<samples.getLength(); i++){
+			String sample = samples.item(i).getTextContent();
+			List<String> expectedWarnings = new ArrayList<String>();
+			List<String> actualWarnings = new ArrayList<String>();
+			Document expected = parse(sample, false, expectedWarnings);
+			Document actual = parse(sample, true, actualWarnings);
+			assertTrue(actual instanceof CompactDocument);
+
+			assertTrue(sample, actual.isEqualNode(expected));
+			assertEquals(sample, expectedWarnings, actualWarnings);
+			assertEquals(sample, positions(expected), positions(actual));
+
+			// Transformer による出力も等価
+			assertTrue(sample, reparse(getText(actual)).isEqualNode(reparse(getText(expected))));
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメント固有情報のテスト
+	// ======================================================================
+	/**
+	 * 入力エンコーディングと属性の出現順序、出現位置をドキュメントから直接参照できることを
+	 * 確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testNativeProperties() throws Exception{
+		String html = "<html>\n<body>\n<a z=\"1\" b=\"2\" m=\"3\">x</a>\n</body>\n</html>";
+		InputSource is = new InputSource(new ByteArrayInputStream(html.getBytes("UTF-8")));
+		is.setEncoding("UTF-8");
+		Document doc = newBuilder(true, null).parse(is);
+		assertEquals("UTF-8", doc.getInputEncoding());
+		assertEquals("1.0", doc.getXmlVersion());
+
+		Element a = (Element)doc.getElementsByTagName("a").item(0);
+		NamedNodeMap attrs = a.getAttributes();
+		assertEquals(3, attrs.getLength());
+		assertEquals("z", attrs.item(0).getNodeName());
+		assertEquals("b", attrs.item(1).getNodeName());
+		assertEquals("m", attrs.item(2).getNodeName());
+
+		Position pos = (Position)a.getUserData(Position.USERDATA_NAME);
+		assertEquals(3, pos.getLineNumber());
+		return;
+	}
+
+	// ======================================================================
+	// XPath のテスト
+	// ======================================================================
+	/**
+	 * コンパクト DOM に対して JDK 標準の XPath が評価できることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testXPath() throws Exception{
+		String html = "<title>T</title><p class=a>one<p class=b>two <a href='/x'>link</a><!-- c -->";
+		Document doc = newBuilder(true, null).parse(new InputSource(new StringReader(html)));
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		assertEquals("T", xpath.evaluate("/html/title", doc));
+		assertEquals(2.0, xpath.evaluate("count(//p)", doc, XPathConstants.NUMBER));
+		assertEquals("two link", xpath.evaluate("normalize-space(//p[@class='b'])", doc));
+		assertEquals("/x", xpath.evaluate("//a/@href", doc));
+		assertEquals(" c ", xpath.evaluate("//comment()", doc));
+		Node p = (Node)xpath.evaluate("//p[2]", doc, XPathConstants.NODE);
+		assertSame(doc.getElementsByTagName("p").item(1), p);
+		assertEquals("a", xpath.evaluate("preceding::p/@class", p));
+		return;
+	}
+
+	// ======================================================================
+	// ツリー操作のテスト
+	// ======================================================================
+	/**
+	 * DOM インターフェースによるツリーの操作が正しく反映されることを確認します。
+	 * <p>
+	 */
+	@Test
+	public void testMutation(){
+		Document doc = new CompactDocument();
+		Element root = doc.createElement("root");
+		doc.appendChild(root);
+		Text text = doc.createTextNode("ab");
+		Element child = doc.createElementNS("urn:x", "x:child");
+		root.appendChild(text);
+		root.appendChild(child);
+		NodeList children = root.getChildNodes();
+		assertEquals(2, children.getLength());
+
+		// 挿入と移動がノードリストに反映される
+		Comment comment = doc.createComment("c");
+		root.insertBefore(comment, text);
+		assertEquals(3, children.getLength());
+		assertSame(comment, children.item(0));
+		root.appendChild(comment);
+		assertSame(comment, children.item(2));
+		assertSame(child, comment.getPreviousSibling());
+		assertEquals(1, root.getElementsByTagName("x:child").getLength());
+		assertEquals(1, doc.getElementsByTagNameNS("urn:x", "child").getLength());
+		assertEquals("x", child.getPrefix());
+		assertEquals("urn:x", child.lookupNamespaceURI("x"));
+
+		// テキスト操作
+		text.splitText(1);
+		assertEquals(4, children.getLength());
+		assertEquals("ab", root.getTextContent());
+		root.normalize();
+		assertEquals(3, children.getLength());
+
+		// 属性の置き換えと順序
+		root.setAttribute("b", "1");
+		root.setAttribute("a", "2");
+		root.setAttribute("b", "3");
+		assertEquals("b", root.getAttributes().item(0).getNodeName());
+		assertEquals("3", root.getAttribute("b"));
+		root.removeAttribute("b");
+		assertEquals(1, root.getAttributes().getLength());
+
+		// 文書内の位置
+		assertEquals(Node.DOCUMENT_POSITION_FOLLOWING, text.compareDocumentPosition(child));
+		assertEquals(Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING, root.compareDocumentPosition(child));
+
+		// 複製
+		Element clone = (Element)root.cloneNode(true);
+		assertNull(clone.getParentNode());
+		assertTrue(clone.isEqualNode(root));
+		assertNotSame(clone.getFirstChild(), root.getFirstChild());
+
+		// 不正な操作
+		assertDOMException(DOMException.HIERARCHY_REQUEST_ERR, doc, doc.createElement("second"));
+		assertDOMException(DOMException.HIERARCHY_REQUEST_ERR, child, root);
+		assertDOMException(DOMException.WRONG_DOCUMENT_ERR, root, new CompactDocument().createElement("e"));
+		try{
+			doc.createElement("1a");
+			fail();
+		} catch(DOMException ex){
+			assertEquals(DOMException.INVALID_CHARACTER_ERR, ex.code);
+		}
+		try{
+			doc.createElementNS(null, "a:b");
+			fail();
+		} catch(DOMException ex){
+			assertEquals(DOMException.NAMESPACE_ERR, ex.code);
+		}
+
+		// 削除
+		root.removeChild(child);
+		assertNull(child.getParentNode());
+		assertEquals(2, children.getLength());
+		return;
+	}
+
+	// ======================================================================
+	// 多数の属性のテスト
+	// ======================================================================
+	/**
+	 * 多数の属性を持つ要素で属性の順序と検索結果が維持されることを確認します。
+	 * <p>
+	 */
+	@Test
+	public void testManyAttributes(){
+		Document doc = new CompactDocument();
+		Element root = doc.createElement("root");
+		doc.appendChild(root);
+		int count = 5000;
+		for(int i=0; i<count; i++){
+			if(i % 2 == 0){
+				root.setAttribute("a" + i, String.valueOf(i));
+			} else {
+				root.setAttributeNS("urn:x", "x:a" + i, String.valueOf(i));
+			}
+		}
+		NamedNodeMap attrs = root.getAttributes();
+		assertEquals(count, attrs.getLength());
+		for(int i=0; i<count; i++){
+			String name = (i % 2 == 0)? "a" + i: "x:a" + i;
+			assertEquals(name, attrs.item(i).getNodeName());
+			assertEquals(String.valueOf(i), root.getAttribute(name));
+		}
+		assertEquals("1", root.getAttributeNS("urn:x", "a1"));
+		assertFalse(root.hasAttributeNS(null, "a1"));
+
+		// 既存属性の更新は末尾に追加されない
+		root.setAttribute("a0", "first");
+		root.setAttributeNS("urn:x", "y:a1", "second");
+		assertEquals(count, attrs.getLength());
+		assertEquals("first", attrs.item(0).getNodeValue());
+		assertEquals("y:a1", attrs.item(1).getNodeName());
+		assertEquals("second", root.getAttribute("y:a1"));
+		assertFalse(root.hasAttribute("x:a1"));
+
+		// 末尾の削除と置き換えの後も末尾に追加される
+		root.removeAttribute("x:a" + (count - 1));
+		Attr attr = doc.createAttribute("a" + (count - 2));
+		attr.setValue("replaced");
+		root.setAttributeNode(attr);
+		root.setAttribute("last", "z");
+		assertEquals(count, attrs.getLength());
+		assertSame(attr, attrs.item(count - 2));
+		assertEquals("replaced", root.getAttribute("a" + (count - 2)));
+		assertEquals("last", attrs.item(count - 1).getNodeName());
+		assertEquals("z", root.getAttribute("last"));
+		return;
+	}
+
+	// ======================================================================
+	// 不正な挿入の確認
+	// ======================================================================
+	/**
+	 * 指定された子ノードの追加が例外となることを確認します。
+	 * <p>
+	 * @param code 例外コード
+	 * @param parent 親ノード
+	 * @param child 子ノード
+	 */
+	private static void assertDOMException(short code, Node parent, Node child){
+		try{
+			parent.appendChild(child);
+			fail();
+		} catch(DOMException ex){
+			assertEquals(code, ex.code);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメントビルダーの構築
+	// ======================================================================
+	/**
+	 * 仕様パターンと同じ設定のドキュメントビルダーを構築します。
+	 * <p>
+	 * @param compact コンパクト DOM を使用する場合 true
+	 * @param warnings 警告の格納先
+	 * @return ドキュメントビルダー
+	 * @throws ParserConfigurationException ビルダーを構築できない場合
+	 */
+	private static DocumentBuilder newBuilder(boolean compact, final List<String> warnings) throws ParserConfigurationException{
+		HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory();
+		factory.setHtmlOptimize(true);
+		factory.setLowerCaseName(true);
+		factory.setCompactDom(compact);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		builder.setErrorHandler(new DefaultHandler2(){
+			/** @param e */
+			@Override
+			public void warning(SAXParseException e) {
+				if(warnings != null){
+					warnings.add(e.getLineNumber() + ":" + e.getColumnNumber() + ":" + e.getMessage());
+				}
+				return;
+			}
+		});
+		return builder;
+	}
+
+	// ======================================================================
+	// HTML の解析
+	// ======================================================================
+	/**
+	 * 指定された HTML を解析します。
+	 * <p>
+	 * @param html HTML
+	 * @param compact コンパクト DOM を使用する場合 true
+	 * @param warnings 警告の格納先
+	 * @return ドキュメント
+	 * @throws Exception 解析に失敗した場合
+	 */
+	private static Document parse(String html, boolean compact, List<String> warnings) throws Exception{
+		return newBuilder(compact, warnings).parse(new InputSource(new StringReader(html)));
+	}
+
+	// ======================================================================
+	// 出現位置の参照
+	// ======================================================================
+	/**
+	 * ドキュメント内の全てのノードの出現位置を文書順に参照します。
+	 * <p>
+	 * @param node ノード
+	 * @return 出現位置のリスト
+	 */
+	private static List<Object> positions(Node node){
+		List<Object> list = new ArrayList<Object>();
+		list.add(node.getUserData(Position.USERDATA_NAME));
+		for(Node n=node.getFirstChild(); n!=null; n=n.getNextSibling()){
+			list.addAll(positions(n));
+		}
+		return list;
+	}
+
+	// ======================================================================
+	// XML の再解析
+	// ======================================================================
+	/**
+	 * 出力された XML を JDK 標準のパーサで解析します。
+	 * <p>
+	 * @param xml XML
+	 * @return ドキュメント
+	 * @throws Exception 解析に失敗した場合
+	 */
+	private static Document reparse(String xml) throws Exception{
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		builder.setEntityResolver(new EntityResolver(){
+			/** @param publicId @param systemId @return 空の外部サブセット */
+			public InputSource resolveEntity(String publicId, String systemId) {
+				return new InputSource(new StringReader(""));
+			}
+		});
+		return builder.parse(new InputSource(new StringReader(xml)));
+	}
+
+	// ======================================================================
+	// XML への変換
+	// ======================================================================
+	/**
+	 * 指定されたドキュメントを XML 文字列に変換します。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @return XML
+	 * @throws TransformerException 変換に失敗した場合
+	 */
+	private static String getText(Document doc) throws TransformerException{
+		StringWriter sw = new StringWriter();
+		Transformer transformer = TransformerFactory.newInstance().newTransformer();
+		transformer.setOutputProperty("method", "xml");
+		transformer.setOutputProperty("omit-xml-declaration", "yes");
+		transformer.transform(new DOMSource(doc), new StreamResult(sw));
+		return sw.toString();
+	}
+
+}
@@ -0,0 +1,471 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.sql.SQLException;
+import java.util.*;
+
+import org.junit.*;
+import org.koiroha.xml.TestCase;
+
+import com.sun.net.httpserver.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CrawlEngineTest: CrawlEngine テストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * ローカルの HTTP サーバが提供するサイトに対して巡回エンジンを実行するテストケースです。
+ * 保存先にはデータベースの代わりにメモリ上のキューを使用します。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class CrawlEngineTest extends TestCase{
+
+	// ======================================================================
+	// HTTP サーバ
+	// ======================================================================
+	/**
+	 * テスト用のサイトを提供する HTTP サーバです。
+	 * <p>
+	 */
+	private HttpServer server = null;
+
+	// ======================================================================
+	// サイトのルート
+	// ======================================================================
+	/**
+	 * テスト用サイトのルート URL です。
+	 * <p>
+	 */
+	private String root = null;
+
+	// ======================================================================
+	// サーバの開始
+	// ======================================================================
+	/**
+	 * テスト用のサイトを提供する HTTP サーバを開始します。
+	 * <p>
+	 * @throws IOException サーバの開始に失敗した場合
+	 */
+	@Before
+	public void startServer() throws IOException{
+		final Map<String,String> site = new HashMap<String,String>();
+		site.put("/index.html",
+			"<html><head><title>index</title></head><body>" +
+			"<a href=\"a.html\">a</a> <a href=\"/b.html\">b</a> <img src=\"logo.png\">" +
+			"<a href=\"logo.png\">logo</a> <a href=\"missing.html\">missing</a>" +
+			"<a href=\"http://example.invalid/x.html\">external</a>");
+		site.put("/a.html",
+			"<html><head><title>a</title><body><p>a<p><a href=\"index.html\">index</a>" +
+			"<a href=\"b.html#top\">b</a>");
+		site.put("/b.html",
+			"<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=Shift_JIS\">" +
+			"<title>b</title><body><a href=\"sub/c.html\">c</a>");
+		site.put("/sub/c.html", "<html><head><title>c</title></head><body><p>end");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler(){
+			public void handle(HttpExchange ex) throws IOException {
+				String path = ex.getRequestURI().getPath();
+				String html = site.get(path);
+				byte[] body = null;
+				if(html != null){
+					ex.getResponseHeaders().set("Content-Type", "text/html");
+					body = html.getBytes("UTF-8");
+					ex.sendResponseHeaders(200, body.length);
+				} else if(path.endsWith(".png")){
+					ex.getResponseHeaders().set("Content-Type", "image/png");
+					body = new byte[]{ (byte)0x89, 'P', 'N', 'G' };
+					ex.sendResponseHeaders(200, body.length);
+				} else {
+					ex.getResponseHeaders().set("Content-Type", "text/html");
+					body = "<title>not found</title>".getBytes("UTF-8");
+					ex.sendResponseHeaders(404, body.length);
+				}
+				OutputStream out = ex.getResponseBody();
+				out.write(body);
+				out.close();
+				return;
+			}
+		});
+		server.start();
+		root = "http://127.0.0.1:" + server.getAddress().getPort();
+		return;
+	}
+
+	// ======================================================================
+	// サーバの停止
+	// ======================================================================
+	/**
+	 * HTTP サーバを停止します。
+	 * <p>
+	 */
+	@After
+	public void stopServer(){
+		server.stop(0);
+		return;
+	}
+
+	// ======================================================================
+	// 巡回テスト
+	// ======================================================================
+	/**
+	 * サイト内の全ての HTML ページが解析、保存され、HTML でない URL や取得できない URL
+	 * がキューから除かれることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testRun() throws Exception{
+		MemoryStore store = new MemoryStore();
+		CrawlEngine engine = new CrawlEngine(store);
+		engine.setConcurrency(3, 2, 2);
+		engine.setQueueCapacity(2);
+		engine.setBatchSize(2);
+		engine.setHostInterval(0);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+		engine.run(new URL(root + "/index.html"));
+
+		assertEquals(4, engine.getStoredCount());
+		assertEquals(4, store.pages.size());
+		assertTrue(store.queue.isEmpty());
+		assertEquals(new HashSet<String>(Arrays.asList(
+			root + "/logo.png", root + "/missing.html")), toStrings(store.ignored));
+
+		Map<String,ParsedPage> pages = new HashMap<String,ParsedPage>();
+		for(ParsedPage p: store.pages){
+			pages.put(p.getURL().toString(), p);
+		}
+		assertEquals(new HashSet<String>(Arrays.asList(
+			root + "/index.html", root + "/a.html", root + "/b.html", root + "/sub/c.html")), pages.keySet());
+		for(ParsedPage p: store.pages){
+			assertNull(p.getURL().toString(), p.getException());
+			assertNotNull(p.getParsedContent());
+		}
+		assertEquals("index", pages.get(root + "/index.html").getTitle());
+		assertEquals("c", pages.get(root + "/sub/c.html").getTitle());
+		assertEquals("Shift_JIS", pages.get(root + "/b.html").getCharset().name());
+		assertFalse(toStrings(store.known).contains("http://example.invalid/x.html"));
+		return;
+	}
+
+	// ======================================================================
+	// 中断後の再実行テスト
+	// ======================================================================
+	/**
+	 * 巡回を中断した後に同じエンジンで再実行でき、中断時に保存されなかった URL も再び処理
+	 * されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=60000)
+	public void testStopAndRerun() throws Exception{
+		MemoryStore store = new MemoryStore();
+		final CrawlEngine engine = new CrawlEngine(store);
+		engine.setHostInterval(0);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+		engine.setListener(new CrawlEngine.Listener(){
+			public void fetching(URL url) {
+				engine.stop();
+				return;
+			}
+			public void stored(List<ParsedPage> pages) {
+				return;
+			}
+		});
+		try{
+			engine.run(new URL(root + "/index.html"));
+			fail();
+		} catch(InterruptedException ex){/* */}
+		assertFalse(Thread.currentThread().isInterrupted());
+
+		engine.setListener(null);
+		engine.run(null);
+		assertEquals(4, store.pages.size());
+		assertTrue(store.queue.isEmpty());
+		return;
+	}
+
+	// ======================================================================
+	// 予期しない例外のテスト
+	// ======================================================================
+	/**
+	 * 段階の処理中に予期しない例外が発生したタスクがエラーとして保存され、巡回が継続する
+	 * ことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=60000)
+	public void testUnexpectedException() throws Exception{
+		MemoryStore store = new MemoryStore();
+		CrawlEngine engine = new CrawlEngine(store);
+		engine.setConcurrency(1, 1, 1);
+		engine.setHostInterval(0);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+		final String target = root + "/a.html";
+		engine.setListener(new CrawlEngine.Listener(){
+			public void fetching(URL url) {
+				if(url.toString().equals(target)){
+					throw new IllegalStateException("unexpected");
+				}
+				return;
+			}
+			public void stored(List<ParsedPage> pages) {
+				return;
+			}
+		});
+		engine.run(new URL(root + "/index.html"));
+
+		assertEquals(4, store.pages.size());
+		assertTrue(store.queue.isEmpty());
+		for(ParsedPage p: store.pages){
+			if(p.getURL().toString().equals(target)){
+				assertTrue(p.getException() instanceof IllegalStateException);
+			} else {
+				assertNull(p.getURL().toString(), p.getException());
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 保存失敗の分離テスト
+	// ======================================================================
+	/**
+	 * 一括保存に失敗した場合に保存できないページのみがエラーとして保存され、同じバッチの
+	 * 他のページは正常に保存されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=60000)
+	public void testStoreFailure() throws Exception{
+		MemoryStore store = new MemoryStore();
+		String target = root + "/a.html";
+		store.reject = target;
+		CrawlEngine engine = new CrawlEngine(store);
+		engine.setBatchSize(10);
+		engine.setHostInterval(0);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+		engine.run(new URL(root + "/index.html"));
+
+		assertEquals(4, store.pages.size());
+		assertTrue(store.queue.isEmpty());
+		for(ParsedPage p: store.pages){
+			if(p.getURL().toString().equals(target)){
+				assertTrue(p.getException() instanceof SQLException);
+			} else {
+				assertNull(p.getURL().toString(), p.getException());
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 接続間隔のテスト
+	// ======================================================================
+	/**
+	 * 接続間隔が経過していないホストのタスクが延期され、その間に他のホストのタスクが取得
+	 * されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=60000)
+	public void testHostInterval() throws Exception{
+		MemoryStore store = new MemoryStore();
+		String other = "http://localhost:" + server.getAddress().getPort() + "/sub/c.html";
+		store.enqueue(new URL(root + "/a.html"));
+		store.enqueue(new URL(root + "/b.html"));
+		store.enqueue(new URL(other));
+		CrawlEngine engine = new CrawlEngine(store);
+		engine.setConcurrency(1, 1, 1);
+		engine.setHostInterval(300);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+		final List<String> fetched = Collections.synchronizedList(new ArrayList<String>());
+		engine.setListener(new CrawlEngine.Listener(){
+			public void fetching(URL url) {
+				fetched.add(url.toString());
+				return;
+			}
+			public void stored(List<ParsedPage> pages) {
+				return;
+			}
+		});
+		engine.run(null);
+
+		assertEquals(4, store.pages.size());
+		assertTrue(store.queue.isEmpty());
+		assertEquals(root + "/a.html", fetched.get(0));
+		assertEquals(other, fetched.get(1));
+		return;
+	}
+
+	// ======================================================================
+	// 単一 URL の処理テスト
+	// ======================================================================
+	/**
+	 * 単一の URL を処理した結果が保存されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testProcess() throws Exception{
+		MemoryStore store = new MemoryStore();
+		CrawlEngine engine = new CrawlEngine(store);
+		engine.setPattern(WebCrawler.getPattern(root + "/*"));
+
+		ParsedPage page = engine.process(new URL(root + "/a.html"));
+		assertNotNull(page);
+		assertEquals("a", page.getTitle());
+		assertEquals(1, store.pages.size());
+		assertEquals(new HashSet<String>(Arrays.asList(
+			root + "/index.html", root + "/b.html")), toStrings(store.queue));
+
+		assertNull(engine.process(new URL(root + "/logo.png")));
+		assertEquals(new HashSet<String>(Arrays.asList(root + "/logo.png")), toStrings(store.ignored));
+		return;
+	}
+
+	// ======================================================================
+	// URL の文字列化
+	// ======================================================================
+	/**
+	 * 比較のために URL を文字列の集合に変換します。
+	 * <p>
+	 * @param urls URL
+	 * @return URL 文字列の集合
+	 */
+	private static Set<String> toStrings(Collection<URL> urls){
+		Set<String> set = new HashSet<String>();
+		for(URL u: urls){
+			set.add(u.toString());
+		}
+		return set;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// MemoryStore: メモリ上の保存先
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * テスト用にメモリ上で URL のキューと解析済みページを保持する保存先です。URL は
+	 * フラグメントを除いて保持します。
+	 * <p>
+	 */
+	private static class MemoryStore implements CrawlStore {
+
+		/** キューに追加されたか処理済みの URL です。 */
+		public final Set<URL> known = new HashSet<URL>();
+
+		/** 解析待ちの URL です。 */
+		public final List<URL> queue = new ArrayList<URL>();
+
+		/** 取り出し済みの URL です。 */
+		public final Set<URL> selected = new HashSet<URL>();
+
+		/** 解析済みのページです。 */
+		public final List<ParsedPage> pages = new ArrayList<ParsedPage>();
+
+		/** 解析対象外と判断された URL です。 */
+		public final List<URL> ignored = new ArrayList<URL>();
+
+		/** 正常なページの保存を拒否する URL です。 */
+		public String reject = null;
+
+		// ==================================================================
+		// 解析対象 URL の追加
+		// ==================================================================
+		/**
+		 * 未知の URL をキューに追加します。
+		 * <p>
+		 * @param url 解析対象の URL
+		 */
+		public synchronized void enqueue(URL url) {
+			try{
+				url = new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getFile());
+			} catch(MalformedURLException ex){
+				throw new IllegalStateException(ex);
+			}
+			if(known.add(url)){
+				queue.add(url);
+			}
+			return;
+		}
+
+		// ==================================================================
+		// 解析対象 URL の取り出し
+		// ==================================================================
+		/**
+		 * 取り出していない URL を最大 <i>max</i> 件取り出します。
+		 * <p>
+		 * @param max 取り出す最大件数
+		 * @return 解析対象の URL
+		 */
+		public synchronized List<URL> select(int max) {
+			List<URL> list = new ArrayList<URL>();
+			for(URL u: queue){
+				if(list.size() >= max){
+					break;
+				}
+				if(selected.add(u)){
+					list.add(u);
+				}
+			}
+			return list;
+		}
+
+		// ==================================================================
+		// 解析対象 URL の解放
+		// ==================================================================
+		/**
+		 * 取り出し済みの URL を再び取り出せるようにします。
+		 * <p>
+		 * @param urls 処理が完了しなかった URL
+		 */
+		public synchronized void release(Collection<URL> urls) {
+			selected.removeAll(urls);
+			return;
+		}
+
+		// ==================================================================
+		// 巡回結果の保存
+		// ==================================================================
+		/**
+		 * 解析結果を保存しキューを更新します。
+		 * <p>
+		 * @param pages 解析済みのページ
+		 * @param ignored 解析対象外と判断した URL
+		 * @param links 新たにキューに追加するリンク
+		 * @throws SQLException 保存を拒否するページが含まれている場合
+		 */
+		public synchronized void store(Collection<ParsedPage> pages, Collection<URL> ignored, Collection<URL> links) throws SQLException {
+			for(ParsedPage p: pages){
+				if(p.getURL().toString().equals(reject) && p.getException() == null){
+					throw new SQLException("rejected: " + reject);
+				}
+			}
+			for(ParsedPage p: pages){
+				this.pages.add(p);
+				queue.remove(p.getURL());
+			}
+			this.ignored.addAll(ignored);
+			queue.removeAll(ignored);
+			for(URL u: links){
+				enqueue(u);
+			}
+			return;
+		}
+
+	}
+
+}
@@ -9,8 +9,21 @@
  */
 package org.koiroha.xml.parser;
 
-import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.logging.*;
+import java.util.concurrent.*;
 
+import javax.xml.parsers.*;
+import javax.xml.xpath.*;
+
+import org.junit.Test;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.DefaultHandler2;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // HTMLDocumentBuilderFactoryTest:
@@ -39,4 +52,488 @@ public class HTMLDocumentBuilderFactoryTest {
 		return;
 	}
 
+	// ======================================================================
+	// ビルダー再利用のテスト
+	// ======================================================================
+	/**
+	 * 同一のドキュメントビルダーで続けて解析した結果が、解析ごとに新規に構築したビルダーの結果
+	 * と一致することを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testBuilderReuse() throws Exception{
+		for(boolean compact: new boolean[]{ false, true }){
+			HTMLDocumentBuilderFactory factory = newFactory(compact);
+			DocumentBuilder reused = factory.newDocumentBuilder();
+			for(String sample: samples()){
+				List<String> expectedWarnings = new ArrayList<String>();
+				Document expected = parse(factory.newDocumentBuilder(), sample, expectedWarnings);
+				List<String> actualWarnings = new ArrayList<String>();
+				Document actual = parse(reused, sample, actualWarnings);
+				assertTrue(sample, actual.isEqualNode(expected));
+				assertEquals(sample, expected.getXmlVersion(), actual.getXmlVersion());
+				assertEquals(sample, expectedWarnings, actualWarnings);
+				reused.reset();
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ファイル解析のテスト
+	// ======================================================================
+	/**
+	 * メモリマップしたファイルから解析した結果が、文字ストリームから解析した結果と一致する
+	 * ことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testParseFile() throws Exception{
+		HTMLDocumentBuilderFactory factory = newFactory(false);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		File file = File.createTempFile("xenon", ".html");
+		try{
+			for(String sample: samples()){
+				OutputStream out = new FileOutputStream(file);
+				out.write(sample.getBytes("UTF-8"));
+				out.close();
+				Document expected = parse(builder, sample, new ArrayList<String>());
+				Document actual = builder.parse(file);
+				assertTrue(sample, actual.isEqualNode(expected));
+			}
+		} finally {
+			file.delete();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// バッファ解析のテスト
+	// ======================================================================
+	/**
+	 * バッファから解析した結果が文字ストリームから解析した結果と一致し、バッファの位置が
+	 * 変更されないことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testParseByteBuffer() throws Exception{
+		HTMLDocumentBuilderFactory factory = newFactory(false);
+		HTMLDocumentBuilder builder = (HTMLDocumentBuilder)factory.newDocumentBuilder();
+		for(String sample: samples()){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(sample.length() * 3 + 3);
+			buffer.put(new byte[]{ (byte)0xEF, (byte)0xBB, (byte)0xBF });
+			buffer.put(sample.getBytes("UTF-8"));
+			buffer.flip();
+			Document expected = parse(builder, sample, new ArrayList<String>());
+			Document actual = builder.parse(buffer);
+			assertTrue(sample, actual.isEqualNode(expected));
+			assertEquals(0, buffer.position());
+		}
+		return;
+	}
+
+	// ======================================================================
+	// エンコーディング推測のカスタマイズのテスト
+	// ======================================================================
+	/**
+	 * コンストラクタで指定した HTML パーサファクトリのエンコーディング推測がファイルの解析
+	 * に使用されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testCustomParserFactory() throws Exception{
+		HTMLParserFactory parserFactory = new HTMLParserFactory(){
+			@Override
+			protected String guessEncodingFromPrereadSampling(ByteBuffer sample) {
+				return "Shift_JIS";
+			}
+		};
+		HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory(DocumentBuilderFactory.newInstance(), parserFactory);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		File file = File.createTempFile("xenon", ".html");
+		try{
+			OutputStream out = new FileOutputStream(file);
+			out.write("<html><body>\u3042\u3044\u3046</body></html>".getBytes("Shift_JIS"));
+			out.close();
+			Document doc = builder.parse(file);
+			assertEquals("\u3042\u3044\u3046", doc.getDocumentElement().getTextContent());
+			InputSource is = factory.guessInputSource(file, "UTF-8", 1024);
+			Toolkit.close(is.getCharacterStream());
+			assertEquals("Shift_JIS", is.getEncoding());
+		} finally {
+			file.delete();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 入れ子の上限のテスト
+	// ======================================================================
+	/**
+	 * 入れ子が上限に達した要素が警告の上で内容を持たない要素として扱われることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testMaxElementDepth() throws Exception{
+		StringBuilder html = new StringBuilder("<html><body>");
+		for(int i=0; i<1000; i++){
+			html.append("<font>").append(i).append("</b>");
+		}
+		HTMLDocumentBuilderFactory factory = newFactory(false);
+		assertEquals(512, factory.getMaxElementDepth());
+
+		// デフォルトの上限で制限される場合
+		List<String> warnings = new ArrayList<String>();
+		Document doc = parse(factory.newDocumentBuilder(), html.toString(), warnings);
+		assertEquals(512 + 1, depth(doc.getDocumentElement()));
+		int count = 0;
+		for(String w: warnings){
+			if(w.contains(":E0011:")){
+				count ++;
+			}
+		}
+		assertEquals(1000 - 510, count);
+		assertEquals(1000, doc.getElementsByTagName("font").getLength());
+
+		// 上限を解除した場合
+		factory.setMaxElementDepth(0);
+		warnings.clear();
+		doc = parse(factory.newDocumentBuilder(), html.toString(), warnings);
+		assertEquals(1002, depth(doc.getDocumentElement()));
+		for(String w: warnings){
+			assertFalse(w, w.contains(":E0011:"));
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 入れ子の上限を超えた要素の終了テスト
+	// ======================================================================
+	/**
+	 * 入れ子の上限を超えた要素の終了タグが上位の同名の要素を終了せず、後続の兄弟要素が正しい
+	 * 位置に連結されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testMaxElementDepthSiblings() throws Exception{
+		StringBuilder html = new StringBuilder("<html><body id=\"body\">");
+		for(int i=0; i<600; i++){
+			html.append("<div id=\"d").append(i).append("\">");
+		}
+		for(int i=599; i>=0; i--){
+			html.append("</div><span id=\"s").append(i).append("\"></span>");
+		}
+		HTMLDocumentBuilderFactory factory = newFactory(false);
+		Document doc = parse(factory.newDocumentBuilder(), html.toString(), new ArrayList<String>());
+
+		// html, body を含めて 512 要素が開かれるため d509 より内側は d509 に連結される
+		Map<String,Element> id = new HashMap<String,Element>();
+		NodeList nl = doc.getElementsByTagName("*");
+		for(int i=0; i<nl.getLength(); i++){
+			Element e = (Element)nl.item(i);
+			id.put(e.getAttribute("id"), e);
+		}
+		for(int i=0; i<600; i++){
+			String parent = (i == 0)? "body": ("d" + Math.min(i - 1, 509));
+			assertEquals("d" + i, parent, ((Element)id.get("d" + i).getParentNode()).getAttribute("id"));
+			assertEquals("s" + i, parent, ((Element)id.get("s" + i).getParentNode()).getAttribute("id"));
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 入れ子の上限と対応しない終了タグのテスト
+	// ======================================================================
+	/**
+	 * 入れ子の上限を超えた多数の要素の後に対応する要素のない終了タグが続いても、終了タグごと
+	 * の処理が上限を超えた要素の数に依存しないことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=10000)
+	public void testMaxElementDepthStrayEndTags() throws Exception{
+		int n = 100000;
+		StringBuilder html = new StringBuilder("<html><body>");
+		for(int i=0; i<520; i++){
+			html.append("<div id=\"d").append(i).append("\">");
+		}
+		for(int i=0; i<n; i++){
+			html.append((i % 2 == 0)? "<font>": "<b>");
+		}
+		for(int i=0; i<n; i++){
+			html.append("</x>");
+		}
+		html.append("</font><p id=\"p\"></p>");
+
+		// 詳細ログの出力を抑止して計測
+		Logger logger = Logger.getLogger("org.koiroha.xml");
+		Level level = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		try{
+			Document doc = parse(newFactory(false).newDocumentBuilder(), html.toString(), new ArrayList<String>());
+			assertEquals(n / 2, doc.getElementsByTagName("font").getLength());
+			Element p = (Element)doc.getElementsByTagName("p").item(0);
+			assertEquals("d509", ((Element)p.getParentNode()).getAttribute("id"));
+		} finally {
+			logger.setLevel(level);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 要素の深さの参照
+	// ======================================================================
+	/**
+	 * 指定された要素を根とする要素の最大の深さを参照します。
+	 * <p>
+	 * @param elem 要素
+	 * @return 要素の深さ
+	 */
+	private static int depth(Element elem){
+		int depth = 0;
+		for(Node n=elem.getFirstChild(); n!=null; n=n.getNextSibling()){
+			if(n instanceof Element){
+				depth = Math.max(depth, depth((Element)n));
+			}
+		}
+		return depth + 1;
+	}
+
+	// ======================================================================
+	// 一括解析のテスト
+	// ======================================================================
+	/**
+	 * 一括解析でプールされたビルダーが解析した結果と警告が、新規に構築したビルダーの結果と一致
+	 * することを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testParseAll() throws Exception{
+		HTMLDocumentBuilderFactory factory = newFactory(false);
+		final Map<InputSource,String> sources = new LinkedHashMap<InputSource,String>();
+		for(int i=0; i<5; i++){
+			for(String sample: samples()){
+				sources.put(new InputSource(new StringReader(sample)), sample);
+			}
+		}
+
+		final Set<InputSource> done = new HashSet<InputSource>();
+		final DocumentBuilder fresh = factory.newDocumentBuilder();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try{
+			factory.parseAll(sources.keySet(), new HTMLDocumentBuilderFactory.BatchHandler(){
+				/** @param is @param doc @param warnings @throws SAXException */
+				public void parsed(InputSource is, Document doc, List<SAXParseException> warnings) throws SAXException {
+					String sample = sources.get(is);
+					List<String> expectedWarnings = new ArrayList<String>();
+					try{
+						Document expected = parse(fresh, sample, expectedWarnings);
+						assertTrue(sample, doc.isEqualNode(expected));
+					} catch(IOException ex){
+						throw new SAXException(ex);
+					}
+					assertEquals(sample, expectedWarnings, format(warnings));
+					assertTrue(done.add(is));
+					return;
+				}
+				/** @param is @param ex @param warnings */
+				public void failed(InputSource is, Exception ex, List<SAXParseException> warnings) {
+					throw new AssertionError(sources.get(is) + ": " + ex);
+				}
+			}, executor, 3);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(sources.keySet(), done);
+		return;
+	}
+
+	// ======================================================================
+	// 一括解析の失敗テスト
+	// ======================================================================
+	/**
+	 * 解析に失敗したドキュメントが個別に通知され、ハンドラの例外で一括解析が中断されることを
+	 * 確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testParseAllFailure() throws Exception{
+		HTMLDocumentBuilderFactory factory = newFactory(true);
+		List<InputSource> sources = new ArrayList<InputSource>();
+		sources.add(new InputSource(new StringReader("<p>ok")));
+		sources.add(new InputSource());
+		sources.add(new InputSource(new StringReader("<p>ok")));
+		final List<String> result = new ArrayList<String>();
+		factory.parseAll(sources, new HTMLDocumentBuilderFactory.BatchHandler(){
+			/** @param is @param doc @param warnings */
+			public void parsed(InputSource is, Document doc, List<SAXParseException> warnings) {
+				result.add("parsed");
+				return;
+			}
+			/** @param is @param ex @param warnings */
+			public void failed(InputSource is, Exception ex, List<SAXParseException> warnings) {
+				result.add("failed");
+				return;
+			}
+		});
+		Collections.sort(result);
+		assertEquals(Arrays.asList("failed", "parsed", "parsed"), result);
+
+		final int[] count = new int[1];
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try{
+			factory.parseAll(sources, new HTMLDocumentBuilderFactory.BatchHandler(){
+				/** @param is @param doc @param warnings @throws SAXException */
+				public void parsed(InputSource is, Document doc, List<SAXParseException> warnings) throws SAXException {
+					count[0] ++;
+					throw new SAXException("abort");
+				}
+				/** @param is @param ex @param warnings @throws SAXException */
+				public void failed(InputSource is, Exception ex, List<SAXParseException> warnings) throws SAXException {
+					count[0] ++;
+					throw new SAXException("abort");
+				}
+			}, executor, 1);
+			fail();
+		} catch(SAXException ex){
+			assertEquals("abort", ex.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, count[0]);
+
+		// 解析中の Error は実行中の解析の終了後に送出される
+		final Error error = new Error("broken");
+		sources.add(1, new InputSource(new Reader(){
+			/** @param cbuf @param off @param len @return なし */
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				throw error;
+			}
+			/** */
+			@Override
+			public void close() {
+				return;
+			}
+		}));
+		final List<String> notified = new ArrayList<String>();
+		executor = Executors.newFixedThreadPool(2);
+		try{
+			factory.parseAll(sources, new HTMLDocumentBuilderFactory.BatchHandler(){
+				/** @param is @param doc @param warnings */
+				public void parsed(InputSource is, Document doc, List<SAXParseException> warnings) {
+					notified.add("parsed");
+					return;
+				}
+				/** @param is @param ex @param warnings */
+				public void failed(InputSource is, Exception ex, List<SAXParseException> warnings) {
+					notified.add("failed");
+					return;
+				}
+			}, executor, 2);
+			fail();
+		} catch(Error ex){
+			assertSame(error, ex);
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(notified.size() < sources.size());
+		return;
+	}
+
+	// ======================================================================
+	// ファクトリの構築
+	// ======================================================================
+	/**
+	 * 仕様パターンと同じ設定のファクトリを構築します。
+	 * <p>
+	 * @param compact コンパクト DOM を使用する場合 true
+	 * @return ファクトリ
+	 */
+	private static HTMLDocumentBuilderFactory newFactory(boolean compact){
+		HTMLDocumentBuilderFactory factory = new HTMLDocumentBuilderFactory();
+		factory.setHtmlOptimize(true);
+		factory.setLowerCaseName(true);
+		factory.setCompactDom(compact);
+		return factory;
+	}
+
+	// ======================================================================
+	// 仕様パターンの参照
+	// ======================================================================
+	/**
+	 * 仕様パターンの全てのサンプルを参照します。
+	 * <p>
+	 * @return サンプル
+	 * @throws Exception 仕様パターンの読み込みに失敗した場合
+	 */
+	private static List<String> samples() throws Exception{
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		f.setXIncludeAware(true);
+		Document spec = f.newDocumentBuilder().parse(new File("build/spec/spec.xml").toURI().toString());
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		NodeList nodes = (NodeList)xpath.evaluate("//spec/sample", spec, XPathConstants.NODESET);
+		List<String> samples = new ArrayList<String>();
+		for(int i=0; i<nodes.getLength(); i++){
+			samples.add(nodes.item(i).getTextContent());
+		}
+		assertFalse(samples.isEmpty());
+		return samples;
+	}
+
+	// ======================================================================
+	// HTML の解析
+	// ======================================================================
+	/**
+	 * 指定されたビルダーで HTML を解析します。
+	 * <p>
+	 * @param builder ドキュメントビルダー
+	 * @param html HTML
+	 * @param warnings 警告の格納先
+	 * @return ドキュメント
+	 * @throws SAXException 解析に失敗した場合
+	 * @throws IOException 解析に失敗した場合
+	 */
+	private static Document parse(DocumentBuilder builder, String html, final List<String> warnings) throws SAXException, IOException{
+		final List<SAXParseException> list = new ArrayList<SAXParseException>();
+		builder.setErrorHandler(new DefaultHandler2(){
+			/** @param e */
+			@Override
+			public void warning(SAXParseException e) {
+				list.add(e);
+				return;
+			}
+		});
+		Document doc = builder.parse(new InputSource(new StringReader(html)));
+		warnings.addAll(format(list));
+		return doc;
+	}
+
+	// ======================================================================
+	// 警告の文字列化
+	// ======================================================================
+	/**
+	 * 警告を位置とメッセージの文字列に変換します。
+	 * <p>
+	 * @param warnings 警告
+	 * @return 文字列化した警告
+	 */
+	private static List<String> format(List<SAXParseException> warnings){
+		List<String> list = new ArrayList<String>();
+		for(SAXParseException e: warnings){
+			list.add(e.getLineNumber() + ":" + e.getColumnNumber() + ":" + e.getMessage());
+		}
+		return list;
+	}
+
 }
@@ -12,6 +12,7 @@ package org.koiroha.xml.parser;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import javax.xml.XMLConstants;
@@ -200,15 +201,137 @@ public class HTMLParserFactoryTest extends TestCase{
 		assertEquals(Charset.forName(expected), Charset.forName(is.getEncoding()));
 
 		// ストリームからサンプルと同じ内容が取得できることを確認
+		assertEquals(new String(sample.getBytes(actual), expected), read(is.getCharacterStream()));
+
+		// バッファからも同じ結果が得られることを確認
+		is = factory.guessInputSource(ByteBuffer.wrap(sample.getBytes(actual)), def, 8 * 1024);
+		assertEquals(Charset.forName(expected), Charset.forName(is.getEncoding()));
+		assertEquals(new String(sample.getBytes(actual), expected), read(is.getCharacterStream()));
+		return;
+	}
+
+	// ======================================================================
+	// バイナリからの入力ソース推測テスト
+	// ======================================================================
+	/**
+	 * HTML5 形式の META 要素、UTF-8 の BOM、メモリマップしたファイルからの入力ソース推測
+	 * をテストします。
+	 * <p>
+	 * @throws Exception
+	 */
+	@Test
+	public void バイナリからの入力ソース推測() throws Exception{
+
+		// HTML5 形式の META 要素
+		String sample = "<html><head><META Charset=\"Shift_JIS\"></head><body>\u3042\u3044\u3046</body></html>";
+		guessInputSource(sample, "Shift_JIS", "UTF-8", "Shift_JIS");
+		sample = "<html><meta charset=Windows-31J>\u3042\u3044\u3046</html>";
+		guessInputSource(sample, "Windows-31J", "UTF-8", "Windows-31J");
+
+		// 認識できない charset 属性は後続の META 要素に委ねる
+		sample = "<html><meta charset='foo'><meta http-equiv='Content-Type' content='text/html;charset=EUC-JP'>\u3042</html>";
+		guessInputSource(sample, "EUC-JP", "UTF-8", "EUC-JP");
+
+		// 配列に収まらないサロゲートペア
+		sample = "<html>\uD842\uDFB7\uD842\uDFB7</html>";
+		guessInputSource(sample, "UTF-8", "UTF-8", "UTF-8");
+
+		// UTF-8 の BOM は内容に含まれない
+		byte[] binary = "<html>\u3042</html>".getBytes("UTF-8");
+		byte[] bom = new byte[binary.length + 3];
+		bom[0] = (byte)0xEF;	bom[1] = (byte)0xBB;	bom[2] = (byte)0xBF;
+		System.arraycopy(binary, 0, bom, 3, binary.length);
+		AbstractSAXParserFactory factory = new HTMLParserFactory();
+		InputSource is = factory.guessInputSource(new ByteArrayInputStream(bom), "Windows-31J", 8 * 1024);
+		assertEquals(Charset.forName("UTF-8"), Charset.forName(is.getEncoding()));
+		assertEquals("<html>\u3042</html>", read(is.getCharacterStream()));
+		is = factory.guessInputSource(ByteBuffer.wrap(bom), "Windows-31J", 8 * 1024);
+		assertEquals(Charset.forName("UTF-8"), Charset.forName(is.getEncoding()));
+		assertEquals("<html>\u3042</html>", read(is.getCharacterStream()));
+
+		// メモリマップしたファイルから同じ内容が取得できることを確認
+		sample = "<html><head><meta charset=\"EUC-JP\"></head><body>\u3042\u3044\u3046</body></html>";
+		File file = File.createTempFile("xenon", ".html");
+		try{
+			OutputStream out = new FileOutputStream(file);
+			out.write(sample.getBytes("EUC-JP"));
+			out.close();
+			is = factory.guessInputSource(file, "UTF-8", 8 * 1024);
+			assertEquals(Charset.forName("EUC-JP"), Charset.forName(is.getEncoding()));
+			assertEquals(file.toURI().toString(), is.getSystemId());
+			Reader r = is.getCharacterStream();
+			assertEquals(sample, read(r));
+			r.close();
+		} finally {
+			file.delete();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 旧形式の推測メソッドのテスト
+	// ======================================================================
+	/**
+	 * サブクラスでオーバーライドした旧形式の推測メソッドが入力ソースの推測で呼び出される
+	 * ことを確認します。
+	 * <p>
+	 * @throws Exception
+	 */
+	@SuppressWarnings("deprecation")
+	@Test
+	public void 旧形式の推測メソッド() throws Exception{
+		byte[] binary = "<html><!-- sjis --><meta charset=\"EUC-JP\">\u3042</html>".getBytes("Shift_JIS");
+
+		// 文字列を引数とするメソッドのオーバーライド
+		AbstractSAXParserFactory factory = new HTMLParserFactory(){
+			@Override
+			protected String guessEncodingFromPrereadSampling(String sample) {
+				return sample.contains("<!-- sjis -->")? "Shift_JIS": super.guessEncodingFromPrereadSampling(sample);
+			}
+		};
+		InputSource is = factory.guessInputSource(new ByteArrayInputStream(binary), "UTF-8", 8 * 1024);
+		assertEquals(Charset.forName("Shift_JIS"), Charset.forName(is.getEncoding()));
+		is = factory.guessInputSource(ByteBuffer.wrap(binary), "UTF-8", 8 * 1024);
+		assertEquals(Charset.forName("Shift_JIS"), Charset.forName(is.getEncoding()));
+
+		// スーパークラスに委譲した場合は META 要素から推測
+		binary = "<html><meta charset=\"EUC-JP\">\u3042</html>".getBytes("EUC-JP");
+		is = factory.guessInputSource(new ByteArrayInputStream(binary), "UTF-8", 8 * 1024);
+		assertEquals(Charset.forName("EUC-JP"), Charset.forName(is.getEncoding()));
+
+		// 配列を引数とするメソッドのオーバーライド
+		final int[] length = new int[1];
+		factory = new HTMLParserFactory(){
+			@Override
+			protected String guessEncodingFromPrereadSampling(byte[] b, int len) {
+				length[0] = len;
+				return super.guessEncodingFromPrereadSampling(b, len);
+			}
+		};
+		is = factory.guessInputSource(new ByteArrayInputStream(binary), "UTF-8", 8 * 1024);
+		assertEquals(binary.length, length[0]);
+		assertEquals(Charset.forName("EUC-JP"), Charset.forName(is.getEncoding()));
+		return;
+	}
+
+	// ======================================================================
+	// 文字ストリームの読み込み
+	// ======================================================================
+	/**
+	 * 指定された文字ストリームの内容を 1 文字ずつ読み込みます。
+	 * <p>
+	 * @param r 文字ストリーム
+	 * @return 読み込んだ文字列
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static String read(Reader r) throws IOException{
 		StringBuilder buffer = new StringBuilder();
-		Reader r = is.getCharacterStream();
 		while(true){
 			int ch = r.read();
 			if(ch < 0)	break;
 			buffer.append((char)ch);
 		}
-		assertEquals(new String(sample.getBytes(actual), expected), buffer.toString());
-		return;
+		return buffer.toString();
 	}
 
 }
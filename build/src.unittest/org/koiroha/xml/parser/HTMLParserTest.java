@@ -14,6 +14,7 @@ import static org.junit.Assert.*;
 import javax.xml.parsers.SAXParser;
 
 import org.junit.Test;
+import org.koiroha.xml.EntityTable;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // HTMLParserTest: HTML パーサテスト
@@ -172,4 +173,42 @@ public class HTMLParserTest {
 		return;
 	}
 
+	// ======================================================================
+	// HTML5 実体参照設定のテスト
+	// ======================================================================
+	/**
+	 * HTML5 実体参照の切り替えで利用者が変更した実体参照が維持されることをテストします。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testHTML5実体参照の切り替え() throws Exception{
+		HTMLParserFactory factory = new HTMLParserFactory();
+		AbstractXMLReader reader = (AbstractXMLReader)factory.newSAXParser().getXMLReader();
+		reader.setEntityReference("foo", "bar");
+		reader.removeEntityReference("nbsp");
+		EntityTable table = reader.getEntityTable();
+		assertNull(table.get("Tab"));
+
+		// 値が変化しない設定ではテーブルを切り替えない
+		reader.setFeature(LooseXMLReader.FEATURE_HTML5_ENTITY, false);
+		assertSame(table, reader.getEntityTable());
+
+		// 切り替え後も利用者の変更が維持される
+		reader.setFeature(LooseXMLReader.FEATURE_HTML5_ENTITY, true);
+		assertEquals("\t", reader.getEntityTable().get("Tab"));
+		assertEquals("bar", reader.getEntityTable().get("foo"));
+		assertNull(reader.getEntityTable().get("nbsp"));
+		assertEquals("&", reader.getEntityTable().get("amp"));
+
+		// 後から定義を戻した場合は最後の変更が有効となる
+		reader.setEntityReference("nbsp", "\u00A0");
+		reader.removeEntityReference("foo");
+		reader.setFeature(LooseXMLReader.FEATURE_HTML5_ENTITY, false);
+		assertNull(reader.getEntityTable().get("Tab"));
+		assertNull(reader.getEntityTable().get("foo"));
+		assertEquals("\u00A0", reader.getEntityTable().get("nbsp"));
+		return;
+	}
+
 }
@@ -0,0 +1,177 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// LocatorReaderTest: LocatorReader テストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * LocatorReader のテストケースです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class LocatorReaderTest {
+
+	// ======================================================================
+	// 先読みのテスト
+	// ======================================================================
+	/**
+	 * 下層のストリームが 1 文字ずつしか返さない場合でも先読みが正しく行われることを確認します。
+	 * <p>
+	 * @throws IOException テストに失敗した場合
+	 */
+	@Test
+	public void testStartsWith() throws IOException {
+		LocatorReader in = new LocatorReader(slow("ABC"), null, null);
+		assertTrue(in.startsWith("ABC"));
+		assertFalse(in.startsWith("abc"));
+		assertTrue(in.startsWith("abc", true));
+		assertFalse(in.startsWith("ABCD"));
+		assertFalse(in.startsWith("ABC\uFFFE"));
+		assertFalse(in.startsWith("AB\uFFFF"));
+		assertTrue(in.startsWith("ABC\uFFFF"));
+		assertEquals('A', in.read());
+		assertTrue(in.startsWith("BC\uFFFF"));
+		assertEquals('C', in.peek(1));
+		assertEquals(-1, in.peek(2));
+		assertEquals("BC", in.skipSequence("BC", true));
+		assertTrue(in.isEOF());
+		assertEquals(-1, in.read());
+		return;
+	}
+
+	// ======================================================================
+	// 行番号と列番号のテスト
+	// ======================================================================
+	/**
+	 * 先読みや読み込みのキャンセルを行ってもマークした位置の行番号と列番号が正しいことを確認
+	 * します。
+	 * <p>
+	 * @throws IOException テストに失敗した場合
+	 */
+	@Test
+	public void testLocation() throws IOException {
+		LocatorReader in = new LocatorReader(slow("ab\r\ncd\refg"), null, null);
+		in.markLocation();
+		assertEquals(1, in.getLineNumber());
+		assertEquals(1, in.getColumnNumber());
+
+		// 改行を越える先読みは位置に影響しない
+		in.skipSequence("ab", true);
+		assertTrue(in.startsWith("\ncd\n"));
+		in.markLocation();
+		assertEquals(1, in.getLineNumber());
+		assertEquals(3, in.getColumnNumber());
+
+		// 改行の読み込みとキャンセル
+		in.read();
+		in.read();
+		in.markLocation();
+		assertEquals(2, in.getLineNumber());
+		assertEquals(2, in.getColumnNumber());
+		in.unread('c');
+		in.markLocation();
+		assertEquals(2, in.getLineNumber());
+		assertEquals(1, in.getColumnNumber());
+
+		// バッファへの一括読み込み
+		StringBuilder buffer = new StringBuilder();
+		assertEquals(4, in.readUntil(buffer, Integer.MAX_VALUE, 'f', 'f'));
+		assertEquals("cd\ne", buffer.toString());
+		in.markLocation();
+		assertEquals(3, in.getLineNumber());
+		assertEquals(2, in.getColumnNumber());
+		return;
+	}
+
+	// ======================================================================
+	// バッファ境界のテスト
+	// ======================================================================
+	/**
+	 * バッファの境界を越える読み込みと先頭での読み込みキャンセルを確認します。
+	 * <p>
+	 * @throws IOException テストに失敗した場合
+	 */
+	@Test
+	public void testBufferBoundary() throws IOException {
+		StringBuilder sample = new StringBuilder();
+		for(int i=0; i<20000; i++){
+			sample.append((char)('a' + (i % 26)));
+		}
+		sample.append("<!-- x -->");
+		LocatorReader in = new LocatorReader(new StringReader(sample.toString()), null, null);
+
+		// 先頭の読み込みキャンセル
+		in.unread('<');
+		assertEquals('<', in.read());
+
+		// 終了文字までの一括読み込み
+		StringBuilder buffer = new StringBuilder();
+		assertEquals(20000, in.readUntil(buffer, Integer.MAX_VALUE, '<', '&'));
+		assertEquals(sample.substring(0, 20000), buffer.toString());
+		assertEquals(Node.COMMENT_NODE, in.getNextType().shortValue());
+		in.markLocation();
+		assertEquals(1, in.getLineNumber());
+		assertEquals(20002, in.getColumnNumber());
+		return;
+	}
+
+	// ======================================================================
+	// テキストモードのテスト
+	// ======================================================================
+	/**
+	 * テキストモードで指定された要素の終了のみを認識することを確認します。
+	 * <p>
+	 * @throws IOException テストに失敗した場合
+	 */
+	@Test
+	public void testTextMode() throws IOException {
+		LocatorReader in = new LocatorReader(slow("<b></SCRIPT>"), null, null);
+		in.setTextModeEnd("script");
+		assertEquals(Node.TEXT_NODE, in.getNextType().shortValue());
+		in.skipSequence("<b>", true);
+		assertTrue(in.isTextMode());
+		assertEquals(Node.ELEMENT_NODE, in.getNextType().shortValue());
+		assertFalse(in.isTextMode());
+		return;
+	}
+
+	// ======================================================================
+	// 低速ストリームの構築
+	// ======================================================================
+	/**
+	 * 1 回の読み込みで 1 文字しか返さないストリームを構築します。
+	 * <p>
+	 * @param sample ストリームの内容
+	 * @return 入力ストリーム
+	 */
+	private static Reader slow(String sample){
+		return new StringReader(sample){
+			@Override
+			public int read(char[] buf, int off, int len) throws IOException{
+				int ch = super.read();
+				if(ch < 0){
+					return ch;
+				}
+				buf[off] = (char)ch;
+				return 1;
+			}
+		};
+	}
+
+}
@@ -11,10 +11,13 @@ package org.koiroha.xml.parser;
 
 import static junit.framework.Assert.*;
 
+import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.util.*;
 
 import org.junit.Test;
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // LooseXMLReaderTest:
@@ -41,36 +44,33 @@ public class LooseXMLReaderTest {
 	 */
 	@Test
 	public void testParseElementBody() throws Exception{
-		Method method = LooseXMLReader.class.getDeclaredMethod("parseElementBody", String.class, boolean.class, Map.class);
-		method.setAccessible(true);
-
 		// 要素内が空の場合
 		Map<String,String> attr = new HashMap<String, String>();
-		boolean empty = (Boolean)method.invoke(reader, "", true, attr);
+		boolean empty = parse("", attr);
 		assertFalse(empty);
 		assertEquals(0, attr.size());
 
 		// 要素内が空の場合
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "  \n \t \n ", true, attr);
+		empty = parse("  \n \t \n ", attr);
 		assertFalse(empty);
 		assertEquals(0, attr.size());
 
 		// 空要素の検出
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "/", true, attr);
+		empty = parse("/", attr);
 		assertTrue(empty);
 		assertEquals(0, attr.size());
 
 		// 空要素の検出 (前方に空白あり)
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, " /", true, attr);
+		empty = parse(" /", attr);
 		assertTrue(empty);
 		assertEquals(0, attr.size());
 
 		// 空要素の検出 (属性値の後ろ)
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "a=\"b\" c=\"d\"/", true, attr);
+		empty = parse("a=\"b\" c=\"d\"/", attr);
 		assertTrue(empty);
 		assertEquals(attr.toString(), 2, attr.size());
 		assertEquals("b", attr.get("a"));
@@ -78,56 +78,56 @@ public class LooseXMLReaderTest {
 
 		// 非空要素指示のスラッシュを属性名として認識する事を確認
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "/ ", true, attr);
+		empty = parse("/ ", attr);
 		assertFalse(empty);
 		assertEquals(1, attr.size());
 		assertEquals("/", attr.get("/"));
 
 		// クオート省略の属性値がスラッシュで終わっているのを空要素と認識しないことを確認
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "path=/foo/", true, attr);
+		empty = parse("path=/foo/", attr);
 		assertFalse(empty);
 		assertEquals(1, attr.size());
 		assertEquals("/foo/", attr.get("path"));
 
 		// ダブルクオートの属性値指定1
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "a=\"b\"", true, attr);
+		empty = parse("a=\"b\"", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
 
 		// ダブルクオートの属性値指定2
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, " a = \"b\" ", true, attr);
+		empty = parse(" a = \"b\" ", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
 
 		// シングルクオートの属性値指定1
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "a=\'b\'", true, attr);
+		empty = parse("a=\'b\'", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
 
 		// シングルクオートの属性値指定2
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, " a = \'b\' ", true, attr);
+		empty = parse(" a = \'b\' ", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
 
 		// クオート省略の属性値指定1
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, "a=b", true, attr);
+		empty = parse("a=b", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
 
 		// クオート省略の属性値指定2
 		attr.clear();
-		empty = (Boolean)method.invoke(reader, " a = b ", true, attr);
+		empty = parse(" a = b ", attr);
 		assertFalse(empty);
 		assertEquals(attr.toString(), 1, attr.size());
 		assertEquals("b", attr.get("a"));
@@ -135,4 +135,153 @@ public class LooseXMLReaderTest {
 		return;
 	}
 
+	// ======================================================================
+	// 属性の順序と重複のテスト
+	// ======================================================================
+	/**
+	 * 属性が記述順に保持され、重複した属性と不正な '=' が警告されることをテストします。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testAttributeOrderAndWarning() throws Exception{
+		final List<String> warnings = new ArrayList<String>();
+		reader.setErrorHandler(new DefaultHandler(){
+			@Override
+			public void warning(SAXParseException ex){
+				warnings.add(ex.getMessage().substring(0, ex.getMessage().indexOf(':')));
+			}
+		});
+		reader.parse(new InputSource(new StringReader("<a HREF=/foo/bar/ b=1 = c B=2 A=\"&lt;x\">")));
+		assertEquals(Arrays.asList("E0009", "E0010"), warnings);
+		return;
+	}
+
+	// ======================================================================
+	// 多数の属性の重複テスト
+	// ======================================================================
+	/**
+	 * 多数の属性を持つ要素で重複した属性が警告され、後の値で置き換えられることをテストします。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testManyAttributes() throws Exception{
+		final List<String> warnings = new ArrayList<String>();
+		final List<Attributes> attrs = new ArrayList<Attributes>();
+		reader.setErrorHandler(new DefaultHandler(){
+			@Override
+			public void warning(SAXParseException ex){
+				warnings.add(ex.getMessage().substring(0, ex.getMessage().indexOf(':')));
+			}
+		});
+		reader.setContentHandler(new DefaultHandler(){
+			@Override
+			public void startElement(String uri, String localName, String qName, Attributes a){
+				attrs.add(new AttributesImpl(a));
+			}
+		});
+		StringBuilder xml = new StringBuilder("<a");
+		for(int i=0; i<300; i++){
+			xml.append(" a").append(i).append("=").append(i);
+		}
+		xml.append(" A5=x a299=y><b a5=z></b></a>");
+		reader.parse(new InputSource(new StringReader(xml.toString())));
+		assertEquals(Arrays.asList("E0010", "E0010"), warnings);
+		assertEquals(300, attrs.get(0).getLength());
+		assertEquals("x", attrs.get(0).getValue("a5"));
+		assertEquals("y", attrs.get(0).getValue("a299"));
+		assertEquals("a6", attrs.get(0).getQName(6));
+		assertEquals(1, attrs.get(1).getLength());
+		assertEquals("z", attrs.get(1).getValue("a5"));
+		return;
+	}
+
+	// ======================================================================
+	// 名前共有のテスト
+	// ======================================================================
+	/**
+	 * 繰り返し出現する要素名と属性名が同一インスタンスで通知されることをテストします。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testSymbol() throws Exception{
+		final List<String> names = new ArrayList<String>();
+		final List<String> attrs = new ArrayList<String>();
+		reader.setContentHandler(new DefaultHandler(){
+			@Override
+			public void startElement(String uri, String localName, String qName, Attributes a){
+				names.add(qName);
+				for(int i=0; i<a.getLength(); i++){
+					attrs.add(a.getQName(i) + "=" + a.getValue(i));
+				}
+			}
+		});
+		reader.parse(new InputSource(new StringReader("<DIV Class=a id=x><div class='b' href=/foo/bar/></div></div>")));
+		assertEquals(Arrays.asList("div", "div"), names);
+		assertSame(names.get(0), names.get(1));
+		assertEquals(Arrays.asList("class=a", "id=x", "class=b", "href=/foo/bar/"), attrs);
+		return;
+	}
+
+	// ======================================================================
+	// 統計情報のテスト
+	// ======================================================================
+	/**
+	 * 統計プロパティを設定した場合に文字数、ノード数、警告数が集計されることをテストします。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testStatistics() throws Exception{
+		String xml = "<!DOCTYPE html><html><!-- c --><body a=1 a=2>text<br/><?pi x?></body></html>";
+		ParseStatistics stats = new ParseStatistics();
+		reader.setProperty(AbstractXMLReader.PROPERTY_STATISTICS, stats);
+		reader.parse(new InputSource(new StringReader(xml)));
+		assertEquals(1, stats.getDocuments());
+		assertEquals(xml.length(), stats.getCharacters());
+		assertEquals(3, stats.getElements());
+		assertEquals(1, stats.getTexts());
+		assertEquals(1, stats.getComments());
+		assertEquals(7, stats.getNodes());
+		assertEquals(1, stats.getWarnings());
+
+		// 続く解析では値が加算される
+		reader.parse(new InputSource(new StringReader(xml)));
+		assertEquals(2, stats.getDocuments());
+		assertEquals(xml.length() * 2, stats.getCharacters());
+		assertEquals(2, stats.getWarnings());
+		assertEquals(stats.getNodes(), stats.toMap().get("nodes").longValue());
+
+		// 統計以外のインスタンスは設定できない
+		try{
+			reader.setProperty(AbstractXMLReader.PROPERTY_STATISTICS, "stats");
+			fail();
+		} catch(IllegalArgumentException ex){/* */}
+		return;
+	}
+
+	// ======================================================================
+	// 要素内の解析
+	// ======================================================================
+	/**
+	 * 要素内の属性部分を解析して結果をマップに格納します。
+	 * <p>
+	 * @param body 要素内文字列
+	 * @param attr 解析した属性値を格納するマップ
+	 * @return 空要素の場合 true
+	 * @throws Exception 解析に失敗した場合
+	 */
+	private boolean parse(String body, Map<String,String> attr) throws Exception{
+		Method method = LooseXMLReader.class.getDeclaredMethod("parseElementBody", CharSequence.class, int.class, int.class, boolean.class, AttributesImpl.class);
+		method.setAccessible(true);
+		AttributesImpl attributes = new AttributesImpl();
+		boolean empty = (Boolean)method.invoke(reader, body, 0, body.length(), true, attributes);
+		for(int i=0; i<attributes.getLength(); i++){
+			attr.put(attributes.getQName(i), attributes.getValue(i));
+		}
+		return empty;
+	}
+
 }
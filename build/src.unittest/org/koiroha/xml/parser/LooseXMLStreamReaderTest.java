@@ -0,0 +1,526 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.*;
+
+import javax.xml.parsers.*;
+import javax.xml.stream.*;
+import javax.xml.xpath.*;
+
+import org.junit.Test;
+import org.koiroha.xml.TestCase;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.DefaultHandler2;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// LooseXMLStreamReaderTest: LooseXMLStreamReader テストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * プル型リーダーとストリーミング選択のテストケースです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class LooseXMLStreamReaderTest extends TestCase{
+
+	// ======================================================================
+	// 仕様パターンの要素構造テスト
+	// ======================================================================
+	/**
+	 * 仕様パターンの全てのサンプルについて、プル型リーダーの要素の開始と終了が DOM ビルダーの
+	 * 構築する要素の構造と一致することを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testSpecStructure() throws Exception{
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		f.setXIncludeAware(true);
+		Document spec = f.newDocumentBuilder().parse(new File("build/spec/spec.xml").toURI().toString());
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		NodeList samples = (NodeList)xpath.evaluate("//spec/sample", spec, XPathConstants.NODESET);
+		assertTrue(samples.getLength() > 0);
+
+		HTMLDocumentBuilderFactory bf = new HTMLDocumentBuilderFactory();
+		bf.setHtmlOptimize(true);
+		bf.setLowerCaseName(true);
+		for(int i=0; i<samples.getLength(); i++){
+			String sample = samples.item(i).getTextContent();
+			Document doc = bf.newDocumentBuilder().parse(new InputSource(new StringReader(sample)));
+			List<String> expected = new ArrayList<String>();
+			structure(doc.getDocumentElement(), 0, expected);
+
+			List<String> actual = new ArrayList<String>();
+			XMLStreamReader in = newReader(sample, null);
+			int depth = 0;
+			while(in.hasNext()){
+				int type = in.next();
+				if(type == XMLStreamConstants.START_ELEMENT){
+					actual.add(depth + ":" + in.getLocalName());
+					depth ++;
+				} else if(type == XMLStreamConstants.END_ELEMENT){
+					depth --;
+				}
+			}
+			in.close();
+			assertEquals(0, depth);
+
+			// 要素を含まないドキュメントに DOM ビルダーが補うドキュメント要素は通知されない
+			if(actual.isEmpty()){
+				assertEquals(sample, Arrays.asList("0:html"), expected);
+				continue;
+			}
+			assertEquals(sample, expected, actual);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// イベントのテスト
+	// ======================================================================
+	/**
+	 * 各種のマークアップがイベントとして参照できることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testEvents() throws Exception{
+		String html = "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\">\n"
+			+ "<html><!-- c --><body a=1 B='x &amp; y'>text&lt;<![CDATA[<raw>]]><?pi data?><br></body></html>";
+		XMLStreamReader in = newReader(html, null);
+		assertEquals(XMLStreamConstants.START_DOCUMENT, in.getEventType());
+		assertEquals(XMLStreamConstants.DTD, in.next());
+		assertEquals("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\">", in.getText());
+		assertEquals(XMLStreamConstants.CHARACTERS, in.next());
+		assertTrue(in.isWhiteSpace());
+		assertEquals(XMLStreamConstants.START_ELEMENT, in.nextTag());
+		assertEquals("html", in.getLocalName());
+		assertEquals(XMLStreamConstants.COMMENT, in.next());
+		assertEquals(" c ", in.getText());
+		assertEquals(XMLStreamConstants.START_ELEMENT, in.next());
+		assertEquals("body", in.getLocalName());
+		assertEquals(2, in.getAttributeCount());
+		assertEquals("a", in.getAttributeLocalName(0));
+		assertEquals("1", in.getAttributeValue(0));
+		assertEquals("x & y", in.getAttributeValue(null, "b"));
+		assertEquals(XMLStreamConstants.CHARACTERS, in.next());
+		assertEquals("text<", in.getText());
+		assertEquals(XMLStreamConstants.CDATA, in.next());
+		assertEquals("<raw>", in.getText());
+		assertEquals(XMLStreamConstants.PROCESSING_INSTRUCTION, in.next());
+		assertEquals("pi", in.getPITarget());
+		assertEquals("data", in.getPIData());
+		assertEquals(XMLStreamConstants.START_ELEMENT, in.next());
+		assertEquals("br", in.getLocalName());
+		assertEquals(XMLStreamConstants.END_ELEMENT, in.next());
+		assertEquals("br", in.getLocalName());
+		assertEquals(XMLStreamConstants.END_ELEMENT, in.next());
+		assertEquals("body", in.getLocalName());
+		assertEquals(XMLStreamConstants.END_ELEMENT, in.next());
+		assertEquals("html", in.getLocalName());
+		assertEquals(XMLStreamConstants.END_DOCUMENT, in.next());
+		assertFalse(in.hasNext());
+		in.close();
+		return;
+	}
+
+	// ======================================================================
+	// 要素の補正テスト
+	// ======================================================================
+	/**
+	 * 終了の省略された要素や開いていない要素の終了が補正され、警告が通知されることを確認
+	 * します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testRecovery() throws Exception{
+		List<String> warnings = new ArrayList<String>();
+		XMLStreamReader in = newReader("<div><p>a<b>b</div></i><ul><li>1<li>2</ul><span>", warnings);
+		StringBuilder buffer = new StringBuilder();
+		while(in.hasNext()){
+			switch(in.next()){
+			case XMLStreamConstants.START_ELEMENT:
+				buffer.append('<').append(in.getLocalName()).append('>');
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				buffer.append("</").append(in.getLocalName()).append('>');
+				break;
+			case XMLStreamConstants.CHARACTERS:
+				buffer.append(in.getText());
+				break;
+			}
+		}
+		in.close();
+		assertEquals("<div><p>a<b>b</b></p></div><ul><li>1</li><li>2</li></ul><span></span>", buffer.toString());
+		assertTrue(warnings.toString(), warnings.contains("E0004:" + Toolkit.format("warn.E0004", "p")));
+		assertTrue(warnings.toString(), warnings.contains("E0004:" + Toolkit.format("warn.E0004", "b")));
+		assertTrue(warnings.toString(), warnings.contains("E0002:" + Toolkit.format("warn.E0002", "i")));
+		assertTrue(warnings.toString(), warnings.contains("E0008:" + Toolkit.format("warn.E0008", "li")));
+		return;
+	}
+
+	// ======================================================================
+	// 要素内テキストのテスト
+	// ======================================================================
+	/**
+	 * 長大なテキストが一定の長さに分割して通知され、連結すると元のテキストと一致することを
+	 * 確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testLargeText() throws Exception{
+		StringBuilder text = new StringBuilder();
+		for(int i=0; i<10000; i++){
+			text.append("line ").append(i).append(" &amp; more\n");
+		}
+		String expected = text.toString().replace("&amp;", "&");
+		XMLStreamReader in = newReader("<html><title>" + text + "</title></html>", null);
+		assertEquals(XMLStreamConstants.START_ELEMENT, in.nextTag());
+		assertEquals(XMLStreamConstants.START_ELEMENT, in.nextTag());
+
+		// 1 つのテキストイベントの長さは制限されている
+		assertEquals(XMLStreamConstants.CHARACTERS, in.next());
+		assertTrue(in.getTextLength() < expected.length());
+		String first = in.getText();
+		assertEquals(expected, first + readText(in));
+		assertEquals(XMLStreamConstants.END_ELEMENT, in.getEventType());
+		assertEquals("title", in.getLocalName());
+		in.close();
+
+		// 文字配列による参照は内部バッファを再利用する
+		in = newReader("<html><title>" + text + "</title></html>", null);
+		in.nextTag();
+		in.nextTag();
+		StringBuilder buffer = new StringBuilder();
+		StringBuilder copied = new StringBuilder();
+		char[] chars = null;
+		char[] target = new char[7];
+		while(in.next() == XMLStreamConstants.CHARACTERS){
+			char[] c = in.getTextCharacters();
+			if(chars != null && c.length == chars.length){
+				assertSame(chars, c);
+			}
+			chars = c;
+			buffer.append(c, in.getTextStart(), in.getTextLength());
+			for(int i=0; i<in.getTextLength(); i+=target.length){
+				int len = in.getTextCharacters(i, target, 0, target.length);
+				copied.append(target, 0, len);
+			}
+		}
+		assertEquals(expected, buffer.toString());
+		assertEquals(expected, copied.toString());
+		in.close();
+		return;
+	}
+
+	// ======================================================================
+	// 選択のテスト
+	// ======================================================================
+	/**
+	 * 登録したパスに一致する要素と属性のみが通知されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testSelector() throws Exception{
+		String html = "<html><head><title>Title</title>"
+			+ "<meta name=description content=desc><meta charset=utf-8></head>"
+			+ "<body><div><a href=/a>A</a><p>x<a href=/b>B</a></div><a name=n>N</a></body></html>";
+		StreamSelector selector = new StreamSelector();
+		selector.add("/html/head/title");
+		selector.add("//meta/@content");
+		selector.add("//a/@href");
+		selector.add("/html/body/div//a");
+		final List<String> result = new ArrayList<String>();
+		selector.select(newReader(html, null), new StreamSelector.Handler(){
+			/** @param path @param node */
+			public void selected(String path, Node node) {
+				if(node instanceof Attr){
+					result.add(path + "=" + ((Attr)node).getValue());
+				} else {
+					result.add(path + "=" + ((Element)node).getTagName() + ":" + node.getTextContent());
+				}
+				return;
+			}
+		});
+		assertEquals(Arrays.asList(
+			"/html/head/title=title:Title",
+			"//meta/@content=desc",
+			"//a/@href=/a",
+			"/html/body/div//a=a:A",
+			"//a/@href=/b",
+			"/html/body/div//a=a:B"), result);
+		return;
+	}
+
+	// ======================================================================
+	// 部分木の外の属性選択テスト
+	// ======================================================================
+	/**
+	 * 要素の部分木の外で一致した属性がリーダーから直接作成され、同じ属性に一致した複数の
+	 * パスには同じ属性ノードが通知されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testAttributeSelection() throws Exception{
+		int n = 3000;
+		StringBuilder html = new StringBuilder("<html><body>");
+		for(int i=0; i<n; i++){
+			html.append("<p a=").append(i).append(" b=x>");
+		}
+		StreamSelector selector = new StreamSelector();
+		selector.add("//p/@*");
+		selector.add("//p/@a");
+		final List<Attr> all = new ArrayList<Attr>();
+		final List<Attr> a = new ArrayList<Attr>();
+		selector.select(newReader(html.toString(), null), new StreamSelector.Handler(){
+			/** @param path @param node */
+			public void selected(String path, Node node) {
+				(path.equals("//p/@a")? a: all).add((Attr)node);
+				return;
+			}
+		});
+		assertEquals(n * 2, all.size());
+		assertEquals(n, a.size());
+		for(int i=0; i<n; i++){
+			assertEquals("a", all.get(i * 2).getName());
+			assertEquals("b", all.get(i * 2 + 1).getName());
+			assertEquals("x", all.get(i * 2 + 1).getValue());
+			assertEquals(String.valueOf(i), a.get(i).getValue());
+			assertSame(all.get(i * 2), a.get(i));
+			assertNull(a.get(i).getOwnerElement());
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 選択した部分木のテスト
+	// ======================================================================
+	/**
+	 * 入れ子になった一致が内側から通知され、外側の部分木が内側を含むことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testNestedSelection() throws Exception{
+		StreamSelector selector = new StreamSelector();
+		selector.add("//div");
+		final List<Node> result = new ArrayList<Node>();
+		selector.select(newReader("<div id=1>a<div id=2>b<br></div><!--c--></div>", null), new StreamSelector.Handler(){
+			/** @param path @param node */
+			public void selected(String path, Node node) {
+				result.add(node);
+				return;
+			}
+		});
+		assertEquals(2, result.size());
+		assertEquals("2", ((Element)result.get(0)).getAttribute("id"));
+		Element outer = (Element)result.get(1);
+		assertEquals("1", outer.getAttribute("id"));
+		assertSame(outer, outer.getOwnerDocument().getDocumentElement());
+		assertSame(result.get(0), outer.getChildNodes().item(1));
+		assertEquals(Node.COMMENT_NODE, outer.getLastChild().getNodeType());
+
+		try{
+			selector.add("div");
+			fail();
+		} catch(IllegalArgumentException ex){/* */}
+		try{
+			selector.add("//@href/a");
+			fail();
+		} catch(IllegalArgumentException ex){/* */}
+		return;
+	}
+
+	// ======================================================================
+	// 入れ子の上限のテスト
+	// ======================================================================
+	/**
+	 * ファクトリに設定した入れ子の上限が適用され、上限を超えた要素の終了タグが上位の同名の
+	 * 要素を終了しないことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testMaxElementDepth() throws Exception{
+		StringBuilder html = new StringBuilder("<html><body id=\"body\">");
+		for(int i=0; i<40; i++){
+			html.append("<div id=\"d").append(i).append("\">");
+		}
+		for(int i=39; i>=0; i--){
+			html.append("</div><span id=\"s").append(i).append("\"></span>");
+		}
+		HTMLParserFactory factory = new HTMLParserFactory();
+		factory.setFeature(HTMLDocumentBuilderFactory.FEATURE_HTML_OPTIMIZE, true);
+		assertEquals(512, factory.getMaxElementDepth());
+		factory.setMaxElementDepth(20);
+		XMLStreamReader in = factory.newXMLStreamReader(new InputSource(new StringReader(html.toString())), null);
+
+		// html, body を含めて 20 要素が開かれるため d17 より内側は d17 の子となる
+		Map<String,String> parent = new HashMap<String,String>();
+		LinkedList<String> stack = new LinkedList<String>();
+		while(in.hasNext()){
+			int type = in.next();
+			if(type == XMLStreamConstants.START_ELEMENT){
+				String id = in.getAttributeValue(null, "id");
+				if(id != null && ! stack.isEmpty()){
+					parent.put(id, stack.getLast());
+				}
+				stack.add(String.valueOf(id));
+			} else if(type == XMLStreamConstants.END_ELEMENT){
+				stack.removeLast();
+			}
+		}
+		in.close();
+		for(int i=0; i<40; i++){
+			String expected = (i == 0)? "body": ("d" + Math.min(i - 1, 17));
+			assertEquals("d" + i, expected, parent.get("d" + i));
+			assertEquals("s" + i, expected, parent.get("s" + i));
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 入れ子の上限と対応しない終了タグのテスト
+	// ======================================================================
+	/**
+	 * 入れ子の上限を超えた多数の要素の後に対応する要素のない終了タグが続いても、終了タグごと
+	 * の処理が上限を超えた要素の数に依存しないことを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test(timeout=10000)
+	public void testMaxElementDepthStrayEndTags() throws Exception{
+		int n = 100000;
+		StringBuilder html = new StringBuilder("<html><body>");
+		for(int i=0; i<520; i++){
+			html.append("<div>");
+		}
+		for(int i=0; i<n; i++){
+			html.append((i % 2 == 0)? "<font>": "<b>");
+		}
+		for(int i=0; i<n; i++){
+			html.append("</x>");
+		}
+		html.append("</font><p></p>");
+
+		// 詳細ログの出力を抑止して計測
+		Logger logger = Logger.getLogger("org.koiroha.xml");
+		Level level = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		try{
+			XMLStreamReader in = newReader(html.toString(), null);
+			int depth = 0;
+			int fonts = 0;
+			int p = -1;
+			while(in.hasNext()){
+				int type = in.next();
+				if(type == XMLStreamConstants.START_ELEMENT){
+					depth ++;
+					if(in.getLocalName().equals("font")){
+						fonts ++;
+					} else if(in.getLocalName().equals("p")){
+						p = depth;
+					}
+				} else if(type == XMLStreamConstants.END_ELEMENT){
+					depth --;
+				}
+			}
+			in.close();
+			assertEquals(n / 2, fonts);
+			assertEquals(512 + 1, p);
+		} finally {
+			logger.setLevel(level);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 要素構造の参照
+	// ======================================================================
+	/**
+	 * 指定された要素以下の要素を深さと名前の組として文書順に参照します。
+	 * <p>
+	 * @param elem 要素
+	 * @param depth 要素の深さ
+	 * @param list 格納先のリスト
+	 */
+	private static void structure(Element elem, int depth, List<String> list){
+		if(elem == null){
+			return;
+		}
+		list.add(depth + ":" + Toolkit.getName(elem));
+		for(Node n=elem.getFirstChild(); n!=null; n=n.getNextSibling()){
+			if(n instanceof Element){
+				structure((Element)n, depth + 1, list);
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// テキストの読み込み
+	// ======================================================================
+	/**
+	 * 要素の終了までのテキストを読み込みます。
+	 * <p>
+	 * @param in リーダー
+	 * @return テキスト
+	 * @throws XMLStreamException 読み込みに失敗した場合
+	 */
+	private static String readText(XMLStreamReader in) throws XMLStreamException{
+		StringBuilder buffer = new StringBuilder();
+		while(in.next() == XMLStreamConstants.CHARACTERS){
+			buffer.append(in.getText());
+		}
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// リーダーの構築
+	// ======================================================================
+	/**
+	 * 仕様パターンと同じ設定のプル型リーダーを構築します。
+	 * <p>
+	 * @param html HTML
+	 * @param warnings 警告の格納先
+	 * @return リーダー
+	 * @throws XMLStreamException リーダーを構築できない場合
+	 */
+	private static XMLStreamReader newReader(String html, final List<String> warnings) throws XMLStreamException{
+		HTMLParserFactory factory = new HTMLParserFactory();
+		try{
+			factory.setFeature(HTMLDocumentBuilderFactory.FEATURE_HTML_OPTIMIZE, true);
+		} catch(SAXException ex){
+			throw new IllegalStateException(ex);
+		}
+		return factory.newXMLStreamReader(new InputSource(new StringReader(html)), new DefaultHandler2(){
+			/** @param e */
+			@Override
+			public void warning(SAXParseException e) {
+				if(warnings != null){
+					warnings.add(e.getMessage());
+				}
+				return;
+			}
+		});
+	}
+
+}
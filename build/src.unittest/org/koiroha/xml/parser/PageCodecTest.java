@@ -0,0 +1,134 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import org.koiroha.xml.TestCase;
+import org.xml.sax.SAXParseException;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// PageCodecTest: PageCodec テストケース
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 解析済みページのバイナリ表現のテストケースです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class PageCodecTest extends TestCase{
+
+	// ======================================================================
+	// 変換と復元のテスト
+	// ======================================================================
+	/**
+	 * 変換したバイナリから全てのフィールドが復元されることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testRoundTrip() throws Exception{
+		SAXParseException[] warn = {
+			new SAXParseException("unclosed element", null, "http://localhost/", 3, 14),
+			new SAXParseException("文字化け", "-//W3C//DTD HTML 4.01//EN", null, -1, -1),
+		};
+		ParsedPage page = new ParsedPage(new URL("http://localhost/index.html"), "タイトル", null,
+			Charset.forName("Shift_JIS"), true, "<title>タイトル</title>", null, warn);
+		IOException ex = new IOException("connection reset");
+		page.setException(ex);
+
+		byte[] binary = PageCodec.encode(page);
+		assertEquals('X', binary[0]);
+		assertEquals('P', binary[1]);
+
+		ParsedPage p = PageCodec.decode(binary);
+		assertEquals(page.getURL(), p.getURL());
+		assertEquals(page.getTitle(), p.getTitle());
+		assertNull(p.getDoctype());
+		assertEquals(page.getCharset(), p.getCharset());
+		assertTrue(p.isMojibake());
+		assertEquals(page.getContent(), p.getContent());
+		assertNull(p.getParsedContent());
+
+		assertEquals(warn.length, p.getWarnings().length);
+		for(int i=0; i<warn.length; i++){
+			SAXParseException w = p.getWarnings()[i];
+			assertEquals(warn[i].getMessage(), w.getMessage());
+			assertEquals(warn[i].getPublicId(), w.getPublicId());
+			assertEquals(warn[i].getSystemId(), w.getSystemId());
+			assertEquals(warn[i].getLineNumber(), w.getLineNumber());
+			assertEquals(warn[i].getColumnNumber(), w.getColumnNumber());
+		}
+
+		Throwable t = p.getException();
+		assertTrue(t instanceof PageCodec.StoredException);
+		assertEquals(ex.toString(), t.toString());
+		assertEquals(ex.getStackTrace().length, t.getStackTrace().length);
+		assertEquals(ex.getStackTrace()[0].toString(), t.getStackTrace()[0].toString());
+
+		// 復元した例外を再び変換しても元のクラス名が維持される
+		assertEquals(ex.toString(), PageCodec.decode(PageCodec.encode(p)).getException().toString());
+		return;
+	}
+
+	// ======================================================================
+	// 以前の形式の復元テスト
+	// ======================================================================
+	/**
+	 * Java シリアライズにより保存されたバイナリを復元できることを確認します。
+	 * <p>
+	 * @throws Exception テストに失敗した場合
+	 */
+	@Test
+	public void testLegacy() throws Exception{
+		ParsedPage page = new ParsedPage(new URL("http://localhost/"), "title", "html", null, false, "content", "parsed", null);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(baos);
+		out.writeObject(page);
+		out.close();
+
+		ParsedPage p = PageCodec.decode(baos.toByteArray());
+		assertEquals(page.getURL(), p.getURL());
+		assertEquals("title", p.getTitle());
+		assertEquals("parsed", p.getParsedContent());
+		assertNull(p.getWarnings());
+		return;
+	}
+
+	// ======================================================================
+	// 不正な形式のテスト
+	// ======================================================================
+	/**
+	 * 不正な形式のバイナリで例外が発生することを確認します。
+	 * <p>
+	 */
+	@Test
+	public void testInvalid(){
+		byte[][] invalid = {
+			{ },
+			{ 'X', 'Q', 1 },
+			{ 'X', 'P', 99 },
+			{ 'X', 'P', 1, 0x00, 0x01 },
+		};
+		for(byte[] b: invalid){
+			try{
+				PageCodec.decode(b);
+				fail();
+			} catch(IllegalArgumentException ex){/* */}
+		}
+		return;
+	}
+
+}
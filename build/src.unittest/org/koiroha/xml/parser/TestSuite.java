@@ -30,11 +30,16 @@ import org.junit.runners.Suite.SuiteClasses;
 	HTMLParserFactoryTest.class,
 	HTMLParserTest.class,
 	LFReaderTest.class,
+	LocatorReaderTest.class,
 	PositionTest.class,
 	ToolkitTest.class,
 	SpecPatternTest.class,
 	LooseXMLReaderTest.class,
+	CompactDocumentTest.class,
+	LooseXMLStreamReaderTest.class,
 	HTMLDocumentBuilderFactoryTest.class,
+	PageCodecTest.class,
+	CrawlEngineTest.class,
 })
 public class TestSuite {
 	/* */
@@ -0,0 +1,460 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml;
+
+import java.io.IOException;
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// EntityTable: 実体参照テーブル
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 文字実体参照の名前と値を保持する不変のテーブルです。名前はトライ木に展開されており、文字列を
+ * 切り出すことなく任意の文字シーケンス上の範囲から値を参照する事が出来ます。
+ * <p>
+ * インスタンスは不変であるため全てのパーサとスレッドで共有できます。定義を追加/削除した
+ * テーブルが必要な場合は {@link #define(String, String)} または
+ * {@link #undefine(String)} で新しいインスタンスを作成してください。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public final class EntityTable {
+
+	// ======================================================================
+	// XML 実体参照
+	// ======================================================================
+	/**
+	 * XML で定義されている "lt", "gt", "amp", "quot", "apos" の実体参照テーブルです。
+	 * <p>
+	 */
+	public static final EntityTable XML;
+
+	// ======================================================================
+	// HTML 実体参照
+	// ======================================================================
+	/**
+	 * HTML 4.01 で定義されている実体参照テーブルです。"apos" は含まれません。
+	 * <p>
+	 */
+	public static final EntityTable HTML;
+
+	// ======================================================================
+	// HTML5 実体参照
+	// ======================================================================
+	/**
+	 * HTML5 で定義されている全ての名前付き文字参照のテーブルです。';' で終了しない互換用の
+	 * 名前は含まれません。
+	 * <p>
+	 */
+	public static final EntityTable HTML5;
+
+	// ======================================================================
+	// 数値参照の最大文字数
+	// ======================================================================
+	/**
+	 * {@link #unescape(Appendable, CharSequence)} で数値参照として認識する '#' を
+	 * 含む最大文字数です。
+	 * <p>
+	 */
+	private static final int MAX_NUMERIC_REFERENCE = 16;
+
+	// ======================================================================
+	// スタティックイニシャライザ
+	// ======================================================================
+	/**
+	 * 定義済みのテーブルを構築します。
+	 * <p>
+	 */
+	static{
+		Map<String,String> xml = new HashMap<String,String>();
+		xml.put("lt", "<");
+		xml.put("gt", ">");
+		xml.put("amp", "&");
+		xml.put("quot", "\"");
+		xml.put("apos", "\'");
+		XML = new EntityTable(xml);
+		HTML = new EntityTable(load("org.koiroha.xml.htmlentity"));
+		HTML5 = new EntityTable(load("org.koiroha.xml.html5entity"));
+	}
+
+	// ======================================================================
+	// 実体参照定義
+	// ======================================================================
+	/**
+	 * このテーブルが構築された実体参照の名前と値です。
+	 * <p>
+	 */
+	private final Map<String,String> entities;
+
+	// ======================================================================
+	// 子ノード開始位置
+	// ======================================================================
+	/**
+	 * ノードごとの子ノードへの遷移が {@link #edge} 上で開始する位置です。ノード i の遷移は
+	 * first[i] から first[i+1] の範囲に文字順で格納されています。
+	 * <p>
+	 */
+	private final int[] first;
+
+	// ======================================================================
+	// 遷移文字
+	// ======================================================================
+	/**
+	 * 子ノードへ遷移する文字です。
+	 * <p>
+	 */
+	private final char[] edge;
+
+	// ======================================================================
+	// 遷移先ノード
+	// ======================================================================
+	/**
+	 * {@link #edge} に対応する遷移先のノード番号です。
+	 * <p>
+	 */
+	private final int[] target;
+
+	// ======================================================================
+	// ノードの値
+	// ======================================================================
+	/**
+	 * ノードで名前が終了する場合の実体参照の値です。名前が終了しないノードは null です。
+	 * <p>
+	 */
+	private final String[] value;
+
+	// ======================================================================
+	// 最大文字数
+	// ======================================================================
+	/**
+	 * このテーブルに含まれる名前の最大文字数です。
+	 * <p>
+	 */
+	private final int maxNameLength;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 指定された名前と値のマップからトライ木を構築します。
+	 * <p>
+	 * @param entities 実体参照の名前と値
+	 */
+	private EntityTable(Map<String,String> entities) {
+		this.entities = Collections.unmodifiableMap(new HashMap<String,String>(entities));
+
+		// 名前を文字順に並べて木を構築
+		List<Node> nodes = new ArrayList<Node>();
+		Node root = new Node();
+		nodes.add(root);
+		int max = 0;
+		for(Map.Entry<String,String> e: new TreeMap<String,String>(entities).entrySet()){
+			String name = e.getKey();
+			Node node = root;
+			for(int i=0; i<name.length(); i++){
+				Node child = node.children.get(name.charAt(i));
+				if(child == null){
+					child = new Node();
+					node.children.put(name.charAt(i), child);
+				}
+				node = child;
+			}
+			node.value = e.getValue();
+			max = Math.max(max, name.length());
+		}
+
+		// 幅優先でノード番号を割り当てて配列に展開
+		for(int i=0; i<nodes.size(); i++){
+			nodes.get(i).id = i;
+			nodes.addAll(nodes.get(i).children.values());
+		}
+		this.first = new int[nodes.size() + 1];
+		this.edge = new char[nodes.size() - 1];
+		this.target = new int[nodes.size() - 1];
+		this.value = new String[nodes.size()];
+		int e = 0;
+		for(int i=0; i<nodes.size(); i++){
+			Node node = nodes.get(i);
+			first[i] = e;
+			value[i] = node.value;
+			for(Map.Entry<Character,Node> c: node.children.entrySet()){
+				edge[e] = c.getKey();
+				target[e] = c.getValue().id;
+				e ++;
+			}
+		}
+		first[nodes.size()] = e;
+		this.maxNameLength = max;
+		return;
+	}
+
+	// ======================================================================
+	// 値の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の実体参照に対する値を参照します。該当する実体参照が定義されていない場合は
+	 * null を返します。
+	 * <p>
+	 * @param name 実体参照の名前 ("quot", "lt" など)
+	 * @return 実体参照の値
+	 */
+	public String get(CharSequence name){
+		return get(name, 0, name.length());
+	}
+
+	// ======================================================================
+	// 値の参照
+	// ======================================================================
+	/**
+	 * 指定された文字シーケンスの範囲を実体参照の名前とみなして値を参照します。該当する実体参照
+	 * が定義されていない場合は null を返します。
+	 * <p>
+	 * @param text 文字シーケンス
+	 * @param begin 名前の開始位置
+	 * @param end 名前の終了位置
+	 * @return 実体参照の値
+	 */
+	public String get(CharSequence text, int begin, int end){
+		int node = 0;
+		for(int i=begin; i<end && node >= 0; i++){
+			node = next(node, text.charAt(i));
+		}
+		if(node < 0){
+			return null;
+		}
+		return value[node];
+	}
+
+	// ======================================================================
+	// 最大文字数の参照
+	// ======================================================================
+	/**
+	 * このテーブルに定義されている名前の最大文字数を参照します。
+	 * <p>
+	 * @return 名前の最大文字数
+	 */
+	public int getMaxNameLength(){
+		return maxNameLength;
+	}
+
+	// ======================================================================
+	// 実体参照の追加
+	// ======================================================================
+	/**
+	 * このテーブルに指定された実体参照を追加したテーブルを作成します。このインスタンスの内容は
+	 * 変更されません。
+	 * <p>
+	 * @param name 実体参照の名前
+	 * @param value 実体参照の値
+	 * @return 新しいテーブル
+	 */
+	public EntityTable define(String name, String value){
+		if(value.equals(entities.get(name))){
+			return this;
+		}
+		Map<String,String> map = new HashMap<String,String>(entities);
+		map.put(name, value);
+		return new EntityTable(map);
+	}
+
+	// ======================================================================
+	// 実体参照の削除
+	// ======================================================================
+	/**
+	 * このテーブルから指定された実体参照を削除したテーブルを作成します。このインスタンスの内容
+	 * は変更されません。
+	 * <p>
+	 * @param name 削除する実体参照の名前
+	 * @return 新しいテーブル
+	 */
+	public EntityTable undefine(String name){
+		if(! entities.containsKey(name)){
+			return this;
+		}
+		Map<String,String> map = new HashMap<String,String>(entities);
+		map.remove(name);
+		return new EntityTable(map);
+	}
+
+	// ======================================================================
+	// エスケープの解除
+	// ======================================================================
+	/**
+	 * 指定された文字列中の実体参照と数値参照をこのテーブルに基づいて解除して出力します。
+	 * 認識できない参照はそのまま出力されます。
+	 * <p>
+	 * @param out エスケープを解除した文字列の出力先
+	 * @param text エスケープを解除する文字列
+	 * @throws IOException 出力に失敗した場合
+	 */
+	public void unescape(Appendable out, CharSequence text) throws IOException{
+		int length = text.length();
+		int begin = 0;
+		int head = 0;
+		while(head < length){
+
+			// エンティティの開始位置を参照
+			if(text.charAt(head) != '&'){
+				head ++;
+				continue;
+			}
+
+			// 名前の最大文字数の範囲でエンティティの終了位置を参照
+			int max = (head + 1 < length && text.charAt(head + 1) == '#')? MAX_NUMERIC_REFERENCE: maxNameLength;
+			int end = Math.min(length, head + 1 + max + 1);
+			int tail = head + 1;
+			while(tail < end && text.charAt(tail) != ';' && text.charAt(tail) != '&'){
+				tail ++;
+			}
+			if(tail == end || text.charAt(tail) != ';'){
+				head = tail;
+				continue;
+			}
+
+			// エンティティを変換
+			String str = get(text, head + 1, tail);
+			int ch = (str == null)? getCharacterReference(text, head + 1, tail): -1;
+			if(str == null && ch < 0){
+				head = tail + 1;
+				continue;
+			}
+
+			// エンティティの前方の文字列と変換した文字を追加
+			out.append(text, begin, head);
+			if(str != null){
+				out.append(str);
+			} else {
+				out.append((char)ch);
+			}
+			begin = tail + 1;
+			head = begin;
+		}
+
+		// 残った文字列を出力
+		if(begin < length){
+			out.append(text, begin, length);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 数値参照の解析
+	// ======================================================================
+	/**
+	 * 指定された文字シーケンスの範囲を "#1024" や "#x0A" のような数値参照の名前とみなして
+	 * 対応する文字を参照します。数値参照として認識できない場合や値が 0xFFFF を越える場合は
+	 * 負の値を返します。
+	 * <p>
+	 * @param text 文字シーケンス
+	 * @param begin 名前の開始位置 ('#' の位置)
+	 * @param end 名前の終了位置
+	 * @return 数値参照に対応する文字
+	 */
+	public static int getCharacterReference(CharSequence text, int begin, int end){
+		if(end - begin < 2 || text.charAt(begin) != '#'){
+			return -1;
+		}
+		int radix = 10;
+		int i = begin + 1;
+		if(text.charAt(i) == 'x' || text.charAt(i) == 'X'){
+			radix = 16;
+			i ++;
+			if(i == end){
+				return -1;
+			}
+		}
+		int ch = 0;
+		for(/* */; i<end; i++){
+			int digit = Character.digit(text.charAt(i), radix);
+			if(digit < 0){
+				return -1;
+			}
+			ch = ch * radix + digit;
+			if(ch > Character.MAX_VALUE){
+				return -1;
+			}
+		}
+		return ch;
+	}
+
+	// ======================================================================
+	// 遷移先の参照
+	// ======================================================================
+	/**
+	 * 指定されたノードから文字で遷移するノードを参照します。遷移先が存在しない場合は負の値を
+	 * 返します。
+	 * <p>
+	 * @param node ノード番号
+	 * @param ch 遷移する文字
+	 * @return 遷移先のノード番号
+	 */
+	private int next(int node, char ch){
+		int low = first[node];
+		int high = first[node + 1] - 1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			if(edge[mid] < ch){
+				low = mid + 1;
+			} else if(edge[mid] > ch){
+				high = mid - 1;
+			} else {
+				return target[mid];
+			}
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// リソースの読み込み
+	// ======================================================================
+	/**
+	 * 指定されたリソースバンドルから実体参照の定義を読み込みます。値はカンマで区切られた 10
+	 * 進数の Unicode コードポイントです。
+	 * <p>
+	 * @param name リソースバンドル名
+	 * @return 実体参照の名前と値
+	 */
+	private static Map<String,String> load(String name){
+		Map<String,String> map = new HashMap<String,String>();
+		ResourceBundle res = ResourceBundle.getBundle(name);
+		Enumeration<String> en = res.getKeys();
+		while(en.hasMoreElements()){
+			String key = en.nextElement();
+			StringBuilder buffer = new StringBuilder();
+			for(String cp: res.getString(key).split(",")){
+				buffer.appendCodePoint(Integer.parseInt(cp.trim()));
+			}
+			map.put(key, buffer.toString().intern());
+		}
+		return map;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Node: 構築用ノード
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * トライ木を配列に展開する前の構築用ノードです。
+	 * <p>
+	 */
+	private static class Node {
+
+		/** 文字順に並べた子ノード */
+		public final SortedMap<Character,Node> children = new TreeMap<Character,Node>();
+
+		/** 名前が終了する場合の値 */
+		public String value = null;
+
+		/** ノード番号 */
+		public int id = 0;
+
+	}
+
+}
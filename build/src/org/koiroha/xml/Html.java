@@ -12,7 +12,6 @@ package org.koiroha.xml;
 import java.io.*;
 import java.util.*;
 import java.util.logging.Logger;
-import java.util.regex.*;
 
 import org.koiroha.xml.parser.HTMLDocumentBuilderFactory;
 import org.xml.sax.InputSource;
@@ -38,15 +37,6 @@ public final class Html {
 	 */
 	private static final Logger logger = Logger.getLogger(Html.class.getName());
 
-	// ======================================================================
-	// エンティティ → 文字マップ
-	// ======================================================================
-	/**
-	 * エンティティを文字に変換するためのマップです。
-	 * <p>
-	 */
-	private static final Map<String,Character> ENTITY2CHAR = new HashMap<String, Character>();
-
 	// ======================================================================
 	// 文字 → エンティティマップ
 	// ======================================================================
@@ -56,24 +46,6 @@ public final class Html {
 	 */
 	private static final Map<Character,String> CHAR2ENTITY = new HashMap<Character, String>();
 
-	// ======================================================================
-	// 数値参照パターン
-	// ======================================================================
-	/**
-	 * 数値参照のパターンです。
-	 * <p>
-	 */
-	private static final Pattern NUM10_REF = Pattern.compile("&#([\\d]{1,5});");
-
-	// ======================================================================
-	// 数値参照パターン
-	// ======================================================================
-	/**
-	 * 数値参照のパターンです。
-	 * <p>
-	 */
-	private static final Pattern NUM16_REF = Pattern.compile("&#[xX]([\\da-fA-F]{1,4});");
-
 	// ======================================================================
 	// スタティックイニシャライザ
 	// ======================================================================
@@ -91,7 +63,6 @@ public final class Html {
 			String value = res.getString(key);
 			String entity = "&" + key + ";";
 			Character ch = Character.valueOf((char)Integer.parseInt(value));
-			ENTITY2CHAR.put(entity, ch);
 			CHAR2ENTITY.put(ch, entity);
 		}
 	}
@@ -135,30 +106,13 @@ public final class Html {
 		}
 
 		// 実体参照から文字を取得
-		Character ch = ENTITY2CHAR.get(entity);
-		if(ch != null){
-			return ch.charValue();
-		}
-
-		// 数値参照を解除 (10進数)
-		Matcher m = NUM10_REF.matcher(entity);
-		if(m.matches()){
-			int num = Integer.parseInt(m.group(1));
-			if(num >= Character.MIN_VALUE && num <= Character.MAX_VALUE){
-				return num;
-			}
-		}
-
-		// 数値参照を解除 (16進数)
-		m = NUM16_REF.matcher(entity);
-		if(m.matches()){
-			int num = Integer.parseInt(m.group(1), 16);
-			if(num >= Character.MIN_VALUE && num <= Character.MAX_VALUE){
-				return num;
-			}
+		String value = EntityTable.HTML.get(entity, 1, entity.length() - 1);
+		if(value != null){
+			return value.charAt(0);
 		}
 
-		return -1;
+		// 数値参照を解除
+		return EntityTable.getCharacterReference(entity, 1, entity.length() - 1);
 	}
 
 	// ======================================================================
@@ -251,19 +205,7 @@ public final class Html {
 	 * @throws IOException 出力に失敗した場合
 	 */
 	public static void unescape(Appendable out, CharSequence text) throws IOException{
-		Xml.unescape(out, text, new Xml.EntityMapper(){
-			@Override
-			public void map(Appendable out, String entity) throws IOException {
-				entity = "&" + entity + ";";
-				int ch = getCharacter(entity);
-				if(ch < 0){
-					out.append(entity);
-				} else {
-					out.append((char)ch);
-				}
-				return;
-			}
-		});
+		EntityTable.HTML.unescape(out, text);
 		return;
 	}
 
@@ -217,25 +217,7 @@ public final class Xml {
 	 * @throws IOException 文字列の出力に失敗した場合
 	 */
 	public static void unescape(Appendable out, CharSequence text) throws IOException{
-		Xml.unescape(out, text, new Xml.EntityMapper(){
-			@Override
-			public void map(Appendable out, String entity) throws IOException {
-				if(entity.equals("amp")){
-					out.append('&');
-				} else if(entity.equals("lt")){
-					out.append('<');
-				} else if(entity.equals("gt")){
-					out.append('>');
-				} else if(entity.equals("quot")){
-					out.append('\"');
-				} else if(entity.equals("apos")){
-					out.append('\'');
-				} else {
-					super.map(out, entity);
-				}
-				return;
-			}
-		});
+		EntityTable.XML.unescape(out, text);
 		return;
 	}
 
@@ -278,116 +260,4 @@ public final class Xml {
 		return Charset.forName(charset);
 	}
 
-	// ======================================================================
-	// 文字のエスケープ解除
-	// ======================================================================
-	/**
-	 * 指定された文字列を XML エンコードを解除します。
-	 * <p>
-	 * @param out エスケープした文字列の格納先
-	 * @param text エスケープを解除する文字列
-	 * @param mapper エンティティマッパー
-	 * @throws IOException 文字列の出力に失敗した場合
-	 */
-	static void unescape(Appendable out, CharSequence text, EntityMapper mapper) throws IOException{
-
-		int begin = 0;
-		while(begin < text.length()){
-
-			// エンティティの開始位置を参照
-			int head = indexOf(text, begin, '&');
-			if(head < 0){
-				break;
-			}
-
-			// エンティティの終了位置を参照
-			// TODO 文字数を限定すると効率が良くなる
-			int tail = indexOf(text, head+1, ';');
-			if(tail < 0){
-				break;
-			}
-
-			// エンティティの前方の文字列を追加
-			out.append(text, begin, head);
-
-			// エンティティを追加
-			String entity = text.subSequence(head + 1, tail).toString();
-			mapper.map(out, entity);
-
-			begin = tail + 1;
-		}
-
-		// 残った文字列を出力
-		if(begin < text.length()){
-			out.append(text, begin, text.length());
-		}
-		return;
-	}
-
-	// ======================================================================
-	// インデックスの参照
-	// ======================================================================
-	/**
-	 * 指定された文字の出現位置を参照します。文字が見付からない場合は負の値を返します。
-	 * <p>
-	 * @param text 文字シーケンス
-	 * @param begin 検索の開始位置
-	 * @param ch 検索する文字
-	 * @return 文字の出現位置
-	 */
-	private static int indexOf(CharSequence text, int begin, char ch){
-		for(int i=begin; i<text.length(); i++){
-			if(text.charAt(i) == ch){
-				return i;
-			}
-		}
-		return -1;
-	}
-
-	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-	// EntityMapper: エンティティマッパー
-	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
-	/**
-	 * 実体参照を文字に変換するマッパーインターフェースです。
-	 * <p>
-	 */
-	static class EntityMapper {
-
-		// ==================================================================
-		// エンティティのマップ
-		// ==================================================================
-		/**
-		 * 指定されたエンティティに対応する文字列を出力します。
-		 * <p>
-		 * @param out 出力先
-		 * @param entity エンティティ
-		 * @throws IOException 出力に失敗した場合
-		 */
-		public void map(Appendable out, String entity) throws IOException{
-			if(entity.length() > 1 && entity.charAt(0) == '#'){
-				boolean hex = (entity.length() > 2 && Character.toLowerCase(entity.charAt(1)) == 'x');
-				int ch = 0;
-				try{
-					if(hex){
-						ch = Integer.parseInt(entity.substring(2), 16);
-					} else {
-						ch = Integer.parseInt(entity.substring(1), 10);
-					}
-					if(ch < Character.MIN_VALUE || ch > Character.MAX_VALUE){
-						throw new NumberFormatException(String.valueOf(ch));
-					}
-					out.append((char)ch);
-				} catch(NumberFormatException ex){
-					logger.fine("invalid number entity reference: &" + entity + ";");
-					out.append('&').append(entity).append(';');
-				}
-			} else {
-				logger.fine("unrecognized entity character reference: &" + entity + ";");
-				out.append('&').append(entity).append(';');
-			}
-			return;
-		}
-
-	}
-
 }
@@ -10,6 +10,8 @@
 package org.koiroha.xml.parser;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.regex.*;
@@ -41,6 +43,15 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	 */
 	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(AbstractSAXParserFactory.class.getName());
 
+	// ======================================================================
+	// XML 宣言パターン
+	// ======================================================================
+	/**
+	 * 文字列から XML 宣言を検出するためのパターンです。
+	 * <p>
+	 */
+	private static final Pattern XML_DECLARATION = Pattern.compile("<\\?xml\\s+(.*)\\?>", Pattern.DOTALL);
+
 	// ======================================================================
 	// パーサ機能
 	// ======================================================================
@@ -68,6 +79,16 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	 */
 	private Schema schema = null;
 
+	// ======================================================================
+	// 旧形式の推測メソッド
+	// ======================================================================
+	/**
+	 * サブクラスが配列または文字列を引数とする旧形式の
+	 * guessEncodingFromPrereadSampling() をオーバーライドしている場合に true です。
+	 * <p>
+	 */
+	private final boolean legacyGuess;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -76,6 +97,7 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	 * <p>
 	 */
 	protected AbstractSAXParserFactory() {
+		this.legacyGuess = overridesLegacyGuess(getClass());
 		return;
 	}
 	// ======================================================================
@@ -247,7 +269,7 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	 * 指定されたバイナリストリームの内容から文字エンコーディングを決定し、解析に使用可能な入力
 	 * ソースとして返します。この機能はストリームを先読みすることに注意してください。メソッドは
 	 * ストリームから最大 maxLength バイトのバイナリデータを読み込み {@link
-	 * #guessEncodingFromPrereadSampling(byte[], int)} に渡してエンコーディングを
+	 * #guessEncodingFromPrereadSampling(ByteBuffer)} に渡してエンコーディングを
 	 * 推測します。先読みしたバイナリデータは {@link SequenceInputStream} で元の
 	 * ストリームと連結され入力ストリームに設定されます。
 	 * <p>
@@ -279,28 +301,130 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 			}
 			length += len;
 		}
+
+		// 先読みした内容からエンコーディングを決定
+		ByteBuffer sample = ByteBuffer.wrap(preread, 0, length);
+		String encoding = getEncoding(sample, charset);
 		in = new SequenceInputStream(
-				new ByteArrayInputStream(preread, 0, length), in);
+				new ByteArrayInputStream(preread, sample.position(), sample.remaining()), in);
+
+		// 入力ソースを構築して返す
+		logger.finest("creating text reader: " + encoding);
+		Reader r = new InputStreamReader(in, encoding);
+		InputSource is = new InputSource(r);
+		is.setEncoding(encoding);
+		return is;
+	}
+
+	// ======================================================================
+	// 内容からの入力ソースの参照
+	// ======================================================================
+	/**
+	 * 指定されたバッファの内容から文字エンコーディングを決定し、解析に使用可能な入力ソースと
+	 * して返します。バッファの現在位置から最大 maxLength バイトを複製せずに直接参照して
+	 * {@link #guessEncodingFromPrereadSampling(ByteBuffer)} でエンコーディングを
+	 * 推測します。
+	 * <p>
+	 * 返値の入力ソースに設定される文字ストリームはバッファの内容を呼び出し側の文字配列へ直接
+	 * デコードします。文字ストリームはバッファの位置を変更しながら読み込みを行うため、解析が
+	 * 終了するまでバッファを操作しないでください。
+	 * <p>
+	 * @param buffer 入力バッファ
+	 * @param charset デフォルトのエンコーディング
+	 * @param maxLength エンコーディングの推測に使用する最大バイトサイズ
+	 * @return 推測した入力ソース
+	 * @throws UnsupportedEncodingException 指定された charset が認識できない場合
+	 * @see #guessInputSource(InputStream, String, int)
+	 */
+	public InputSource guessInputSource(ByteBuffer buffer, String charset, int maxLength) throws UnsupportedEncodingException{
+
+		// バッファの先頭部分からエンコーディングを決定
+		ByteBuffer sample = buffer.duplicate();
+		sample.limit(sample.position() + Math.min(sample.remaining(), maxLength));
+		String encoding = getEncoding(sample, charset);
+		buffer.position(sample.position());
+
+		// 入力ソースを構築して返す
+		logger.finest("creating buffer reader: " + encoding);
+		Reader r = new ByteBufferReader(buffer, Charset.forName(encoding));
+		InputSource is = new InputSource(r);
+		is.setEncoding(encoding);
+		return is;
+	}
+
+	// ======================================================================
+	// 内容からの入力ソースの参照
+	// ======================================================================
+	/**
+	 * 指定されたファイルの内容から文字エンコーディングを決定し、解析に使用可能な入力ソースと
+	 * して返します。ファイルはメモリマップされ {@link #guessInputSource(ByteBuffer,
+	 * String, int)} によってヒープへの複製を行わずにデコードされます。メモリマップできない
+	 * 2GB を超えるファイルはストリームとして読み込まれます。
+	 * <p>
+	 * 返値の入力ソースには SYSTEM ID としてファイルの URI が設定されています。
+	 * <p>
+	 * @param file 入力ファイル
+	 * @param charset デフォルトのエンコーディング
+	 * @param maxLength エンコーディングの推測に使用する最大バイトサイズ
+	 * @return 推測した入力ソース
+	 * @throws IOException ファイルの読み込みに失敗した場合
+	 * @throws UnsupportedEncodingException 指定された charset が認識できない場合
+	 */
+	public InputSource guessInputSource(File file, String charset, int maxLength) throws IOException{
+		InputSource is = null;
+		FileInputStream in = new FileInputStream(file);
+		try{
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE){
+				logger.finest("file too large to map, reading as stream: " + file + " (" + size + " bytes)");
+				is = guessInputSource(in, charset, maxLength);
+				in = null;
+			} else {
+				logger.finest("mapping file: " + file + " (" + size + " bytes)");
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				is = guessInputSource(buffer, charset, maxLength);
+			}
+		} finally {
+			Toolkit.close(in);	// マップ済みの領域はチャネルのクローズ後も有効
+		}
+		is.setSystemId(file.toURI().toString());
+		return is;
+	}
+
+	// ======================================================================
+	// エンコーディングの決定
+	// ======================================================================
+	/**
+	 * 指定されたサンプルからエンコーディングを決定します。内容からエンコーディングを決定でき
+	 * ない場合はデフォルトのエンコーディングを使用します。サンプルが UTF-8 の BOM で開始して
+	 * いる場合、サンプルの位置は BOM の直後に移動します。
+	 * <p>
+	 * @param sample 先読みしたサンプル
+	 * @param charset デフォルトのエンコーディング
+	 * @return 決定したエンコーディング
+	 * @throws UnsupportedEncodingException 指定された charset が認識できない場合
+	 */
+	private String getEncoding(ByteBuffer sample, String charset) throws UnsupportedEncodingException{
 
 		// 先読みした内容からエンコーディングを決定
-		String encoding = guessEncodingFromPrereadSampling(preread, length);
+		String encoding = guessEncodingFromPrereadSampling(sample);
 
 		// ストリームの内容からエンコーディングを決定できない場合は指定されたエンコーディングを使用
-		if(encoding == null || ! Charset.isSupported(encoding)){
+		if(encoding == null || ! EncodingSniffer.isSupported(encoding)){
 			logger.finest("encoding is not specified in stream or not supported: " + encoding + ", apply " + charset);
 			encoding = charset;
-			if(! Charset.isSupported(encoding)){
+			if(! EncodingSniffer.isSupported(encoding)){
 				logger.warning("specified encoding is not supported in this environment: " + encoding);
 				throw new UnsupportedEncodingException(encoding);
 			}
 		}
 
-		// 入力ソースを構築して返す
-		logger.finest("creating text reader: " + encoding);
-		Reader r = new InputStreamReader(in, encoding);
-		InputSource is = new InputSource(r);
-		is.setEncoding(encoding);
-		return is;
+		// UTF-8 の BOM は Java のデコーダで除去されないため読み飛ばし
+		if("UTF-8".equals(EncodingSniffer.getBOMEncoding(sample))){
+			sample.position(sample.position() + 3);
+		}
+		return encoding;
 	}
 
 	// ======================================================================
@@ -309,33 +433,69 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	/**
 	 * ストリームの内容からエンコーディングを決定するために {@link
 	 * #guessInputSource(InputStream, String, int)} から呼び出されます。このクラスの
-	 * メソッドでは先読みバッファ内の最初の 2 バイトが Unicode の Byte Order Mark (BOM)
-	 * かどうかを評価し、BOM でない場合は {@link #guessEncodingFromPrereadSampling(String)}
-	 * を呼び出します。
+	 * メソッドではバッファの先頭が Unicode の Byte Order Mark (BOM) かどうかを評価し、
+	 * BOM でない場合はバッファ内の XML 宣言を参照してその encoding 値を返します。XML 宣言が
+	 * 存在し encoding 指定が省略されている場合は XML 仕様に基づいて UTF-8 と判定します。
+	 * <p>
+	 * バッファの内容はバイト単位で直接参照され、文字列への変換は行いません。メソッドはバッファ
+	 * の位置やリミットを変更しません。
 	 * <p>
 	 * サブクラスでこのメソッドをオーバーライドして先読みした内容からエンコーディングを推測する
-	 * 事が出来ます。
+	 * 事が出来ます。サブクラスが旧形式の {@link #guessEncodingFromPrereadSampling(byte[],
+	 * int)} または {@link #guessEncodingFromPrereadSampling(String)} をオーバーライド
+	 * している場合、このメソッドはサンプルを配列に複製してそれらを呼び出します。
+	 * <p>
+	 * @param sample 先読みしたバッファ (現在位置からリミットまでが有効)
+	 * @return 推測したエンコーディング
+	 */
+	protected String guessEncodingFromPrereadSampling(ByteBuffer sample) {
+
+		// 旧形式のメソッドがオーバーライドされている場合はそちらで推測
+		if(legacyGuess){
+			byte[] binary = new byte[sample.remaining()];
+			sample.duplicate().get(binary);
+			return guessEncodingFromPrereadSampling(binary, binary.length);
+		}
+
+		// Unicode の BOM を検出した場合
+		String encoding = EncodingSniffer.getBOMEncoding(sample);
+		if(encoding != null){
+			return encoding;
+		}
+
+		// XML 宣言からエンコーディングを決定
+		return EncodingSniffer.getXmlDeclarationEncoding(sample, sample.remaining());
+	}
+
+	// ======================================================================
+	// エンコーディングの推測
+	// ======================================================================
+	/**
+	 * 先読みした配列の内容からエンコーディングを推測します。このメソッドは配列の先頭が
+	 * Unicode の BOM かどうかを評価し、BOM でない場合は配列を us-ascii で文字列化して
+	 * {@link #guessEncodingFromPrereadSampling(String)} を呼び出します。
+	 * <p>
+	 * このメソッドまたは {@link #guessEncodingFromPrereadSampling(String)} をサブクラスで
+	 * オーバーライドした場合、{@link #guessEncodingFromPrereadSampling(ByteBuffer)} から
+	 * 呼び出されます。
 	 * <p>
 	 * @param binary 先読みしたバッファ
 	 * @param length バッファ内の有効文字の長さ
 	 * @return 推測したエンコーディング
+	 * @deprecated {@link #guessEncodingFromPrereadSampling(ByteBuffer)} を使用してください
 	 */
+	@Deprecated
 	protected String guessEncodingFromPrereadSampling(byte[] binary, int length) {
 
 		// Unicode の BOM を検出した場合
-		if(length >= 2){
-			if(((binary[0] & 0xFF) == 0xFE && (binary[1] & 0xFF) == 0xFF)
-			|| ((binary[0] & 0xFF) == 0xFF && (binary[1] & 0xFF) == 0xFE)){
-				logger.finest("byte order mark detected");
-				return "UTF-16";	// J2SE5.0 では Charset に "Unicode" は使えない
-			}
+		String encoding = EncodingSniffer.getBOMEncoding(ByteBuffer.wrap(binary, 0, length));
+		if(encoding != null){
+			return encoding;
 		}
 
 		// US-ASCII の文字列として解析
-		Charset usascii = Charset.forName("us-ascii");
 		try{
-			String sample = new String(binary, 0, length, usascii.name());
-			return guessEncodingFromPrereadSampling(sample);
+			return guessEncodingFromPrereadSampling(new String(binary, 0, length, "US-ASCII"));
 		} catch(UnsupportedEncodingException ex){
 			throw new IllegalStateException(ex);
 		}
@@ -345,23 +505,18 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 	// エンコーディングの推測
 	// ======================================================================
 	/**
-	 * バイナリストリームの文字エンコーディングを推測するために
-	 * {@link #guessEncodingFromPrereadSampling(byte[], int)} から呼び出されます。
-	 * 引数 <i>sample</i> は先読みしたバイナリを us-ascii でエンコーディングした文字列です。
-	 * <p>
-	 * このクラスでは先読みした文字列内から XML 宣言を参照してその encoding 値を返します。
-	 * 文字列内に XML 宣言が存在しない場合は null を返します。XML 宣言が存在し encoding
-	 * 指定が省略されている場合は XML 仕様に基づいて UTF-8 と判定します。
-	 * <p>
-	 * このメソッドをサブクラスでオーバーライドして先読みした内容からエンコーディングを推測する
-	 * 事が出来ます。
+	 * 先読みしたバイナリを us-ascii でエンコーディングした文字列からエンコーディングを推測
+	 * します。文字列内から XML 宣言を参照してその encoding 値を返します。文字列内に XML
+	 * 宣言が存在しない場合は null を返します。XML 宣言が存在し encoding 指定が省略されて
+	 * いる場合は XML 仕様に基づいて UTF-8 と判定します。
 	 * <p>
 	 * @param sample 先読みした文字列
 	 * @return 内容から推測した文字エンコーディング
+	 * @deprecated {@link #guessEncodingFromPrereadSampling(ByteBuffer)} を使用してください
 	 */
+	@Deprecated
 	protected String guessEncodingFromPrereadSampling(String sample) {
-		Pattern pattern = Pattern.compile("<\\?xml\\s+(.*)\\?>", Pattern.DOTALL);
-		Matcher matcher = pattern.matcher(sample);
+		Matcher matcher = XML_DECLARATION.matcher(sample);
 		if(matcher.find()){
 			String meta = matcher.group(1);
 			Map<String,String> attr = Toolkit.parseAttributesSimply(meta);
@@ -374,4 +529,28 @@ public abstract class AbstractSAXParserFactory extends SAXParserFactory {
 		return null;
 	}
 
+	// ======================================================================
+	// 旧形式の推測メソッドの判定
+	// ======================================================================
+	/**
+	 * 指定されたクラスが旧形式の guessEncodingFromPrereadSampling() をオーバーライドして
+	 * いるかを判定します。このライブラリのファクトリ自身による定義は対象外です。
+	 * <p>
+	 * @param clazz 判定するクラス
+	 * @return 旧形式のメソッドをオーバーライドしている場合 true
+	 */
+	private static boolean overridesLegacyGuess(Class<?> clazz){
+		for(Class<?> c=clazz; c!=null && c!=AbstractSAXParserFactory.class && c!=HTMLParserFactory.class; c=c.getSuperclass()){
+			try{
+				c.getDeclaredMethod("guessEncodingFromPrereadSampling", byte[].class, int.class);
+				return true;
+			} catch(NoSuchMethodException ex){/* */}
+			try{
+				c.getDeclaredMethod("guessEncodingFromPrereadSampling", String.class);
+				return true;
+			} catch(NoSuchMethodException ex){/* */}
+		}
+		return false;
+	}
+
 }
@@ -13,7 +13,7 @@ import java.io.*;
 import java.net.URL;
 import java.util.*;
 
-import org.koiroha.xml.Xml;
+import org.koiroha.xml.*;
 import org.xml.sax.*;
 import org.xml.sax.ext.*;
 
@@ -38,6 +38,19 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 */
 	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(AbstractXMLReader.class.getName());
 
+	// ======================================================================
+	// 統計プロパティ
+	// ======================================================================
+	/**
+	 * 解析の統計情報を集計する {@link ParseStatistics} を設定するためのプロパティ名です。
+	 * このプロパティが設定されている場合、以降の解析で読み込んだ文字数、通知したノード数、警告
+	 * 数、各段階の処理時間が設定されたインスタンスに加算されます。
+	 * <p>
+	 * この値は定数 {@value} を示します。デフォルト値は null です。
+	 * <p>
+	 */
+	public static final String PROPERTY_STATISTICS = "http://www.koiroha.org/sax/properties/statistics";
+
 	// ======================================================================
 	// 機能フラグ
 	// ======================================================================
@@ -96,19 +109,11 @@ public abstract class AbstractXMLReader implements XMLReader {
 	// 実体文字参照定義
 	// ======================================================================
 	/**
-	 * このパーサが使用する実体文字参照の定義です。
-	 * <p>
-	 */
-	private Map<String,String> entityReference = new HashMap<String,String>();
-
-	// ======================================================================
-	// 文字実体参照の最大文字数
-	// ======================================================================
-	/**
-	 * このこのインスタンスが実体参照 (文字参照/数値参照) として認識する最大文字数です。
+	 * このパーサが使用する実体文字参照の定義です。テーブルは不変のため定義済みのテーブルを
+	 * 複数のインスタンスで共有します。
 	 * <p>
 	 */
-	private int maxEntityReferenceLength = 0;
+	private EntityTable entityTable = EntityTable.XML;
 
 	// ======================================================================
 	// 入力ストリーム
@@ -129,6 +134,24 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 */
 	private InputStream mustClose = null;
 
+	// ======================================================================
+	// 解析中フラグ
+	// ======================================================================
+	/**
+	 * {@link #open(InputSource)} から解析が終了するまでの間 true となるフラグです。
+	 * <p>
+	 */
+	private boolean parsing = false;
+
+	// ======================================================================
+	// 統計情報
+	// ======================================================================
+	/**
+	 * 現在の解析で統計を集計するインスタンスです。統計が無効な場合は null となります。
+	 * <p>
+	 */
+	private ParseStatistics statistics = null;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -137,11 +160,6 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 * <p>
 	 */
 	protected AbstractXMLReader() {
-		setEntityReference("lt", "<");
-		setEntityReference("gt", ">");
-		setEntityReference("amp", "&");
-		setEntityReference("quot", "\"");
-		setEntityReference("apos", "\'");
 		return;
 	}
 
@@ -258,6 +276,9 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 */
 	public void setProperty(String name, Object value) {
 		logger.finest("setProperty(" + name + "," + value + ")");
+		if(name.equals(PROPERTY_STATISTICS) && value != null && ! (value instanceof ParseStatistics)){
+			throw new IllegalArgumentException("statistics property must be ParseStatistics: " + value.getClass().getName());
+		}
 		property.put(name, value);
 		return;
 	}
@@ -389,7 +410,32 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 * @return 実体参照名として可能な最大文字数
 	 */
 	public int getMaxEntityReferenceName(){
-		return Math.max(maxEntityReferenceLength, "#65535".length());
+		return Math.max(entityTable.getMaxNameLength(), "#65535".length());
+	}
+
+	// ======================================================================
+	// 実体参照テーブルの参照
+	// ======================================================================
+	/**
+	 * このパーサが認識する実体文字参照のテーブルを参照します。
+	 * <p>
+	 * @return 実体参照テーブル
+	 */
+	public EntityTable getEntityTable(){
+		return entityTable;
+	}
+
+	// ======================================================================
+	// 実体参照テーブルの設定
+	// ======================================================================
+	/**
+	 * このパーサが認識する実体文字参照のテーブルを設定します。
+	 * <p>
+	 * @param table 実体参照テーブル
+	 */
+	public void setEntityTable(EntityTable table){
+		this.entityTable = table;
+		return;
 	}
 
 	// ======================================================================
@@ -406,8 +452,7 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 * @param value 実体参照に対する値
 	 */
 	public void setEntityReference(String name, String value){
-		this.entityReference.put(name, value);
-		this.maxEntityReferenceLength = Math.max(name.length(), maxEntityReferenceLength);
+		this.entityTable = entityTable.define(name, value);
 		return;
 	}
 
@@ -420,14 +465,7 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 * @param name 削除する実体文字参照の名前
 	 */
 	public void removeEntityReference(String name){
-		this.entityReference.remove(name);
-		if(name.length() == this.maxEntityReferenceLength){
-			int max = 0;
-			for(String n: entityReference.keySet()){
-				max = Math.max(n.length(), max);
-			}
-			this.maxEntityReferenceLength = max;
-		}
+		this.entityTable = entityTable.undefine(name);
 		return;
 	}
 
@@ -442,27 +480,31 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 * @return 該当する文字
 	 */
 	public String getEntityReference(String name){
+		return getEntityReference(name, 0, name.length());
+	}
 
-		// 実体文字参照の場合
-		if(name.length() < 2 || name.charAt(0) != '#'){
-			return entityReference.get(name);
-		}
-
-		// 数値実体参照の場合
-		try{
-			int ch = -1;
-			if(Character.toLowerCase(name.charAt(1)) == 'x'){
-				ch = Integer.parseInt(name.substring(2), 16);
-			} else {
-				ch = Integer.parseInt(name.substring(1));
-			}
-			if(ch < 0 || ch > 0xFFFF){
-				throw new NumberFormatException();
+	// ======================================================================
+	// 実体参照の文字参照
+	// ======================================================================
+	/**
+	 * 指定された文字シーケンスの範囲を実体参照名とみなして対応する文字列を参照します。範囲の
+	 * 文字列を切り出さずに参照するため、ストリームの先読みバッファ上から直接参照できます。
+	 * 該当する文字が定義されていなければ null を返します。
+	 * <p>
+	 * @param text 文字シーケンス
+	 * @param begin 名前の開始位置
+	 * @param end 名前の終了位置
+	 * @return 該当する文字
+	 */
+	protected String getEntityReference(CharSequence text, int begin, int end){
+		String value = entityTable.get(text, begin, end);
+		if(value == null){
+			int ch = EntityTable.getCharacterReference(text, begin, end);
+			if(ch >= 0){
+				value = String.valueOf((char)ch);
 			}
-			return String.valueOf((char)ch);
-		} catch(NumberFormatException ex){/* */}
-
-		return entityReference.get(name);
+		}
+		return value;
 	}
 
 	// ======================================================================
@@ -496,25 +538,129 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 */
 	public void parse(InputSource is) throws IOException, SAXException {
 		try{
+			open(is);
+			while(next()){
+				/* */
+			}
+		} finally {
+			close();
+		}
+		return;
+	}
 
-			// 入力ストリームの準備
-			prepareReader(is);
+	// ======================================================================
+	// 段階的解析の開始
+	// ======================================================================
+	/**
+	 * 指定された入力ソースに対する段階的な解析を開始します。入力ストリームを準備し、
+	 * ContentHandler に対してロケーターの設定とドキュメント開始の通知を行います。以降は
+	 * {@link #next()} を呼び出すごとに解析が進みます。
+	 * <p>
+	 * 解析が終了しなかった場合でも呼び出し側は必ず {@link #close()} を呼び出す必要があり
+	 * ます。
+	 * <p>
+	 * @param is 入力ソース
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws SAXException ハンドラが例外を発生した場合
+	 */
+	void open(InputSource is) throws IOException, SAXException {
 
-			// ロケーターの設定
-			ContentHandler ch = getContentHandler();
-			if(ch == null){
-				ch = new DefaultHandler2();
-			}
-			ch.setDocumentLocator(this.in);
+		// 前回の解析状態を破棄して入力ストリームを準備
+		reset();
+		statistics = (ParseStatistics)getProperty(PROPERTY_STATISTICS);
+		long start = (statistics == null)? 0: System.nanoTime();
+		prepareReader(is);
 
-			// 解析処理の実行
-			ch.startDocument();
-			handleDocument();
-			ch.endDocument();
+		// ロケーターの設定
+		ContentHandler ch = getContentHandler();
+		if(ch == null){
+			ch = new DefaultHandler2();
+		}
+		ch.setDocumentLocator(this.in);
+
+		// 解析処理の開始
+		parsing = true;
+		ch.startDocument();
+		if(statistics != null){
+			statistics.countDocument();
+			statistics.addOpenTime(System.nanoTime() - start);
+		}
+		return;
+	}
 
-		} finally {
-			Toolkit.close(mustClose);
+	// ======================================================================
+	// 段階的解析の実行
+	// ======================================================================
+	/**
+	 * {@link #open(InputSource)} で開始した解析を 1 段階進めます。ストリームの終端に達した
+	 * 場合は ContentHandler にドキュメント終了を通知して false を返します。
+	 * <p>
+	 * @return 後続の解析が存在する場合 true
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws SAXException ハンドラが例外を発生した場合
+	 */
+	boolean next() throws IOException, SAXException {
+		if(! parsing){
+			return false;
+		}
+		long start = (statistics == null)? 0: System.nanoTime();
+		boolean hasNext = handleNext();
+		if(statistics != null){
+			long end = System.nanoTime();
+			statistics.addParseTime(end - start);
+			start = end;
 		}
+		if(hasNext){
+			return true;
+		}
+
+		// ドキュメント終了の通知
+		ContentHandler ch = getContentHandler();
+		if(ch == null){
+			ch = new DefaultHandler2();
+		}
+		parsing = false;
+		ch.endDocument();
+		if(statistics != null){
+			statistics.addEndTime(System.nanoTime() - start);
+		}
+		return false;
+	}
+
+	// ======================================================================
+	// 段階的解析の終了
+	// ======================================================================
+	/**
+	 * {@link #open(InputSource)} によってオープンしたストリームをクローズします。
+	 * <p>
+	 */
+	void close(){
+		if(statistics != null && in != null){
+			statistics.countCharacters(in.getCharacterCount());
+		}
+		statistics = null;
+		Toolkit.close(mustClose);
+		mustClose = null;
+		parsing = false;
+		return;
+	}
+
+	// ======================================================================
+	// 解析状態の初期化
+	// ======================================================================
+	/**
+	 * 前回の解析で使用した入力ストリームやドキュメント固有の状態を破棄し、次の解析を行える状態
+	 * に戻します。機能フラグ、ハンドラ、実体参照の設定は保持されます。このメソッドは解析の開始
+	 * 時に自動的に呼び出されるため、同一のインスタンスを続けて解析に使用することができます。
+	 * <p>
+	 * インスタンスはスレッドセーフではありません。複数のスレッドで共有する場合は呼び出し側で
+	 * 同期するか、スレッドごとにインスタンスを用意してください。
+	 * <p>
+	 */
+	public void reset(){
+		close();
+		in = null;
+		property.remove(Xml.PROPERTY_DOCUMENT_XML_VERSION);
 		return;
 	}
 
@@ -534,6 +680,39 @@ public abstract class AbstractXMLReader implements XMLReader {
 	 */
 	protected abstract void handleDocument() throws SAXException, IOException;
 
+	// ======================================================================
+	// ドキュメント解析の段階的実行
+	// ======================================================================
+	/**
+	 * ドキュメントの解析を 1 段階進めるためにスーパークラスによって呼び出されます。段階的な
+	 * 解析に対応するサブクラスはこのメソッドをオーバーライドし、1 回の呼び出しで処理する量を
+	 * 限定してください。
+	 * <p>
+	 * デフォルトの実装は {@link #handleDocument()} によってドキュメント全体を解析し false
+	 * を返します。
+	 * <p>
+	 * @return 後続の解析が存在する場合 true
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws SAXException ハンドラによって中断された場合
+	 */
+	protected boolean handleNext() throws SAXException, IOException{
+		handleDocument();
+		return false;
+	}
+
+	// ======================================================================
+	// 統計情報の参照
+	// ======================================================================
+	/**
+	 * 現在の解析で統計を集計するインスタンスを参照します。サブクラスは通知したノードや警告を
+	 * このインスタンスに計数します。
+	 * <p>
+	 * @return 統計情報 (統計が無効な場合は null)
+	 */
+	ParseStatistics getStatistics(){
+		return statistics;
+	}
+
 	// ======================================================================
 	// 入力ストリームの準備
 	// ======================================================================
@@ -0,0 +1,180 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.Arrays;
+
+import org.xml.sax.Attributes;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// AttributeIndex: 属性名の索引
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 解析中の要素に定義済みの属性名から属性の位置を参照するための索引です。属性の重複判定を
+ * 属性数に依存しない時間で行うために使用します。
+ * <p>
+ * 索引はオープンアドレス法のハッシュ表で、属性名そのものは保持せず属性リスト内の位置のみを
+ * 記録します。各スロットに世代番号を持たせることで、要素ごとのクリアを配列の初期化なしに
+ * 行います。このクラスはスレッドセーフではありません。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class AttributeIndex {
+
+	// ======================================================================
+	// 世代番号
+	// ======================================================================
+	/**
+	 * スロットが使用されている世代番号です。現在の世代と異なるスロットは空として扱います。
+	 * <p>
+	 */
+	private int[] stamps = new int[32];
+
+	// ======================================================================
+	// 属性の位置
+	// ======================================================================
+	/**
+	 * 各スロットに対応する属性リスト内の位置です。
+	 * <p>
+	 */
+	private int[] indices = new int[32];
+
+	// ======================================================================
+	// 現在の世代
+	// ======================================================================
+	/**
+	 * 現在の世代番号です。
+	 * <p>
+	 */
+	private int stamp = 1;
+
+	// ======================================================================
+	// 登録数
+	// ======================================================================
+	/**
+	 * 現在の世代で登録されている属性の数です。
+	 * <p>
+	 */
+	private int size = 0;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 空の索引を構築します。
+	 * <p>
+	 */
+	public AttributeIndex() {
+		return;
+	}
+
+	// ======================================================================
+	// 索引のクリア
+	// ======================================================================
+	/**
+	 * 登録されている全ての属性を削除します。
+	 * <p>
+	 */
+	public void clear(){
+		size = 0;
+		stamp ++;
+		if(stamp == 0){
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性位置の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の属性の位置を参照します。
+	 * <p>
+	 * @param name 属性名
+	 * @param attr 索引に対応する属性リスト
+	 * @return 属性の位置 (登録されていない場合は負の値)
+	 */
+	public int get(String name, Attributes attr){
+		int mask = stamps.length - 1;
+		int i = hash(name) & mask;
+		while(stamps[i] == stamp){
+			if(name.equals(attr.getQName(indices[i]))){
+				return indices[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// 属性位置の登録
+	// ======================================================================
+	/**
+	 * 属性リストに追加された属性の位置を登録します。呼び出し前に属性リストへ追加されている
+	 * 必要があります。
+	 * <p>
+	 * @param name 属性名
+	 * @param index 属性の位置
+	 * @param attr 索引に対応する属性リスト
+	 */
+	public void put(String name, int index, Attributes attr){
+		size ++;
+
+		// 使用率が半分を超える場合は拡張して属性リストから再構築
+		if(size * 2 > stamps.length){
+			stamps = new int[stamps.length * 2];
+			indices = new int[indices.length * 2];
+			stamp = 1;
+			for(int i=0; i<attr.getLength(); i++){
+				insert(attr.getQName(i), i);
+			}
+			return;
+		}
+		insert(name, index);
+		return;
+	}
+
+	// ======================================================================
+	// スロットへの登録
+	// ======================================================================
+	/**
+	 * 指定された名前のハッシュ値から空きスロットを探して属性の位置を記録します。
+	 * <p>
+	 * @param name 属性名
+	 * @param index 属性の位置
+	 */
+	private void insert(String name, int index){
+		int mask = stamps.length - 1;
+		int i = hash(name) & mask;
+		while(stamps[i] == stamp){
+			i = (i + 1) & mask;
+		}
+		stamps[i] = stamp;
+		indices[i] = index;
+		return;
+	}
+
+	// ======================================================================
+	// ハッシュ値の算出
+	// ======================================================================
+	/**
+	 * 下位ビットに偏りが出ないよう攪拌した名前のハッシュ値を算出します。
+	 * <p>
+	 * @param name 属性名
+	 * @return ハッシュ値
+	 */
+	private static int hash(String name){
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+}
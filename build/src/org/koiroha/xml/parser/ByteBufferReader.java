@@ -0,0 +1,214 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// ByteBufferReader: バイトバッファ入力ストリーム
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link ByteBuffer} の内容を指定された文字セットでデコードしながら読み出すための入力
+ * ストリームです。デコード結果は中間バッファを経由せず呼び出し側の文字配列へ直接書き込まれ
+ * ます。
+ * <p>
+ * デコーダはスレッドごとに文字セット単位でキャッシュされ、ストリームのクローズ時に返却され
+ * ます。不正なバイトシーケンスは置換文字に変換されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class ByteBufferReader extends Reader {
+
+	// ======================================================================
+	// デコーダキャッシュ
+	// ======================================================================
+	/**
+	 * スレッドごとに文字セット単位でキャッシュされているデコーダです。
+	 * <p>
+	 */
+	private static final ThreadLocal<Map<Charset,CharsetDecoder>> DECODERS = new ThreadLocal<Map<Charset,CharsetDecoder>>(){
+		@Override
+		protected Map<Charset,CharsetDecoder> initialValue() {
+			return new HashMap<Charset,CharsetDecoder>();
+		}
+	};
+
+	// ======================================================================
+	// 入力バッファ
+	// ======================================================================
+	/**
+	 * デコード対象のバッファです。クローズ後は null となります。
+	 * <p>
+	 */
+	private ByteBuffer buffer;
+
+	// ======================================================================
+	// デコーダ
+	// ======================================================================
+	/**
+	 * このストリームが使用しているデコーダです。
+	 * <p>
+	 */
+	private CharsetDecoder decoder;
+
+	// ======================================================================
+	// 退避バッファ
+	// ======================================================================
+	/**
+	 * 呼び出し側の配列に収まらなかったサロゲートペアを退避するバッファです。
+	 * <p>
+	 */
+	private final CharBuffer spill = CharBuffer.allocate(2);
+
+	// ======================================================================
+	// 入力終了フラグ
+	// ======================================================================
+	/**
+	 * 入力バッファをすべてデコードし終えている場合に true となります。
+	 * <p>
+	 */
+	private boolean eof = false;
+
+	// ======================================================================
+	// フラッシュ終了フラグ
+	// ======================================================================
+	/**
+	 * デコーダのフラッシュが完了している場合に true となります。
+	 * <p>
+	 */
+	private boolean flushed = false;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 指定されたバッファの現在位置から終端までをデコードする入力ストリームを構築します。
+	 * バッファの位置はデコードの進行に伴って変更されます。
+	 * <p>
+	 * @param buffer 入力バッファ
+	 * @param charset 文字セット
+	 */
+	public ByteBufferReader(ByteBuffer buffer, Charset charset) {
+		this.buffer = buffer;
+		this.decoder = DECODERS.get().remove(charset);
+		if(this.decoder == null){
+			this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		this.decoder.reset();
+		this.spill.flip();
+		return;
+	}
+
+	// ======================================================================
+	// 文字の読み込み
+	// ======================================================================
+	/**
+	 * バッファの内容をデコードして指定された配列に読み込みます。
+	 * <p>
+	 * @param cbuf 読み込み先の配列
+	 * @param off 読み込み開始位置
+	 * @param len 読み込む最大文字数
+	 * @return 読み込んだ文字数 (ストリームの終端に達している場合は -1)
+	 * @throws IOException ストリームがクローズされている場合
+	 */
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(buffer == null){
+			throw new IOException("stream closed");
+		}
+		if(len == 0){
+			return 0;
+		}
+
+		// 前回退避した文字を出力
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while(spill.hasRemaining() && out.hasRemaining()){
+			out.put(spill.get());
+		}
+
+		while(out.hasRemaining()){
+
+			// 入力バッファを呼び出し側の配列へ直接デコード
+			if(! eof){
+				int begin = out.position();
+				CoderResult result = decoder.decode(buffer, out, true);
+				if(result.isUnderflow()){
+					eof = true;
+				} else if(result.isOverflow() && out.position() == begin){
+					// サロゲートペアが配列に収まらない場合は退避バッファを経由
+					spill.clear();
+					decoder.decode(buffer, spill, true);
+					spill.flip();
+					while(spill.hasRemaining() && out.hasRemaining()){
+						out.put(spill.get());
+					}
+				}
+				if(! eof){
+					break;
+				}
+			}
+
+			// デコーダ内部に残っている文字を出力
+			if(! flushed){
+				if(decoder.flush(out).isUnderflow()){
+					flushed = true;
+				}
+			}
+			break;
+		}
+
+		int length = out.position() - off;
+		if(length == 0 && flushed && ! spill.hasRemaining()){
+			return -1;
+		}
+		return length;
+	}
+
+	// ======================================================================
+	// 読み込み可能状態の判定
+	// ======================================================================
+	/**
+	 * デコード可能なデータが残っている場合に true を返します。
+	 * <p>
+	 * @return 読み込み可能な場合 true
+	 * @throws IOException ストリームがクローズされている場合
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		if(buffer == null){
+			throw new IOException("stream closed");
+		}
+		return spill.hasRemaining() || buffer.hasRemaining();
+	}
+
+	// ======================================================================
+	// ストリームのクローズ
+	// ======================================================================
+	/**
+	 * ストリームをクローズしデコーダをキャッシュへ返却します。
+	 * <p>
+	 */
+	@Override
+	public void close() {
+		if(buffer != null){
+			buffer = null;
+			DECODERS.get().put(decoder.charset(), decoder);
+			decoder = null;
+		}
+		return;
+	}
+
+}
@@ -0,0 +1,232 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactAttr: コンパクト DOM 属性
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納された属性のビューです。属性値はテキストの子ノードを持たず
+ * ノードの値として直接保持されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactAttr extends CompactNode implements Attr {
+
+	// ======================================================================
+	// 型情報
+	// ======================================================================
+	/**
+	 * 名前を持たない型情報です。
+	 * <p>
+	 */
+	static final TypeInfo NO_TYPE = new TypeInfo(){
+		public String getTypeName() { return null; }
+		public String getTypeNamespace() { return null; }
+		public boolean isDerivedFrom(String ns, String name, int method) { return false; }
+	};
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactAttr(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+	// ======================================================================
+	// ノード値の参照
+	// ======================================================================
+	/**
+	 * 属性値を参照します。
+	 * <p>
+	 * @return 属性値
+	 */
+	@Override
+	public String getNodeValue() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// ノード値の設定
+	// ======================================================================
+	/**
+	 * 属性値を設定します。
+	 * <p>
+	 * @param nodeValue 属性値
+	 */
+	@Override
+	public void setNodeValue(String nodeValue) {
+		setValue(nodeValue);
+		return;
+	}
+
+	// ======================================================================
+	// 親ノードの参照
+	// ======================================================================
+	/**
+	 * 属性は親ノードを持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public Node getParentNode() {
+		return null;
+	}
+
+	// ======================================================================
+	// 前の兄弟ノードの参照
+	// ======================================================================
+	/**
+	 * 属性は兄弟ノードを持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public Node getPreviousSibling() {
+		return null;
+	}
+
+	// ======================================================================
+	// 次の兄弟ノードの参照
+	// ======================================================================
+	/**
+	 * 属性は兄弟ノードを持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public Node getNextSibling() {
+		return null;
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * 属性値を参照します。
+	 * <p>
+	 * @return 属性値
+	 */
+	@Override
+	public String getTextContent() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * 属性値を設定します。
+	 * <p>
+	 * @param textContent 属性値
+	 */
+	@Override
+	public void setTextContent(String textContent) {
+		setValue(textContent);
+		return;
+	}
+
+	// ======================================================================
+	// 属性名の参照
+	// ======================================================================
+	/**
+	 * 属性名を参照します。
+	 * <p>
+	 * @return 属性名
+	 */
+	public String getName() {
+		return doc.names[id];
+	}
+
+	// ======================================================================
+	// 指定有無の参照
+	// ======================================================================
+	/**
+	 * 属性が明示的に指定されたかどうかを参照します。デフォルト値を持つ属性は存在しないため
+	 * 常に true を返します。
+	 * <p>
+	 * @return true
+	 */
+	public boolean getSpecified() {
+		return true;
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 属性値を参照します。
+	 * <p>
+	 * @return 属性値
+	 */
+	public String getValue() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// 属性値の設定
+	// ======================================================================
+	/**
+	 * 属性値を設定します。
+	 * <p>
+	 * @param value 属性値
+	 */
+	public void setValue(String value) {
+		doc.values[id] = value;
+		return;
+	}
+
+	// ======================================================================
+	// 所有者要素の参照
+	// ======================================================================
+	/**
+	 * この属性を所有する要素を参照します。
+	 * <p>
+	 * @return 所有者要素
+	 */
+	public Element getOwnerElement() {
+		return (Element)doc.node(doc.parents[id]);
+	}
+
+	// ======================================================================
+	// 型情報の参照
+	// ======================================================================
+	/**
+	 * この属性の型情報を参照します。
+	 * <p>
+	 * @return 型情報
+	 */
+	public TypeInfo getSchemaTypeInfo() {
+		return NO_TYPE;
+	}
+
+	// ======================================================================
+	// ID 属性の判定
+	// ======================================================================
+	/**
+	 * この属性が ID 属性かどうかを判定します。
+	 * <p>
+	 * @return ID 属性の場合 true
+	 */
+	public boolean isId() {
+		return doc.isIdAttribute(id);
+	}
+
+}
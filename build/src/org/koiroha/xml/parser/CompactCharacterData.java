@@ -0,0 +1,403 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactCharacterData: コンパクト DOM 文字データ
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納されたテキスト、CDATA セクション、コメントの共通ビューです。
+ * 文字データはノードの値として保持されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+abstract class CompactCharacterData extends CompactNode implements CharacterData {
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactCharacterData(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+	// ======================================================================
+	// ノード値の参照
+	// ======================================================================
+	/**
+	 * 文字データを参照します。
+	 * <p>
+	 * @return 文字データ
+	 */
+	@Override
+	public String getNodeValue() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// ノード値の設定
+	// ======================================================================
+	/**
+	 * 文字データを設定します。
+	 * <p>
+	 * @param nodeValue 文字データ
+	 */
+	@Override
+	public void setNodeValue(String nodeValue) {
+		setData(nodeValue);
+		return;
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * 文字データを参照します。
+	 * <p>
+	 * @return 文字データ
+	 */
+	@Override
+	public String getTextContent() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * 文字データを設定します。
+	 * <p>
+	 * @param textContent 文字データ
+	 */
+	@Override
+	public void setTextContent(String textContent) {
+		setData(textContent);
+		return;
+	}
+
+	// ======================================================================
+	// 文字データの参照
+	// ======================================================================
+	/**
+	 * 文字データを参照します。
+	 * <p>
+	 * @return 文字データ
+	 */
+	public String getData() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// 文字データの設定
+	// ======================================================================
+	/**
+	 * 文字データを設定します。
+	 * <p>
+	 * @param data 文字データ
+	 */
+	public void setData(String data) {
+		doc.values[id] = (data == null)? "": data;
+		return;
+	}
+
+	// ======================================================================
+	// 文字データ長の参照
+	// ======================================================================
+	/**
+	 * 文字データの長さを参照します。
+	 * <p>
+	 * @return 文字データの長さ
+	 */
+	public int getLength() {
+		return doc.values[id].length();
+	}
+
+	// ======================================================================
+	// 部分文字列の参照
+	// ======================================================================
+	/**
+	 * 文字データの部分文字列を参照します。
+	 * <p>
+	 * @param offset 開始位置
+	 * @param count 文字数
+	 * @return 部分文字列
+	 * @throws DOMException 範囲が不正な場合
+	 */
+	public String substringData(int offset, int count) throws DOMException {
+		String data = getData();
+		checkRange(offset, count);
+		return data.substring(offset, Math.min(data.length(), offset + count));
+	}
+
+	// ======================================================================
+	// 文字データの追加
+	// ======================================================================
+	/**
+	 * 文字データの末尾に文字列を追加します。
+	 * <p>
+	 * @param arg 追加する文字列
+	 */
+	public void appendData(String arg) {
+		setData(getData() + arg);
+		return;
+	}
+
+	// ======================================================================
+	// 文字データの挿入
+	// ======================================================================
+	/**
+	 * 文字データの指定位置に文字列を挿入します。
+	 * <p>
+	 * @param offset 挿入位置
+	 * @param arg 挿入する文字列
+	 * @throws DOMException 位置が不正な場合
+	 */
+	public void insertData(int offset, String arg) throws DOMException {
+		replaceData(offset, 0, arg);
+		return;
+	}
+
+	// ======================================================================
+	// 文字データの削除
+	// ======================================================================
+	/**
+	 * 文字データの指定範囲を削除します。
+	 * <p>
+	 * @param offset 開始位置
+	 * @param count 文字数
+	 * @throws DOMException 範囲が不正な場合
+	 */
+	public void deleteData(int offset, int count) throws DOMException {
+		replaceData(offset, count, "");
+		return;
+	}
+
+	// ======================================================================
+	// 文字データの置き換え
+	// ======================================================================
+	/**
+	 * 文字データの指定範囲を文字列で置き換えます。
+	 * <p>
+	 * @param offset 開始位置
+	 * @param count 文字数
+	 * @param arg 置き換える文字列
+	 * @throws DOMException 範囲が不正な場合
+	 */
+	public void replaceData(int offset, int count, String arg) throws DOMException {
+		String data = getData();
+		checkRange(offset, count);
+		int end = Math.min(data.length(), offset + count);
+		setData(data.substring(0, offset) + arg + data.substring(end));
+		return;
+	}
+
+	// ======================================================================
+	// 範囲の検証
+	// ======================================================================
+	/**
+	 * 文字データに対する範囲指定が有効かを検証します。
+	 * <p>
+	 * @param offset 開始位置
+	 * @param count 文字数
+	 * @throws DOMException 範囲が不正な場合
+	 */
+	private void checkRange(int offset, int count) throws DOMException {
+		if(offset < 0 || offset > getLength() || count < 0){
+			throw new DOMException(DOMException.INDEX_SIZE_ERR, "offset=" + offset + ",count=" + count);
+		}
+		return;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// TextImpl: テキスト
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * テキストのビューです。
+	 * <p>
+	 */
+	static class TextImpl extends CompactCharacterData implements Text {
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * ドキュメントとノード番号を指定して構築を行います。
+		 * <p>
+		 * @param doc ドキュメント
+		 * @param id ノード番号
+		 */
+		TextImpl(CompactDocument doc, int id) {
+			super(doc, id);
+			return;
+		}
+
+		// ==================================================================
+		// テキストの分割
+		// ==================================================================
+		/**
+		 * 指定位置でテキストを分割し、後半を新しい兄弟ノードとして挿入します。
+		 * <p>
+		 * @param offset 分割位置
+		 * @return 後半のテキスト
+		 * @throws DOMException 位置が不正な場合
+		 */
+		public Text splitText(int offset) throws DOMException {
+			String data = getData();
+			if(offset < 0 || offset > data.length()){
+				throw new DOMException(DOMException.INDEX_SIZE_ERR, "offset=" + offset);
+			}
+			int next = doc.allocate(doc.types[id], doc.names[id], null, null, data.substring(offset));
+			setData(data.substring(0, offset));
+			Node text = doc.node(next);
+			Node parent = getParentNode();
+			if(parent != null){
+				parent.insertBefore(text, getNextSibling());
+			}
+			return (Text)text;
+		}
+
+		// ==================================================================
+		// 要素内容空白の判定
+		// ==================================================================
+		/**
+		 * このテキストが要素内容の空白かどうかを判定します。DTD による検証を行わないため常に
+		 * false を返します。
+		 * <p>
+		 * @return false
+		 */
+		public boolean isElementContentWhitespace() {
+			return false;
+		}
+
+		// ==================================================================
+		// 連続テキストの参照
+		// ==================================================================
+		/**
+		 * このテキストと前後に隣接するテキストを連結した文字列を参照します。
+		 * <p>
+		 * @return 連結した文字列
+		 */
+		public String getWholeText() {
+			int first = id;
+			while(isText(doc.previousSiblings[first])){
+				first = doc.previousSiblings[first];
+			}
+			StringBuilder buffer = new StringBuilder();
+			for(int t=first; isText(t); t=doc.nextSiblings[t]){
+				buffer.append(doc.values[t]);
+			}
+			return buffer.toString();
+		}
+
+		// ==================================================================
+		// 連続テキストの置き換え
+		// ==================================================================
+		/**
+		 * このテキストと前後に隣接するテキストを指定された文字列で置き換えます。
+		 * <p>
+		 * @param content 置き換える文字列
+		 * @return 置き換えたテキスト (文字列が空の場合は null)
+		 */
+		public Text replaceWholeText(String content) {
+			int prev = doc.previousSiblings[id];
+			while(isText(prev)){
+				int p = doc.previousSiblings[prev];
+				doc.unlink(prev);
+				prev = p;
+			}
+			int next = doc.nextSiblings[id];
+			while(isText(next)){
+				int n = doc.nextSiblings[next];
+				doc.unlink(next);
+				next = n;
+			}
+			if(content == null || content.length() == 0){
+				doc.unlink(id);
+				return null;
+			}
+			setData(content);
+			return this;
+		}
+
+		// ==================================================================
+		// テキストの判定
+		// ==================================================================
+		/**
+		 * 指定されたノード番号がテキストまたは CDATA セクションかを判定します。
+		 * <p>
+		 * @param id ノード番号
+		 * @return テキストの場合 true
+		 */
+		private boolean isText(int id){
+			return id >= 0 && (doc.types[id] == TEXT_NODE || doc.types[id] == CDATA_SECTION_NODE);
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// CDATASectionImpl: CDATA セクション
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * CDATA セクションのビューです。
+	 * <p>
+	 */
+	static final class CDATASectionImpl extends TextImpl implements CDATASection {
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * ドキュメントとノード番号を指定して構築を行います。
+		 * <p>
+		 * @param doc ドキュメント
+		 * @param id ノード番号
+		 */
+		CDATASectionImpl(CompactDocument doc, int id) {
+			super(doc, id);
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// CommentImpl: コメント
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * コメントのビューです。
+	 * <p>
+	 */
+	static final class CommentImpl extends CompactCharacterData implements Comment {
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * ドキュメントとノード番号を指定して構築を行います。
+		 * <p>
+		 * @param doc ドキュメント
+		 * @param id ノード番号
+		 */
+		CommentImpl(CompactDocument doc, int id) {
+			super(doc, id);
+			return;
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactDOMImplementation: コンパクト DOM 実装
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} を生成する DOM 実装です。ドキュメントから参照した場合、作成する
+ * ドキュメント型はそのドキュメントの配列に格納されます。ドキュメントを持たない場合は一時的な
+ * ドキュメントに格納され、{@link Node#appendChild(Node)} などで他のドキュメントに配置した
+ * 時点で複製されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactDOMImplementation implements DOMImplementation {
+
+	// ======================================================================
+	// ドキュメント
+	// ======================================================================
+	/**
+	 * ドキュメント型を格納するドキュメントです。null の場合は一時的なドキュメントを使用します。
+	 * <p>
+	 */
+	private final CompactDocument doc;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメント型を格納するドキュメントを指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント (null の場合は一時的なドキュメントを使用)
+	 */
+	CompactDOMImplementation(CompactDocument doc) {
+		this.doc = doc;
+		return;
+	}
+
+	// ======================================================================
+	// 機能の判定
+	// ======================================================================
+	/**
+	 * 指定された機能をサポートしているかを判定します。
+	 * <p>
+	 * @param feature 機能名
+	 * @param version バージョン
+	 * @return サポートしている場合 true
+	 */
+	public boolean hasFeature(String feature, String version) {
+		if(feature == null){
+			return false;
+		}
+		if(feature.startsWith("+")){
+			feature = feature.substring(1);
+		}
+		boolean any = (version == null || version.length() == 0);
+		if(feature.equalsIgnoreCase("Core")){
+			return any || version.equals("1.0") || version.equals("2.0") || version.equals("3.0");
+		}
+		if(feature.equalsIgnoreCase("XML")){
+			return any || version.equals("1.0") || version.equals("2.0") || version.equals("3.0");
+		}
+		return false;
+	}
+
+	// ======================================================================
+	// ドキュメント型の作成
+	// ======================================================================
+	/**
+	 * ドキュメント型を作成します。
+	 * <p>
+	 * @param qualifiedName 修飾名
+	 * @param publicId PUBLIC ID
+	 * @param systemId SYSTEM ID
+	 * @return ドキュメント型
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public DocumentType createDocumentType(String qualifiedName, String publicId, String systemId) throws DOMException {
+		CompactDocument.checkQName(qualifiedName);
+		CompactDocument owner = (doc == null)? new CompactDocument(true): doc;
+		return (DocumentType)owner.node(owner.allocate(
+			Node.DOCUMENT_TYPE_NODE, qualifiedName, publicId, null, systemId));
+	}
+
+	// ======================================================================
+	// ドキュメントの作成
+	// ======================================================================
+	/**
+	 * 指定されたドキュメント要素とドキュメント型を持つドキュメントを作成します。
+	 * <p>
+	 * @param namespaceURI ドキュメント要素の名前空間 URI
+	 * @param qualifiedName ドキュメント要素の修飾名 (null の場合はドキュメント要素を作成しない)
+	 * @param doctype ドキュメント型
+	 * @return ドキュメント
+	 * @throws DOMException 名前が不正な場合やドキュメント型が使用済みの場合
+	 */
+	public Document createDocument(String namespaceURI, String qualifiedName, DocumentType doctype) throws DOMException {
+		CompactDocument doc = new CompactDocument();
+		if(doctype != null){
+			if(! (doctype instanceof CompactDocumentType) || doctype.getOwnerDocument() != null){
+				throw new DOMException(DOMException.WRONG_DOCUMENT_ERR, "doctype is used in a different document");
+			}
+			doc.appendChild(doctype);
+		}
+		if(qualifiedName != null){
+			doc.appendChild(doc.createElementNS(namespaceURI, qualifiedName));
+		}
+		return doc;
+	}
+
+	// ======================================================================
+	// 機能の参照
+	// ======================================================================
+	/**
+	 * 指定された機能を実装するオブジェクトを参照します。
+	 * <p>
+	 * @param feature 機能名
+	 * @param version バージョン
+	 * @return 機能を実装するオブジェクト
+	 */
+	public Object getFeature(String feature, String version) {
+		return hasFeature(feature, version)? this: null;
+	}
+
+}
@@ -0,0 +1,1917 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.*;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactDocument: コンパクト DOM ドキュメント
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * ノードをオブジェクトではなく並列配列の要素として保持する DOM ドキュメントの実装です。
+ * ツリー構造 (親、先頭/末尾の子、前後の兄弟、先頭の属性) と出現位置 (行番号、列番号) を
+ * int 配列に、名前や値を String 配列に格納します。DOM インターフェースとして参照された
+ * ノードのみ {@link CompactNode} のビューを生成します。
+ * <p>
+ * 入力エンコーディングや属性の設定順序、出現位置はドキュメント自体が保持するため、動的プロキシ
+ * やユーザデータを使用せずに参照できます。属性は設定された順序で列挙されます。
+ * <p>
+ * このクラスはスレッドセーフではありません。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactDocument extends CompactNode implements Document {
+
+	// ======================================================================
+	// 初期容量
+	// ======================================================================
+	/**
+	 * ノード配列の初期容量です。
+	 * <p>
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	// ======================================================================
+	// ノードの型
+	// ======================================================================
+	/**
+	 * 各ノードの型です。
+	 * <p>
+	 */
+	short[] types = new short[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 親ノード
+	// ======================================================================
+	/**
+	 * 各ノードの親ノード番号です。属性の場合は所有者の要素を示します。親を持たない場合は負の
+	 * 値となります。
+	 * <p>
+	 */
+	int[] parents = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 先頭の子ノード
+	// ======================================================================
+	/**
+	 * 各ノードの先頭の子ノード番号です。
+	 * <p>
+	 */
+	int[] firstChildren = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 末尾の子ノード
+	// ======================================================================
+	/**
+	 * 各ノードの末尾の子ノード番号です。
+	 * <p>
+	 */
+	int[] lastChildren = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 前の兄弟ノード
+	// ======================================================================
+	/**
+	 * 各ノードの前の兄弟ノード番号です。属性の場合は前の属性を示します。
+	 * <p>
+	 */
+	int[] previousSiblings = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 次の兄弟ノード
+	// ======================================================================
+	/**
+	 * 各ノードの次の兄弟ノード番号です。属性の場合は次の属性を示します。
+	 * <p>
+	 */
+	int[] nextSiblings = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 先頭の属性
+	// ======================================================================
+	/**
+	 * 各要素の先頭の属性ノード番号です。
+	 * <p>
+	 */
+	int[] attributes = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 末尾の属性
+	// ======================================================================
+	/**
+	 * 各要素の末尾の属性ノード番号です。属性の追加を属性数に依存しない時間で行うために
+	 * 使用します。
+	 * <p>
+	 */
+	private int[] lastAttributes = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 行番号
+	// ======================================================================
+	/**
+	 * 各ノードが出現した行番号です。位置が不明な場合は 0 となります。
+	 * <p>
+	 */
+	int[] lines = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 列番号
+	// ======================================================================
+	/**
+	 * 各ノードが出現した列番号です。
+	 * <p>
+	 */
+	int[] columns = new int[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// ノード名
+	// ======================================================================
+	/**
+	 * 各ノードの名前です。
+	 * <p>
+	 */
+	String[] names = new String[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// 名前空間 URI
+	// ======================================================================
+	/**
+	 * 各ノードの名前空間 URI です。ドキュメント型の場合は PUBLIC ID を格納します。
+	 * <p>
+	 */
+	String[] namespaces = new String[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// ローカル名
+	// ======================================================================
+	/**
+	 * 各ノードのローカル名です。名前空間を指定せずに作成されたノードは null となります。
+	 * <p>
+	 */
+	String[] localNames = new String[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// ノード値
+	// ======================================================================
+	/**
+	 * 各ノードの値です。ドキュメント型の場合は SYSTEM ID を格納します。
+	 * <p>
+	 */
+	String[] values = new String[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// ノードビュー
+	// ======================================================================
+	/**
+	 * 生成済みのノードビューです。同一ノードに対して同一のインスタンスを返すために使用します。
+	 * <p>
+	 */
+	private CompactNode[] nodes = new CompactNode[INITIAL_CAPACITY];
+
+	// ======================================================================
+	// ノード数
+	// ======================================================================
+	/**
+	 * このドキュメントに割り当てられたノードの数です。
+	 * <p>
+	 */
+	private int size = 0;
+
+	// ======================================================================
+	// 変更回数
+	// ======================================================================
+	/**
+	 * ツリー構造や属性が変更された回数です。ノードリストのキャッシュの有効性判定に使用します。
+	 * <p>
+	 */
+	int changes = 0;
+
+	// ======================================================================
+	// 属性索引の閾値
+	// ======================================================================
+	/**
+	 * 属性の検索で名前の索引を作成する属性数です。
+	 * <p>
+	 */
+	private static final int ATTRIBUTE_INDEX_THRESHOLD = 8;
+
+	// ======================================================================
+	// 索引済みの要素
+	// ======================================================================
+	/**
+	 * 属性名の索引を作成した要素のノード番号です。索引が存在しない場合は負の値となります。
+	 * <p>
+	 */
+	private int indexedElement = -1;
+
+	// ======================================================================
+	// 索引作成時の変更回数
+	// ======================================================================
+	/**
+	 * 属性名の索引が反映している変更回数です。{@link #changes} と異なる場合は索引を無効と
+	 * して扱います。
+	 * <p>
+	 */
+	private int indexedChanges = 0;
+
+	// ======================================================================
+	// 修飾名の索引
+	// ======================================================================
+	/**
+	 * 索引済みの要素の属性を修飾名から参照するための索引です。
+	 * <p>
+	 */
+	private final Map<String,Integer> qNameIndex = new HashMap<String,Integer>();
+
+	// ======================================================================
+	// 名前空間付き名前の索引
+	// ======================================================================
+	/**
+	 * 索引済みの要素の属性を名前空間 URI とローカル名から参照するための索引です。
+	 * <p>
+	 */
+	private final Map<String,Integer> nsNameIndex = new HashMap<String,Integer>();
+
+	// ======================================================================
+	// ID 属性
+	// ======================================================================
+	/**
+	 * ID 属性として宣言された属性のノード番号です。
+	 * <p>
+	 */
+	private final BitSet idAttributes = new BitSet();
+
+	// ======================================================================
+	// ユーザデータ
+	// ======================================================================
+	/**
+	 * ノードに設定されたユーザデータです。使用されるまで null となります。
+	 * <p>
+	 */
+	private Map<Integer,Map<String,Object>> userData = null;
+
+	// ======================================================================
+	// 入力エンコーディング
+	// ======================================================================
+	/**
+	 * このドキュメントを解析した時の入力エンコーディングです。
+	 * <p>
+	 */
+	private String inputEncoding = null;
+
+	// ======================================================================
+	// XML バージョン
+	// ======================================================================
+	/**
+	 * このドキュメントの XML バージョンです。
+	 * <p>
+	 */
+	private String xmlVersion = "1.0";
+
+	// ======================================================================
+	// スタンドアロン
+	// ======================================================================
+	/**
+	 * このドキュメントがスタンドアロンかどうかです。
+	 * <p>
+	 */
+	private boolean xmlStandalone = false;
+
+	// ======================================================================
+	// 厳密なエラーチェック
+	// ======================================================================
+	/**
+	 * 厳密なエラーチェックを行うかどうかです。
+	 * <p>
+	 */
+	private boolean strictErrorChecking = true;
+
+	// ======================================================================
+	// ドキュメント URI
+	// ======================================================================
+	/**
+	 * このドキュメントの URI です。
+	 * <p>
+	 */
+	private String documentURI = null;
+
+	// ======================================================================
+	// 一時ドキュメント
+	// ======================================================================
+	/**
+	 * ドキュメントに属さないドキュメント型を保持するための一時的なドキュメントかどうかです。
+	 * <p>
+	 */
+	final boolean scratch;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 空のドキュメントを構築します。
+	 * <p>
+	 */
+	public CompactDocument() {
+		this(false);
+		return;
+	}
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 一時ドキュメントかどうかを指定して構築を行います。
+	 * <p>
+	 * @param scratch 一時ドキュメントの場合 true
+	 */
+	CompactDocument(boolean scratch) {
+		super(null, 0);
+		this.scratch = scratch;
+		allocate(DOCUMENT_NODE, "#document", null, null, null);
+		nodes[0] = this;
+		return;
+	}
+
+	// ======================================================================
+	// ノードの割り当て
+	// ======================================================================
+	/**
+	 * 新しいノードを割り当てノード番号を返します。割り当てられたノードは親を持ちません。
+	 * <p>
+	 * @param type ノードの型
+	 * @param name ノード名
+	 * @param uri 名前空間 URI
+	 * @param localName ローカル名
+	 * @param value ノードの値
+	 * @return ノード番号
+	 */
+	int allocate(short type, String name, String uri, String localName, String value){
+		if(size == types.length){
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			lastChildren = Arrays.copyOf(lastChildren, capacity);
+			previousSiblings = Arrays.copyOf(previousSiblings, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			attributes = Arrays.copyOf(attributes, capacity);
+			lastAttributes = Arrays.copyOf(lastAttributes, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			names = Arrays.copyOf(names, capacity);
+			namespaces = Arrays.copyOf(namespaces, capacity);
+			localNames = Arrays.copyOf(localNames, capacity);
+			values = Arrays.copyOf(values, capacity);
+			nodes = Arrays.copyOf(nodes, capacity);
+		}
+		int id = size;
+		types[id] = type;
+		parents[id] = -1;
+		firstChildren[id] = -1;
+		lastChildren[id] = -1;
+		previousSiblings[id] = -1;
+		nextSiblings[id] = -1;
+		attributes[id] = -1;
+		lastAttributes[id] = -1;
+		names[id] = name;
+		namespaces[id] = uri;
+		localNames[id] = localName;
+		values[id] = value;
+		size ++;
+		return id;
+	}
+
+	// ======================================================================
+	// ノードビューの参照
+	// ======================================================================
+	/**
+	 * 指定されたノード番号のノードビューを参照します。
+	 * <p>
+	 * @param id ノード番号 (負の値の場合は null を返す)
+	 * @return ノード
+	 */
+	CompactNode node(int id){
+		if(id < 0){
+			return null;
+		}
+		CompactNode node = nodes[id];
+		if(node == null){
+			switch(types[id]){
+			case ELEMENT_NODE:					node = new CompactElement(this, id);	break;
+			case ATTRIBUTE_NODE:				node = new CompactAttr(this, id);	break;
+			case TEXT_NODE:						node = new CompactCharacterData.TextImpl(this, id);	break;
+			case CDATA_SECTION_NODE:			node = new CompactCharacterData.CDATASectionImpl(this, id);	break;
+			case COMMENT_NODE:					node = new CompactCharacterData.CommentImpl(this, id);	break;
+			case PROCESSING_INSTRUCTION_NODE:	node = new CompactProcessingInstruction(this, id);	break;
+			case DOCUMENT_TYPE_NODE:			node = new CompactDocumentType(this, id);	break;
+			case DOCUMENT_FRAGMENT_NODE:		node = new CompactDocumentFragment(this, id);	break;
+			default:
+				throw new IllegalStateException(String.valueOf(types[id]));
+			}
+			nodes[id] = node;
+		}
+		return node;
+	}
+
+	// ======================================================================
+	// ノード番号の参照
+	// ======================================================================
+	/**
+	 * 指定されたノードのこのドキュメント上のノード番号を参照します。
+	 * <p>
+	 * @param node ノード
+	 * @return ノード番号
+	 * @throws DOMException ノードがこのドキュメントに属していない場合
+	 */
+	int idOf(Node node) throws DOMException{
+		if(! (node instanceof CompactNode) || ((CompactNode)node).doc != this){
+			throw new DOMException(DOMException.WRONG_DOCUMENT_ERR, "node is used in a different document");
+		}
+		return ((CompactNode)node).id;
+	}
+
+	// ======================================================================
+	// 位置の設定
+	// ======================================================================
+	/**
+	 * 指定されたノードの出現位置を設定します。
+	 * <p>
+	 * @param node ノード
+	 * @param line 行番号
+	 * @param column 列番号
+	 */
+	void setPosition(Node node, int line, int column){
+		int id = idOf(node);
+		lines[id] = line;
+		columns[id] = column;
+		return;
+	}
+
+	// ======================================================================
+	// 入力エンコーディングの設定
+	// ======================================================================
+	/**
+	 * このドキュメントの入力エンコーディングを設定します。
+	 * <p>
+	 * @param encoding 入力エンコーディング
+	 */
+	void setInputEncoding(String encoding){
+		this.inputEncoding = encoding;
+		return;
+	}
+
+	// ======================================================================
+	// 子ノードの挿入
+	// ======================================================================
+	/**
+	 * 指定された親ノードの子として新しいノードを挿入します。新しいノードが既にツリー内に存在
+	 * する場合は元の位置から削除されます。
+	 * <p>
+	 * @param parent 親ノード
+	 * @param newChild 挿入するノード
+	 * @param ref 挿入位置のノード番号 (負の値の場合は末尾)
+	 * @return 挿入したノード
+	 * @throws DOMException 挿入できない場合
+	 */
+	Node insert(CompactNode parent, Node newChild, int ref) throws DOMException{
+
+		// 他のドキュメントに属さないドキュメント型は複製して取り込み
+		if(newChild instanceof CompactDocumentType && ((CompactNode)newChild).doc != this
+				&& ((CompactNode)newChild).doc.scratch){
+			newChild = node(copy(newChild, false));
+		}
+		int child = idOf(newChild);
+
+		// ドキュメントフラグメントの場合は全ての子を挿入
+		if(types[child] == DOCUMENT_FRAGMENT_NODE){
+			for(int c=firstChildren[child]; c>=0; c=firstChildren[child]){
+				checkHierarchy(parent.id, c);
+			}
+			while(firstChildren[child] >= 0){
+				int c = firstChildren[child];
+				unlink(c);
+				link(parent.id, c, ref);
+			}
+			return newChild;
+		}
+
+		checkHierarchy(parent.id, child);
+		if(child == ref){
+			ref = nextSiblings[child];
+		}
+		unlink(child);
+		link(parent.id, child, ref);
+		return newChild;
+	}
+
+	// ======================================================================
+	// 階層の検証
+	// ======================================================================
+	/**
+	 * 指定された親ノードに子ノードを配置できるかを検証します。
+	 * <p>
+	 * @param parent 親ノード番号
+	 * @param child 子ノード番号
+	 * @throws DOMException 配置できない場合
+	 */
+	private void checkHierarchy(int parent, int child) throws DOMException{
+		short type = types[child];
+		boolean allowed = false;
+		switch(types[parent]){
+		case DOCUMENT_NODE:
+			if(type == ELEMENT_NODE){
+				int root = getDocumentElementId();
+				allowed = (root < 0 || root == child);
+			} else if(type == DOCUMENT_TYPE_NODE){
+				int doctype = getDoctypeId();
+				allowed = (doctype < 0 || doctype == child);
+			} else {
+				allowed = (type == PROCESSING_INSTRUCTION_NODE || type == COMMENT_NODE);
+			}
+			break;
+		case ELEMENT_NODE:
+		case DOCUMENT_FRAGMENT_NODE:
+			allowed = (type == ELEMENT_NODE || type == TEXT_NODE || type == CDATA_SECTION_NODE
+				|| type == COMMENT_NODE || type == PROCESSING_INSTRUCTION_NODE);
+			break;
+		default:
+			break;
+		}
+		if(! allowed){
+			throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR,
+				"node " + names[child] + " is not allowed as a child of " + names[parent]);
+		}
+
+		// 自分自身や祖先を子として配置することはできない
+		for(int p=parent; p>=0; p=parents[p]){
+			if(p == child){
+				throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "node is an ancestor of the parent");
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ノードの連結
+	// ======================================================================
+	/**
+	 * 親を持たないノードを指定された親ノードの子として連結します。
+	 * <p>
+	 * @param parent 親ノード番号
+	 * @param child 子ノード番号
+	 * @param ref 挿入位置のノード番号 (負の値の場合は末尾)
+	 */
+	private void link(int parent, int child, int ref){
+		assert(parents[child] < 0);
+		int prev = (ref < 0)? lastChildren[parent]: previousSiblings[ref];
+		parents[child] = parent;
+		previousSiblings[child] = prev;
+		nextSiblings[child] = ref;
+		if(prev < 0){
+			firstChildren[parent] = child;
+		} else {
+			nextSiblings[prev] = child;
+		}
+		if(ref < 0){
+			lastChildren[parent] = child;
+		} else {
+			previousSiblings[ref] = child;
+		}
+		changes ++;
+		return;
+	}
+
+	// ======================================================================
+	// ノードの切り離し
+	// ======================================================================
+	/**
+	 * 指定されたノードを親ノードから切り離します。親を持たない場合は何も行いません。
+	 * <p>
+	 * @param child 子ノード番号
+	 */
+	void unlink(int child){
+		int parent = parents[child];
+		if(parent < 0){
+			return;
+		}
+		assert(types[child] != ATTRIBUTE_NODE);
+		int prev = previousSiblings[child];
+		int next = nextSiblings[child];
+		if(prev < 0){
+			firstChildren[parent] = next;
+		} else {
+			nextSiblings[prev] = next;
+		}
+		if(next < 0){
+			lastChildren[parent] = prev;
+		} else {
+			previousSiblings[next] = prev;
+		}
+		parents[child] = -1;
+		previousSiblings[child] = -1;
+		nextSiblings[child] = -1;
+		changes ++;
+		return;
+	}
+
+	// ======================================================================
+	// 属性の検索
+	// ======================================================================
+	/**
+	 * 指定された要素から修飾名に一致する属性を検索します。
+	 * <p>
+	 * @param elem 要素のノード番号
+	 * @param name 属性の修飾名
+	 * @return 属性のノード番号 (存在しない場合は負の値)
+	 */
+	int findAttribute(int elem, String name){
+		if(isIndexed(elem)){
+			Integer a = qNameIndex.get(name);
+			return (a == null)? -1: a;
+		}
+		int count = 0;
+		for(int a=attributes[elem]; a>=0; a=nextSiblings[a]){
+			if(names[a].equals(name)){
+				return a;
+			}
+			count ++;
+		}
+		if(count >= ATTRIBUTE_INDEX_THRESHOLD){
+			buildAttributeIndex(elem);
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// 属性の検索
+	// ======================================================================
+	/**
+	 * 指定された要素から名前空間 URI とローカル名に一致する属性を検索します。
+	 * <p>
+	 * @param elem 要素のノード番号
+	 * @param uri 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 属性のノード番号 (存在しない場合は負の値)
+	 */
+	int findAttribute(int elem, String uri, String localName){
+		uri = normalizeURI(uri);
+		if(isIndexed(elem)){
+			Integer a = nsNameIndex.get(nsName(uri, localName));
+			return (a == null)? -1: a;
+		}
+		int count = 0;
+		for(int a=attributes[elem]; a>=0; a=nextSiblings[a]){
+			String l = (localNames[a] == null)? names[a]: localNames[a];
+			if(l.equals(localName) && (uri == null? namespaces[a] == null: uri.equals(namespaces[a]))){
+				return a;
+			}
+			count ++;
+		}
+		if(count >= ATTRIBUTE_INDEX_THRESHOLD){
+			buildAttributeIndex(elem);
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// 属性索引の有効性判定
+	// ======================================================================
+	/**
+	 * 指定された要素に対する有効な属性名の索引が存在するかを判定します。
+	 * <p>
+	 * @param elem 要素のノード番号
+	 * @return 索引が有効な場合 true
+	 */
+	private boolean isIndexed(int elem){
+		return indexedElement == elem && indexedChanges == changes;
+	}
+
+	// ======================================================================
+	// 属性索引の作成
+	// ======================================================================
+	/**
+	 * 指定された要素の属性名の索引を作成します。以前に作成された索引は破棄されます。索引は
+	 * 属性の追加に追従し、それ以外の変更が行われた時点で無効となります。
+	 * <p>
+	 * @param elem 要素のノード番号
+	 */
+	private void buildAttributeIndex(int elem){
+		qNameIndex.clear();
+		nsNameIndex.clear();
+		for(int a=attributes[elem]; a>=0; a=nextSiblings[a]){
+			indexAttribute(a);
+		}
+		indexedElement = elem;
+		indexedChanges = changes;
+		return;
+	}
+
+	// ======================================================================
+	// 属性索引への登録
+	// ======================================================================
+	/**
+	 * 指定された属性を索引に登録します。同じ名前の属性が既に登録されている場合は先に登録
+	 * された属性を優先します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 */
+	private void indexAttribute(int attr){
+		if(! qNameIndex.containsKey(names[attr])){
+			qNameIndex.put(names[attr], attr);
+		}
+		String l = (localNames[attr] == null)? names[attr]: localNames[attr];
+		String key = nsName(namespaces[attr], l);
+		if(! nsNameIndex.containsKey(key)){
+			nsNameIndex.put(key, attr);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 名前空間付き名前の参照
+	// ======================================================================
+	/**
+	 * 名前空間 URI とローカル名から索引のキーを作成します。
+	 * <p>
+	 * @param uri 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 索引のキー
+	 */
+	private static String nsName(String uri, String localName){
+		return (uri == null)? localName: "{" + uri + "}" + localName;
+	}
+
+	// ======================================================================
+	// 属性の追加
+	// ======================================================================
+	/**
+	 * 所有者を持たない属性を指定された要素の末尾の属性として追加します。
+	 * <p>
+	 * @param elem 要素のノード番号
+	 * @param attr 属性のノード番号
+	 */
+	void appendAttribute(int elem, int attr){
+		assert(parents[attr] < 0);
+		int last = lastAttributes[elem];
+		if(last < 0){
+			attributes[elem] = attr;
+		} else {
+			nextSiblings[last] = attr;
+		}
+		lastAttributes[elem] = attr;
+		parents[attr] = elem;
+		previousSiblings[attr] = last;
+		nextSiblings[attr] = -1;
+
+		// 索引が有効であれば追加した属性を反映
+		boolean indexed = isIndexed(elem);
+		changes ++;
+		if(indexed){
+			indexAttribute(attr);
+			indexedChanges = changes;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の置き換え
+	// ======================================================================
+	/**
+	 * 要素の属性を所有者を持たない属性に置き換えます。置き換えられた属性は所有者を持たない
+	 * 状態となります。
+	 * <p>
+	 * @param oldAttr 置き換えられる属性のノード番号
+	 * @param newAttr 新しい属性のノード番号
+	 */
+	void replaceAttribute(int oldAttr, int newAttr){
+		assert(parents[newAttr] < 0);
+		int elem = parents[oldAttr];
+		int prev = previousSiblings[oldAttr];
+		int next = nextSiblings[oldAttr];
+		if(prev < 0){
+			attributes[elem] = newAttr;
+		} else {
+			nextSiblings[prev] = newAttr;
+		}
+		if(next >= 0){
+			previousSiblings[next] = newAttr;
+		} else {
+			lastAttributes[elem] = newAttr;
+		}
+		parents[newAttr] = elem;
+		previousSiblings[newAttr] = prev;
+		nextSiblings[newAttr] = next;
+		parents[oldAttr] = -1;
+		previousSiblings[oldAttr] = -1;
+		nextSiblings[oldAttr] = -1;
+		changes ++;
+		return;
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された属性を所有者の要素から削除します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 */
+	void removeAttribute(int attr){
+		int elem = parents[attr];
+		if(elem < 0){
+			return;
+		}
+		int prev = previousSiblings[attr];
+		int next = nextSiblings[attr];
+		if(prev < 0){
+			attributes[elem] = next;
+		} else {
+			nextSiblings[prev] = next;
+		}
+		if(next >= 0){
+			previousSiblings[next] = prev;
+		} else {
+			lastAttributes[elem] = prev;
+		}
+		parents[attr] = -1;
+		previousSiblings[attr] = -1;
+		nextSiblings[attr] = -1;
+		idAttributes.clear(attr);
+		changes ++;
+		return;
+	}
+
+	// ======================================================================
+	// ID 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を ID 属性として宣言します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 * @param isId ID 属性とする場合 true
+	 */
+	void setIdAttribute(int attr, boolean isId){
+		idAttributes.set(attr, isId);
+		return;
+	}
+
+	// ======================================================================
+	// ID 属性の判定
+	// ======================================================================
+	/**
+	 * 指定された属性が ID 属性かどうかを判定します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 * @return ID 属性の場合 true
+	 */
+	boolean isIdAttribute(int attr){
+		return idAttributes.get(attr);
+	}
+
+	// ======================================================================
+	// ノードの複製
+	// ======================================================================
+	/**
+	 * 指定されたノードをこのドキュメント上に複製し、親を持たないノードのノード番号を返します。
+	 * 他の DOM 実装のノードも複製できます。
+	 * <p>
+	 * @param node 複製するノード
+	 * @param deep 子ノードも複製する場合 true
+	 * @return 複製したノードのノード番号
+	 * @throws DOMException 複製できない種類のノードの場合
+	 */
+	int copy(Node node, boolean deep) throws DOMException{
+		int id = -1;
+		short type = node.getNodeType();
+		switch(type){
+		case ELEMENT_NODE:
+			id = allocate(type, node.getNodeName(), normalizeURI(node.getNamespaceURI()), node.getLocalName(), null);
+			NamedNodeMap attrs = node.getAttributes();
+			for(int i=0; i<attrs.getLength(); i++){
+				Node attr = attrs.item(i);
+				int a = copy(attr, true);
+				appendAttribute(id, a);
+				if(attr instanceof Attr && ((Attr)attr).isId()){
+					setIdAttribute(a, true);
+				}
+			}
+			break;
+		case ATTRIBUTE_NODE:
+			return allocate(type, node.getNodeName(), normalizeURI(node.getNamespaceURI()), node.getLocalName(), node.getNodeValue());
+		case TEXT_NODE:
+		case CDATA_SECTION_NODE:
+		case COMMENT_NODE:
+		case PROCESSING_INSTRUCTION_NODE:
+			id = allocate(type, node.getNodeName(), null, null, node.getNodeValue());
+			break;
+		case DOCUMENT_TYPE_NODE:
+			DocumentType doctype = (DocumentType)node;
+			id = allocate(type, doctype.getName(), doctype.getPublicId(), null, doctype.getSystemId());
+			break;
+		case DOCUMENT_FRAGMENT_NODE:
+			id = allocate(type, "#document-fragment", null, null, null);
+			break;
+		default:
+			throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "unsupported node type: " + type);
+		}
+		if(deep){
+			for(Node n=node.getFirstChild(); n!=null; n=n.getNextSibling()){
+				link(id, copy(n, true), -1);
+			}
+		}
+		return id;
+	}
+
+	// ======================================================================
+	// テキスト内容の連結
+	// ======================================================================
+	/**
+	 * 指定されたノード以下のテキスト内容をバッファに連結します。コメントと処理命令は含み
+	 * ません。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param id ノード番号
+	 */
+	void appendTextContent(StringBuilder buffer, int id){
+		for(int c=firstChildren[id]; c>=0; c=nextSiblings[c]){
+			switch(types[c]){
+			case TEXT_NODE:
+			case CDATA_SECTION_NODE:
+				buffer.append(values[c]);
+				break;
+			case ELEMENT_NODE:
+				appendTextContent(buffer, c);
+				break;
+			default:
+				break;
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 文脈要素の参照
+	// ======================================================================
+	/**
+	 * 名前空間の検索を開始する要素を参照します。
+	 * <p>
+	 * @param id ノード番号
+	 * @return 要素のノード番号 (存在しない場合は負の値)
+	 */
+	int contextElement(int id){
+		switch(types[id]){
+		case ELEMENT_NODE:
+			return id;
+		case ATTRIBUTE_NODE:
+			return parents[id];
+		case DOCUMENT_NODE:
+			return getDocumentElementId();
+		case DOCUMENT_TYPE_NODE:
+		case DOCUMENT_FRAGMENT_NODE:
+			return -1;
+		default:
+			return parentElement(id);
+		}
+	}
+
+	// ======================================================================
+	// 親要素の参照
+	// ======================================================================
+	/**
+	 * 指定されたノードの親が要素であればそのノード番号を返します。
+	 * <p>
+	 * @param id ノード番号
+	 * @return 親要素のノード番号 (存在しない場合は負の値)
+	 */
+	int parentElement(int id){
+		int parent = parents[id];
+		return (parent >= 0 && types[parent] == ELEMENT_NODE)? parent: -1;
+	}
+
+	// ======================================================================
+	// ドキュメント内の位置の比較
+	// ======================================================================
+	/**
+	 * このドキュメント内の 2 つのノードの位置関係を比較します。
+	 * <p>
+	 * @param self 基準となるノード番号
+	 * @param other 比較するノード番号
+	 * @return {@link Node#compareDocumentPosition(Node)} の返値
+	 */
+	short compare(int self, int other){
+		int[] a = path(self);
+		int[] b = path(other);
+		if(a[0] != b[0]){
+			return (short)(DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+				| ((other < self)? DOCUMENT_POSITION_PRECEDING: DOCUMENT_POSITION_FOLLOWING));
+		}
+		int i = 0;
+		while(i < a.length && i < b.length && a[i] == b[i]){
+			i ++;
+		}
+		if(i == a.length){
+			return (short)(DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING);
+		}
+		if(i == b.length){
+			return (short)(DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING);
+		}
+
+		// 同じ親を持つ兄弟の順序を比較 (属性は子ノードより前に位置する)
+		int x = a[i];
+		int y = b[i];
+		boolean xattr = (types[x] == ATTRIBUTE_NODE);
+		boolean yattr = (types[y] == ATTRIBUTE_NODE);
+		boolean following;
+		if(xattr != yattr){
+			following = xattr;
+		} else {
+			following = false;
+			for(int n=nextSiblings[x]; n>=0; n=nextSiblings[n]){
+				if(n == y){
+					following = true;
+					break;
+				}
+			}
+		}
+		return following? DOCUMENT_POSITION_FOLLOWING: DOCUMENT_POSITION_PRECEDING;
+	}
+
+	// ======================================================================
+	// ルートからの経路の参照
+	// ======================================================================
+	/**
+	 * ルートから指定されたノードまでのノード番号の経路を参照します。
+	 * <p>
+	 * @param id ノード番号
+	 * @return ルートからの経路
+	 */
+	private int[] path(int id){
+		int depth = 0;
+		for(int p=id; p>=0; p=parents[p]){
+			depth ++;
+		}
+		int[] path = new int[depth];
+		for(int p=id; p>=0; p=parents[p]){
+			path[-- depth] = p;
+		}
+		return path;
+	}
+
+	// ======================================================================
+	// ユーザデータの設定
+	// ======================================================================
+	/**
+	 * 指定されたノードにユーザデータを設定します。位置情報はドキュメントの配列に格納します。
+	 * <p>
+	 * @param id ノード番号
+	 * @param key キー
+	 * @param data ユーザデータ
+	 * @return 以前に設定されていたユーザデータ
+	 */
+	Object setUserData(int id, String key, Object data){
+		Object old = getUserData(id, key);
+		if(key.equals(Position.USERDATA_NAME) && (data == null || data instanceof Position)){
+			Position pos = (Position)data;
+			lines[id] = (pos == null)? 0: pos.getLineNumber();
+			columns[id] = (pos == null)? 0: pos.getColumnNumber();
+			return old;
+		}
+		if(userData == null){
+			userData = new HashMap<Integer,Map<String,Object>>();
+		}
+		Map<String,Object> map = userData.get(id);
+		if(map == null){
+			map = new HashMap<String,Object>();
+			userData.put(id, map);
+		}
+		if(data == null){
+			map.remove(key);
+		} else {
+			map.put(key, data);
+		}
+		return old;
+	}
+
+	// ======================================================================
+	// ユーザデータの参照
+	// ======================================================================
+	/**
+	 * 指定されたノードのユーザデータを参照します。
+	 * <p>
+	 * @param id ノード番号
+	 * @param key キー
+	 * @return ユーザデータ
+	 */
+	Object getUserData(int id, String key){
+		if(userData != null){
+			Map<String,Object> map = userData.get(id);
+			if(map != null && map.containsKey(key)){
+				return map.get(key);
+			}
+		}
+		if(key.equals(Position.USERDATA_NAME) && lines[id] > 0){
+			return new Position(lines[id], columns[id]);
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// ドキュメント要素の参照
+	// ======================================================================
+	/**
+	 * ドキュメント要素のノード番号を参照します。
+	 * <p>
+	 * @return ドキュメント要素のノード番号 (存在しない場合は負の値)
+	 */
+	private int getDocumentElementId(){
+		for(int c=firstChildren[id]; c>=0; c=nextSiblings[c]){
+			if(types[c] == ELEMENT_NODE){
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// ドキュメント型の参照
+	// ======================================================================
+	/**
+	 * ドキュメント型のノード番号を参照します。
+	 * <p>
+	 * @return ドキュメント型のノード番号 (存在しない場合は負の値)
+	 */
+	private int getDoctypeId(){
+		for(int c=firstChildren[id]; c>=0; c=nextSiblings[c]){
+			if(types[c] == DOCUMENT_TYPE_NODE){
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// ノード値の参照
+	// ======================================================================
+	/**
+	 * ドキュメントはノードの値を持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public String getNodeValue() {
+		return null;
+	}
+
+	// ======================================================================
+	// ドキュメントの参照
+	// ======================================================================
+	/**
+	 * ドキュメントは所有者を持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public Document getOwnerDocument() {
+		return null;
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * ドキュメントはテキスト内容を持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public String getTextContent() {
+		return null;
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * ドキュメントに対しては何も行いません。
+	 * <p>
+	 * @param textContent テキスト内容
+	 */
+	@Override
+	public void setTextContent(String textContent) {
+		return;
+	}
+
+	// ======================================================================
+	// ノードの複製
+	// ======================================================================
+	/**
+	 * このドキュメントの複製を作成します。
+	 * <p>
+	 * @param deep 子ノードも複製する場合 true
+	 * @return 複製したドキュメント
+	 */
+	@Override
+	public Node cloneNode(boolean deep) {
+		CompactDocument doc = new CompactDocument();
+		doc.inputEncoding = inputEncoding;
+		doc.xmlVersion = xmlVersion;
+		doc.xmlStandalone = xmlStandalone;
+		doc.documentURI = documentURI;
+		if(deep){
+			for(int c=firstChildren[id]; c>=0; c=nextSiblings[c]){
+				doc.link(0, doc.copy(node(c), true), -1);
+			}
+		}
+		return doc;
+	}
+
+	// ======================================================================
+	// ドキュメント型の参照
+	// ======================================================================
+	/**
+	 * このドキュメントのドキュメント型を参照します。
+	 * <p>
+	 * @return ドキュメント型
+	 */
+	public DocumentType getDoctype() {
+		return (DocumentType)node(getDoctypeId());
+	}
+
+	// ======================================================================
+	// DOM 実装の参照
+	// ======================================================================
+	/**
+	 * このドキュメントの DOM 実装を参照します。
+	 * <p>
+	 * @return DOM 実装
+	 */
+	public DOMImplementation getImplementation() {
+		return new CompactDOMImplementation(this);
+	}
+
+	// ======================================================================
+	// ドキュメント要素の参照
+	// ======================================================================
+	/**
+	 * このドキュメントのドキュメント要素を参照します。
+	 * <p>
+	 * @return ドキュメント要素
+	 */
+	public Element getDocumentElement() {
+		return (Element)node(getDocumentElementId());
+	}
+
+	// ======================================================================
+	// 要素の作成
+	// ======================================================================
+	/**
+	 * 指定された名前の要素を作成します。
+	 * <p>
+	 * @param tagName 要素名
+	 * @return 要素
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public Element createElement(String tagName) throws DOMException {
+		checkName(tagName);
+		return (Element)node(allocate(ELEMENT_NODE, tagName, null, null, null));
+	}
+
+	// ======================================================================
+	// ドキュメントフラグメントの作成
+	// ======================================================================
+	/**
+	 * 空のドキュメントフラグメントを作成します。
+	 * <p>
+	 * @return ドキュメントフラグメント
+	 */
+	public DocumentFragment createDocumentFragment() {
+		return (DocumentFragment)node(allocate(DOCUMENT_FRAGMENT_NODE, "#document-fragment", null, null, null));
+	}
+
+	// ======================================================================
+	// テキストの作成
+	// ======================================================================
+	/**
+	 * 指定された文字列のテキストを作成します。
+	 * <p>
+	 * @param data 文字列
+	 * @return テキスト
+	 */
+	public Text createTextNode(String data) {
+		return (Text)node(allocate(TEXT_NODE, "#text", null, null, data));
+	}
+
+	// ======================================================================
+	// コメントの作成
+	// ======================================================================
+	/**
+	 * 指定された文字列のコメントを作成します。
+	 * <p>
+	 * @param data 文字列
+	 * @return コメント
+	 */
+	public Comment createComment(String data) {
+		return (Comment)node(allocate(COMMENT_NODE, "#comment", null, null, data));
+	}
+
+	// ======================================================================
+	// CDATA セクションの作成
+	// ======================================================================
+	/**
+	 * 指定された文字列の CDATA セクションを作成します。
+	 * <p>
+	 * @param data 文字列
+	 * @return CDATA セクション
+	 */
+	public CDATASection createCDATASection(String data) {
+		return (CDATASection)node(allocate(CDATA_SECTION_NODE, "#cdata-section", null, null, data));
+	}
+
+	// ======================================================================
+	// 処理命令の作成
+	// ======================================================================
+	/**
+	 * 指定されたターゲットとデータの処理命令を作成します。
+	 * <p>
+	 * @param target ターゲット
+	 * @param data データ
+	 * @return 処理命令
+	 * @throws DOMException ターゲットが不正な場合
+	 */
+	public ProcessingInstruction createProcessingInstruction(String target, String data) throws DOMException {
+		checkName(target);
+		return (ProcessingInstruction)node(allocate(PROCESSING_INSTRUCTION_NODE, target, null, null, data));
+	}
+
+	// ======================================================================
+	// 属性の作成
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を作成します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 属性
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public Attr createAttribute(String name) throws DOMException {
+		checkName(name);
+		return (Attr)node(allocate(ATTRIBUTE_NODE, name, null, null, ""));
+	}
+
+	// ======================================================================
+	// 実体参照の作成
+	// ======================================================================
+	/**
+	 * このドキュメントは実体参照をサポートしていないため例外が発生します。
+	 * <p>
+	 * @param name 実体名
+	 * @return 実体参照
+	 * @throws DOMException 常に発生
+	 */
+	public EntityReference createEntityReference(String name) throws DOMException {
+		throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "entity reference is not supported");
+	}
+
+	// ======================================================================
+	// 要素の検索
+	// ======================================================================
+	/**
+	 * 指定された名前の要素をドキュメント順に参照します。
+	 * <p>
+	 * @param tagname 要素名 ("*" の場合は全ての要素)
+	 * @return 要素のリスト
+	 */
+	public NodeList getElementsByTagName(String tagname) {
+		return new CompactNodeList.ElementList(this, null, tagname, false);
+	}
+
+	// ======================================================================
+	// ノードの取り込み
+	// ======================================================================
+	/**
+	 * 他のドキュメントのノードをこのドキュメントに複製します。
+	 * <p>
+	 * @param importedNode 取り込むノード
+	 * @param deep 子ノードも取り込む場合 true
+	 * @return 取り込んだノード
+	 * @throws DOMException 取り込めない種類のノードの場合
+	 */
+	public Node importNode(Node importedNode, boolean deep) throws DOMException {
+		short type = importedNode.getNodeType();
+		if(type == DOCUMENT_NODE || type == DOCUMENT_TYPE_NODE){
+			throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "cannot import node type: " + type);
+		}
+		return node(copy(importedNode, deep || type == ATTRIBUTE_NODE));
+	}
+
+	// ======================================================================
+	// 要素の作成
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI と修飾名の要素を作成します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param qualifiedName 修飾名
+	 * @return 要素
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public Element createElementNS(String namespaceURI, String qualifiedName) throws DOMException {
+		namespaceURI = normalizeURI(namespaceURI);
+		String localName = checkQName(namespaceURI, qualifiedName, true);
+		return (Element)node(allocate(ELEMENT_NODE, qualifiedName, namespaceURI, localName, null));
+	}
+
+	// ======================================================================
+	// 属性の作成
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI と修飾名の属性を作成します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param qualifiedName 修飾名
+	 * @return 属性
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public Attr createAttributeNS(String namespaceURI, String qualifiedName) throws DOMException {
+		namespaceURI = normalizeURI(namespaceURI);
+		String localName = checkQName(namespaceURI, qualifiedName, false);
+		return (Attr)node(allocate(ATTRIBUTE_NODE, qualifiedName, namespaceURI, localName, ""));
+	}
+
+	// ======================================================================
+	// 要素の検索
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の要素をドキュメント順に参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI ("*" の場合は全ての名前空間)
+	 * @param localName ローカル名 ("*" の場合は全ての要素)
+	 * @return 要素のリスト
+	 */
+	public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+		return new CompactNodeList.ElementList(this, namespaceURI, localName, true);
+	}
+
+	// ======================================================================
+	// ID による要素の参照
+	// ======================================================================
+	/**
+	 * 指定された値の ID 属性を持つ要素を参照します。
+	 * <p>
+	 * @param elementId ID
+	 * @return 要素
+	 */
+	public Element getElementById(String elementId) {
+		NodeList list = getElementsByTagName("*");
+		for(int i=0; i<list.getLength(); i++){
+			int e = ((CompactNode)list.item(i)).id;
+			for(int a=attributes[e]; a>=0; a=nextSiblings[a]){
+				if(idAttributes.get(a) && values[a].equals(elementId)){
+					return (Element)node(e);
+				}
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// 入力エンコーディングの参照
+	// ======================================================================
+	/**
+	 * このドキュメントを解析した時の入力エンコーディングを参照します。
+	 * <p>
+	 * @return 入力エンコーディング
+	 */
+	public String getInputEncoding() {
+		return inputEncoding;
+	}
+
+	// ======================================================================
+	// XML エンコーディングの参照
+	// ======================================================================
+	/**
+	 * XML 宣言で指定されたエンコーディングを参照します。
+	 * <p>
+	 * @return null
+	 */
+	public String getXmlEncoding() {
+		return null;
+	}
+
+	// ======================================================================
+	// スタンドアロンの参照
+	// ======================================================================
+	/**
+	 * このドキュメントがスタンドアロンかどうかを参照します。
+	 * <p>
+	 * @return スタンドアロンの場合 true
+	 */
+	public boolean getXmlStandalone() {
+		return xmlStandalone;
+	}
+
+	// ======================================================================
+	// スタンドアロンの設定
+	// ======================================================================
+	/**
+	 * このドキュメントがスタンドアロンかどうかを設定します。
+	 * <p>
+	 * @param xmlStandalone スタンドアロンの場合 true
+	 */
+	public void setXmlStandalone(boolean xmlStandalone) {
+		this.xmlStandalone = xmlStandalone;
+		return;
+	}
+
+	// ======================================================================
+	// XML バージョンの参照
+	// ======================================================================
+	/**
+	 * このドキュメントの XML バージョンを参照します。
+	 * <p>
+	 * @return XML バージョン
+	 */
+	public String getXmlVersion() {
+		return xmlVersion;
+	}
+
+	// ======================================================================
+	// XML バージョンの設定
+	// ======================================================================
+	/**
+	 * このドキュメントの XML バージョンを設定します。
+	 * <p>
+	 * @param xmlVersion XML バージョン ("1.0" または "1.1")
+	 * @throws DOMException サポートしていないバージョンの場合
+	 */
+	public void setXmlVersion(String xmlVersion) throws DOMException {
+		if(! "1.0".equals(xmlVersion) && ! "1.1".equals(xmlVersion)){
+			throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "unsupported xml version: " + xmlVersion);
+		}
+		this.xmlVersion = xmlVersion;
+		return;
+	}
+
+	// ======================================================================
+	// 厳密なエラーチェックの参照
+	// ======================================================================
+	/**
+	 * 厳密なエラーチェックを行うかどうかを参照します。
+	 * <p>
+	 * @return エラーチェックを行う場合 true
+	 */
+	public boolean getStrictErrorChecking() {
+		return strictErrorChecking;
+	}
+
+	// ======================================================================
+	// 厳密なエラーチェックの設定
+	// ======================================================================
+	/**
+	 * 厳密なエラーチェックを行うかどうかを設定します。このドキュメントは設定に関わらず名前の
+	 * 検証を行います。
+	 * <p>
+	 * @param strictErrorChecking エラーチェックを行う場合 true
+	 */
+	public void setStrictErrorChecking(boolean strictErrorChecking) {
+		this.strictErrorChecking = strictErrorChecking;
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメント URI の参照
+	// ======================================================================
+	/**
+	 * このドキュメントの URI を参照します。
+	 * <p>
+	 * @return ドキュメント URI
+	 */
+	public String getDocumentURI() {
+		return documentURI;
+	}
+
+	// ======================================================================
+	// ドキュメント URI の設定
+	// ======================================================================
+	/**
+	 * このドキュメントの URI を設定します。
+	 * <p>
+	 * @param documentURI ドキュメント URI
+	 */
+	public void setDocumentURI(String documentURI) {
+		this.documentURI = documentURI;
+		return;
+	}
+
+	// ======================================================================
+	// ノードの採用
+	// ======================================================================
+	/**
+	 * このドキュメントのノードを元の位置から切り離して返します。他のドキュメントのノードは
+	 * 採用できないため null を返します。
+	 * <p>
+	 * @param source 採用するノード
+	 * @return 採用したノード
+	 * @throws DOMException ドキュメントやドキュメント型を指定した場合
+	 */
+	public Node adoptNode(Node source) throws DOMException {
+		short type = source.getNodeType();
+		if(type == DOCUMENT_NODE || type == DOCUMENT_TYPE_NODE){
+			throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "cannot adopt node type: " + type);
+		}
+		if(! (source instanceof CompactNode) || ((CompactNode)source).doc != this){
+			return null;
+		}
+		int id = ((CompactNode)source).id;
+		if(type == ATTRIBUTE_NODE){
+			removeAttribute(id);
+		} else {
+			unlink(id);
+		}
+		return source;
+	}
+
+	// ======================================================================
+	// DOM 設定の参照
+	// ======================================================================
+	/**
+	 * このドキュメントは DOM 設定をサポートしていないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	public DOMConfiguration getDomConfig() {
+		return null;
+	}
+
+	// ======================================================================
+	// ドキュメントの正規化
+	// ======================================================================
+	/**
+	 * ドキュメント全体のテキストを正規化します。
+	 * <p>
+	 */
+	public void normalizeDocument() {
+		normalize();
+		return;
+	}
+
+	// ======================================================================
+	// ノード名の変更
+	// ======================================================================
+	/**
+	 * 要素または属性の名前を変更します。
+	 * <p>
+	 * @param n 名前を変更するノード
+	 * @param namespaceURI 名前空間 URI
+	 * @param qualifiedName 修飾名
+	 * @return 名前を変更したノード
+	 * @throws DOMException 名前が不正な場合や要素と属性以外を指定した場合
+	 */
+	public Node renameNode(Node n, String namespaceURI, String qualifiedName) throws DOMException {
+		int id = idOf(n);
+		if(types[id] != ELEMENT_NODE && types[id] != ATTRIBUTE_NODE){
+			throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "cannot rename node type: " + types[id]);
+		}
+		namespaceURI = normalizeURI(namespaceURI);
+		String localName = checkQName(namespaceURI, qualifiedName, types[id] == ELEMENT_NODE);
+		names[id] = qualifiedName;
+		namespaces[id] = namespaceURI;
+		localNames[id] = localName;
+		changes ++;
+		return n;
+	}
+
+	// ======================================================================
+	// 名前空間 URI の正規化
+	// ======================================================================
+	/**
+	 * 空の名前空間 URI を null に変換します。
+	 * <p>
+	 * @param uri 名前空間 URI
+	 * @return 正規化した名前空間 URI
+	 */
+	static String normalizeURI(String uri){
+		return (uri == null || uri.length() == 0)? null: uri;
+	}
+
+	// ======================================================================
+	// 名前の検証
+	// ======================================================================
+	/**
+	 * 指定された文字列が XML 名として有効かを検証します。
+	 * <p>
+	 * @param name 名前
+	 * @throws DOMException 名前が不正な場合
+	 */
+	static void checkName(String name) throws DOMException{
+		if(! isName(name, true)){
+			throw new DOMException(DOMException.INVALID_CHARACTER_ERR, "invalid name: " + name);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 修飾名の検証
+	// ======================================================================
+	/**
+	 * 指定された修飾名の形式が有効かを検証しローカル名を返します。名前空間 URI との組み合わせ
+	 * は検証しません。
+	 * <p>
+	 * @param qName 修飾名
+	 * @return ローカル名
+	 * @throws DOMException 名前が不正な場合
+	 */
+	static String checkQName(String qName) throws DOMException{
+		if(qName == null){
+			throw new DOMException(DOMException.NAMESPACE_ERR, "qualified name is null");
+		}
+		int colon1 = qName.indexOf(':');
+		int colon2 = qName.lastIndexOf(':');
+		if(colon1 == 0 || colon1 == qName.length() - 1 || colon2 != colon1){
+			throw new DOMException(DOMException.NAMESPACE_ERR, "malformed qualified name: " + qName);
+		}
+		if(! isName(qName, true) || ! isName(qName.substring(colon1 + 1), false)){
+			throw new DOMException(DOMException.INVALID_CHARACTER_ERR, "invalid name: " + qName);
+		}
+		return qName.substring(colon1 + 1);
+	}
+
+	// ======================================================================
+	// 修飾名の検証
+	// ======================================================================
+	/**
+	 * 指定された修飾名と名前空間 URI の組み合わせが有効かを検証しローカル名を返します。
+	 * 検証の順序と例外の種類は JDK 標準の DOM 実装に合わせています。
+	 * <p>
+	 * @param uri 名前空間 URI
+	 * @param qName 修飾名
+	 * @param element 要素名の場合 true、属性名の場合 false
+	 * @return ローカル名
+	 * @throws DOMException 名前が不正な場合
+	 */
+	static String checkQName(String uri, String qName, boolean element) throws DOMException{
+		if(qName == null){
+			throw new DOMException(DOMException.NAMESPACE_ERR, "qualified name is null");
+		}
+		int colon = qName.indexOf(':');
+		if(colon < 0){
+			checkQName(qName);
+			if(qName.equals(XMLConstants.XMLNS_ATTRIBUTE) != XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(uri)){
+				throw new DOMException(DOMException.NAMESPACE_ERR, "invalid namespace for " + qName + ": " + uri);
+			}
+			return qName;
+		}
+
+		// 要素の場合は接頭辞と名前空間 URI の組み合わせを先に検証
+		String prefix = qName.substring(0, colon);
+		if(element && colon != qName.length() - 1 && colon == qName.lastIndexOf(':')
+				&& (uri == null || (prefix.equals(XMLConstants.XML_NS_PREFIX) && ! uri.equals(XMLConstants.XML_NS_URI)))){
+			throw new DOMException(DOMException.NAMESPACE_ERR, "invalid namespace for " + qName + ": " + uri);
+		}
+		String localName = checkQName(qName);
+		if(uri == null || (prefix.equals(XMLConstants.XML_NS_PREFIX) && ! uri.equals(XMLConstants.XML_NS_URI))
+				|| prefix.equals(XMLConstants.XMLNS_ATTRIBUTE) != uri.equals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI)){
+			throw new DOMException(DOMException.NAMESPACE_ERR, "invalid namespace for " + qName + ": " + uri);
+		}
+		return localName;
+	}
+
+	// ======================================================================
+	// 名前の判定
+	// ======================================================================
+	/**
+	 * 指定された文字列が XML 1.0 の名前として有効かを判定します。
+	 * <p>
+	 * @param name 名前
+	 * @param colon コロンを許可する場合 true
+	 * @return 有効な場合 true
+	 */
+	private static boolean isName(String name, boolean colon){
+		if(name == null || name.length() == 0){
+			return false;
+		}
+		for(int i=0; i<name.length(); i++){
+			char ch = name.charAt(i);
+			if(ch == ':'){
+				if(! colon){
+					return false;
+				}
+			} else if(! isNameStartChar(ch)){
+				if(i == 0 || ! (ch == '-' || ch == '.' || (ch >= '0' && ch <= '9') || ch == '\u00B7'
+						|| (ch >= '\u0300' && ch <= '\u036F') || (ch >= '\u203F' && ch <= '\u2040'))){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// 名前開始文字の判定
+	// ======================================================================
+	/**
+	 * 指定された文字がコロン以外の名前開始文字かを判定します。
+	 * <p>
+	 * @param ch 文字
+	 * @return 名前開始文字の場合 true
+	 */
+	private static boolean isNameStartChar(char ch){
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_'
+			|| (ch >= '\u00C0' && ch <= '\u00D6') || (ch >= '\u00D8' && ch <= '\u00F6')
+			|| (ch >= '\u00F8' && ch <= '\u02FF') || (ch >= '\u0370' && ch <= '\u037D')
+			|| (ch >= '\u037F' && ch <= '\u1FFF') || (ch >= '\u200C' && ch <= '\u200D')
+			|| (ch >= '\u2070' && ch <= '\u218F') || (ch >= '\u2C00' && ch <= '\u2FEF')
+			|| (ch >= '\u3001' && ch <= '\uD7FF') || (ch >= '\uF900' && ch <= '\uFDCF')
+			|| (ch >= '\uFDF0' && ch <= '\uFFFD');
+	}
+
+	// ======================================================================
+	// ノードの等価性判定
+	// ======================================================================
+	/**
+	 * 2 つのノードが DOM Level 3 の定義において等価かを判定します。異なる DOM 実装のノード
+	 * 同士も比較できます。
+	 * <p>
+	 * @param a ノード
+	 * @param b ノード
+	 * @return 等価な場合 true
+	 */
+	static boolean equals(Node a, Node b){
+		if(a == b){
+			return true;
+		}
+		if(a == null || b == null || a.getNodeType() != b.getNodeType()
+				|| ! eq(a.getNodeName(), b.getNodeName())
+				|| ! eq(a.getLocalName(), b.getLocalName())
+				|| ! eq(normalizeURI(a.getNamespaceURI()), normalizeURI(b.getNamespaceURI()))
+				|| ! eq(a.getPrefix(), b.getPrefix())
+				|| ! eq(a.getNodeValue(), b.getNodeValue())){
+			return false;
+		}
+		if(a.getNodeType() == DOCUMENT_TYPE_NODE){
+			DocumentType x = (DocumentType)a;
+			DocumentType y = (DocumentType)b;
+			if(! eq(x.getPublicId(), y.getPublicId()) || ! eq(x.getSystemId(), y.getSystemId())
+					|| ! eq(x.getInternalSubset(), y.getInternalSubset())){
+				return false;
+			}
+		}
+		if(a.getNodeType() == ELEMENT_NODE){
+			NamedNodeMap x = a.getAttributes();
+			NamedNodeMap y = b.getAttributes();
+			if(x.getLength() != y.getLength()){
+				return false;
+			}
+			for(int i=0; i<x.getLength(); i++){
+				Node attr = x.item(i);
+				Node other = (attr.getLocalName() == null)?
+					y.getNamedItem(attr.getNodeName()):
+					y.getNamedItemNS(attr.getNamespaceURI(), attr.getLocalName());
+				if(other == null || ! eq(attr.getNodeName(), other.getNodeName())
+						|| ! eq(attr.getNodeValue(), other.getNodeValue())){
+					return false;
+				}
+			}
+		}
+		if(a.getNodeType() == ATTRIBUTE_NODE){
+			return true;
+		}
+		Node x = a.getFirstChild();
+		Node y = b.getFirstChild();
+		while(x != null && y != null){
+			if(! equals(x, y)){
+				return false;
+			}
+			x = x.getNextSibling();
+			y = y.getNextSibling();
+		}
+		return (x == null && y == null);
+	}
+
+	// ======================================================================
+	// 文字列の比較
+	// ======================================================================
+	/**
+	 * null を考慮して 2 つの文字列を比較します。
+	 * <p>
+	 * @param a 文字列
+	 * @param b 文字列
+	 * @return 等しい場合 true
+	 */
+	private static boolean eq(String a, String b){
+		return (a == null)? (b == null): a.equals(b);
+	}
+
+}
@@ -0,0 +1,39 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactDocumentFragment: コンパクト DOM ドキュメントフラグメント
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納されたドキュメントフラグメントのビューです。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactDocumentFragment extends CompactNode implements DocumentFragment {
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactDocumentFragment(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+}
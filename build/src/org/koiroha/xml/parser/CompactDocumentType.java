@@ -0,0 +1,165 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactDocumentType: コンパクト DOM ドキュメント型
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納されたドキュメント型のビューです。PUBLIC ID を名前空間 URI
+ * の配列に、SYSTEM ID を値の配列に格納します。実体と記法の宣言は保持しません。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactDocumentType extends CompactNode implements DocumentType {
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactDocumentType(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメントの参照
+	// ======================================================================
+	/**
+	 * このドキュメント型を所有するドキュメントを参照します。ドキュメントに属さずに作成された
+	 * 場合は null を返します。
+	 * <p>
+	 * @return ドキュメント
+	 */
+	@Override
+	public Document getOwnerDocument() {
+		return doc.scratch? null: doc;
+	}
+
+	// ======================================================================
+	// 名前空間 URI の参照
+	// ======================================================================
+	/**
+	 * ドキュメント型は名前空間に属さないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public String getNamespaceURI() {
+		return null;
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * ドキュメント型はテキスト内容を持たないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	@Override
+	public String getTextContent() {
+		return null;
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * ドキュメント型に対しては何も行いません。
+	 * <p>
+	 * @param textContent テキスト内容
+	 */
+	@Override
+	public void setTextContent(String textContent) {
+		return;
+	}
+
+	// ======================================================================
+	// 名前の参照
+	// ======================================================================
+	/**
+	 * ドキュメント型の名前を参照します。
+	 * <p>
+	 * @return 名前
+	 */
+	public String getName() {
+		return doc.names[id];
+	}
+
+	// ======================================================================
+	// 実体の参照
+	// ======================================================================
+	/**
+	 * 実体の宣言を参照します。実体は保持しないため常に空のマップを返します。
+	 * <p>
+	 * @return 空のマップ
+	 */
+	public NamedNodeMap getEntities() {
+		return new CompactNamedNodeMap(doc, -1);
+	}
+
+	// ======================================================================
+	// 記法の参照
+	// ======================================================================
+	/**
+	 * 記法の宣言を参照します。記法は保持しないため常に空のマップを返します。
+	 * <p>
+	 * @return 空のマップ
+	 */
+	public NamedNodeMap getNotations() {
+		return new CompactNamedNodeMap(doc, -1);
+	}
+
+	// ======================================================================
+	// PUBLIC ID の参照
+	// ======================================================================
+	/**
+	 * PUBLIC ID を参照します。
+	 * <p>
+	 * @return PUBLIC ID
+	 */
+	public String getPublicId() {
+		return doc.namespaces[id];
+	}
+
+	// ======================================================================
+	// SYSTEM ID の参照
+	// ======================================================================
+	/**
+	 * SYSTEM ID を参照します。
+	 * <p>
+	 * @return SYSTEM ID
+	 */
+	public String getSystemId() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// 内部サブセットの参照
+	// ======================================================================
+	/**
+	 * 内部サブセットを参照します。内部サブセットは保持しないため null を返します。
+	 * <p>
+	 * @return null
+	 */
+	public String getInternalSubset() {
+		return null;
+	}
+
+}
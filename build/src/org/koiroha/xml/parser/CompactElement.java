@@ -0,0 +1,424 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactElement: コンパクト DOM 要素
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納された要素のビューです。属性は設定された順序で保持され
+ * ます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactElement extends CompactNode implements Element {
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactElement(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * この要素の属性を設定順に参照します。
+	 * <p>
+	 * @return 属性
+	 */
+	@Override
+	public NamedNodeMap getAttributes() {
+		return new CompactNamedNodeMap(doc, id);
+	}
+
+	// ======================================================================
+	// 属性の判定
+	// ======================================================================
+	/**
+	 * この要素が属性を持つかどうかを判定します。
+	 * <p>
+	 * @return 属性を持つ場合 true
+	 */
+	@Override
+	public boolean hasAttributes() {
+		return doc.attributes[id] >= 0;
+	}
+
+	// ======================================================================
+	// 要素名の参照
+	// ======================================================================
+	/**
+	 * この要素の名前を参照します。
+	 * <p>
+	 * @return 要素名
+	 */
+	public String getTagName() {
+		return doc.names[id];
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の属性値を参照します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 属性値 (存在しない場合は空文字列)
+	 */
+	public String getAttribute(String name) {
+		int a = doc.findAttribute(id, name);
+		return (a < 0)? "": doc.values[a];
+	}
+
+	// ======================================================================
+	// 属性値の設定
+	// ======================================================================
+	/**
+	 * 指定された名前の属性値を設定します。属性が存在しない場合は末尾に追加します。
+	 * <p>
+	 * @param name 属性名
+	 * @param value 属性値
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public void setAttribute(String name, String value) throws DOMException {
+		int a = doc.findAttribute(id, name);
+		if(a < 0){
+			CompactDocument.checkName(name);
+			a = doc.allocate(ATTRIBUTE_NODE, name, null, null, value);
+			doc.appendAttribute(id, a);
+		} else {
+			doc.values[a] = value;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を削除します。
+	 * <p>
+	 * @param name 属性名
+	 */
+	public void removeAttribute(String name) {
+		int a = doc.findAttribute(id, name);
+		if(a >= 0){
+			doc.removeAttribute(a);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を参照します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 属性
+	 */
+	public Attr getAttributeNode(String name) {
+		return (Attr)doc.node(doc.findAttribute(id, name));
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を設定します。同じ名前の属性が存在する場合は置き換えます。
+	 * <p>
+	 * @param newAttr 属性
+	 * @return 置き換えられた属性
+	 * @throws DOMException 属性が他の要素で使用されている場合
+	 */
+	public Attr setAttributeNode(Attr newAttr) throws DOMException {
+		return setAttributeNode(newAttr, doc.findAttribute(id, newAttr.getName()));
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された属性を削除します。
+	 * <p>
+	 * @param oldAttr 属性
+	 * @return 削除した属性
+	 * @throws DOMException 属性がこの要素のものでない場合
+	 */
+	public Attr removeAttributeNode(Attr oldAttr) throws DOMException {
+		int a = doc.idOf(oldAttr);
+		if(doc.parents[a] != id){
+			throw new DOMException(DOMException.NOT_FOUND_ERR, "attribute is not owned by this element");
+		}
+		doc.removeAttribute(a);
+		return oldAttr;
+	}
+
+	// ======================================================================
+	// 要素の検索
+	// ======================================================================
+	/**
+	 * この要素の子孫から指定された名前の要素をドキュメント順に参照します。
+	 * <p>
+	 * @param name 要素名 ("*" の場合は全ての要素)
+	 * @return 要素のリスト
+	 */
+	public NodeList getElementsByTagName(String name) {
+		return new CompactNodeList.ElementList(this, null, name, false);
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性値を参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 属性値 (存在しない場合は空文字列)
+	 */
+	public String getAttributeNS(String namespaceURI, String localName) {
+		int a = doc.findAttribute(id, namespaceURI, localName);
+		return (a < 0)? "": doc.values[a];
+	}
+
+	// ======================================================================
+	// 属性値の設定
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI と修飾名の属性値を設定します。同じ名前空間 URI とローカル名の
+	 * 属性が存在する場合は修飾名と値を置き換えます。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param qualifiedName 修飾名
+	 * @param value 属性値
+	 * @throws DOMException 名前が不正な場合
+	 */
+	public void setAttributeNS(String namespaceURI, String qualifiedName, String value) throws DOMException {
+		namespaceURI = CompactDocument.normalizeURI(namespaceURI);
+		String localName = CompactDocument.checkQName(namespaceURI, qualifiedName, false);
+		int a = doc.findAttribute(id, namespaceURI, localName);
+		if(a < 0){
+			a = doc.allocate(ATTRIBUTE_NODE, qualifiedName, namespaceURI, localName, value);
+			doc.appendAttribute(id, a);
+		} else {
+			doc.names[a] = qualifiedName;
+			doc.values[a] = value;
+			doc.changes ++;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性を削除します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 */
+	public void removeAttributeNS(String namespaceURI, String localName) {
+		int a = doc.findAttribute(id, namespaceURI, localName);
+		if(a >= 0){
+			doc.removeAttribute(a);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性を参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 属性
+	 */
+	public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+		return (Attr)doc.node(doc.findAttribute(id, namespaceURI, localName));
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を設定します。同じ名前空間 URI とローカル名の属性が存在する場合は置き
+	 * 換えます。
+	 * <p>
+	 * @param newAttr 属性
+	 * @return 置き換えられた属性
+	 * @throws DOMException 属性が他の要素で使用されている場合
+	 */
+	public Attr setAttributeNodeNS(Attr newAttr) throws DOMException {
+		String localName = (newAttr.getLocalName() == null)? newAttr.getName(): newAttr.getLocalName();
+		return setAttributeNode(newAttr, doc.findAttribute(id, newAttr.getNamespaceURI(), localName));
+	}
+
+	// ======================================================================
+	// 要素の検索
+	// ======================================================================
+	/**
+	 * この要素の子孫から指定された名前空間 URI とローカル名の要素をドキュメント順に参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI ("*" の場合は全ての名前空間)
+	 * @param localName ローカル名 ("*" の場合は全ての要素)
+	 * @return 要素のリスト
+	 */
+	public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+		return new CompactNodeList.ElementList(this, namespaceURI, localName, true);
+	}
+
+	// ======================================================================
+	// 属性の判定
+	// ======================================================================
+	/**
+	 * 指定された名前の属性が存在するかを判定します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 存在する場合 true
+	 */
+	public boolean hasAttribute(String name) {
+		return doc.findAttribute(id, name) >= 0;
+	}
+
+	// ======================================================================
+	// 属性の判定
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性が存在するかを判定します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 存在する場合 true
+	 */
+	public boolean hasAttributeNS(String namespaceURI, String localName) {
+		return doc.findAttribute(id, namespaceURI, localName) >= 0;
+	}
+
+	// ======================================================================
+	// 型情報の参照
+	// ======================================================================
+	/**
+	 * この要素の型情報を参照します。スキーマによる型付けは行わないため常に名前を持たない型
+	 * 情報を返します。
+	 * <p>
+	 * @return 型情報
+	 */
+	public TypeInfo getSchemaTypeInfo() {
+		return CompactAttr.NO_TYPE;
+	}
+
+	// ======================================================================
+	// ID 属性の宣言
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を ID 属性として宣言します。
+	 * <p>
+	 * @param name 属性名
+	 * @param isId ID 属性とする場合 true
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	public void setIdAttribute(String name, boolean isId) throws DOMException {
+		setIdAttribute(doc.findAttribute(id, name), isId);
+		return;
+	}
+
+	// ======================================================================
+	// ID 属性の宣言
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性を ID 属性として宣言します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @param isId ID 属性とする場合 true
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) throws DOMException {
+		setIdAttribute(doc.findAttribute(id, namespaceURI, localName), isId);
+		return;
+	}
+
+	// ======================================================================
+	// ID 属性の宣言
+	// ======================================================================
+	/**
+	 * 指定された属性を ID 属性として宣言します。
+	 * <p>
+	 * @param idAttr 属性
+	 * @param isId ID 属性とする場合 true
+	 * @throws DOMException 属性がこの要素のものでない場合
+	 */
+	public void setIdAttributeNode(Attr idAttr, boolean isId) throws DOMException {
+		int a = doc.idOf(idAttr);
+		setIdAttribute((doc.parents[a] == id)? a: -1, isId);
+		return;
+	}
+
+	// ======================================================================
+	// ID 属性の宣言
+	// ======================================================================
+	/**
+	 * 指定されたノード番号の属性を ID 属性として宣言します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 * @param isId ID 属性とする場合 true
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	private void setIdAttribute(int attr, boolean isId) throws DOMException {
+		if(attr < 0){
+			throw new DOMException(DOMException.NOT_FOUND_ERR, "attribute not found");
+		}
+		doc.setIdAttribute(attr, isId);
+		return;
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を設定します。
+	 * <p>
+	 * @param newAttr 属性
+	 * @param old 置き換える属性のノード番号 (存在しない場合は負の値)
+	 * @return 置き換えられた属性
+	 * @throws DOMException 属性が他の要素で使用されている場合
+	 */
+	private Attr setAttributeNode(Attr newAttr, int old) throws DOMException {
+		int a = doc.idOf(newAttr);
+		if(a == old){
+			return newAttr;
+		}
+		if(doc.parents[a] >= 0){
+			throw new DOMException(DOMException.INUSE_ATTRIBUTE_ERR, "attribute is in use by another element");
+		}
+		if(old < 0){
+			doc.appendAttribute(id, a);
+			return null;
+		}
+		doc.replaceAttribute(old, a);
+		return (Attr)doc.node(old);
+	}
+
+}
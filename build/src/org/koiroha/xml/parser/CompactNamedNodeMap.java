@@ -0,0 +1,232 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactNamedNodeMap: コンパクト DOM 属性マップ
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} 上の要素の属性を設定された順序で参照するマップです。要素を指定
+ * せずに構築した場合は変更不可能な空のマップとなります。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactNamedNodeMap implements NamedNodeMap {
+
+	// ======================================================================
+	// ドキュメント
+	// ======================================================================
+	/**
+	 * 属性を格納しているドキュメントです。
+	 * <p>
+	 */
+	private final CompactDocument doc;
+
+	// ======================================================================
+	// 要素
+	// ======================================================================
+	/**
+	 * 属性を所有する要素のノード番号です。空のマップの場合は負の値となります。
+	 * <p>
+	 */
+	private final int elem;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 属性を所有する要素を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param elem 要素のノード番号 (負の値の場合は空のマップ)
+	 */
+	CompactNamedNodeMap(CompactDocument doc, int elem) {
+		this.doc = doc;
+		this.elem = elem;
+		return;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を参照します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 属性
+	 */
+	public Node getNamedItem(String name) {
+		return (elem < 0)? null: doc.node(doc.findAttribute(elem, name));
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を設定します。
+	 * <p>
+	 * @param arg 属性
+	 * @return 置き換えられた属性
+	 * @throws DOMException 属性でない場合や設定できない場合
+	 */
+	public Node setNamedItem(Node arg) throws DOMException {
+		return element().setAttributeNode(attr(arg));
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された名前の属性を削除します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 削除した属性
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	public Node removeNamedItem(String name) throws DOMException {
+		return remove(element() == null? -1: doc.findAttribute(elem, name));
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 属性 (範囲外の場合は null)
+	 */
+	public Node item(int index) {
+		if(elem < 0 || index < 0){
+			return null;
+		}
+		int a = doc.attributes[elem];
+		for(int i=0; a>=0 && i<index; i++){
+			a = doc.nextSiblings[a];
+		}
+		return doc.node(a);
+	}
+
+	// ======================================================================
+	// 属性数の参照
+	// ======================================================================
+	/**
+	 * 属性の数を参照します。
+	 * <p>
+	 * @return 属性の数
+	 */
+	public int getLength() {
+		int length = 0;
+		if(elem >= 0){
+			for(int a=doc.attributes[elem]; a>=0; a=doc.nextSiblings[a]){
+				length ++;
+			}
+		}
+		return length;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性を参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 属性
+	 */
+	public Node getNamedItemNS(String namespaceURI, String localName) {
+		return (elem < 0)? null: doc.node(doc.findAttribute(elem, namespaceURI, localName));
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 指定された属性を設定します。
+	 * <p>
+	 * @param arg 属性
+	 * @return 置き換えられた属性
+	 * @throws DOMException 属性でない場合や設定できない場合
+	 */
+	public Node setNamedItemNS(Node arg) throws DOMException {
+		return element().setAttributeNodeNS(attr(arg));
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI とローカル名の属性を削除します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @param localName ローカル名
+	 * @return 削除した属性
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	public Node removeNamedItemNS(String namespaceURI, String localName) throws DOMException {
+		return remove(element() == null? -1: doc.findAttribute(elem, namespaceURI, localName));
+	}
+
+	// ======================================================================
+	// 要素の参照
+	// ======================================================================
+	/**
+	 * 属性を所有する要素を参照します。
+	 * <p>
+	 * @return 要素
+	 * @throws DOMException 変更不可能なマップの場合
+	 */
+	private CompactElement element() throws DOMException{
+		if(elem < 0){
+			throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "read-only map");
+		}
+		return (CompactElement)doc.node(elem);
+	}
+
+	// ======================================================================
+	// 属性への変換
+	// ======================================================================
+	/**
+	 * 指定されたノードを属性に変換します。
+	 * <p>
+	 * @param node ノード
+	 * @return 属性
+	 * @throws DOMException 属性でない場合
+	 */
+	private static Attr attr(Node node) throws DOMException{
+		if(! (node instanceof Attr)){
+			throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "node is not an attribute");
+		}
+		return (Attr)node;
+	}
+
+	// ======================================================================
+	// 属性の削除
+	// ======================================================================
+	/**
+	 * 指定されたノード番号の属性を削除します。
+	 * <p>
+	 * @param attr 属性のノード番号
+	 * @return 削除した属性
+	 * @throws DOMException 属性が存在しない場合
+	 */
+	private Node remove(int attr) throws DOMException{
+		if(attr < 0){
+			throw new DOMException(DOMException.NOT_FOUND_ERR, "attribute not found");
+		}
+		doc.removeAttribute(attr);
+		return doc.node(attr);
+	}
+
+}
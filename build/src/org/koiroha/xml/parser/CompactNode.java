@@ -0,0 +1,652 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactNode: コンパクト DOM ノード
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} の配列に格納されたノードを DOM インターフェースとして参照するための
+ * 軽量なビューです。インスタンスはノード番号のみを保持し、名前や値、ツリー構造は全て
+ * ドキュメントの配列から参照します。
+ * <p>
+ * 同一のノード番号に対するインスタンスはドキュメントによって 1 つに保たれるため、ノードの
+ * 同一性は参照の比較で判定できます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+abstract class CompactNode implements Node {
+
+	// ======================================================================
+	// ドキュメント
+	// ======================================================================
+	/**
+	 * このノードを格納しているドキュメントです。
+	 * <p>
+	 */
+	final CompactDocument doc;
+
+	// ======================================================================
+	// ノード番号
+	// ======================================================================
+	/**
+	 * ドキュメントの配列上のこのノードの番号です。
+	 * <p>
+	 */
+	final int id;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactNode(CompactDocument doc, int id) {
+		this.doc = (doc == null)? (CompactDocument)this: doc;
+		this.id = id;
+		return;
+	}
+
+	// ======================================================================
+	// ノード名の参照
+	// ======================================================================
+	/**
+	 * このノードの名前を参照します。
+	 * <p>
+	 * @return ノード名
+	 */
+	public String getNodeName() {
+		return doc.names[id];
+	}
+
+	// ======================================================================
+	// ノード値の参照
+	// ======================================================================
+	/**
+	 * このノードの値を参照します。値を持たない種類のノードは null を返します。
+	 * <p>
+	 * @return ノードの値
+	 */
+	public String getNodeValue() {
+		return null;
+	}
+
+	// ======================================================================
+	// ノード値の設定
+	// ======================================================================
+	/**
+	 * このノードの値を設定します。値を持たない種類のノードでは何も行いません。
+	 * <p>
+	 * @param nodeValue ノードの値
+	 */
+	public void setNodeValue(String nodeValue) {
+		return;
+	}
+
+	// ======================================================================
+	// ノード型の参照
+	// ======================================================================
+	/**
+	 * このノードの型を参照します。
+	 * <p>
+	 * @return ノードの型
+	 */
+	public short getNodeType() {
+		return doc.types[id];
+	}
+
+	// ======================================================================
+	// 親ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの親を参照します。
+	 * <p>
+	 * @return 親ノード
+	 */
+	public Node getParentNode() {
+		return doc.node(doc.parents[id]);
+	}
+
+	// ======================================================================
+	// 子ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの子ノードを参照します。返値はツリーの変更を反映します。
+	 * <p>
+	 * @return 子ノードのリスト
+	 */
+	public NodeList getChildNodes() {
+		return new CompactNodeList(this);
+	}
+
+	// ======================================================================
+	// 先頭の子ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの先頭の子ノードを参照します。
+	 * <p>
+	 * @return 先頭の子ノード
+	 */
+	public Node getFirstChild() {
+		return doc.node(doc.firstChildren[id]);
+	}
+
+	// ======================================================================
+	// 末尾の子ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの末尾の子ノードを参照します。
+	 * <p>
+	 * @return 末尾の子ノード
+	 */
+	public Node getLastChild() {
+		return doc.node(doc.lastChildren[id]);
+	}
+
+	// ======================================================================
+	// 前の兄弟ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの直前の兄弟ノードを参照します。
+	 * <p>
+	 * @return 前の兄弟ノード
+	 */
+	public Node getPreviousSibling() {
+		return doc.node(doc.previousSiblings[id]);
+	}
+
+	// ======================================================================
+	// 次の兄弟ノードの参照
+	// ======================================================================
+	/**
+	 * このノードの直後の兄弟ノードを参照します。
+	 * <p>
+	 * @return 次の兄弟ノード
+	 */
+	public Node getNextSibling() {
+		return doc.node(doc.nextSiblings[id]);
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * このノードの属性を参照します。要素以外は null を返します。
+	 * <p>
+	 * @return 属性
+	 */
+	public NamedNodeMap getAttributes() {
+		return null;
+	}
+
+	// ======================================================================
+	// ドキュメントの参照
+	// ======================================================================
+	/**
+	 * このノードを所有するドキュメントを参照します。
+	 * <p>
+	 * @return ドキュメント
+	 */
+	public Document getOwnerDocument() {
+		return doc;
+	}
+
+	// ======================================================================
+	// 子ノードの挿入
+	// ======================================================================
+	/**
+	 * 指定された子ノードの前に新しい子ノードを挿入します。
+	 * <p>
+	 * @param newChild 挿入するノード
+	 * @param refChild 挿入位置のノード (null の場合は末尾)
+	 * @return 挿入したノード
+	 * @throws DOMException 挿入できない場合
+	 */
+	public Node insertBefore(Node newChild, Node refChild) throws DOMException {
+		int ref = -1;
+		if(refChild != null){
+			ref = doc.idOf(refChild);
+			if(doc.parents[ref] != id || refChild.getNodeType() == ATTRIBUTE_NODE){
+				throw new DOMException(DOMException.NOT_FOUND_ERR, "reference node is not a child of this node");
+			}
+		}
+		return doc.insert(this, newChild, ref);
+	}
+
+	// ======================================================================
+	// 子ノードの置き換え
+	// ======================================================================
+	/**
+	 * 指定された子ノードを新しいノードに置き換えます。
+	 * <p>
+	 * @param newChild 新しいノード
+	 * @param oldChild 置き換えられるノード
+	 * @return 置き換えられたノード
+	 * @throws DOMException 置き換えできない場合
+	 */
+	public Node replaceChild(Node newChild, Node oldChild) throws DOMException {
+		if(newChild == oldChild){
+			return oldChild;
+		}
+		Node next = oldChild.getNextSibling();
+		removeChild(oldChild);
+		insertBefore(newChild, next);
+		return oldChild;
+	}
+
+	// ======================================================================
+	// 子ノードの削除
+	// ======================================================================
+	/**
+	 * 指定された子ノードを削除します。
+	 * <p>
+	 * @param oldChild 削除するノード
+	 * @return 削除したノード
+	 * @throws DOMException 指定されたノードが子ノードでない場合
+	 */
+	public Node removeChild(Node oldChild) throws DOMException {
+		int child = doc.idOf(oldChild);
+		if(doc.parents[child] != id || oldChild.getNodeType() == ATTRIBUTE_NODE){
+			throw new DOMException(DOMException.NOT_FOUND_ERR, "node is not a child of this node");
+		}
+		doc.unlink(child);
+		return oldChild;
+	}
+
+	// ======================================================================
+	// 子ノードの追加
+	// ======================================================================
+	/**
+	 * 新しい子ノードを末尾に追加します。
+	 * <p>
+	 * @param newChild 追加するノード
+	 * @return 追加したノード
+	 * @throws DOMException 追加できない場合
+	 */
+	public Node appendChild(Node newChild) throws DOMException {
+		return doc.insert(this, newChild, -1);
+	}
+
+	// ======================================================================
+	// 子ノードの判定
+	// ======================================================================
+	/**
+	 * このノードが子ノードを持つかどうかを判定します。
+	 * <p>
+	 * @return 子ノードを持つ場合 true
+	 */
+	public boolean hasChildNodes() {
+		return doc.firstChildren[id] >= 0;
+	}
+
+	// ======================================================================
+	// ノードの複製
+	// ======================================================================
+	/**
+	 * このノードの複製を作成します。複製されたノードは親を持ちません。
+	 * <p>
+	 * @param deep 子ノードも複製する場合 true
+	 * @return 複製したノード
+	 */
+	public Node cloneNode(boolean deep) {
+		return doc.node(doc.copy(this, deep));
+	}
+
+	// ======================================================================
+	// テキストの正規化
+	// ======================================================================
+	/**
+	 * このノード以下の隣接するテキストノードを結合し、空のテキストノードを削除します。
+	 * <p>
+	 */
+	public void normalize() {
+		int child = doc.firstChildren[id];
+		while(child >= 0){
+			int next = doc.nextSiblings[child];
+			if(doc.types[child] == TEXT_NODE){
+				if(next >= 0 && doc.types[next] == TEXT_NODE){
+					doc.values[child] = doc.values[child] + doc.values[next];
+					doc.unlink(next);
+					continue;
+				}
+				if(doc.values[child].length() == 0){
+					doc.unlink(child);
+				}
+			} else {
+				doc.node(child).normalize();
+			}
+			child = next;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 機能の判定
+	// ======================================================================
+	/**
+	 * 指定された機能をサポートしているかを判定します。
+	 * <p>
+	 * @param feature 機能名
+	 * @param version バージョン
+	 * @return サポートしている場合 true
+	 */
+	public boolean isSupported(String feature, String version) {
+		return doc.getImplementation().hasFeature(feature, version);
+	}
+
+	// ======================================================================
+	// 名前空間 URI の参照
+	// ======================================================================
+	/**
+	 * このノードの名前空間 URI を参照します。
+	 * <p>
+	 * @return 名前空間 URI
+	 */
+	public String getNamespaceURI() {
+		return doc.namespaces[id];
+	}
+
+	// ======================================================================
+	// 接頭辞の参照
+	// ======================================================================
+	/**
+	 * このノードの名前空間接頭辞を参照します。
+	 * <p>
+	 * @return 接頭辞
+	 */
+	public String getPrefix() {
+		if(doc.localNames[id] == null){
+			return null;
+		}
+		String name = doc.names[id];
+		int sep = name.indexOf(':');
+		return (sep < 0)? null: name.substring(0, sep);
+	}
+
+	// ======================================================================
+	// 接頭辞の設定
+	// ======================================================================
+	/**
+	 * このノードの名前空間接頭辞を設定します。
+	 * <p>
+	 * @param prefix 接頭辞
+	 * @throws DOMException 接頭辞が不正な場合
+	 */
+	public void setPrefix(String prefix) throws DOMException {
+		if(doc.localNames[id] == null){
+			return;
+		}
+		String name = doc.localNames[id];
+		if(prefix != null && prefix.length() > 0){
+			name = prefix + ":" + name;
+		}
+		CompactDocument.checkQName(doc.namespaces[id], name, doc.types[id] == ELEMENT_NODE);
+		doc.names[id] = name;
+		doc.changes ++;
+		return;
+	}
+
+	// ======================================================================
+	// ローカル名の参照
+	// ======================================================================
+	/**
+	 * このノードのローカル名を参照します。名前空間を指定せずに作成されたノードは null を
+	 * 返します。
+	 * <p>
+	 * @return ローカル名
+	 */
+	public String getLocalName() {
+		return doc.localNames[id];
+	}
+
+	// ======================================================================
+	// 属性の判定
+	// ======================================================================
+	/**
+	 * このノードが属性を持つかどうかを判定します。
+	 * <p>
+	 * @return 属性を持つ場合 true
+	 */
+	public boolean hasAttributes() {
+		return false;
+	}
+
+	// ======================================================================
+	// ベース URI の参照
+	// ======================================================================
+	/**
+	 * このノードのベース URI を参照します。
+	 * <p>
+	 * @return ベース URI
+	 */
+	public String getBaseURI() {
+		return doc.getDocumentURI();
+	}
+
+	// ======================================================================
+	// ドキュメント内の位置の比較
+	// ======================================================================
+	/**
+	 * 指定されたノードとのドキュメント内の位置関係を比較します。
+	 * <p>
+	 * @param other 比較するノード
+	 * @return 位置関係を表すビットマスク
+	 * @throws DOMException 比較できない場合
+	 */
+	public short compareDocumentPosition(Node other) throws DOMException {
+		if(other == this){
+			return 0;
+		}
+		if(! (other instanceof CompactNode) || ((CompactNode)other).doc != doc){
+			return (short)(DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+				| ((System.identityHashCode(other) < System.identityHashCode(this))? DOCUMENT_POSITION_PRECEDING: DOCUMENT_POSITION_FOLLOWING));
+		}
+		return doc.compare(id, ((CompactNode)other).id);
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * このノード以下のテキスト内容を参照します。
+	 * <p>
+	 * @return テキスト内容
+	 * @throws DOMException 参照できない場合
+	 */
+	public String getTextContent() throws DOMException {
+		int child = doc.firstChildren[id];
+		if(child >= 0 && doc.nextSiblings[child] < 0){
+			short type = doc.types[child];
+			if(type == TEXT_NODE || type == CDATA_SECTION_NODE){
+				return doc.values[child];
+			}
+		}
+		StringBuilder buffer = new StringBuilder();
+		doc.appendTextContent(buffer, id);
+		return buffer.toString();
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * このノードの子ノードを全て削除し指定されたテキストを設定します。
+	 * <p>
+	 * @param textContent テキスト内容
+	 * @throws DOMException 設定できない場合
+	 */
+	public void setTextContent(String textContent) throws DOMException {
+		while(doc.firstChildren[id] >= 0){
+			doc.unlink(doc.firstChildren[id]);
+		}
+		if(textContent != null && textContent.length() > 0){
+			appendChild(doc.createTextNode(textContent));
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 同一性の判定
+	// ======================================================================
+	/**
+	 * 指定されたノードがこのノードと同一かどうかを判定します。
+	 * <p>
+	 * @param other 判定するノード
+	 * @return 同一の場合 true
+	 */
+	public boolean isSameNode(Node other) {
+		return other == this;
+	}
+
+	// ======================================================================
+	// 接頭辞の検索
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI に対する接頭辞をこのノードから上位にさかのぼって検索します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @return 接頭辞
+	 */
+	public String lookupPrefix(String namespaceURI) {
+		if(namespaceURI == null){
+			return null;
+		}
+		for(int e=doc.contextElement(id); e>=0; e=doc.parentElement(e)){
+			String prefix = doc.node(e).getPrefix();
+			if(namespaceURI.equals(doc.namespaces[e]) && prefix != null){
+				return prefix;
+			}
+			for(int a=doc.attributes[e]; a>=0; a=doc.nextSiblings[a]){
+				String name = doc.names[a];
+				if(name.startsWith("xmlns:") && namespaceURI.equals(doc.values[a])){
+					return name.substring(6);
+				}
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// デフォルト名前空間の判定
+	// ======================================================================
+	/**
+	 * 指定された名前空間 URI がデフォルトの名前空間かどうかを判定します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI
+	 * @return デフォルトの名前空間の場合 true
+	 */
+	public boolean isDefaultNamespace(String namespaceURI) {
+		String uri = lookupNamespaceURI(null);
+		return (uri == null)? (namespaceURI == null): uri.equals(namespaceURI);
+	}
+
+	// ======================================================================
+	// 名前空間 URI の検索
+	// ======================================================================
+	/**
+	 * 指定された接頭辞に対する名前空間 URI をこのノードから上位にさかのぼって検索します。
+	 * <p>
+	 * @param prefix 接頭辞 (null の場合はデフォルトの名前空間)
+	 * @return 名前空間 URI
+	 */
+	public String lookupNamespaceURI(String prefix) {
+		String attr = (prefix == null)? XMLConstants.XMLNS_ATTRIBUTE: XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+		for(int e=doc.contextElement(id); e>=0; e=doc.parentElement(e)){
+			String p = doc.node(e).getPrefix();
+			if(doc.namespaces[e] != null && (prefix == null? p == null: prefix.equals(p))){
+				return doc.namespaces[e];
+			}
+			int a = doc.findAttribute(e, attr);
+			if(a >= 0){
+				String value = doc.values[a];
+				return (value.length() == 0)? null: value;
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// 等価性の判定
+	// ======================================================================
+	/**
+	 * 指定されたノードがこのノードと等価かどうかを判定します。
+	 * <p>
+	 * @param arg 判定するノード
+	 * @return 等価な場合 true
+	 */
+	public boolean isEqualNode(Node arg) {
+		return CompactDocument.equals(this, arg);
+	}
+
+	// ======================================================================
+	// 機能の参照
+	// ======================================================================
+	/**
+	 * 指定された機能を実装するオブジェクトを参照します。
+	 * <p>
+	 * @param feature 機能名
+	 * @param version バージョン
+	 * @return 機能を実装するオブジェクト
+	 */
+	public Object getFeature(String feature, String version) {
+		return isSupported(feature, version)? this: null;
+	}
+
+	// ======================================================================
+	// ユーザデータの設定
+	// ======================================================================
+	/**
+	 * このノードにユーザデータを設定します。ハンドラは保持されますが呼び出されません。
+	 * <p>
+	 * @param key キー
+	 * @param data ユーザデータ
+	 * @param handler ハンドラ
+	 * @return 以前に設定されていたユーザデータ
+	 */
+	public Object setUserData(String key, Object data, UserDataHandler handler) {
+		return doc.setUserData(id, key, data);
+	}
+
+	// ======================================================================
+	// ユーザデータの参照
+	// ======================================================================
+	/**
+	 * このノードに設定されているユーザデータを参照します。{@link Position#USERDATA_NAME}
+	 * を指定した場合はドキュメントが保持している位置情報を返します。
+	 * <p>
+	 * @param key キー
+	 * @return ユーザデータ
+	 */
+	public Object getUserData(String key) {
+		return doc.getUserData(id, key);
+	}
+
+	// ======================================================================
+	// インスタンスの文字列化
+	// ======================================================================
+	/**
+	 * このノードを文字列化します。
+	 * <p>
+	 * @return インスタンスの文字列
+	 */
+	@Override
+	public String toString() {
+		return "[" + getNodeName() + ": " + getNodeValue() + "]";
+	}
+
+}
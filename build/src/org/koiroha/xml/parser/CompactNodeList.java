@@ -0,0 +1,298 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.Arrays;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactNodeList: コンパクト DOM 子ノードリスト
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} 上のノードの子ノードを参照するリストです。ツリーの変更を反映
+ * します。
+ * <p>
+ * 先頭からの順次参照が O(n) となるよう、最後に参照した位置をドキュメントの変更回数と共に
+ * 保持しています。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactNodeList implements NodeList {
+
+	// ======================================================================
+	// 親ノード
+	// ======================================================================
+	/**
+	 * 子ノードを参照する親ノードです。
+	 * <p>
+	 */
+	private final CompactNode parent;
+
+	// ======================================================================
+	// キャッシュの変更回数
+	// ======================================================================
+	/**
+	 * キャッシュを作成した時点のドキュメントの変更回数です。
+	 * <p>
+	 */
+	private int changes = -1;
+
+	// ======================================================================
+	// 最後に参照した位置
+	// ======================================================================
+	/**
+	 * 最後に参照したインデックスです。
+	 * <p>
+	 */
+	private int lastIndex = -1;
+
+	// ======================================================================
+	// 最後に参照したノード
+	// ======================================================================
+	/**
+	 * 最後に参照したノード番号です。
+	 * <p>
+	 */
+	private int lastNode = -1;
+
+	// ======================================================================
+	// ノード数
+	// ======================================================================
+	/**
+	 * 子ノードの数です。未計算の場合は負の値となります。
+	 * <p>
+	 */
+	private int length = -1;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 親ノードを指定して構築を行います。
+	 * <p>
+	 * @param parent 親ノード
+	 */
+	CompactNodeList(CompactNode parent) {
+		this.parent = parent;
+		return;
+	}
+
+	// ======================================================================
+	// ノードの参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの子ノードを参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 子ノード (範囲外の場合は null)
+	 */
+	public Node item(int index) {
+		CompactDocument doc = parent.doc;
+		validate();
+		if(index < 0){
+			return null;
+		}
+		int i = 0;
+		int n = doc.firstChildren[parent.id];
+		if(lastIndex >= 0 && lastIndex <= index){
+			i = lastIndex;
+			n = lastNode;
+		}
+		while(n >= 0 && i < index){
+			n = doc.nextSiblings[n];
+			i ++;
+		}
+		if(n < 0){
+			return null;
+		}
+		lastIndex = i;
+		lastNode = n;
+		return doc.node(n);
+	}
+
+	// ======================================================================
+	// ノード数の参照
+	// ======================================================================
+	/**
+	 * 子ノードの数を参照します。
+	 * <p>
+	 * @return 子ノードの数
+	 */
+	public int getLength() {
+		CompactDocument doc = parent.doc;
+		validate();
+		if(length < 0){
+			length = 0;
+			for(int n=doc.firstChildren[parent.id]; n>=0; n=doc.nextSiblings[n]){
+				length ++;
+			}
+		}
+		return length;
+	}
+
+	// ======================================================================
+	// キャッシュの検証
+	// ======================================================================
+	/**
+	 * ドキュメントが変更されていればキャッシュを破棄します。
+	 * <p>
+	 */
+	private void validate(){
+		if(changes != parent.doc.changes){
+			changes = parent.doc.changes;
+			lastIndex = -1;
+			lastNode = -1;
+			length = -1;
+		}
+		return;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// ElementList: 要素リスト
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 指定されたノードの子孫から名前に一致する要素をドキュメント順に参照するリストです。
+	 * ツリーの変更を反映します。
+	 * <p>
+	 */
+	static final class ElementList implements NodeList {
+
+		/** 検索の起点となるノード */
+		private final CompactNode root;
+
+		/** 名前空間 URI */
+		private final String uri;
+
+		/** 要素名またはローカル名 */
+		private final String name;
+
+		/** 名前空間 URI とローカル名で比較する場合 true */
+		private final boolean ns;
+
+		/** キャッシュを作成した時点のドキュメントの変更回数 */
+		private int changes = -1;
+
+		/** 一致した要素のノード番号 */
+		private int[] elements = new int[0];
+
+		/** 一致した要素の数 */
+		private int length = 0;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 検索の起点と名前を指定して構築を行います。
+		 * <p>
+		 * @param root 検索の起点となるノード
+		 * @param uri 名前空間 URI
+		 * @param name 要素名またはローカル名
+		 * @param ns 名前空間 URI とローカル名で比較する場合 true
+		 */
+		ElementList(CompactNode root, String uri, String name, boolean ns) {
+			this.root = root;
+			this.uri = "*".equals(uri)? uri: CompactDocument.normalizeURI(uri);
+			this.name = name;
+			this.ns = ns;
+			return;
+		}
+
+		// ==================================================================
+		// ノードの参照
+		// ==================================================================
+		/**
+		 * 指定されたインデックスの要素を参照します。
+		 * <p>
+		 * @param index インデックス
+		 * @return 要素 (範囲外の場合は null)
+		 */
+		public Node item(int index) {
+			validate();
+			if(index < 0 || index >= length){
+				return null;
+			}
+			return root.doc.node(elements[index]);
+		}
+
+		// ==================================================================
+		// ノード数の参照
+		// ==================================================================
+		/**
+		 * 一致した要素の数を参照します。
+		 * <p>
+		 * @return 要素の数
+		 */
+		public int getLength() {
+			validate();
+			return length;
+		}
+
+		// ==================================================================
+		// キャッシュの検証
+		// ==================================================================
+		/**
+		 * ドキュメントが変更されていれば一致する要素を再検索します。
+		 * <p>
+		 */
+		private void validate(){
+			CompactDocument doc = root.doc;
+			if(changes == doc.changes){
+				return;
+			}
+			changes = doc.changes;
+			length = 0;
+
+			// 起点の子孫を先行順に走査
+			int n = doc.firstChildren[root.id];
+			while(n >= 0){
+				if(doc.types[n] == Node.ELEMENT_NODE && matches(doc, n)){
+					if(length == elements.length){
+						elements = Arrays.copyOf(elements, Math.max(16, length * 2));
+					}
+					elements[length ++] = n;
+				}
+				if(doc.firstChildren[n] >= 0){
+					n = doc.firstChildren[n];
+					continue;
+				}
+				while(n >= 0 && n != root.id && doc.nextSiblings[n] < 0){
+					n = doc.parents[n];
+				}
+				n = (n < 0 || n == root.id)? -1: doc.nextSiblings[n];
+			}
+			return;
+		}
+
+		// ==================================================================
+		// 名前の比較
+		// ==================================================================
+		/**
+		 * 指定された要素がこのリストの条件に一致するかを判定します。
+		 * <p>
+		 * @param doc ドキュメント
+		 * @param e 要素のノード番号
+		 * @return 一致する場合 true
+		 */
+		private boolean matches(CompactDocument doc, int e){
+			boolean any = "*".equals(name);
+			if(! ns){
+				return any || name.equals(doc.names[e]);
+			}
+			if(! "*".equals(uri) && (uri == null? doc.namespaces[e] != null: ! uri.equals(doc.namespaces[e]))){
+				return false;
+			}
+			return any || name.equals(doc.localNames[e]);
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// CompactProcessingInstruction: コンパクト DOM 処理命令
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link CompactDocument} に格納された処理命令のビューです。ターゲットをノード名、データを
+ * ノードの値として保持します。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class CompactProcessingInstruction extends CompactNode implements ProcessingInstruction {
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * ドキュメントとノード番号を指定して構築を行います。
+	 * <p>
+	 * @param doc ドキュメント
+	 * @param id ノード番号
+	 */
+	CompactProcessingInstruction(CompactDocument doc, int id) {
+		super(doc, id);
+		return;
+	}
+
+	// ======================================================================
+	// ノード値の参照
+	// ======================================================================
+	/**
+	 * 処理命令のデータを参照します。
+	 * <p>
+	 * @return データ
+	 */
+	@Override
+	public String getNodeValue() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// ノード値の設定
+	// ======================================================================
+	/**
+	 * 処理命令のデータを設定します。
+	 * <p>
+	 * @param nodeValue データ
+	 */
+	@Override
+	public void setNodeValue(String nodeValue) {
+		setData(nodeValue);
+		return;
+	}
+
+	// ======================================================================
+	// テキスト内容の参照
+	// ======================================================================
+	/**
+	 * 処理命令のデータを参照します。
+	 * <p>
+	 * @return データ
+	 */
+	@Override
+	public String getTextContent() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// テキスト内容の設定
+	// ======================================================================
+	/**
+	 * 処理命令のデータを設定します。
+	 * <p>
+	 * @param textContent データ
+	 */
+	@Override
+	public void setTextContent(String textContent) {
+		setData(textContent);
+		return;
+	}
+
+	// ======================================================================
+	// ターゲットの参照
+	// ======================================================================
+	/**
+	 * 処理命令のターゲットを参照します。
+	 * <p>
+	 * @return ターゲット
+	 */
+	public String getTarget() {
+		return doc.names[id];
+	}
+
+	// ======================================================================
+	// データの参照
+	// ======================================================================
+	/**
+	 * 処理命令のデータを参照します。
+	 * <p>
+	 * @return データ
+	 */
+	public String getData() {
+		return doc.values[id];
+	}
+
+	// ======================================================================
+	// データの設定
+	// ======================================================================
+	/**
+	 * 処理命令のデータを設定します。
+	 * <p>
+	 * @param data データ
+	 */
+	public void setData(String data) {
+		doc.values[id] = data;
+		return;
+	}
+
+}
@@ -0,0 +1,423 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// ElementStack: 開いている要素のスタック
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * ツリー構築中に開いている要素をドキュメント要素から順に保持するスタックです。
+ * <p>
+ * 要素名は最初の出現時に名前レコードへ変換され、名前ごとにスタック上の位置が保持されます。
+ * これにより終了タグに対応する要素の検索や {@link Toolkit#getPreferredParent(
+ * org.w3c.dom.Element, org.w3c.dom.Element)} と同じ規則による親要素の決定は、スタック
+ * の深さに依存せず償却定数時間で行われます。
+ * <p>
+ * @param <T> スタックに保持する要素の型
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class ElementStack<T> {
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * 開いている要素の数のデフォルトの上限です。
+	 * <p>
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 512;
+
+	// ======================================================================
+	// 要素
+	// ======================================================================
+	/**
+	 * 開いている要素です。
+	 * <p>
+	 */
+	private Object[] items = new Object[16];
+
+	// ======================================================================
+	// 修飾名レコード
+	// ======================================================================
+	/**
+	 * 各位置の要素の修飾名に対する名前レコードです。
+	 * <p>
+	 */
+	private Name[] qNames = new Name[16];
+
+	// ======================================================================
+	// ローカル名レコード
+	// ======================================================================
+	/**
+	 * 各位置の要素の小文字化したローカル名に対する名前レコードです。
+	 * <p>
+	 */
+	private Name[] localNames = new Name[16];
+
+	// ======================================================================
+	// 非装飾要素位置
+	// ======================================================================
+	/**
+	 * 各位置以下で最も内側にあるテキスト装飾要素でも p 要素でもない要素の位置です。該当する
+	 * 要素が存在しない場合は負の値となります。
+	 * <p>
+	 */
+	private int[] anchors = new int[16];
+
+	// ======================================================================
+	// 開いている要素の数
+	// ======================================================================
+	/**
+	 * 開いている要素の数です。
+	 * <p>
+	 */
+	private int depth = 0;
+
+	// ======================================================================
+	// 修飾名テーブル
+	// ======================================================================
+	/**
+	 * 修飾名に対する名前レコードのテーブルです。
+	 * <p>
+	 */
+	private final Map<String,Name> qNameTable = new HashMap<String,Name>();
+
+	// ======================================================================
+	// ローカル名テーブル
+	// ======================================================================
+	/**
+	 * 小文字化したローカル名に対する名前レコードのテーブルです。
+	 * <p>
+	 */
+	private final Map<String,Name> localNameTable = new HashMap<String,Name>();
+
+	// ======================================================================
+	// ローカル名別名テーブル
+	// ======================================================================
+	/**
+	 * 小文字化する前のローカル名に対する名前レコードのテーブルです。
+	 * <p>
+	 */
+	private final Map<String,Name> aliasTable = new HashMap<String,Name>();
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 空のスタックを構築します。
+	 * <p>
+	 */
+	public ElementStack() {
+		return;
+	}
+
+	// ======================================================================
+	// 深さの参照
+	// ======================================================================
+	/**
+	 * 開いている要素の数を参照します。
+	 * <p>
+	 * @return 開いている要素の数
+	 */
+	public int depth(){
+		return depth;
+	}
+
+	// ======================================================================
+	// 要素の参照
+	// ======================================================================
+	/**
+	 * 指定された位置の要素を参照します。位置 0 がドキュメント要素を表します。
+	 * <p>
+	 * @param index 要素の位置
+	 * @return 要素
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index){
+		if(index < 0 || index >= depth){
+			throw new IndexOutOfBoundsException("index=" + index + ", depth=" + depth);
+		}
+		return (T)items[index];
+	}
+
+	// ======================================================================
+	// 最も内側の要素の参照
+	// ======================================================================
+	/**
+	 * 最も内側に開いている要素を参照します。
+	 * <p>
+	 * @return 最も内側の要素 (開いている要素が存在しない場合は null)
+	 */
+	@SuppressWarnings("unchecked")
+	public T peek(){
+		return (depth == 0)? null: (T)items[depth - 1];
+	}
+
+	// ======================================================================
+	// 要素の追加
+	// ======================================================================
+	/**
+	 * 指定された要素を最も内側の要素として追加します。
+	 * <p>
+	 * @param item 追加する要素
+	 * @param qName 要素の修飾名
+	 * @param localName 要素のローカル名
+	 */
+	public void push(T item, String qName, String localName){
+		if(depth == items.length){
+			int size = depth * 2;
+			items = Arrays.copyOf(items, size);
+			qNames = Arrays.copyOf(qNames, size);
+			localNames = Arrays.copyOf(localNames, size);
+			anchors = Arrays.copyOf(anchors, size);
+		}
+
+		// 名前レコードに位置を登録
+		Name qn = qNameTable.get(qName);
+		if(qn == null){
+			qn = new Name(qName);
+			qNameTable.put(qName, qn);
+		}
+		Name ln = getLocalName(localName);
+		qn.push(depth);
+		ln.push(depth);
+
+		items[depth] = item;
+		qNames[depth] = qn;
+		localNames[depth] = ln;
+		anchors[depth] = ln.anchor? depth: (depth == 0)? -1: anchors[depth - 1];
+		depth ++;
+		return;
+	}
+
+	// ======================================================================
+	// 要素の削除
+	// ======================================================================
+	/**
+	 * 最も内側の要素をスタックから取り除きます。
+	 * <p>
+	 * @return 取り除いた要素
+	 */
+	@SuppressWarnings("unchecked")
+	public T pop(){
+		if(depth == 0){
+			throw new IllegalStateException("no element opened");
+		}
+		depth --;
+		T item = (T)items[depth];
+		qNames[depth].pop();
+		localNames[depth].pop();
+		items[depth] = null;
+		qNames[depth] = null;
+		localNames[depth] = null;
+		return item;
+	}
+
+	// ======================================================================
+	// スタックのクリア
+	// ======================================================================
+	/**
+	 * 開いている全ての要素をスタックから取り除きます。名前レコードは再利用のために保持され
+	 * ます。
+	 * <p>
+	 */
+	public void clear(){
+		while(depth > 0){
+			pop();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 要素の検索
+	// ======================================================================
+	/**
+	 * 指定された修飾名を持つ最も内側の要素の位置を参照します。修飾名は大文字と小文字を区別
+	 * して比較されます。
+	 * <p>
+	 * @param qName 修飾名
+	 * @return 要素の位置 (該当する要素が開いていない場合は負の値)
+	 */
+	public int lastIndexOf(String qName){
+		Name qn = qNameTable.get(qName);
+		return (qn == null)? -1: qn.last();
+	}
+
+	// ======================================================================
+	// 適切な親要素の参照
+	// ======================================================================
+	/**
+	 * 指定されたローカル名の HTML 要素を連結するのに適切な要素の位置を参照します。判定は
+	 * {@link Toolkit#getPreferredParent(org.w3c.dom.Element, org.w3c.dom.Element)}
+	 * と同じ規則で行われます。
+	 * <p>
+	 * @param localName 連結しようとしている要素のローカル名
+	 * @return 連結に適切な親要素の位置
+	 */
+	public int getPreferredParent(String localName){
+		assert(depth > 0);
+		Name ln = getLocalName(localName);
+
+		// 指定された要素の親が決定可能な場合は最も内側の親要素を参照
+		Name[] parents = getParents(ln);
+		if(parents != null){
+			int index = -1;
+			for(int i=0; i<parents.length; i++){
+				index = Math.max(index, parents[i].last());
+			}
+			if(index >= 0){
+				return index;
+			}
+		}
+
+		// <p> 要素は非テキスト装飾タグに連結
+		if(ln.name.equals("p") && anchors[depth - 1] >= 0){
+			return anchors[depth - 1];
+		}
+
+		// 不明な場合は現在の位置を返す
+		return depth - 1;
+	}
+
+	// ======================================================================
+	// ローカル名レコードの参照
+	// ======================================================================
+	/**
+	 * 指定されたローカル名に対する名前レコードを参照します。
+	 * <p>
+	 * @param localName ローカル名
+	 * @return 名前レコード
+	 */
+	private Name getLocalName(String localName){
+		Name ln = aliasTable.get(localName);
+		if(ln == null){
+			String lower = localName.toLowerCase();
+			ln = localNameTable.get(lower);
+			if(ln == null){
+				ln = new Name(lower);
+				ln.anchor = ! Toolkit.isTextDecorationElement(lower) && ! lower.equals("p");
+				localNameTable.put(lower, ln);
+			}
+			aliasTable.put(localName, ln);
+		}
+		return ln;
+	}
+
+	// ======================================================================
+	// 親要素レコードの参照
+	// ======================================================================
+	/**
+	 * 指定された名前の要素の親となりうる要素の名前レコードを参照します。親要素の定義は最初の
+	 * 参照時に名前レコードへ変換されます。
+	 * <p>
+	 * @param ln 要素の名前レコード
+	 * @return 親要素の名前レコード (親が特定できない要素の場合は null)
+	 */
+	private Name[] getParents(Name ln){
+		if(! ln.resolved){
+			Set<String> names = Toolkit.getParentNames(ln.name);
+			if(names != null){
+				List<Name> list = new ArrayList<Name>();
+				for(String n: names){
+					list.add(getLocalName(n));
+				}
+				ln.parents = list.toArray(new Name[list.size()]);
+			}
+			ln.resolved = true;
+		}
+		return ln.parents;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Name: 名前レコード
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 要素名ごとにその名前を持つ開いている要素の位置を保持するレコードです。
+	 * <p>
+	 */
+	private static final class Name {
+
+		/** 要素名です。 */
+		public final String name;
+
+		/** テキスト装飾要素でも p 要素でもない場合 true です。 */
+		public boolean anchor = false;
+
+		/** この名前を持つ開いている要素の位置です。 */
+		private int[] positions = new int[4];
+
+		/** この名前を持つ開いている要素の数です。 */
+		private int count = 0;
+
+		/** 親となりうる要素の名前レコードです。 */
+		public Name[] parents = null;
+
+		/** 親となりうる要素の名前レコードを解決済みの場合 true です。 */
+		public boolean resolved = false;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 指定された名前のレコードを構築します。
+		 * <p>
+		 * @param name 要素名
+		 */
+		public Name(String name){
+			this.name = name;
+			return;
+		}
+
+		// ==================================================================
+		// 位置の追加
+		// ==================================================================
+		/**
+		 * この名前を持つ要素の位置を追加します。
+		 * <p>
+		 * @param index 要素の位置
+		 */
+		public void push(int index){
+			if(count == positions.length){
+				positions = Arrays.copyOf(positions, count * 2);
+			}
+			positions[count ++] = index;
+			return;
+		}
+
+		// ==================================================================
+		// 位置の削除
+		// ==================================================================
+		/**
+		 * 最も内側の位置を取り除きます。
+		 * <p>
+		 */
+		public void pop(){
+			count --;
+			return;
+		}
+
+		// ==================================================================
+		// 最も内側の位置の参照
+		// ==================================================================
+		/**
+		 * この名前を持つ最も内側の要素の位置を参照します。
+		 * <p>
+		 * @return 要素の位置 (開いていない場合は負の値)
+		 */
+		public int last(){
+			return (count == 0)? -1: positions[count - 1];
+		}
+
+	}
+
+}
@@ -0,0 +1,337 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.*;
+
+import org.koiroha.xml.Xml;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// EncodingSniffer: エンコーディング判定
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * バイナリデータの先頭部分から文字エンコーディングを判定するためのユーティリティクラスです。
+ * バッファの内容はバイト単位で直接参照され、文字列への変換や複製は行いません。
+ * <p>
+ * 判定の対象となる記述は ASCII 互換のエンコーディングで記述されていることを前提としています。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class EncodingSniffer {
+
+	// ======================================================================
+	// ログ出力先
+	// ======================================================================
+	/**
+	 * このクラスのログ出力先です。
+	 * <p>
+	 */
+	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(EncodingSniffer.class.getName());
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * コンストラクタはクラス内部からも使用されません。
+	 * <p>
+	 */
+	private EncodingSniffer() {
+		return;
+	}
+
+	// ======================================================================
+	// BOM の判定
+	// ======================================================================
+	/**
+	 * バッファの現在位置から始まる Unicode の Byte Order Mark (BOM) を判定します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @return BOM から判定したエンコーディング (BOM でない場合は null)
+	 */
+	public static String getBOMEncoding(ByteBuffer buffer){
+		int p = buffer.position();
+		int length = buffer.remaining();
+		if(length >= 2){
+			int b0 = buffer.get(p) & 0xFF;
+			int b1 = buffer.get(p + 1) & 0xFF;
+			if((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE)){
+				logger.finest("byte order mark detected");
+				return "UTF-16";	// J2SE5.0 では Charset に "Unicode" は使えない
+			}
+			if(length >= 3 && b0 == 0xEF && b1 == 0xBB && (buffer.get(p + 2) & 0xFF) == 0xBF){
+				logger.finest("utf-8 byte order mark detected");
+				return "UTF-8";
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// XML 宣言の判定
+	// ======================================================================
+	/**
+	 * バッファの現在位置から <i>limit</i> バイト以内に存在する XML 宣言の encoding 値を
+	 * 参照します。XML 宣言が存在し encoding 指定が省略されている場合は XML 仕様に基づいて
+	 * UTF-8 と判定します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param limit 判定の対象とする最大バイト数
+	 * @return XML 宣言から判定したエンコーディング (XML 宣言が存在しない場合は null)
+	 */
+	public static String getXmlDeclarationEncoding(ByteBuffer buffer, int limit){
+		int end = end(buffer, limit);
+		for(int i=indexOf(buffer, buffer.position(), end, "<?xml"); i>=0; i=indexOf(buffer, i + 1, end, "<?xml")){
+			int p = i + 5;
+			if(p >= end || ! Xml.isWhitespace((char)(buffer.get(p) & 0xFF))){
+				continue;
+			}
+			int close = indexOf(buffer, p, end, "?>");
+			if(close < 0){
+				return null;
+			}
+			String encoding = getAttribute(buffer, p, close, "encoding");
+			return (encoding == null)? "UTF-8": encoding;
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// META 要素の判定
+	// ======================================================================
+	/**
+	 * バッファの現在位置から <i>limit</i> バイト以内に存在する &lt;meta&gt; 要素から
+	 * エンコーディングを参照します。HTML5 の <code>&lt;meta charset="..."&gt;</code> と
+	 * <code>&lt;meta http-equiv="content-type" content="...; charset=..."&gt;</code>
+	 * の両方を認識し、最初にエンコーディングを決定できた要素の値を返します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param limit 判定の対象とする最大バイト数
+	 * @return &lt;meta&gt; 要素から判定したエンコーディング (判定できない場合は null)
+	 */
+	public static String getMetaEncoding(ByteBuffer buffer, int limit){
+		int end = end(buffer, limit);
+		for(int i=indexOf(buffer, buffer.position(), end, "<meta"); i>=0; i=indexOf(buffer, i + 1, end, "<meta")){
+			int p = i + 5;
+			if(p >= end || ! Xml.isWhitespace((char)(buffer.get(p) & 0xFF))){
+				continue;
+			}
+			int close = indexOf(buffer, p, end, ">");
+			if(close < 0){
+				break;
+			}
+
+			// HTML5 形式の charset 属性
+			String charset = getAttribute(buffer, p, close, "charset");
+			if(charset != null && isSupported(charset.trim())){
+				return Charset.forName(charset.trim()).name();
+			}
+
+			// http-equiv="content-type" の content 属性
+			String httpEquiv = getAttribute(buffer, p, close, "http-equiv");
+			String content = getAttribute(buffer, p, close, "content");
+			if(httpEquiv != null && httpEquiv.equalsIgnoreCase("content-type") && content != null){
+				Charset cs = Xml.getCharset(content);
+				if(cs != null){
+					return cs.name();
+				}
+			}
+		}
+		logger.finest("meta element with charset is not specified, or charset attribute unrecognized");
+		return null;
+	}
+
+	// ======================================================================
+	// 文字セットの判定
+	// ======================================================================
+	/**
+	 * 指定された名前の文字セットがこの実行環境でサポートされているかを判定します。
+	 * <p>
+	 * @param charset 文字セット名
+	 * @return サポートされている場合 true
+	 */
+	public static boolean isSupported(String charset){
+		try{
+			return charset != null && Charset.isSupported(charset);
+		} catch(IllegalCharsetNameException ex){
+			return false;
+		}
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 指定された範囲を要素内の属性定義部分とみなし、指定された名前の属性値を参照します。属性名
+	 * は ASCII の大文字と小文字を区別せずに比較されます。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param begin 属性定義部分の開始位置
+	 * @param end 属性定義部分の終了位置
+	 * @param name 属性名 (小文字)
+	 * @return 属性値 (存在しない場合は null)
+	 */
+	private static String getAttribute(ByteBuffer buffer, int begin, int end, String name){
+		int i = begin;
+		while(i < end){
+
+			// 空白とスラッシュを読み飛ばし
+			byte b = buffer.get(i);
+			if(Xml.isWhitespace((char)(b & 0xFF)) || b == '/'){
+				i ++;
+				continue;
+			}
+
+			// 属性名を読み込み
+			int nameBegin = i;
+			while(i < end && ! isDelimiter(buffer.get(i))){
+				i ++;
+			}
+			int nameEnd = i;
+			if(nameEnd == nameBegin){
+				i ++;
+				continue;
+			}
+			while(i < end && Xml.isWhitespace((char)(buffer.get(i) & 0xFF))){
+				i ++;
+			}
+
+			// 属性値を読み込み
+			int valueBegin = i;
+			int valueEnd = i;
+			if(i < end && buffer.get(i) == '='){
+				i ++;
+				while(i < end && Xml.isWhitespace((char)(buffer.get(i) & 0xFF))){
+					i ++;
+				}
+				if(i < end && (buffer.get(i) == '\"' || buffer.get(i) == '\'')){
+					byte quote = buffer.get(i);
+					valueBegin = ++ i;
+					while(i < end && buffer.get(i) != quote){
+						i ++;
+					}
+					valueEnd = i;
+					i ++;
+				} else {
+					valueBegin = i;
+					while(i < end && ! Xml.isWhitespace((char)(buffer.get(i) & 0xFF))){
+						i ++;
+					}
+					valueEnd = i;
+				}
+			}
+
+			// 名前が一致すれば値を返す
+			if(equalsIgnoreCase(buffer, nameBegin, nameEnd, name)){
+				return ascii(buffer, valueBegin, Math.min(valueEnd, end));
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// 属性名の区切り判定
+	// ======================================================================
+	/**
+	 * 指定されたバイトが属性名の終端となるかを判定します。
+	 * <p>
+	 * @param b 判定するバイト
+	 * @return 属性名の終端の場合 true
+	 */
+	private static boolean isDelimiter(byte b){
+		return b == '=' || b == '/' || b == '>' || Xml.isWhitespace((char)(b & 0xFF));
+	}
+
+	// ======================================================================
+	// 判定範囲の参照
+	// ======================================================================
+	/**
+	 * バッファの現在位置から判定対象とする範囲の終了位置を参照します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param limit 判定の対象とする最大バイト数
+	 * @return 判定範囲の終了位置
+	 */
+	private static int end(ByteBuffer buffer, int limit){
+		return buffer.position() + Math.min(buffer.remaining(), Math.max(0, limit));
+	}
+
+	// ======================================================================
+	// シーケンスの検索
+	// ======================================================================
+	/**
+	 * 指定された範囲から ASCII のシーケンスを大文字と小文字を区別せずに検索します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param begin 検索の開始位置
+	 * @param end 検索の終了位置
+	 * @param sequence 検索するシーケンス (小文字)
+	 * @return シーケンスの位置 (存在しない場合は負の値)
+	 */
+	private static int indexOf(ByteBuffer buffer, int begin, int end, String sequence){
+		byte first = (byte)sequence.charAt(0);
+		for(int i=begin; i<=end-sequence.length(); i++){
+			if(buffer.get(i) == first && equalsIgnoreCase(buffer, i, i + sequence.length(), sequence)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// ======================================================================
+	// ASCII 文字列の比較
+	// ======================================================================
+	/**
+	 * 指定された範囲のバイト列が ASCII の文字列と大文字と小文字を区別せずに一致するかを判定
+	 * します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param begin 開始位置
+	 * @param end 終了位置
+	 * @param str 比較する文字列 (小文字)
+	 * @return 一致する場合 true
+	 */
+	private static boolean equalsIgnoreCase(ByteBuffer buffer, int begin, int end, String str){
+		if(end - begin != str.length()){
+			return false;
+		}
+		for(int i=0; i<str.length(); i++){
+			int b = buffer.get(begin + i) & 0xFF;
+			if(b >= 'A' && b <= 'Z'){
+				b += 'a' - 'A';
+			}
+			if(b != str.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// ASCII 文字列の参照
+	// ======================================================================
+	/**
+	 * 指定された範囲のバイト列を ASCII 文字列として参照します。
+	 * <p>
+	 * @param buffer バッファ
+	 * @param begin 開始位置
+	 * @param end 終了位置
+	 * @return 文字列
+	 */
+	private static String ascii(ByteBuffer buffer, int begin, int end){
+		char[] ch = new char[Math.max(0, end - begin)];
+		for(int i=0; i<ch.length; i++){
+			ch[i] = (char)(buffer.get(begin + i) & 0xFF);
+		}
+		return new String(ch);
+	}
+
+}
@@ -11,6 +11,7 @@ package org.koiroha.xml.parser;
 
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.logging.Level;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
@@ -96,6 +97,35 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	 */
 	private Element current = null;
 
+	// ======================================================================
+	// 開いている要素
+	// ======================================================================
+	/**
+	 * ドキュメント要素から {@link #current} までの開いている要素のスタックです。終了タグ
+	 * に対応する要素の検索と HTML 要素の適切な親要素の決定に使用します。
+	 * <p>
+	 */
+	private final ElementStack<Element> open = new ElementStack<Element>();
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * 開いている要素の数の上限です。0 以下の場合は制限しません。
+	 * <p>
+	 */
+	private final int maxDepth;
+
+	// ======================================================================
+	// 上限を超えた要素
+	// ======================================================================
+	/**
+	 * 入れ子の上限に達したため開いている要素に追加しなかった要素です。これらの要素の終了タグ
+	 * が上位の同名の要素を終了しないよう、終了タグとの対応付けに使用します。
+	 * <p>
+	 */
+	private final OverflowElements overflow = new OverflowElements();
+
 	// ======================================================================
 	// CDATA セクションバッファ
 	// ======================================================================
@@ -142,14 +172,16 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	 * @param entityResolver エンティティリゾルバー
 	 * @param errorHandler エラーハンドラ
 	 * @param feature このビルダーの機能フラグ
+	 * @param maxDepth 開いている要素の数の上限 (0 以下の場合は制限しない)
 	 */
 	public HTMLBuilder(DocumentBuilder builder,
 			EntityResolver entityResolver, ErrorHandler errorHandler,
-			Map<String,Boolean> feature) {
+			Map<String,Boolean> feature, int maxDepth) {
 		this.builder = builder;
 //		this.entityResolver = entityResolver;
 		this.errorHandler = errorHandler;
 		this.feature.putAll(feature);
+		this.maxDepth = maxDepth;
 		return;
 	}
 
@@ -230,6 +262,18 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 		return getFeature(Xml.FEATURE_NAMESPACES);
 	}
 
+	// ======================================================================
+	// コンパクト DOM の参照
+	// ======================================================================
+	/**
+	 * 配列ベースのコンパクトな DOM を構築するかどうかを参照します。
+	 * <p>
+	 * @return コンパクトな DOM を構築する場合 true
+	*/
+	private boolean isCompactDom() {
+		return getFeature(HTMLDocumentBuilderFactory.FEATURE_COMPACT_DOM);
+	}
+
 	// ======================================================================
 	// ドキュメントの参照
 	// ======================================================================
@@ -271,7 +315,11 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 				"validation=" + builder.isValidating());
 
 		// 初期状態のドキュメントを構築
-		this.doc = builder.newDocument();
+		if(isCompactDom()){
+			this.doc = new CompactDocument();
+		} else {
+			this.doc = builder.newDocument();
+		}
 
 		return;
 	}
@@ -303,6 +351,12 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 			doc.setXmlVersion(version);
 		}
 
+		// コンパクト DOM は入力エンコーディングを直接保持
+		if(doc instanceof CompactDocument){
+			((CompactDocument)doc).setInputEncoding(locator.getEncoding());
+			return;
+		}
+
 		// 動的プロキシによるプロパティを設定
 		HTMLInvocationHandler handler = new HTMLInvocationHandler(doc);
 		handler.setInputEncoding(locator.getEncoding());
@@ -326,7 +380,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	*/
 	@Override
 	public void startElement(String uri, String localName, String name, Attributes attrs) throws SAXException{
-		logger.finest("startElement(" + uri + "," + localName + "," + name + ",attrs)");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("startElement(" + uri + "," + localName + "," + name + ",attrs)");
+		}
 
 		// 新規の要素を構築
 		Element elem = null;
@@ -365,7 +421,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 			String auri = attrs.getURI(i);
 			String aname = attrs.getQName(i);
 			String avalue = attrs.getValue(i);
-			logger.finest("setAttributeNS(" + auri + "," + aname + "," + avalue + ")");
+			if(logger.isLoggable(Level.FINEST)){
+				logger.finest("setAttributeNS(" + auri + "," + aname + "," + avalue + ")");
+			}
 			try{
 				if(isNamespaceAware()){
 					elem.setAttributeNS(auri, aname, avalue);
@@ -399,27 +457,22 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 				}
 				doc.removeChild(root);
 				doc.appendChild(elem);
+				moveTo(null);
 				logger.finest("replace html element");
 			}
 		} else {
 
 			// 検出した要素の適切な挿入位置を参照
 			if(current != null && isHtmlOptimize()){
-				Element parent = Toolkit.getPreferredParent(current, elem);
-				Element mover = current;
-				if(mover != parent){
+				int parent = open.getPreferredParent(Toolkit.getName(elem));
+				if(parent != open.depth() - 1){
 
 					// HTML 要素認識による要素の移動を警告
-					warn("E0008", mover.getTagName());
+					warn("E0008", current.getTagName());
 
 					// 省略された要素の終了を警告
-					do {
-						Position pos = (Position)mover.getUserData(Position.USERDATA_NAME);
-						warn(pos, "E0004", mover.getTagName());
-						mover = (Element)mover.getParentNode();
-					} while(mover != parent);
+					close(parent + 1);
 				}
-				current = parent;
 			}
 
 			// 要素の連結
@@ -428,8 +481,19 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 
 		// 空要素でなければ下位の要素に移動
 		if(! Toolkit.isEmptyElement(uri, localName, name)){
-			current = elem;
-			logger.finest("current element pointer set to <" + name + ">");
+
+			// 入れ子の上限に達している場合は内容を持たない要素として扱う
+			Node parent = elem.getParentNode();
+			moveTo((parent instanceof Element)? (Element)parent: null);
+			if(maxDepth > 0 && open.depth() >= maxDepth){
+				warn("E0011", maxDepth, name);
+				overflow.add(name);
+				return;
+			}
+			moveTo(elem);
+			if(logger.isLoggable(Level.FINEST)){
+				logger.finest("current element pointer set to <" + name + ">");
+			}
 		}
 
 		return;
@@ -448,7 +512,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	*/
 	@Override
 	public void endElement(String uri, String localName, String name) throws SAXException{
-		logger.finest("endElement(" + uri + "," + localName + "," + name + ")");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("endElement(" + uri + "," + localName + "," + name + ")");
+		}
 
 		// 空要素の終了通知は無視
 		if(Toolkit.isEmptyElement(uri, localName, name)){
@@ -457,30 +523,33 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 			return;
 		}
 
+		// 上限を超えた要素の終了はその要素と内側の要素の終了として扱う
+		if(overflow.close(name)){
+			return;
+		}
+
 		// 終了対象の要素を検出
-		Element target = search(name);
+		int target = open.lastIndexOf(name);
 
 		// 上位に定義されていない要素の終了が通知された場合
-		if(target == null){
+		if(target < 0){
 			warn("E0002", name);
 			return;
 		}
 
 		// スキップしてさかのぼる要素の終了省略を警告
-		Element mover = current;
-		while(mover != target){
-			Position pos = (Position)mover.getUserData(Position.USERDATA_NAME);
-			warn(pos, "E0004", mover.getTagName());
-			mover = (Element)mover.getParentNode();
-		}
+		close(target + 1);
+		open.pop();
+		current = open.peek();
+		overflow.clear();
 
-		if(target.getParentNode() instanceof Element){
-			current = (Element)target.getParentNode();
-			logger.finest("move current elemnt to <" + current.getTagName() + ">");
+		if(current != null){
+			if(logger.isLoggable(Level.FINEST)){
+				logger.finest("move current elemnt to <" + current.getTagName() + ">");
+			}
 
 		// エピローグの開始
 		} else {
-			current = null;
 			epilogue = new StringBuilder();
 			logger.finest("end document element, start epilogue");
 		}
@@ -558,7 +627,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	*/
 	@Override
 	public void endCDATA() {
-		logger.finest("endCDATA(): <![CDATA[" + cdata + "]]>");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("endCDATA(): <![CDATA[" + cdata + "]]>");
+		}
 		CDATASection cdata = doc.createCDATASection(this.cdata.toString());
 		appendNode(cdata);
 		this.cdata = null;
@@ -577,7 +648,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	*/
 	@Override
 	public void characters(char[] ch, int start, int length){
-		logger.finest("characters(ch," + start + "," + length + ")");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("characters(ch," + start + "," + length + ")");
+		}
 
 		// CDATA セクションを評価中の場合はバッファに保持するだけで続行
 		if(cdata != null){
@@ -616,7 +689,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	 * @throws SAXException 呼び出し側により処理を中断する場合
 	*/
 	public void endComment() throws SAXException{
-		logger.finest("endComment(): <!--" + comment + "-->");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("endComment(): <!--" + comment + "-->");
+		}
 
 		if(! isIgnoringComments()){
 
@@ -661,7 +736,9 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	*/
 	@Override
 	public void processingInstruction(String target, String data) throws SAXException{
-		logger.finest("processingInstruction(" + target + "," + data + ")");
+		if(logger.isLoggable(Level.FINEST)){
+			logger.finest("processingInstruction(" + target + "," + data + ")");
+		}
 		try{
 			ProcessingInstruction pi = doc.createProcessingInstruction(target, data);
 			appendNode(pi);
@@ -711,8 +788,12 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	 * @param node 追加するノード
 	*/
 	private void appendNode(Node node){
-		Position pos = new Position(locator.getLineNumber(), locator.getColumnNumber());
-		node.setUserData(Position.USERDATA_NAME, pos, null);
+		if(doc instanceof CompactDocument){
+			((CompactDocument)doc).setPosition(node, locator.getLineNumber(), locator.getColumnNumber());
+		} else {
+			Position pos = new Position(locator.getLineNumber(), locator.getColumnNumber());
+			node.setUserData(Position.USERDATA_NAME, pos, null);
+		}
 
 		// ドキュメント要素内で評価中のコンテキストを持つ場合
 		if(current != null){
@@ -747,7 +828,7 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 			Element root = doc.createElementNS(XMLConstants.NULL_NS_URI, "html");
 			doc.appendChild(root);
 			root.appendChild(node);
-			current = root;
+			moveTo(root);
 			logger.finest("create html element implicitly because appearance of node for element");
 			assert(root.getLocalName() != null): root;
 			return;
@@ -779,29 +860,56 @@ class HTMLBuilder extends DefaultHandler2 implements BuilderLexicalHandler {
 	}
 
 	// ======================================================================
-	// 要素の検索
+	// 省略された要素の終了
 	// ======================================================================
 	/**
-	 * 現在評価中の要素から上位にさかのぼって指定された要素を検索します。
+	 * 開いている要素のうち指定された位置より内側の要素を終了し、終了が省略された要素として
+	 * 警告します。
 	 * <p>
-	 * @param qName 修飾名
-	 * @return 該当する要素
+	 * @param depth 終了後の開いている要素の数
+	 * @throws SAXException ハンドラによって中断された場合
 	*/
-	private Element search(String qName){
-		if(current == null){
-			return null;
+	private void close(int depth) throws SAXException{
+		while(open.depth() > depth){
+			Element mover = open.pop();
+			Position pos = (Position)mover.getUserData(Position.USERDATA_NAME);
+			warn(pos, "E0004", mover.getTagName());
+			overflow.clear();
+		}
+		current = open.peek();
+		return;
+	}
+
+	// ======================================================================
+	// 処理対象要素の移動
+	// ======================================================================
+	/**
+	 * 処理対象の要素を指定された要素に移動します。要素が現在の処理対象の子でない場合は
+	 * 開いている要素のスタックをドキュメント要素から再構築します。
+	 * <p>
+	 * @param elem 新しい処理対象の要素 (ドキュメント要素の範囲外とする場合は null)
+	*/
+	private void moveTo(Element elem){
+		if(elem == current){
+			return;
 		}
-		Element mover = current;
-		while(true){
-			if(mover.getTagName().equals(qName)){
-				return mover;
+		if(elem != null && elem.getParentNode() == current && current != null){
+			open.push(elem, elem.getTagName(), Toolkit.getName(elem));
+		} else {
+
+			// 移動先の要素から上位の要素をさかのぼってスタックを再構築
+			open.clear();
+			overflow.clear();
+			LinkedList<Element> path = new LinkedList<Element>();
+			for(Node n=elem; n instanceof Element; n=n.getParentNode()){
+				path.addFirst((Element)n);
 			}
-			if(! (mover.getParentNode() instanceof Element)){
-				break;
+			for(Element e: path){
+				open.push(e, e.getTagName(), Toolkit.getName(e));
 			}
-			mover = (Element)mover.getParentNode();
 		}
-		return null;
+		current = elem;
+		return;
 	}
 
 	// ======================================================================
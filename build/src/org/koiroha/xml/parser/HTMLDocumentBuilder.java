@@ -9,7 +9,8 @@
  */
 package org.koiroha.xml.parser;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import javax.xml.parsers.*;
@@ -24,11 +25,24 @@ import org.xml.sax.*;
 /**
  * HTML ドキュメントビルダーです。
  * <p>
+ * インスタンスは {@link HTMLDocumentBuilderFactory#newDocumentBuilder()} で構築します。
+ * メモリ上のバッファを解析する場合は {@link #parse(ByteBuffer)} を使用するためにこのクラス
+ * へキャストしてください。
+ * <p>
  * @version $Revision: 1.3 $ $Date: 2010/02/24 13:59:38 $
  * @author torao
  * @since 2009/04/01 Java2 SE 5.0
  */
-class HTMLDocumentBuilder extends DocumentBuilder {
+public class HTMLDocumentBuilder extends DocumentBuilder {
+
+	// ======================================================================
+	// 先読みサイズ
+	// ======================================================================
+	/**
+	 * ファイルの解析時にエンコーディングの判定に使用する先頭部分の最大バイトサイズです。
+	 * <p>
+	 */
+	private static final int PREREAD_LENGTH = 8 * 1024;
 
 	// ======================================================================
 	// 機能フラグ
@@ -48,6 +62,16 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	 */
 	private final DocumentBuilder builder;
 
+	// ======================================================================
+	// HTML パーサファクトリ
+	// ======================================================================
+	/**
+	 * ファイルやバッファの解析時にエンコーディングの推測に使用する HTML パーサファクトリ
+	 * です。
+	 * <p>
+	 */
+	private final HTMLParserFactory parserFactory;
+
 	// ======================================================================
 	// エンティティリゾルバー
 	// ======================================================================
@@ -66,6 +90,24 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	 */
 	private ErrorHandler errorHandler = null;
 
+	// ======================================================================
+	// SAX リーダー
+	// ======================================================================
+	/**
+	 * 解析に使用する SAX リーダーです。最初の解析で構築され、以降の解析で再利用されます。
+	 * <p>
+	 */
+	private AbstractXMLReader reader = null;
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * 解析時に開いている要素の数の上限です。
+	 * <p>
+	 */
+	private final int maxDepth;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -73,11 +115,15 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	 * コンストラクタは何も行いません。
 	 * <p>
 	 * @param builder このインスタンスが使用するドキュメントビルダー
+	 * @param parserFactory エンコーディングの推測に使用する HTML パーサファクトリ
 	 * @param feature このビルダーの機能
+	 * @param maxDepth 開いている要素の数の上限 (0 以下の場合は制限しない)
 	 */
-	public HTMLDocumentBuilder(DocumentBuilder builder, Map<String,Boolean> feature) {
+	HTMLDocumentBuilder(DocumentBuilder builder, HTMLParserFactory parserFactory, Map<String,Boolean> feature, int maxDepth) {
 		this.builder = builder;
+		this.parserFactory = parserFactory;
 		this.feature.putAll(feature);
+		this.maxDepth = maxDepth;
 		return;
 	}
 
@@ -108,6 +154,9 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	 */
 	@Override
 	public DOMImplementation getDOMImplementation() {
+		if(getFeature(HTMLDocumentBuilderFactory.FEATURE_COMPACT_DOM)){
+			return new CompactDOMImplementation(null);
+		}
 		return builder.getDOMImplementation();
 	}
 
@@ -147,6 +196,9 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	 */
 	@Override
 	public Document newDocument() {
+		if(getFeature(HTMLDocumentBuilderFactory.FEATURE_COMPACT_DOM)){
+			return new CompactDocument();
+		}
 		return builder.newDocument();
 	}
 
@@ -156,6 +208,9 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	/**
 	 * 指定された入力ソースに基づいて解析を実行します。
 	 * <p>
+	 * 最初の解析で構築した SAX リーダーは以降の解析でも再利用されます。このため同一のインス
+	 * タンスを複数のスレッドから同時に使用することはできません。
+	 * <p>
 	 * @param is 入力ソース
 	 * @return 解析したドキュメント
 	 * @throws SAXException
@@ -164,6 +219,117 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 	@Override
 	public Document parse(InputSource is) throws SAXException, IOException {
 
+		// SAX リーダーの参照
+		XMLReader reader = getXMLReader();
+		reader.setErrorHandler(errorHandler);
+		reader.setEntityResolver(entityResolver);
+
+		// HTML ビルダーの構築
+		HTMLBuilder builder = new HTMLBuilder(
+				this.builder, entityResolver, errorHandler, feature, maxDepth);
+		reader.setProperty(Xml.PROPERTY_LEXICAL_HANDLER, builder);
+		reader.setContentHandler(builder);
+		reader.setDTDHandler(builder);
+
+		// 解析後のドキュメントをリーダーから参照させない
+		try{
+			reader.parse(is);
+		} finally {
+			reader.setProperty(Xml.PROPERTY_LEXICAL_HANDLER, null);
+			reader.setContentHandler(null);
+			reader.setDTDHandler(null);
+		}
+		return builder.getDocument();
+	}
+
+	// ======================================================================
+	// ファイルの解析
+	// ======================================================================
+	/**
+	 * 指定されたファイルを解析します。ファイルはメモリマップされ、先頭部分の BOM、XML 宣言、
+	 * &lt;meta&gt; 要素から判定したエンコーディングでヒープへの複製を行わずにデコードされ
+	 * ます。内容からエンコーディングを判定できない場合は UTF-8 を使用します。
+	 * <p>
+	 * @param f 解析するファイル
+	 * @return 解析したドキュメント
+	 * @throws SAXException
+	 * @throws IOException ファイルの読み込みに失敗した場合
+	 * @see HTMLParserFactory#guessInputSource(File, String, int)
+	 */
+	@Override
+	public Document parse(File f) throws SAXException, IOException {
+		if(f == null){
+			throw new IllegalArgumentException("File cannot be null");
+		}
+		InputSource is = parserFactory.guessInputSource(f, "UTF-8", PREREAD_LENGTH);
+		try{
+			return parse(is);
+		} finally {
+			Toolkit.close(is.getCharacterStream());
+		}
+	}
+
+	// ======================================================================
+	// バッファの解析
+	// ======================================================================
+	/**
+	 * 指定されたバッファの位置から限界までの内容を解析します。内容は先頭部分の BOM、XML
+	 * 宣言、&lt;meta&gt; 要素から判定したエンコーディングで複製を行わずにデコードされます。
+	 * 内容からエンコーディングを判定できない場合は UTF-8 を使用します。バッファの位置は
+	 * 変更されません。
+	 * <p>
+	 * @param buffer 解析するバッファ
+	 * @return 解析したドキュメント
+	 * @throws SAXException
+	 * @throws IOException 解析に失敗した場合
+	 * @see HTMLParserFactory#guessInputSource(ByteBuffer, String, int)
+	 */
+	public Document parse(ByteBuffer buffer) throws SAXException, IOException {
+		if(buffer == null){
+			throw new IllegalArgumentException("ByteBuffer cannot be null");
+		}
+		InputSource is = parserFactory.guessInputSource(buffer.duplicate(), "UTF-8", PREREAD_LENGTH);
+		try{
+			return parse(is);
+		} finally {
+			Toolkit.close(is.getCharacterStream());
+		}
+	}
+
+	// ======================================================================
+	// ビルダーの初期化
+	// ======================================================================
+	/**
+	 * このビルダーを構築直後の状態に戻します。設定されているエンティティリゾルバーとエラー
+	 * ハンドラは解除されますが、SAX リーダーは次の解析で再利用されます。
+	 * <p>
+	 */
+	@Override
+	public void reset() {
+		this.entityResolver = null;
+		this.errorHandler = null;
+		this.builder.reset();
+		if(reader != null){
+			reader.reset();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// SAX リーダーの参照
+	// ======================================================================
+	/**
+	 * このビルダーが解析に使用する SAX リーダーを参照します。リーダーは最初の呼び出しで構築
+	 * されます。
+	 * <p>
+	 * @return SAX リーダー
+	 * @throws SAXException リーダーの構築に失敗した場合
+	 */
+	private AbstractXMLReader getXMLReader() throws SAXException{
+		if(reader != null){
+			return reader;
+		}
+
 		// HTML パーサファクトリの構築
 		HTMLParserFactory factory = new HTMLParserFactory();
 		factory.setNamespaceAware(builder.isNamespaceAware());
@@ -175,25 +341,13 @@ class HTMLDocumentBuilder extends DocumentBuilder {
 		// SAX パーサの参照
 		SAXParser parser = factory.newSAXParser();
 		XMLReader reader = parser.getXMLReader();
-		if(this.errorHandler != null){
-			reader.setErrorHandler(errorHandler);
-		}
-		if(this.entityResolver != null){
-			reader.setEntityResolver(entityResolver);
-		}
+		reader.setFeature(LooseXMLReader.FEATURE_HTML5_ENTITY, getFeature(LooseXMLReader.FEATURE_HTML5_ENTITY));
 		assert(parser.isNamespaceAware() == builder.isNamespaceAware());
 		assert(parser.isValidating() == builder.isValidating());
 		assert(parser.isXIncludeAware() == builder.isXIncludeAware());
 
-		// HTML ビルダーの構築
-		HTMLBuilder builder = new HTMLBuilder(
-				this.builder, entityResolver, errorHandler, feature);
-		reader.setProperty(Xml.PROPERTY_LEXICAL_HANDLER, builder);
-		reader.setContentHandler(builder);
-		reader.setDTDHandler(builder);
-
-		reader.parse(is);
-		return builder.getDocument();
+		this.reader = (AbstractXMLReader)reader;
+		return this.reader;
 	}
 
 	// ======================================================================
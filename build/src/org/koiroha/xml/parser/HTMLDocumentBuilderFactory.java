@@ -10,14 +10,16 @@
 package org.koiroha.xml.parser;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.xml.parsers.*;
 import javax.xml.validation.Schema;
 
 import org.koiroha.xml.Xml;
-import org.w3c.dom.Text;
-import org.xml.sax.InputSource;
+import org.w3c.dom.*;
+import org.xml.sax.*;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // HTMLDocumentBuilderFactory: HTML ドキュメントビルダーファクトリ
@@ -100,6 +102,17 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 	 */
 	static final String FEATURE_IGNORE_COMMENT = "http://www.koiroha.org/sax/features/ignorecomment";
 
+	// ======================================================================
+	// コンパクト DOM 機能
+	// ======================================================================
+	/**
+	 * 解析結果の DOM を配列ベースのコンパクトな実装で構築する機能名です。定数値 {@value}
+	 * を示します。
+	 * <p>
+	 * @see #setCompactDom(boolean)
+	 */
+	public static final String FEATURE_COMPACT_DOM = "http://www.koiroha.org/sax/features/compactdom";
+
 	// ======================================================================
 	// 属性順序維持機能
 	// ======================================================================
@@ -128,6 +141,25 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 	 */
 	private final DocumentBuilderFactory factory;
 
+	// ======================================================================
+	// HTML パーサファクトリ
+	// ======================================================================
+	/**
+	 * 入力ソースのエンコーディングの推測に使用する HTML パーサファクトリです。このファクトリ
+	 * とこのファクトリが構築したドキュメントビルダーで共有されます。
+	 * <p>
+	 */
+	private final HTMLParserFactory parserFactory;
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * 解析時に開いている要素の数の上限です。
+	 * <p>
+	 */
+	private int maxElementDepth = ElementStack.DEFAULT_MAX_DEPTH;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -150,7 +182,25 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 	 * @param factory ベースとなるファクトリ
 	 */
 	public HTMLDocumentBuilderFactory(DocumentBuilderFactory factory) {
+		this(factory, new HTMLParserFactory());
+		return;
+	}
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 指定されたドキュメントビルダーファクトリを用いて HTML ドキュメントを作成し、指定された
+	 * HTML パーサファクトリで入力ソースのエンコーディングを推測するインスタンスを構築します。
+	 * エンコーディングの推測方法をカスタマイズしたサブクラスを使用する場合に指定します。
+	 * <p>
+	 * @param factory ベースとなるファクトリ
+	 * @param parserFactory エンコーディングの推測に使用する HTML パーサファクトリ
+	 * @see HTMLParserFactory#guessEncodingFromPrereadSampling(ByteBuffer)
+	 */
+	public HTMLDocumentBuilderFactory(DocumentBuilderFactory factory, HTMLParserFactory parserFactory) {
 		this.factory = factory;
+		this.parserFactory = parserFactory;
 		setLowerCaseName(true);
 		setHtmlOptimize(false);
 		return;
@@ -305,6 +355,103 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 		return getFeature(FEATURE_HTML_OPTIMIZE);
 	}
 
+	// ======================================================================
+	// HTML5 実体参照の設定
+	// ======================================================================
+	/**
+	 * HTML 解析時に HTML5 で定義されている全ての名前付き文字参照を認識するかどうかを設定
+	 * します。無効な場合は HTML 4.01 で定義されている実体参照のみを認識し、それ以外は
+	 * テキストとして扱います。
+	 * <p>
+	 * この機能のデフォルト値は false です。
+	 * <p>
+	 * @param html5 HTML5 の文字参照を認識する場合 true
+	 * @see LooseXMLReader#FEATURE_HTML5_ENTITY
+	*/
+	public void setHtml5Entity(boolean html5){
+		setFeature(LooseXMLReader.FEATURE_HTML5_ENTITY, html5);
+		return;
+	}
+
+	// ======================================================================
+	// HTML5 実体参照の参照
+	// ======================================================================
+	/**
+	 * HTML 解析時に HTML5 で定義されている全ての名前付き文字参照を認識するかどうかを参照
+	 * します。
+	 * <p>
+	 * @return HTML5 の文字参照を認識する場合 true
+	*/
+	public boolean isHtml5Entity(){
+		return getFeature(LooseXMLReader.FEATURE_HTML5_ENTITY);
+	}
+
+	// ======================================================================
+	// コンパクト DOM の設定
+	// ======================================================================
+	/**
+	 * 解析結果の DOM をノードごとのオブジェクトではなく並列配列に格納するコンパクトな実装で
+	 * 構築するかどうかを設定します。大量の HTML を解析する場合のメモリ使用量と GC の負荷を
+	 * 軽減します。
+	 * <p>
+	 * この機能が有効な場合、生成されたドキュメントは
+	 * {@link org.w3c.dom.Document#getInputEncoding()} を直接実装し、要素の属性は HTML 上の
+	 * 出現順に列挙されます。ノードの出現位置も
+	 * {@link Position#USERDATA_NAME} のユーザデータとして従来通り参照できます。標準の DOM
+	 * インターフェースのみを実装しているため XPath や Transformer にもそのまま使用できますが、
+	 * 実体参照の作成など一部の操作はサポートしていません。
+	 * <p>
+	 * この機能のデフォルト値は false です。
+	 * <p>
+	 * @param compact コンパクトな DOM を構築する場合 true
+	 * @see #FEATURE_COMPACT_DOM
+	*/
+	public void setCompactDom(boolean compact){
+		setFeature(FEATURE_COMPACT_DOM, compact);
+		return;
+	}
+
+	// ======================================================================
+	// コンパクト DOM の参照
+	// ======================================================================
+	/**
+	 * 解析結果の DOM をコンパクトな実装で構築するかどうかを参照します。
+	 * <p>
+	 * @return コンパクトな DOM を構築する場合 true
+	*/
+	public boolean isCompactDom(){
+		return getFeature(FEATURE_COMPACT_DOM);
+	}
+
+	// ======================================================================
+	// 最大深さの設定
+	// ======================================================================
+	/**
+	 * 解析時に開いている要素の数の上限を設定します。終了タグの省略が大量に含まれる HTML
+	 * などで入れ子がこの深さに達した場合、以降の要素は警告の上で内容を持たない要素として
+	 * 扱われ、その内容は上限の深さの要素に連結されます。
+	 * <p>
+	 * 0 以下の値を指定した場合は深さを制限しません。デフォルト値は 512 です。
+	 * <p>
+	 * @param depth 開いている要素の数の上限
+	*/
+	public void setMaxElementDepth(int depth){
+		this.maxElementDepth = depth;
+		return;
+	}
+
+	// ======================================================================
+	// 最大深さの参照
+	// ======================================================================
+	/**
+	 * 解析時に開いている要素の数の上限を参照します。
+	 * <p>
+	 * @return 開いている要素の数の上限 (0 以下の場合は制限なし)
+	*/
+	public int getMaxElementDepth(){
+		return maxElementDepth;
+	}
+
 //	// ======================================================================
 //	// 属性設定順序維持の設定
 //	// ======================================================================
@@ -577,7 +724,150 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 	 */
 	@Override
 	public DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
-		return new HTMLDocumentBuilder(factory.newDocumentBuilder(), feature);
+		return new HTMLDocumentBuilder(factory.newDocumentBuilder(), parserFactory, feature, maxElementDepth);
+	}
+
+	// ======================================================================
+	// 一括解析
+	// ======================================================================
+	/**
+	 * 指定された入力ソースを CPU コア数のスレッドで並列に解析し、結果をハンドラに通知します。
+	 * 解析中のドキュメント数はスレッド数の 2 倍に制限されます。
+	 * <p>
+	 * @param sources 解析する入力ソース
+	 * @param handler 解析結果を通知するハンドラ
+	 * @throws ParserConfigurationException ドキュメントビルダーを構築できない場合
+	 * @throws SAXException ハンドラが例外を発生した場合
+	 * @throws InterruptedException 呼び出しスレッドが割り込まれた場合
+	 * @see #parseAll(Iterable, BatchHandler, Executor, int)
+	 */
+	public void parseAll(Iterable<InputSource> sources, BatchHandler handler) throws ParserConfigurationException, SAXException, InterruptedException{
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			private int seq = 0;
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "HTMLDocumentBuilder-" + (++ seq));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try{
+			parseAll(sources, handler, executor, threads * 2);
+		} finally {
+			executor.shutdown();
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 一括解析
+	// ======================================================================
+	/**
+	 * 指定された入力ソースを実行環境上で並列に解析し、結果をハンドラに通知します。
+	 * <p>
+	 * 解析に使用するドキュメントビルダーはこの呼び出しの間プールされ、解析ごとに
+	 * {@link DocumentBuilder#reset()} されて再利用されます。ビルダーは解析中のドキュメント数
+	 * が構築済みのビルダー数を越える時点で呼び出しスレッドにより構築されるため、その数は同時
+	 * に解析中とするドキュメントの数を越えません。
+	 * <p>
+	 * 解析中のドキュメント数が <i>maxInFlight</i> に達すると、いずれかの解析が終了するまで
+	 * <i>sources</i> からの読み出しを停止します。ハンドラへの通知は全てこのメソッドを呼び
+	 * 出したスレッドで行われるため、ハンドラを同期する必要はありません。通知の順序は解析が終了
+	 * した順序であり、<i>sources</i> の順序とは一致しません。
+	 * <p>
+	 * 解析中にエラーハンドラへ通知された警告やエラーはドキュメントごとに集められ、その
+	 * ドキュメントの結果と共に通知されます。ハンドラが例外を発生した場合は新たな解析を開始せず、
+	 * 実行中の解析の終了を待ってその例外を送出します。解析中に {@link Error} が発生した
+	 * 場合も同様に実行中の解析の終了を待ってその Error を送出します。
+	 * <p>
+	 * 一括解析の実行中にこのファクトリの設定を変更しないでください。
+	 * <p>
+	 * @param sources 解析する入力ソース
+	 * @param handler 解析結果を通知するハンドラ
+	 * @param executor 解析を実行する実行環境
+	 * @param maxInFlight 同時に解析中とするドキュメントの最大数
+	 * @throws ParserConfigurationException ドキュメントビルダーを構築できない場合
+	 * @throws SAXException ハンドラが例外を発生した場合
+	 * @throws InterruptedException 呼び出しスレッドが割り込まれた場合
+	 */
+	public void parseAll(Iterable<InputSource> sources, BatchHandler handler, Executor executor, int maxInFlight) throws ParserConfigurationException, SAXException, InterruptedException{
+		if(maxInFlight <= 0){
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+
+		// JAXP のファクトリはスレッドセーフではないためビルダーは全て呼び出しスレッドで構築
+		final Queue<DocumentBuilder> pool = new ConcurrentLinkedQueue<DocumentBuilder>();
+		int builders = 0;
+
+		CompletionService<BatchResult> service = new ExecutorCompletionService<BatchResult>(executor);
+		Iterator<InputSource> it = sources.iterator();
+		SAXException abort = null;
+		Error error = null;
+		int inFlight = 0;
+		while(true){
+
+			// 上限に達するまで解析を投入
+			while(abort == null && error == null && inFlight < maxInFlight && it.hasNext()){
+				if(inFlight == builders){
+					pool.add(newDocumentBuilder());
+					builders ++;
+				}
+				service.submit(new BatchTask(it.next(), pool));
+				inFlight ++;
+			}
+			if(inFlight == 0){
+				break;
+			}
+
+			// 終了した解析の結果を通知
+			BatchResult result = take(service);
+			inFlight --;
+			if(result.exception instanceof Error){
+				if(error == null){
+					error = (Error)result.exception;
+				}
+				continue;
+			}
+			if(abort != null || error != null){
+				continue;
+			}
+			try{
+				if(result.exception == null){
+					handler.parsed(result.source, result.document, result.warnings);
+				} else {
+					handler.failed(result.source, (Exception)result.exception, result.warnings);
+				}
+			} catch(SAXException ex){
+				abort = ex;
+			}
+		}
+
+		if(error != null){
+			throw error;
+		}
+		if(abort != null){
+			throw abort;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 解析結果の参照
+	// ======================================================================
+	/**
+	 * 次に終了した解析の結果を参照します。
+	 * <p>
+	 * @param service 解析を実行しているサービス
+	 * @return 解析結果
+	 * @throws InterruptedException 呼び出しスレッドが割り込まれた場合
+	 */
+	private static BatchResult take(CompletionService<BatchResult> service) throws InterruptedException{
+		try{
+			return service.take().get();
+		} catch(ExecutionException ex){
+			// BatchTask は全ての例外を結果として返す
+			throw new IllegalStateException(ex.getCause());
+		}
 	}
 
 	// ======================================================================
@@ -597,7 +887,214 @@ public class HTMLDocumentBuilderFactory extends DocumentBuilderFactory {
 	 * @see HTMLParserFactory#guessInputSource(InputStream, String, int)
 	 */
 	public InputSource guessInputSource(InputStream in, String charset, int maxLength) throws IOException{
-		return new HTMLParserFactory().guessInputSource(in, charset, maxLength);
+		return parserFactory.guessInputSource(in, charset, maxLength);
+	}
+
+	// ======================================================================
+	// 内容からの入力ソースの参照
+	// ======================================================================
+	/**
+	 * 指定されたバッファの内容から文字エンコーディングを決定し、解析に使用可能な入力ソース
+	 * として返します。バッファの内容は複製されずに直接デコードされます。
+	 * <p>
+	 * @param buffer 入力バッファ
+	 * @param charset デフォルトのエンコーディング
+	 * @param maxLength エンコーディングの推測に使用する最大バイトサイズ
+	 * @return エンコーディングを推測した入力ソース
+	 * @throws UnsupportedEncodingException 指定された charset が認識できない場合
+	 * @see HTMLParserFactory#guessInputSource(ByteBuffer, String, int)
+	 */
+	public InputSource guessInputSource(ByteBuffer buffer, String charset, int maxLength) throws UnsupportedEncodingException{
+		return parserFactory.guessInputSource(buffer, charset, maxLength);
+	}
+
+	// ======================================================================
+	// 内容からの入力ソースの参照
+	// ======================================================================
+	/**
+	 * 指定されたファイルをメモリマップしてその内容から文字エンコーディングを決定し、解析に
+	 * 使用可能な入力ソースとして返します。
+	 * <p>
+	 * @param file 入力ファイル
+	 * @param charset デフォルトのエンコーディング
+	 * @param maxLength エンコーディングの推測に使用する最大バイトサイズ
+	 * @return エンコーディングを推測した入力ソース
+	 * @throws IOException ファイルの読み込みに失敗した場合
+	 * @see HTMLParserFactory#guessInputSource(File, String, int)
+	 */
+	public InputSource guessInputSource(File file, String charset, int maxLength) throws IOException{
+		return parserFactory.guessInputSource(file, charset, maxLength);
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// BatchHandler: 一括解析ハンドラ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * {@link HTMLDocumentBuilderFactory#parseAll(Iterable, BatchHandler)} による解析結果を
+	 * 受け取るためのインターフェースです。メソッドは一括解析を呼び出したスレッドで呼び出され
+	 * ます。
+	 * <p>
+	 */
+	public interface BatchHandler {
+
+		// ==================================================================
+		// 解析の終了
+		// ==================================================================
+		/**
+		 * ドキュメントの解析が終了した時に呼び出されます。
+		 * <p>
+		 * @param is 入力ソース
+		 * @param doc 解析したドキュメント
+		 * @param warnings 解析中に通知された警告とエラー
+		 * @throws SAXException 一括解析を中断する場合
+		 */
+		public void parsed(InputSource is, Document doc, List<SAXParseException> warnings) throws SAXException;
+
+		// ==================================================================
+		// 解析の失敗
+		// ==================================================================
+		/**
+		 * ドキュメントの解析に失敗した時に呼び出されます。
+		 * <p>
+		 * @param is 入力ソース
+		 * @param ex 発生した例外
+		 * @param warnings 失敗するまでに通知された警告とエラー
+		 * @throws SAXException 一括解析を中断する場合
+		 */
+		public void failed(InputSource is, Exception ex, List<SAXParseException> warnings) throws SAXException;
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// BatchResult: 一括解析の結果
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 1 つの入力ソースの解析結果です。
+	 * <p>
+	 */
+	private static final class BatchResult {
+
+		/** 入力ソース */
+		final InputSource source;
+
+		/** 解析したドキュメント */
+		Document document = null;
+
+		/** 発生した例外 */
+		Throwable exception = null;
+
+		/** 通知された警告とエラー */
+		final List<SAXParseException> warnings = new ArrayList<SAXParseException>();
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 入力ソースを指定して構築を行います。
+		 * <p>
+		 * @param source 入力ソース
+		 */
+		BatchResult(InputSource source) {
+			this.source = source;
+			return;
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// BatchTask: 一括解析のタスク
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * プールから借りたドキュメントビルダーで 1 つの入力ソースを解析するタスクです。
+	 * <p>
+	 */
+	private final class BatchTask implements Callable<BatchResult>, ErrorHandler {
+
+		/** 解析結果 */
+		private final BatchResult result;
+
+		/** ドキュメントビルダーのプール */
+		private final Queue<DocumentBuilder> pool;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 入力ソースとビルダーのプールを指定して構築を行います。
+		 * <p>
+		 * @param source 入力ソース
+		 * @param pool ドキュメントビルダーのプール
+		 */
+		BatchTask(InputSource source, Queue<DocumentBuilder> pool) {
+			this.result = new BatchResult(source);
+			this.pool = pool;
+			return;
+		}
+
+		// ==================================================================
+		// 解析の実行
+		// ==================================================================
+		/**
+		 * プールのビルダーを使用して解析を実行します。{@link Error} を含む全ての例外は結果と
+		 * して返されます。プールには解析中のドキュメント数以上のビルダーが用意されています。
+		 * <p>
+		 * @return 解析結果
+		 */
+		public BatchResult call() {
+			DocumentBuilder builder = pool.poll();
+			try{
+				builder.setErrorHandler(this);
+				result.document = builder.parse(result.source);
+			} catch(Throwable ex){
+				logger.finest("parse failure: " + ex);
+				result.exception = ex;
+			} finally {
+				builder.reset();
+				pool.add(builder);
+			}
+			return result;
+		}
+
+		// ==================================================================
+		// 警告の通知
+		// ==================================================================
+		/**
+		 * 警告をこのドキュメントの結果に追加します。
+		 * <p>
+		 * @param ex 警告
+		 */
+		public void warning(SAXParseException ex) {
+			result.warnings.add(ex);
+			return;
+		}
+
+		// ==================================================================
+		// エラーの通知
+		// ==================================================================
+		/**
+		 * エラーをこのドキュメントの結果に追加します。
+		 * <p>
+		 * @param ex エラー
+		 */
+		public void error(SAXParseException ex) {
+			result.warnings.add(ex);
+			return;
+		}
+
+		// ==================================================================
+		// 致命的エラーの通知
+		// ==================================================================
+		/**
+		 * 致命的エラーをこのドキュメントの結果に追加して解析を中断します。
+		 * <p>
+		 * @param ex 致命的エラー
+		 * @throws SAXParseException 常に ex を送出
+		 */
+		public void fatalError(SAXParseException ex) throws SAXParseException {
+			result.warnings.add(ex);
+			throw ex;
+		}
+
 	}
 
 }
@@ -9,14 +9,16 @@
  */
 package org.koiroha.xml.parser;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.Map;
+import java.util.*;
 import java.util.regex.*;
 
 import javax.xml.parsers.*;
+import javax.xml.stream.*;
 
 import org.koiroha.xml.Xml;
-import org.xml.sax.SAXException;
+import org.xml.sax.*;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // HTMLParserFactory: HTML パーサファクトリ
@@ -39,6 +41,24 @@ public class HTMLParserFactory extends AbstractSAXParserFactory {
 	 */
 	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(HTMLParserFactory.class.getName());
 
+	// ======================================================================
+	// META 要素パターン
+	// ======================================================================
+	/**
+	 * 文字列から &lt;meta&gt; 要素を検出するためのパターンです。
+	 * <p>
+	 */
+	private static final Pattern META_ELEMENT = Pattern.compile("<meta\\s+([^>]*)/?>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * プル型リーダーが解析時に開いている要素の数の上限です。
+	 * <p>
+	 */
+	private int maxElementDepth = ElementStack.DEFAULT_MAX_DEPTH;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -92,6 +112,36 @@ public class HTMLParserFactory extends AbstractSAXParserFactory {
 		}
 	}
 
+	// ======================================================================
+	// 最大深さの設定
+	// ======================================================================
+	/**
+	 * このファクトリから生成されるプル型リーダーが解析時に開いている要素の数の上限を設定
+	 * します。入れ子がこの深さに達した場合、以降の要素は警告の上で内容を持たない要素として
+	 * 扱われます。
+	 * <p>
+	 * 0 以下の値を指定した場合は深さを制限しません。デフォルト値は 512 です。
+	 * <p>
+	 * @param depth 開いている要素の数の上限
+	 * @see HTMLDocumentBuilderFactory#setMaxElementDepth(int)
+	*/
+	public void setMaxElementDepth(int depth){
+		this.maxElementDepth = depth;
+		return;
+	}
+
+	// ======================================================================
+	// 最大深さの参照
+	// ======================================================================
+	/**
+	 * プル型リーダーが解析時に開いている要素の数の上限を参照します。
+	 * <p>
+	 * @return 開いている要素の数の上限 (0 以下の場合は制限なし)
+	*/
+	public int getMaxElementDepth(){
+		return maxElementDepth;
+	}
+
 	// ======================================================================
 	// SAX パーサの参照
 	// ======================================================================
@@ -106,16 +156,65 @@ public class HTMLParserFactory extends AbstractSAXParserFactory {
 		return parser;
 	}
 
+	// ======================================================================
+	// プル型リーダーの参照
+	// ======================================================================
+	/**
+	 * 指定された入力ソースを解析する新規のプル型リーダーを作成します。リーダーはこのファクトリ
+	 * に設定されている機能で HTML を解析し、{@link HTMLDocumentBuilder} と同じ規則で要素の
+	 * 開始と終了を対応付けます。
+	 * <p>
+	 * 返値のリーダーは必要になった時点で入力ソースを読み込むため、メモリ使用量はドキュメント
+	 * の大きさではなく要素の入れ子の深さに比例します。使用後は
+	 * {@link XMLStreamReader#close()} を呼び出してください。
+	 * <p>
+	 * @param is 入力ソース
+	 * @param handler 警告を通知するエラーハンドラ (null の場合は通知しない)
+	 * @return プル型リーダー
+	 * @throws XMLStreamException 入力ソースのオープンに失敗した場合
+	 * @see StreamSelector
+	 */
+	public XMLStreamReader newXMLStreamReader(InputSource is, ErrorHandler handler) throws XMLStreamException{
+		HTMLReader reader = new HTMLReader(feature, new HashMap<String,Object>());
+		return new LooseXMLStreamReader(reader, is, handler, maxElementDepth);
+	}
+
+	// ======================================================================
+	// エンコーディングの推測
+	// ======================================================================
+	/**
+	 * 指定された先読みバッファの XML 宣言または &lt;meta&gt; 要素からストリームの
+	 * エンコーディングを推測します。&lt;meta&gt; 要素は HTML5 形式の charset 属性と
+	 * http-equiv="content-type" の content 属性の両方を認識します。
+	 * <p>
+	 * @param sample 先読みしたバッファ
+	 * @return 推測した文字セット
+	 */
+	@Override
+	protected String guessEncodingFromPrereadSampling(ByteBuffer sample) {
+
+		// スーパークラスで決定できていればそれを返す
+		String encoding = super.guessEncodingFromPrereadSampling(sample);
+		if(encoding != null){
+			return encoding;
+		}
+
+		// <meta> 要素に指定された文字セットからエンコーディングを決定
+		return EncodingSniffer.getMetaEncoding(sample, sample.remaining());
+	}
+
 	// ======================================================================
 	// エンコーディングの推測
 	// ======================================================================
 	/**
-	 * 指定された先読みバッファの &lt;meta http-equiv="content-type"&gt; 要素から
-	 * ストリームのエンコーディングを推測します。
+	 * 指定された先読み文字列の &lt;meta&gt; 要素からストリームのエンコーディングを推測
+	 * します。
 	 * <p>
 	 * @param sample 先読みした文字列
 	 * @return 推測した文字セット
+	 * @deprecated {@link #guessEncodingFromPrereadSampling(ByteBuffer)} を使用してください
 	 */
+	@Deprecated
 	@Override
 	protected String guessEncodingFromPrereadSampling(String sample) {
 
@@ -125,22 +224,25 @@ public class HTMLParserFactory extends AbstractSAXParserFactory {
 			return encoding;
 		}
 
-		// <meta> 要素に指定された Content-Type 属性からエンコーディングを決定
-		Pattern pattern = Pattern.compile("<meta\\s+([^>]*)/?>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-		Matcher matcher = pattern.matcher(sample);
+		// <meta> 要素に指定された文字セットからエンコーディングを決定
+		Matcher matcher = META_ELEMENT.matcher(sample);
 		while(matcher.find()){
 			String meta = matcher.group(1);
 			Map<String,String> attr = Toolkit.parseAttributesSimply(meta);
+			String charset = attr.get("charset");
+			if(charset != null && EncodingSniffer.isSupported(charset.trim())){
+				return Charset.forName(charset.trim()).name();
+			}
 			String httpEquiv = attr.get("http-equiv");
 			String content = attr.get("content");
 			if(httpEquiv != null && httpEquiv.toLowerCase().equals("content-type") && content != null){
-				Charset charset = Xml.getCharset(content);
-				if(charset != null){
-					return charset.name();
+				Charset cs = Xml.getCharset(content);
+				if(cs != null){
+					return cs.name();
 				}
 			}
 		}
-		logger.finest("meta element with http-quiv=\"content-type\" is not specified, or charset attribute unrecognized");
+		logger.finest("meta element with charset is not specified, or charset attribute unrecognized");
 		return null;
 	}
 
@@ -21,12 +21,25 @@ import org.xml.sax.ext.Locator2;
 /**
  * Locator 機能を備えた入力ストリームクラスです。現在の読み出し位置をマークする事が出来ます。
  * <p>
- * @version $Revision: 1.2 $ $Date: 2010/02/24 13:59:38 $
+ * 下層のストリームからはブロック単位でバッファに読み込み、先読みはバッファ上のインデックス
+ * 比較で行います。行番号と列番号は {@link #markLocation()} が呼び出された時点で読み出し
+ * 済みの範囲から遅延評価されます。
+ * <p>
+ * @version $Revision: 1.3 $ $Date: 2010/02/24 13:59:38 $
  * @author torao
  * @since 2009/03/31 Java2 SE 5.0
  */
 public class LocatorReader extends PushbackReader implements Locator2 {
 
+	// ======================================================================
+	// バッファサイズ
+	// ======================================================================
+	/**
+	 * 下層のストリームから一度に読み込むバッファの初期サイズです。
+	 * <p>
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
 	// ======================================================================
 	// PUBLIC ID
 	// ======================================================================
@@ -67,7 +80,7 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	// 行番号
 	// ======================================================================
 	/**
-	 * 現在の読み出し位置の行番号です。
+	 * バッファ上の {@link #counted} の位置に対する行番号です。
 	 * <p>
 	 */
 	private int currentLine = 1;
@@ -76,7 +89,7 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	// 文字番号
 	// ======================================================================
 	/**
-	 * 現在の読み出し位置の行中の文字番号です。
+	 * バッファ上の {@link #counted} の位置に対する行中の文字番号です。
 	 * <p>
 	 */
 	private int currentColumn = 1;
@@ -108,6 +121,69 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 */
 	private String textModeEnd = null;
 
+	// ======================================================================
+	// 読み込みバッファ
+	// ======================================================================
+	/**
+	 * 下層のストリームから読み込んだ文字を保持するバッファです。
+	 * <p>
+	 */
+	private char[] buffer = new char[BUFFER_SIZE];
+
+	// ======================================================================
+	// 読み出し位置
+	// ======================================================================
+	/**
+	 * バッファ上の次に読み出す文字の位置です。
+	 * <p>
+	 */
+	private int position = 0;
+
+	// ======================================================================
+	// バッファ終端
+	// ======================================================================
+	/**
+	 * バッファ上の有効な文字の終端位置です。
+	 * <p>
+	 */
+	private int limit = 0;
+
+	// ======================================================================
+	// 計数済み位置
+	// ======================================================================
+	/**
+	 * 行番号と文字番号に反映済みのバッファ上の位置です。
+	 * <p>
+	 */
+	private int counted = 0;
+
+	// ======================================================================
+	// EOF フラグ
+	// ======================================================================
+	/**
+	 * 下層のストリームが EOF に達しているかどうかのフラグです。
+	 * <p>
+	 */
+	private boolean eof = false;
+
+	// ======================================================================
+	// 読み込み文字数
+	// ======================================================================
+	/**
+	 * 下層のストリームから読み込んだ文字数です。
+	 * <p>
+	 */
+	private long loaded = 0;
+
+	// ======================================================================
+	// 先読みビュー
+	// ======================================================================
+	/**
+	 * {@link #lookahead(int)} で返す先読みバッファのビューです。
+	 * <p>
+	 */
+	private final Lookahead lookahead = new Lookahead();
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -119,12 +195,25 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * @param systemId SYSTEM ID
 	 */
 	LocatorReader(Reader in, String publicId, String systemId) {
-		super(new LFReader(in), 64);
+		super(new LFReader(in), 1);
 		this.publicId = publicId;
 		this.systemId = systemId;
 		return;
 	}
 
+	// ======================================================================
+	// 読み込み文字数の参照
+	// ======================================================================
+	/**
+	 * 下層のストリームから読み込んだ文字数を参照します。改行コードは LF に正規化された後の
+	 * 文字数です。
+	 * <p>
+	 * @return 読み込んだ文字数
+	 */
+	long getCharacterCount(){
+		return loaded;
+	}
+
 	// ======================================================================
 	// 現在位置のマーク
 	// ======================================================================
@@ -134,6 +223,7 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * <p>
 	*/
 	public void markLocation(){
+		count(position);
 		assert(currentLine > 0 && currentColumn > 0): "(" + currentLine + "," + currentColumn + ")";
 		line = currentLine;
 		column = currentColumn;
@@ -249,26 +339,13 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	*/
 	@Override
 	public int read() throws IOException {
-
-		// 次の文字の読み込み
-		int ch = super.read();
-		if(ch < 0){
-			return ch;
+		if(position == limit && ! fill(1)){
+			return -1;
 		}
 
 		// ※LFReader を使用しているため CR は読み込まれない想定
-		assert(ch != '\r');
-
-		// LF を読み込んだら次の行へ移動
-		if(ch == '\n'){
-			currentLine ++;
-			currentColumn = 1;
-			return '\n';
-		}
-
-		// 次の列へ移動
-		currentColumn ++;
-		return ch;
+		assert(buffer[position] != '\r');
+		return buffer[position ++];
 	}
 
 	// ======================================================================
@@ -300,15 +377,15 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	*/
 	@Override
 	public int read(char[] cbuf, int off, int len) throws IOException {
-		int length = super.read(cbuf, off, len);
-		for(int i=0; i<length; i++){
-			if(cbuf[i] == '\n'){
-				currentLine ++;
-				currentColumn = 1;
-			} else {
-				currentColumn ++;
-			}
+		if(len == 0){
+			return 0;
+		}
+		if(position == limit && ! fill(1)){
+			return -1;
 		}
+		int length = Math.min(len, limit - position);
+		System.arraycopy(buffer, position, cbuf, off, length);
+		position += length;
 		return length;
 	}
 
@@ -323,12 +400,32 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	*/
 	@Override
 	public void unread(int c) throws IOException {
-		super.unread(c);
-		if(c == '\n'){
-			currentLine --;
-			currentColumn = 1;
-		} else if(currentColumn > 1){
-			currentColumn --;
+
+		// バッファの先頭まで戻っている場合は後方へずらして領域を確保
+		if(position == 0){
+			if(limit == buffer.length){
+				char[] temp = new char[buffer.length * 2];
+				System.arraycopy(buffer, 0, temp, 0, limit);
+				buffer = temp;
+			}
+			System.arraycopy(buffer, 0, buffer, 1, limit);
+			limit ++;
+			position ++;
+			counted ++;
+		}
+
+		position --;
+		buffer[position] = (char)c;
+
+		// 既に行番号と列番号に反映済みの文字であれば取り消し
+		if(counted > position){
+			counted = position;
+			if(c == '\n'){
+				currentLine --;
+				currentColumn = 1;
+			} else if(currentColumn > 1){
+				currentColumn --;
+			}
 		}
 		return;
 	}
@@ -367,6 +464,44 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 		return;
 	}
 
+	// ======================================================================
+	// 読み込み可能性の判定
+	// ======================================================================
+	/**
+	 * ブロックせずに読み込み可能かどうかを判定します。
+	 * <p>
+	 * @return 読み込み可能な場合 true
+	 * @throws IOException 判定に失敗した場合
+	*/
+	@Override
+	public boolean ready() throws IOException {
+		return (position < limit) || (! eof && in.ready());
+	}
+
+	// ======================================================================
+	// 文字の読み飛ばし
+	// ======================================================================
+	/**
+	 * 指定された文字数を読み飛ばします。
+	 * <p>
+	 * @param n 読み飛ばす文字数
+	 * @return 実際に読み飛ばした文字数
+	 * @throws IOException 読み込みに失敗した場合
+	*/
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while(skipped < n){
+			if(position == limit && ! fill(1)){
+				break;
+			}
+			int length = (int)Math.min(n - skipped, limit - position);
+			position += length;
+			skipped += length;
+		}
+		return skipped;
+	}
+
 	// ======================================================================
 	// EOF の判定
 	// ======================================================================
@@ -377,12 +512,45 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * @throws IOException 読み込みに失敗した場合
 	 */
 	public boolean isEOF() throws IOException{
-		int ch = read();
-		if(ch < 0){
-			return true;
+		return ! fill(1);
+	}
+
+	// ======================================================================
+	// 文字の先読み
+	// ======================================================================
+	/**
+	 * 現在の読み出し位置から指定されたオフセットの文字を読み出し位置を移動せずに参照します。
+	 * 該当する位置が EOF を越えている場合は負の値を返します。
+	 * <p>
+	 * @param offset 現在の読み出し位置からのオフセット
+	 * @return 文字
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public int peek(int offset) throws IOException{
+		if(! fill(offset + 1)){
+			return -1;
 		}
-		unread(ch);
-		return false;
+		return buffer[position + offset];
+	}
+
+	// ======================================================================
+	// 文字列の先読み
+	// ======================================================================
+	/**
+	 * 現在の読み出し位置から最大で指定された文字数を読み出し位置を移動せずに参照します。返値
+	 * の長さは EOF に達した場合に指定された文字数より短くなります。
+	 * <p>
+	 * 返値はバッファ上のビューであり文字列の複製は行いません。返値の内容はこのストリームに対する
+	 * 次の読み込み操作まで有効です。
+	 * <p>
+	 * @param length 先読みする最大文字数
+	 * @return 先読みした文字シーケンス
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public CharSequence lookahead(int length) throws IOException{
+		fill(length);
+		lookahead.length = Math.min(length, limit - position);
+		return lookahead;
 	}
 
 	// ======================================================================
@@ -401,7 +569,7 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 		}
 
 		// テキスト
-		if(! startsWith("<") || startsWith("<\uFFFF")){
+		if(buffer[position] != '<' || startsWith("<\uFFFF")){
 			return Node.TEXT_NODE;
 		}
 
@@ -417,7 +585,7 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 
 		// テキストモードに設定されている場合は該当要素の終了までをテキストとして認識
 		if(textModeEnd != null){
-			if(! startsWith("</" + textModeEnd + ">", true)){
+			if(! startsWithEndTag(textModeEnd)){
 				return Node.TEXT_NODE;
 			}
 			textModeEnd = null;
@@ -484,7 +652,8 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	// ストリーム開始の判定
 	// ======================================================================
 	/**
-	 * 現在のストリームの先頭が指定された文字シーケンスで開始しているかを判定します。
+	 * 現在のストリームの先頭が指定された文字シーケンスで開始しているかを判定します。文字
+	 * シーケンス中の特殊文字は {@link Toolkit#matches(char, int, boolean)} に従います。
 	 * <p>
 	 * @param sequence 評価する文字シーケンス
 	 * @param ignoreCase 大文字と小文字を無視する場合 true
@@ -492,7 +661,88 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * @throws IOException 読み込みに失敗した場合
 	 */
 	public boolean startsWith(String sequence, boolean ignoreCase) throws IOException{
-		return Toolkit.streamStartsWith(this, sequence, ignoreCase);
+		assert(sequence.indexOf('\uFFFF') < 0 || sequence.indexOf('\uFFFF') == sequence.length()-1): sequence;
+		assert(sequence.indexOf('\uFFFE') < 0 || sequence.indexOf('\uFFFE') == sequence.length()-1): sequence;
+		fill(sequence.length());
+		int available = limit - position;
+		for(int i=0; i<sequence.length(); i++){
+			int ch = (i < available)? buffer[position + i]: -1;
+			if(! Toolkit.matches(sequence.charAt(i), ch, ignoreCase)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// 要素終了の判定
+	// ======================================================================
+	/**
+	 * 現在のストリームの先頭が指定された名前の要素終了 "&lt;/name&gt;" で開始しているかを
+	 * 大文字と小文字を無視して判定します。
+	 * <p>
+	 * @param name 要素名
+	 * @return 開始している場合 true
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private boolean startsWithEndTag(String name) throws IOException{
+		int length = name.length() + 3;
+		if(! fill(length)){
+			return false;
+		}
+		if(buffer[position] != '<' || buffer[position + 1] != '/' || buffer[position + length - 1] != '>'){
+			return false;
+		}
+		for(int i=0; i<name.length(); i++){
+			if(! Toolkit.matches(name.charAt(i), buffer[position + 2 + i], true)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// 文字の読み込み
+	// ======================================================================
+	/**
+	 * 指定された文字のいずれか、BOM、EOF のいずれかを検出するか最大文字数に達するまでの文字
+	 * をバッファに読み込みます。検出した文字は読み込まれずにストリームに残ります。
+	 * <p>
+	 * @param out 読み込んだ文字の出力先
+	 * @param max 読み込む最大文字数
+	 * @param stop1 読み込みを終了する文字
+	 * @param stop2 読み込みを終了する文字
+	 * @return 読み込んだ文字数
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public int readUntil(StringBuilder out, int max, char stop1, char stop2) throws IOException{
+		int total = 0;
+		while(total < max){
+			if(position == limit && ! fill(1)){
+				break;
+			}
+
+			// バッファ内で終了文字を検索
+			int begin = position;
+			int end = (int)Math.min(limit, (long)position + (max - total));
+			int i = begin;
+			while(i < end){
+				char ch = buffer[i];
+				if(ch == stop1 || ch == stop2 || ch == '\uFEFF'){
+					break;
+				}
+				i ++;
+			}
+			out.append(buffer, begin, i - begin);
+			total += i - begin;
+			position = i;
+
+			// 終了文字を検出した場合
+			if(i < end){
+				break;
+			}
+		}
+		return total;
 	}
 
 	// ======================================================================
@@ -523,13 +773,15 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * @throws IOException 読み込みに失敗した場合
 	 */
 	public String skipSequence(String sequence, boolean validate, boolean ignoreCase) throws IOException{
-		StringBuilder buffer = new StringBuilder();
-		for(int i=0; i<sequence.length(); i++){
-			int ch = read();
-			assert(! validate || Toolkit.matches(sequence.charAt(i), ch, ignoreCase)): sequence + "[" + i + "] != " + (char)ch;
-			buffer.append((char)ch);
+		fill(sequence.length());
+		int length = Math.min(sequence.length(), limit - position);
+		for(int i=0; validate && i<sequence.length(); i++){
+			int ch = (i < length)? buffer[position + i]: -1;
+			assert(Toolkit.matches(sequence.charAt(i), ch, ignoreCase)): sequence + "[" + i + "] != " + (char)ch;
 		}
-		return buffer.toString();
+		String skipped = new String(buffer, position, length);
+		position += length;
+		return skipped;
 	}
 
 	// ======================================================================
@@ -541,17 +793,163 @@ public class LocatorReader extends PushbackReader implements Locator2 {
 	 * @throws IOException 読み込みに失敗した場合
 	 */
 	public void skipWhitespace() throws IOException{
-		while(true){
-			int ch = read();
-			if(ch < 0){
+		while(position < limit || fill(1)){
+			if(! Xml.isWhitespace(buffer[position])){
 				break;
 			}
-			if(! Xml.isWhitespace(ch)){
-				unread(ch);
-				break;
+			position ++;
+		}
+		return;
+	}
+
+	// ======================================================================
+	// バッファの読み込み
+	// ======================================================================
+	/**
+	 * 現在の読み出し位置から少なくとも指定された文字数がバッファ上で参照可能になるように下層の
+	 * ストリームから読み込みます。EOF に達したため指定された文字数を読み込めなかった場合は
+	 * false を返します。
+	 * <p>
+	 * @param length 必要な文字数
+	 * @return 指定された文字数が参照可能な場合 true
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private boolean fill(int length) throws IOException{
+		if(limit - position >= length){
+			return true;
+		}
+		if(eof){
+			return false;
+		}
+
+		// 読み出し済みの範囲を行番号と列番号に反映してからバッファを前方に詰める
+		if(position > 0){
+			count(position);
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			counted -= position;
+			position = 0;
+		}
+
+		// 先読みに必要な長さがバッファを越える場合は拡張
+		if(length > buffer.length){
+			char[] temp = new char[Math.max(length, buffer.length * 2)];
+			System.arraycopy(buffer, 0, temp, 0, limit);
+			buffer = temp;
+		}
+
+		// 必要な長さに達するまで読み込み
+		while(limit < length){
+			int len = in.read(buffer, limit, buffer.length - limit);
+			if(len < 0){
+				eof = true;
+				return false;
 			}
+			limit += len;
+			loaded += len;
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// 行番号と列番号の計数
+	// ======================================================================
+	/**
+	 * バッファ上の計数済み位置から指定された位置までの文字を行番号と列番号に反映します。
+	 * <p>
+	 * @param to 計数する終了位置
+	 */
+	private void count(int to){
+		for(int i=counted; i<to; i++){
+			if(buffer[i] == '\n'){
+				currentLine ++;
+				currentColumn = 1;
+			} else {
+				currentColumn ++;
+			}
+		}
+		if(to > counted){
+			counted = to;
 		}
 		return;
 	}
 
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Lookahead: 先読みビュー
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 読み込みバッファの現在の読み出し位置からの範囲を示すビューです。
+	 * <p>
+	 */
+	private class Lookahead implements CharSequence {
+
+		// ==================================================================
+		// 長さ
+		// ==================================================================
+		/**
+		 * ビューの長さです。
+		 * <p>
+		 */
+		public int length = 0;
+
+		// ==================================================================
+		// 長さの参照
+		// ==================================================================
+		/**
+		 * このビューの長さを参照します。
+		 * <p>
+		 * @return ビューの長さ
+		 */
+		public int length() {
+			return length;
+		}
+
+		// ==================================================================
+		// 文字の参照
+		// ==================================================================
+		/**
+		 * 指定された位置の文字を参照します。
+		 * <p>
+		 * @param index ビュー上の位置
+		 * @return 文字
+		 */
+		public char charAt(int index) {
+			if(index < 0 || index >= length){
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			}
+			return buffer[position + index];
+		}
+
+		// ==================================================================
+		// 部分文字列の参照
+		// ==================================================================
+		/**
+		 * 指定された範囲の文字列を複製して返します。
+		 * <p>
+		 * @param start 開始位置
+		 * @param end 終了位置
+		 * @return 部分文字列
+		 */
+		public CharSequence subSequence(int start, int end) {
+			if(start < 0 || start > end || end > length){
+				throw new IndexOutOfBoundsException(start + "," + end);
+			}
+			return new String(buffer, position + start, end - start);
+		}
+
+		// ==================================================================
+		// インスタンスの文字列化
+		// ==================================================================
+		/**
+		 * このビューの内容を文字列として返します。
+		 * <p>
+		 * @return ビューの内容
+		 */
+		@Override
+		public String toString() {
+			return new String(buffer, position, length);
+		}
+
+	}
+
 }
@@ -21,6 +21,7 @@ import org.koiroha.xml.Xml;
 import org.w3c.dom.Node;
 import org.xml.sax.*;
 import org.xml.sax.ext.*;
+import org.xml.sax.helpers.AttributesImpl;
 
 // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 // LooseXMLReader: ルーズ XML パーサ
@@ -73,6 +74,18 @@ public class LooseXMLReader extends AbstractXMLReader{
 	 */
 	public static final String FEATURE_LOWERCASE_NAME = "http://www.koiroha.org/sax/futures/html/lowercasename";
 
+	// ======================================================================
+	// HTML5 実体参照機能
+	// ======================================================================
+	/**
+	 * HTML 解析時に HTML5 で定義されている全ての名前付き文字参照を認識するかどうかを表す機能名
+	 * です。この機能が無効な場合は HTML 4.01 で定義されている実体参照のみを認識します。
+	 * <p>
+	 * この値は定数 {@value} を示します。デフォルト値は false です。
+	 * <p>
+	 */
+	public static final String FEATURE_HTML5_ENTITY = "http://www.koiroha.org/sax/futures/html/html5entity";
+
 	// ======================================================================
 	// 内容ハンドラ
 	// ======================================================================
@@ -91,6 +104,52 @@ public class LooseXMLReader extends AbstractXMLReader{
 	 */
 	private Markup currentMarkup = null;
 
+	// ======================================================================
+	// 要素読み込みバッファ
+	// ======================================================================
+	/**
+	 * 要素の '&lt;' から '&gt;' までを読み込むためのバッファです。要素ごとに再利用します。
+	 * <p>
+	 */
+	private final StringBuilder elementBuffer = new StringBuilder();
+
+	// ======================================================================
+	// 属性
+	// ======================================================================
+	/**
+	 * 解析した要素の属性を格納するインスタンスです。要素ごとに再利用するため、内容は次の要素を
+	 * 読み込むまで有効です。
+	 * <p>
+	 */
+	private final AttributesImpl attributes = new AttributesImpl();
+
+	// ======================================================================
+	// シンボルテーブル
+	// ======================================================================
+	/**
+	 * 要素名と属性名を共有するためのシンボルテーブルです。
+	 * <p>
+	 */
+	private final SymbolTable symbols = new SymbolTable();
+
+	// ======================================================================
+	// 属性名の索引
+	// ======================================================================
+	/**
+	 * 解析中の要素に定義済みの属性名を重複判定のために保持する索引です。
+	 * <p>
+	 */
+	private final AttributeIndex attributeIndex = new AttributeIndex();
+
+	// ======================================================================
+	// 段階的解析フラグ
+	// ======================================================================
+	/**
+	 * テキストを 1 段階ごとに区切って通知する場合 true です。
+	 * <p>
+	 */
+	private boolean incremental = false;
+
 	// ======================================================================
 	// コンストラクタ
 	// ======================================================================
@@ -130,6 +189,39 @@ public class LooseXMLReader extends AbstractXMLReader{
 		return getFeature(FEATURE_LOWERCASE_NAME, true);
 	}
 
+	// ======================================================================
+	// 解析状態の初期化
+	// ======================================================================
+	/**
+	 * 前回の解析で処理中だったマークアップを破棄します。シンボルテーブルは次の解析でも共有
+	 * されます。
+	 * <p>
+	 */
+	@Override
+	public void reset(){
+		super.reset();
+		contentHandler = null;
+		currentMarkup = null;
+		elementBuffer.setLength(0);
+		attributes.clear();
+		return;
+	}
+
+	// ======================================================================
+	// 段階的解析の設定
+	// ======================================================================
+	/**
+	 * テキストを 1 段階ごとに一定の長さで区切って通知するかを設定します。この設定が有効な
+	 * 場合、長大なテキストであっても {@link #handleNext()} の 1 回の呼び出しで通知される
+	 * 量が制限されます。
+	 * <p>
+	 * @param incremental テキストを区切って通知する場合 true
+	 */
+	void setIncremental(boolean incremental){
+		this.incremental = incremental;
+		return;
+	}
+
 	// ======================================================================
 	// ドキュメント解析の開始
 	// ======================================================================
@@ -145,6 +237,24 @@ public class LooseXMLReader extends AbstractXMLReader{
 			"lowercase=" + isLowerCaseName() + "," +
 			"namespace=" + isNamespaceAware() + "," +
 			"validation=" + isValidating());
+		while(handleNext()){
+			/* */
+		}
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメント解析の段階的実行
+	// ======================================================================
+	/**
+	 * ストリームから次のマークアップを 1 つ読み込んで通知します。
+	 * <p>
+	 * @return 後続のマークアップが存在する場合 true
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws SAXException ハンドラが例外を発生した場合
+	 */
+	@Override
+	protected boolean handleNext() throws IOException, SAXException{
 
 		// 内容ハンドラの準備
 		contentHandler = getContentHandler();
@@ -152,40 +262,37 @@ public class LooseXMLReader extends AbstractXMLReader{
 			contentHandler = new DefaultHandler2();
 		}
 
-		while(true){
-
-			// 次の型を読み出し
-			in.markLocation();
-			Short type = in.getNextType();
-			if(type == null){
-				break;
-			}
+		// 次の型を読み出し
+		in.markLocation();
+		Short type = in.getNextType();
+		if(type == null){
+			return false;
+		}
 
-			switch(type){
-			case Node.TEXT_NODE:
-				handleText();
-				break;
-			case Node.CDATA_SECTION_NODE:
-				handleCDATA();
-				break;
-			case Node.COMMENT_NODE:
-				handleComment();
-				break;
-			case Node.PROCESSING_INSTRUCTION_NODE:
-				handleProcessingInstruction();
-				break;
-			case Node.ELEMENT_NODE:
-				handleElement();
-				break;
-			case Node.DOCUMENT_TYPE_NODE:
-				handleDocumentType();
-				break;
-			default:
-				assert(false): type;
-				break;
-			}
+		switch(type){
+		case Node.TEXT_NODE:
+			handleText();
+			break;
+		case Node.CDATA_SECTION_NODE:
+			handleCDATA();
+			break;
+		case Node.COMMENT_NODE:
+			handleComment();
+			break;
+		case Node.PROCESSING_INSTRUCTION_NODE:
+			handleProcessingInstruction();
+			break;
+		case Node.ELEMENT_NODE:
+			handleElement();
+			break;
+		case Node.DOCUMENT_TYPE_NODE:
+			handleDocumentType();
+			break;
+		default:
+			assert(false): type;
+			break;
 		}
-		return;
+		return true;
 	}
 
 	// ======================================================================
@@ -212,10 +319,16 @@ public class LooseXMLReader extends AbstractXMLReader{
 			contentHandler.endElement(uri, localName, qName);
 		} else {
 			contentHandler.startElement(uri, localName, qName, elem.getAttributes());
+			ParseStatistics stats = getStatistics();
+			if(stats != null){
+				stats.countElement();
+			}
 			if(elem.isEmpty()){
 				contentHandler.endElement(uri, localName, qName);
 			} else if(isNotXmlSemantics(uri, localName, qName)){
-				logger.finest("recognize text or comment in element: " + elem);
+				if(logger.isLoggable(Level.FINEST)){
+					logger.finest("recognize text or comment in element: " + elem);
+				}
 				in.setTextModeEnd(qName);
 			}
 		}
@@ -246,6 +359,10 @@ public class LooseXMLReader extends AbstractXMLReader{
 			if(ch == '<'){
 				logger.finest("'<' detect in text mode");
 				contentHandler.characters(new char[]{(char)ch}, 0, 1);
+				ParseStatistics stats = getStatistics();
+				if(stats != null){
+					stats.countText();
+				}
 			} else {
 				in.unread(ch);
 			}
@@ -258,6 +375,13 @@ public class LooseXMLReader extends AbstractXMLReader{
 			}
 			char[] buffer = text.toCharArray();
 			contentHandler.characters(buffer, 0, buffer.length);
+			ParseStatistics stats = getStatistics();
+			if(stats != null){
+				stats.countText();
+			}
+			if(incremental){
+				break;
+			}
 		}
 		return;
 	}
@@ -279,6 +403,10 @@ public class LooseXMLReader extends AbstractXMLReader{
 		if(lh != null){
 			lh.startCDATA();
 		}
+		ParseStatistics stats = getStatistics();
+		if(stats != null){
+			stats.countText();
+		}
 		while(true){
 			String text = read(1024, trailing, false);
 			if(text == null){
@@ -313,6 +441,10 @@ public class LooseXMLReader extends AbstractXMLReader{
 		if(lh instanceof BuilderLexicalHandler){
 			((BuilderLexicalHandler)lh).startComment();
 		}
+		ParseStatistics stats = getStatistics();
+		if(stats != null){
+			stats.countComment();
+		}
 
 		// コメントの読み出しと通知
 		char[] buffer = new char[512];
@@ -421,6 +553,10 @@ public class LooseXMLReader extends AbstractXMLReader{
 		// 通常の処理命令として通知
 		} else {
 			contentHandler.processingInstruction(target, data);
+			ParseStatistics stats = getStatistics();
+			if(stats != null){
+				stats.countOther();
+			}
 		}
 
 		// 後方部分を読み飛ばし
@@ -514,6 +650,10 @@ public class LooseXMLReader extends AbstractXMLReader{
 			}
 			getDTDHandler().notationDecl(name, publicId, systemId);
 		}
+		ParseStatistics stats = getStatistics();
+		if(name != null && stats != null){
+			stats.countOther();
+		}
 
 		// 後方部分を読み飛ばし
 		in.skipSequence(trailing, false);
@@ -536,30 +676,17 @@ public class LooseXMLReader extends AbstractXMLReader{
 	 * @throws SAXException ハンドラによって中断された場合
 	 */
 	private String read(int capacity, String sequence, boolean resolveEntity) throws IOException, SAXException{
-		return read(in, capacity, sequence, resolveEntity);
-	}
-
-	// ======================================================================
-	// 文字列の読み込み
-	// ======================================================================
-	/**
-	 * 指定されたストリームから文字シーケンスまたは EOF までの文字列を読み込んで返します。
-	 * これ以上読み込み可能な文字がストリームに存在しない場合は null を返します (従って長さ 0
-	 * の文字列を返すことはありません)。
-	 * <p>
-	 * 実体参照の変換を指定した場合、返値の文字列長が capacity を越える可能性があります。
-	 * <p>
-	 * @param in 入力ストリーム
-	 * @param capacity 読み込み長
-	 * @param sequence 終了シーケンス
-	 * @param resolveEntity 実体参照を解除する場合 true
-	 * @return 読み込んだ文字
-	 * @throws IOException 読み込みに失敗した場合
-	 * @throws SAXException ハンドラによって中断された場合
-	 */
-	private String read(PushbackReader in, int capacity, String sequence, boolean resolveEntity) throws IOException, SAXException{
+		assert(sequence != null && sequence.length() > 0);
+		char stop = sequence.charAt(0);
+		char amp = resolveEntity? '&': stop;
 		StringBuilder buffer = new StringBuilder();
-		while((sequence == null || ! Toolkit.streamStartsWith(in, sequence, false)) && buffer.length() < capacity){
+		while(buffer.length() < capacity){
+
+			// 終了シーケンスの先頭文字か実体参照の開始までをまとめて読み込み
+			in.readUntil(buffer, capacity - buffer.length(), stop, amp);
+			if(buffer.length() >= capacity || in.startsWith(sequence)){
+				break;
+			}
 
 			// 次の文字を読み込み
 			int ch = in.read();
@@ -572,31 +699,17 @@ public class LooseXMLReader extends AbstractXMLReader{
 				continue;
 			}
 
-			// CR を読み込んだ場合は暗黙的に LF に変換
-			if(ch == '\r'){
-				buffer.append('\n');
-				ch = in.read();
-				if(ch < 0){
-					break;
-				}
-				if(ch != '\n'){
-					in.unread(ch);
-				}
-				continue;
-			}
-
 			// 実体参照を検出した場合
 			if(ch == '&' && resolveEntity){
-				if(in instanceof LocatorReader){
-					in.unread('&');
-					((LocatorReader)in).markLocation();
-					in.read();
-				}
-				String c = readEntityReference(in);
-				if(c == null){
+				in.unread('&');
+				in.markLocation();
+				in.read();
+				CharSequence ahead = in.lookahead(getMaxEntityReferenceName() + 1);
+				int length = resolveEntityReference(ahead, 0, ahead.length(), buffer);
+				if(length == 0){
 					buffer.append('&');
 				} else {
-					buffer.append(c);
+					in.skip(length);
 				}
 				continue;
 			}
@@ -644,15 +757,17 @@ public class LooseXMLReader extends AbstractXMLReader{
 	 * @throws IOException 読み込みに失敗した場合
 	 * @throws SAXException ハンドラによって中断された場合
 	 */
-	private Markup readElement(PushbackReader in, boolean lowerCase, Markup parent) throws IOException, SAXException{
+	private Markup readElement(LocatorReader in, boolean lowerCase, Markup parent) throws IOException, SAXException{
 
 		// 先行する '<' を読み飛ばし
 		int leading = in.read();
 		assert(leading == '<');
 
 		// 要素の終了までを読み込み
-		StringBuilder buffer = new StringBuilder();
+		StringBuilder buffer = elementBuffer;
+		buffer.setLength(0);
 		while(true){
+			in.readUntil(buffer, Integer.MAX_VALUE, '>', '>');
 			int ch = in.read();
 			if(ch < 0){
 				assert(buffer.length() > 0);	// ※'<' の直後に EOF が来るケースはテキストと認識されている前提
@@ -663,54 +778,50 @@ public class LooseXMLReader extends AbstractXMLReader{
 			}
 			buffer.append((char)ch);
 		}
-		String body = buffer.toString();
 		if(logger.isLoggable(Level.FINEST)){
-			logger.finest("(" + this.in.getLineNumber() + "," + this.in.getColumnNumber() + ") read element body: <" + body + ">");
+			logger.finest("(" + this.in.getLineNumber() + "," + this.in.getColumnNumber() + ") read element body: <" + buffer + ">");
 		}
 
 		// 終了要素の判定
-		boolean end = false;
-		if(body.startsWith("/")){
-			end = true;
-			body = body.substring(1);
+		int begin = 0;
+		int end = buffer.length();
+		boolean endElement = false;
+		if(end > 0 && buffer.charAt(0) == '/'){
+			endElement = true;
+			begin ++;
 		}
 
-		// 要素名の参照
-		String name = null;
-		for(int i=0; i<body.length(); i++){
-			char ch = body.charAt(i);
-			if(Xml.isWhitespace(ch)){
-				name = body.substring(0, i);
-				body = body.substring(i + 1).trim();
-				break;
-			}
+		// 要素名の終端を参照
+		int nameEnd = begin;
+		while(nameEnd < end && ! Xml.isWhitespace(buffer.charAt(nameEnd))){
+			nameEnd ++;
 		}
 
 		// 空白を検出しなかった (全体が要素名) 場合
 		boolean empty = false;
-		if(name == null){
-			name = body;
-			body = "";
-			if(name.endsWith("/")){
-				name = name.substring(0, name.length() - 1);
-				empty = true;
-			}
-		}
-
-		// 小文字に変化
-		if(lowerCase){
-			name = name.toLowerCase();
+		if(nameEnd == end && nameEnd > begin && buffer.charAt(nameEnd - 1) == '/'){
+			nameEnd --;
+			empty = true;
 		}
+		String name = symbols.get(buffer, begin, nameEnd, lowerCase);
 
 		// 属性の解析
-		Map<String,String> attribute = new HashMap<String,String>();
-		if(body.length() > 0){
-			assert(! empty);
-			empty = parseElementBody(body, lowerCase, attribute);
+		attributes.clear();
+		if(! empty){
+			int attrBegin = nameEnd;
+			while(attrBegin < end && buffer.charAt(attrBegin) <= ' '){
+				attrBegin ++;
+			}
+			while(end > attrBegin && buffer.charAt(end - 1) <= ' '){
+				end --;
+			}
+			if(attrBegin < end){
+				empty = parseElementBody(buffer, attrBegin, end, lowerCase, attributes);
+			}
 		}
 
 		// マークアップを作成
-		Markup elem = new Markup(isNamespaceAware(), parent, name, attribute, empty, end);
+		Markup elem = new Markup(isNamespaceAware(), parent, name, attributes, empty, endElement);
 		if(logger.isLoggable(Level.FINEST)){
 			logger.finest("parse new element: " + elem);
 		}
@@ -743,71 +854,91 @@ public class LooseXMLReader extends AbstractXMLReader{
 	// HTML 実体参照
 	// ======================================================================
 	/**
-	 * 指定された文字列中の実体参照を Unicode 文字に変換して返します。
+	 * 指定された文字列の範囲に含まれる実体参照を Unicode 文字に変換して返します。
 	 * <p>
 	 * @param text HTML 文字列
+	 * @param begin 変換する範囲の開始位置
+	 * @param end 変換する範囲の終了位置
 	 * @return Unicode 文字列
 	 * @throws SAXException ハンドラによって井中断された場合
-	 * @throws IOException
 	 */
-	private String parseEntityReference(String text) throws SAXException, IOException{
-		StringBuilder buffer = new StringBuilder(text.length());
-		PushbackReader in = new PushbackReader(new StringReader(text), 64);
-		while(true){
-			String str = read(in, 1024, null, true);
-			if(str == null){
-				break;
+	private String parseEntityReference(CharSequence text, int begin, int end) throws SAXException{
+		int max = getMaxEntityReferenceName() + 1;
+		StringBuilder buffer = new StringBuilder(end - begin);
+		int i = begin;
+		while(i < end){
+			char ch = text.charAt(i);
+			i ++;
+
+			// BOM は無視
+			if(ch == '\uFEFF'){
+				continue;
+			}
+
+			// CR を検出した場合は暗黙的に LF に変換
+			if(ch == '\r'){
+				buffer.append('\n');
+				if(i < end && text.charAt(i) == '\n'){
+					i ++;
+				}
+				continue;
+			}
+
+			// 実体参照を検出した場合
+			if(ch == '&'){
+				int len = resolveEntityReference(text, i, Math.min(end, i + max), buffer);
+				if(len == 0){
+					buffer.append('&');
+				} else {
+					i += len;
+				}
+				continue;
 			}
-			buffer.append(str);
+
+			buffer.append(ch);
 		}
 		return buffer.toString();
 	}
 
 	// ======================================================================
-	// 実体参照の読み込み
+	// 実体参照の解決
 	// ======================================================================
 	/**
-	 * ストリームから実体参照を読み込んで該当する文字を返します。有効な実体参照を読み込んだ場合は
-	 * ';' まで読み込み済みの状態になり非 null 値が返ります。実体参照が無効な場合はストリーム
-	 * の位置は移動せず null が返ります。
+	 * 指定された文字シーケンスの開始位置から続く実体参照の名前と ';' を解析し、該当する文字
+	 * をバッファに追加します。開始位置は '&amp;' の直後を示している必要があります。';' は
+	 * 終了位置までの範囲で検索します。
 	 * <p>
-	 * @param in 入力ストリーム
-	 * @return 実体参照に対応する文字
-	 * @throws IOException 読み込みに失敗した場合
+	 * 有効な実体参照を検出した場合は ';' を含む実体参照の文字数を返します。実体参照が無効な
+	 * 場合はバッファに何も追加せず 0 を返します。
+	 * <p>
+	 * @param text 実体参照を含む文字シーケンス
+	 * @param begin 実体参照名の開始位置
+	 * @param limit ';' を検索する終了位置
+	 * @param buffer 実体参照に対応する文字を追加するバッファ
+	 * @return ';' を含む実体参照の文字数
 	 * @throws SAXException ハンドラによって中断された場合
 	 */
-	private String readEntityReference(PushbackReader in) throws IOException, SAXException{
-		StringBuilder buffer = new StringBuilder();
-		while(buffer.length() < getMaxEntityReferenceName()){
-
-			// 次の文字を読み込み
-			int ch = in.read();
-			if(ch < 0){
-				break;
-			}
-
-			// 実体参照を Unicode に変換
-			if(ch == ';'){
-				String uc = getEntityReference(buffer.toString());
-				if(uc == null){
-					// 未定義の実体参照を ErrorHandler に警告
-					warn("T0100", buffer);
-					buffer.append((char)ch);
-					in.unread(buffer.toString().toCharArray());
-					return null;
-				}
-				return uc;
-			}
+	private int resolveEntityReference(CharSequence text, int begin, int limit, StringBuilder buffer) throws SAXException{
+		int end = begin;
+		while(end < limit && text.charAt(end) != ';'){
+			end ++;
+		}
 
-			buffer.append((char)ch);
+		// 範囲内に ';' が存在しない場合は無効な実体参照
+		if(end == limit){
+			warn("T0001", text.subSequence(begin, Math.min(end, begin + getMaxEntityReferenceName())));
+			return 0;
 		}
 
-		// 無効な実体参照
-		warn("T0001", buffer);
-		if(buffer.length() > 0){
-			in.unread(buffer.toString().toCharArray());
+		// 実体参照を Unicode に変換
+		String uc = getEntityReference(text, begin, end);
+		if(uc == null){
+			// 未定義の実体参照を ErrorHandler に警告
+			warn("T0100", text.subSequence(begin, end));
+			return 0;
 		}
-		return null;
+		buffer.append(uc);
+		return end - begin + 1;
 	}
 
 	// ======================================================================
@@ -838,9 +969,15 @@ public class LooseXMLReader extends AbstractXMLReader{
 	 * @throws SAXException ハンドラによって中断された場合
 	 */
 	private void warn(String msgid, Object... args) throws SAXException{
+		ParseStatistics stats = getStatistics();
+		if(stats != null){
+			stats.countWarning();
+		}
 		if(getErrorHandler() != null){
 			String message = msgid + ":" + Toolkit.format("warn." + msgid, args);
-			logger.finest("warn(): " + message);
+			if(logger.isLoggable(Level.FINEST)){
+				logger.finest("warn(): " + message);
+			}
 			SAXParseException ex = new SAXParseException(
 					message, in.getPublicId(), in.getSystemId(),
 					in.getLineNumber(), in.getColumnNumber());
@@ -849,113 +986,142 @@ public class LooseXMLReader extends AbstractXMLReader{
 		return;
 	}
 
-	// ======================================================================
-	// 属性名パターン
-	// ======================================================================
-	/**
-	 * 属性名のパターンです。
-	 * <p>
-	 */
-	private static final Pattern ATTR_NAME = Pattern.compile("\\s*([^\\s=]+)\\s*");
-
-	// ======================================================================
-	// 属性値パターン
-	// ======================================================================
-	/**
-	 * 属性値のパターンです。
-	 * <p>
-	 */
-	private static final Pattern[] ATTR_VALUE = new Pattern[]{
-		Pattern.compile("=\\s*\"([^\"]*)\"\\s*"),
-		Pattern.compile("=\\s*\'([^\']*)\'\\s*"),
-		Pattern.compile("=\\s*([^\\s]*)\\s*"),
-	};
-
-	// ======================================================================
-	// 空要素の判定
-	// ======================================================================
-	/**
-	 * 属性名を取得する前に空要素であるかどうかを判定する為のパターンです。
-	 * <p>
-	 */
-	private static final Pattern EMPTY = Pattern.compile("\\s*/");
-
 	// ======================================================================
 	// 要素内の解析
 	// ======================================================================
 	/**
-	 * 要素内の属性部分を解析します。
+	 * 要素内の属性部分を解析します。要素内の文字列は開始位置から末尾までを 1 回走査するのみで
+	 * 解析されます。
+	 * <p>
+	 * クオートで囲まれていない属性値は空白までの全ての文字を含みます。従って
+	 * <code>href=/foo/bar/</code> の最後のスラッシュは属性値の一部であり空要素を意味
+	 * しません。値を持たない属性はその名前が値として設定されます。
 	 * <p>
 	 * @param body 要素内文字列
+	 * @param begin 属性部分の開始位置
+	 * @param end 属性部分の終了位置
 	 * @param lowerCase 属性名を小文字に変換する場合 true
-	 * @param attribute 解析した属性値を格納するマップ
+	 * @param attribute 解析した属性値を格納する属性
 	 * @return 空要素の場合 true
-	 * @throws IOException 読み込みに失敗した場合
 	 * @throws SAXException ハンドラによって中断された場合
 	 */
-	private boolean parseElementBody(String body, boolean lowerCase, Map<String,String> attribute) throws IOException, SAXException{
-		logger.finest("parseElementBody(" + body + ")");
-		while(body.length() > 0){
-
-			// 属性名の検出
-			Matcher matcher = ATTR_NAME.matcher(body);
-			if(! matcher.find()){
-				if(body.trim().length() > 0){
-					warn("E0009", body.trim());
+	private boolean parseElementBody(CharSequence body, int begin, int end, boolean lowerCase, AttributesImpl attribute) throws SAXException{
+		attributeIndex.clear();
+		int i = begin;
+		while(i < end){
+
+			// 属性名の前の空白と不正な '=' を読み飛ばし
+			int garbageBegin = -1;
+			int garbageEnd = -1;
+			while(i < end && (isSpace(body.charAt(i)) || body.charAt(i) == '=')){
+				if(body.charAt(i) == '='){
+					if(garbageBegin < 0){
+						garbageBegin = i;
+					}
+					garbageEnd = i + 1;
 				}
-				break;
+				i ++;
 			}
 
 			// 属性名の前に不正な文字が存在する場合は警告
-			String head = body.substring(0, matcher.start()).trim();
-			if(head.length() > 0){
-				warn("E0009", head);
+			if(garbageBegin >= 0){
+				warn("E0009", body.subSequence(garbageBegin, garbageEnd));
+			}
+			if(i == end){
+				break;
 			}
 
 			// 最後のスラッシュを検出した場合は空要素
-			if(EMPTY.matcher(body.substring(matcher.start())).matches()){
+			if(i == end - 1 && body.charAt(i) == '/'){
 				return true;
 			}
-			body = body.substring(matcher.end());
 
 			// 属性名の取得
-			String name = matcher.group(1);
-			if(lowerCase){
-				name = name.toLowerCase();
+			int nameBegin = i;
+			while(i < end && ! isSpace(body.charAt(i)) && body.charAt(i) != '='){
+				i ++;
 			}
-			logger.finest("attribute name: " + name);
+			String name = symbols.get(body, nameBegin, i, lowerCase);
+			i = skipSpace(body, i, end);
 
 			// セパレータの判定
 			String value = null;
-			if(body.length() == 0 || body.charAt(0) != '='){
+			if(i == end || body.charAt(i) != '='){
 				value = name;
 			} else {
-				assert(body.charAt(0) == '=');
-
-				// 属性値の取得
-				for(int i=0; i<ATTR_VALUE.length; i++){
-					matcher = ATTR_VALUE[i].matcher(body);
-					if(matcher.lookingAt()){
-						value = matcher.group(1);
-						body = body.substring(matcher.end());
-						break;
+				i = skipSpace(body, i + 1, end);
+
+				// クオートで囲まれた属性値の取得
+				int valueBegin = i;
+				int valueEnd = -1;
+				if(i < end && (body.charAt(i) == '\"' || body.charAt(i) == '\'')){
+					char quote = body.charAt(i);
+					int close = i + 1;
+					while(close < end && body.charAt(close) != quote){
+						close ++;
+					}
+					if(close < end){
+						valueBegin = i + 1;
+						valueEnd = close;
+						i = close + 1;
 					}
 				}
-				assert(value != null): body;	// 必ずどれかと一致するはず
-				value = parseEntityReference(value);
+
+				// クオートで囲まれていない (閉じられていない) 属性値の取得
+				if(valueEnd < 0){
+					while(i < end && ! isSpace(body.charAt(i))){
+						i ++;
+					}
+					valueEnd = i;
+				}
+				i = skipSpace(body, i, end);
+				value = parseEntityReference(body, valueBegin, valueEnd);
 			}
-			logger.finest("attribute value: " + value);
-			logger.finest("remaining element body: \"" + body + "\"");
 
-			// 既に同じ名前の属性が定義されていたら警告
-			if(attribute.containsKey(name)){
-				warn("E0010", name, attribute.get(name), value);
+			// 既に同じ名前の属性が定義されていたら警告して値を置き換え
+			int index = attributeIndex.get(name, attribute);
+			if(index >= 0){
+				warn("E0010", name, attribute.getValue(index), value);
+				attribute.setValue(index, value);
+				continue;
 			}
 
 			// 属性を保持
-			attribute.put(name, value);
+			attribute.addAttribute(XMLConstants.NULL_NS_URI, name, name, "CDATA", value);
+			attributeIndex.put(name, attribute.getLength() - 1, attribute);
 		}
 		return false;
 	}
 
-}
\ No newline at end of file
+	// ======================================================================
+	// 空白の判定
+	// ======================================================================
+	/**
+	 * 指定された文字が属性の区切りとなる空白かどうかを判定します。
+	 * <p>
+	 * @param ch 判定する文字
+	 * @return 空白の場合 true
+	 */
+	private static boolean isSpace(char ch){
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f' || ch == '\u000B';
+	}
+
+	// ======================================================================
+	// 空白の読み飛ばし
+	// ======================================================================
+	/**
+	 * 指定された位置から連続する空白を読み飛ばします。
+	 * <p>
+	 * @param text 文字シーケンス
+	 * @param begin 開始位置
+	 * @param end 終了位置
+	 * @return 空白でない文字の位置
+	 */
+	private static int skipSpace(CharSequence text, int begin, int end){
+		while(begin < end && isSpace(text.charAt(begin))){
+			begin ++;
+		}
+		return begin;
+	}
+
+}
@@ -0,0 +1,1649 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.io.IOException;
+import java.util.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.*;
+import javax.xml.stream.*;
+
+import org.koiroha.xml.Xml;
+import org.xml.sax.*;
+import org.xml.sax.ext.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// LooseXMLStreamReader: プル型 XML リーダー
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link LooseXMLReader} の解析結果をプル型で参照するための {@link XMLStreamReader}
+ * 実装です。
+ * <p>
+ * 内部の SAX リーダーは {@link #next()} で次のイベントが必要になった時点でマークアップ
+ * 1 つ分ずつ解析を進めます。長大なテキストは一定の長さごとに分割された
+ * {@link XMLStreamConstants#CHARACTERS} として通知されるため、このクラスが保持する状態は
+ * 要素の入れ子の深さとコメント、CDATA セクション、処理命令など 1 つのマークアップの大きさに
+ * のみ比例し、ドキュメント全体の大きさには依存しません。
+ * <p>
+ * SAX リーダーが通知する要素の開始と終了は {@link HTMLBuilder} と同じ規則で対応付けられ
+ * ます。開いていない要素の終了は無視され、上位の要素の終了は途中の要素の終了を補って通知
+ * されます。空要素は開始直後に終了が通知され、ドキュメントの終端では開いている全ての要素の
+ * 終了が補われます。これらの補正はエラーハンドラに警告として通知されます。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class LooseXMLStreamReader implements XMLStreamReader {
+
+	// ======================================================================
+	// 空配列
+	// ======================================================================
+	/**
+	 * 属性や名前空間宣言を持たないイベントで共有する空の配列です。
+	 * <p>
+	 */
+	private static final String[] EMPTY = new String[0];
+
+	// ======================================================================
+	// SAX リーダー
+	// ======================================================================
+	/**
+	 * 段階的に解析を進める SAX リーダーです。
+	 * <p>
+	 */
+	private final LooseXMLReader reader;
+
+	// ======================================================================
+	// エラーハンドラ
+	// ======================================================================
+	/**
+	 * 要素の補正を警告するエラーハンドラです。
+	 * <p>
+	 */
+	private final ErrorHandler errorHandler;
+
+	// ======================================================================
+	// HTML 最適化
+	// ======================================================================
+	/**
+	 * HTML 要素の親子関係に基づいて要素の終了を補う場合 true です。
+	 * <p>
+	 */
+	private final boolean htmlOptimize;
+
+	// ======================================================================
+	// ロケーター
+	// ======================================================================
+	/**
+	 * SAX リーダーから通知されたロケーターです。
+	 * <p>
+	 */
+	private Locator locator = null;
+
+	// ======================================================================
+	// イベントキュー
+	// ======================================================================
+	/**
+	 * SAX リーダーから通知され、まだ参照されていないイベントのキューです。
+	 * <p>
+	 */
+	private final Deque<Event> queue = new ArrayDeque<Event>();
+
+	// ======================================================================
+	// 現在のイベント
+	// ======================================================================
+	/**
+	 * 現在のイベントです。
+	 * <p>
+	 */
+	private Event event = null;
+
+	// ======================================================================
+	// 開いている要素
+	// ======================================================================
+	/**
+	 * SAX リーダーの通知を対応付けるために保持している開いている要素の開始イベントです。
+	 * <p>
+	 */
+	private final ElementStack<Event> open = new ElementStack<Event>();
+
+	// ======================================================================
+	// 最大深さ
+	// ======================================================================
+	/**
+	 * 開いている要素の数の上限です。0 以下の場合は制限しません。
+	 * <p>
+	 */
+	private final int maxDepth;
+
+	// ======================================================================
+	// 上限を超えた要素
+	// ======================================================================
+	/**
+	 * 入れ子の上限に達したため開いている要素に追加しなかった要素です。これらの要素の終了タグ
+	 * が上位の同名の要素を終了しないよう、終了タグとの対応付けに使用します。
+	 * <p>
+	 */
+	private final OverflowElements overflow = new OverflowElements();
+
+	// ======================================================================
+	// 名前空間スコープ
+	// ======================================================================
+	/**
+	 * 参照済みの開始イベントで宣言された名前空間のスタックです。利用者に通知した時点の名前空間
+	 * コンテキストを表します。
+	 * <p>
+	 */
+	private Event[] scope = new Event[16];
+
+	// ======================================================================
+	// 名前空間スコープの深さ
+	// ======================================================================
+	/**
+	 * 名前空間スコープの深さです。
+	 * <p>
+	 */
+	private int scopeDepth = 0;
+
+	// ======================================================================
+	// 直前の空要素
+	// ======================================================================
+	/**
+	 * 直前に開始した空要素の名前です。空要素の終了タグの妥当性を判定するために使用します。
+	 * <p>
+	 */
+	private String lastEmpty = null;
+
+	// ======================================================================
+	// コメント/CDATA バッファ
+	// ======================================================================
+	/**
+	 * 分割して通知されるコメントや CDATA セクションを連結するためのバッファです。null の場合
+	 * はコメントや CDATA セクションの外側であることを表します。
+	 * <p>
+	 */
+	private StringBuilder buffer = null;
+
+	// ======================================================================
+	// テキストの文字配列
+	// ======================================================================
+	/**
+	 * {@link #getTextCharacters()} で返すテキストの文字配列です。イベントごとに再利用されます。
+	 * <p>
+	 */
+	private char[] characters = new char[256];
+
+	// ======================================================================
+	// 文字配列のイベント
+	// ======================================================================
+	/**
+	 * {@link #characters} に格納されているテキストのイベントです。
+	 * <p>
+	 */
+	private Event charactersEvent = null;
+
+	// ======================================================================
+	// 終了フラグ
+	// ======================================================================
+	/**
+	 * SAX リーダーがドキュメントの終端に達した場合 true です。
+	 * <p>
+	 */
+	private boolean eof = false;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 指定された SAX リーダーを使用して入力ソースの解析を開始します。構築した時点で
+	 * {@link XMLStreamConstants#START_DOCUMENT} の状態となります。
+	 * <p>
+	 * @param reader SAX リーダー
+	 * @param is 入力ソース
+	 * @param errorHandler エラーハンドラ (null の場合は警告を通知しない)
+	 * @param maxDepth 開いている要素の数の上限 (0 以下の場合は制限しない)
+	 * @throws XMLStreamException 入力ソースのオープンに失敗した場合
+	 */
+	LooseXMLStreamReader(LooseXMLReader reader, InputSource is, ErrorHandler errorHandler, int maxDepth) throws XMLStreamException {
+		this.reader = reader;
+		this.errorHandler = errorHandler;
+		this.maxDepth = maxDepth;
+		this.htmlOptimize = reader.getFeature(HTMLDocumentBuilderFactory.FEATURE_HTML_OPTIMIZE);
+
+		Handler handler = new Handler();
+		reader.setContentHandler(handler);
+		reader.setDTDHandler(handler);
+		reader.setErrorHandler(errorHandler);
+		reader.setProperty(Xml.PROPERTY_LEXICAL_HANDLER, handler);
+		reader.setIncremental(true);
+		try{
+			reader.open(is);
+		} catch(IOException ex){
+			reader.close();
+			throw new XMLStreamException(ex);
+		} catch(SAXException ex){
+			reader.close();
+			throw new XMLStreamException(ex);
+		}
+		event = new Event(START_DOCUMENT);
+		return;
+	}
+
+	// ======================================================================
+	// 次のイベントの参照
+	// ======================================================================
+	/**
+	 * 次のイベントに移動します。
+	 * <p>
+	 * @return 次のイベントの種類
+	 * @throws XMLStreamException 解析に失敗した場合
+	 * @throws NoSuchElementException ドキュメントの終端に達している場合
+	 */
+	public int next() throws XMLStreamException {
+		if(event.type == END_DOCUMENT){
+			throw new NoSuchElementException("end of document");
+		}
+
+		// 前回の要素終了に対応する名前空間スコープを破棄
+		if(event.type == END_ELEMENT && scopeDepth > 0){
+			scope[-- scopeDepth] = null;
+		}
+
+		// 次のイベントが通知されるまで解析を進める
+		try{
+			while(queue.isEmpty() && ! eof){
+				if(! reader.next()){
+					eof = true;
+				}
+			}
+		} catch(IOException ex){
+			throw new XMLStreamException(ex);
+		} catch(SAXException ex){
+			throw new XMLStreamException(ex);
+		}
+		event = queue.poll();
+		if(event == null){
+			event = new Event(END_DOCUMENT);
+		}
+
+		// 要素の開始で宣言された名前空間をスコープに追加
+		if(event.type == START_ELEMENT){
+			if(scopeDepth == scope.length){
+				scope = Arrays.copyOf(scope, scopeDepth * 2);
+			}
+			scope[scopeDepth ++] = event;
+		}
+		return event.type;
+	}
+
+	// ======================================================================
+	// イベント種類の検証
+	// ======================================================================
+	/**
+	 * 現在のイベントが指定された種類と名前であることを検証します。
+	 * <p>
+	 * @param type イベントの種類
+	 * @param namespaceURI 名前空間 URI (null の場合は検証しない)
+	 * @param localName ローカル名 (null の場合は検証しない)
+	 * @throws XMLStreamException 一致しない場合
+	 */
+	public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+		if(event.type != type){
+			throw new XMLStreamException("event type " + type + " expected but " + event.type, event);
+		}
+		if(namespaceURI != null && ! namespaceURI.equals(nonNull(getNamespaceURI()))){
+			throw new XMLStreamException("namespace " + namespaceURI + " expected", event);
+		}
+		if(localName != null && ! localName.equals(getLocalName())){
+			throw new XMLStreamException("local name " + localName + " expected", event);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 要素内テキストの参照
+	// ======================================================================
+	/**
+	 * テキストのみを含む要素の内容を参照します。呼び出し後は要素の終了イベントに移動します。
+	 * <p>
+	 * @return 要素内のテキスト
+	 * @throws XMLStreamException 要素の開始でない場合や子要素を含む場合
+	 */
+	public String getElementText() throws XMLStreamException {
+		require(START_ELEMENT, null, null);
+		StringBuilder text = new StringBuilder();
+		while(true){
+			int type = next();
+			switch(type){
+			case CHARACTERS:
+			case CDATA:
+			case SPACE:
+			case ENTITY_REFERENCE:
+				text.append(event.text);
+				break;
+			case PROCESSING_INSTRUCTION:
+			case COMMENT:
+				break;
+			case END_ELEMENT:
+				return text.toString();
+			default:
+				throw new XMLStreamException("element text contains unexpected event: " + type, event);
+			}
+		}
+	}
+
+	// ======================================================================
+	// 次のタグの参照
+	// ======================================================================
+	/**
+	 * 空白文字、コメント、処理命令を読み飛ばして次の要素の開始または終了に移動します。
+	 * <p>
+	 * @return 移動したイベントの種類
+	 * @throws XMLStreamException 空白以外のテキストなどを検出した場合
+	 */
+	public int nextTag() throws XMLStreamException {
+		while(true){
+			int type = next();
+			switch(type){
+			case START_ELEMENT:
+			case END_ELEMENT:
+				return type;
+			case CHARACTERS:
+			case CDATA:
+			case SPACE:
+				if(! isWhiteSpace()){
+					throw new XMLStreamException("non-whitespace text detected", event);
+				}
+				break;
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			default:
+				throw new XMLStreamException("start or end element expected: " + type, event);
+			}
+		}
+	}
+
+	// ======================================================================
+	// 後続イベントの判定
+	// ======================================================================
+	/**
+	 * 後続のイベントが存在するかを判定します。
+	 * <p>
+	 * @return 後続のイベントが存在する場合 true
+	 */
+	public boolean hasNext() {
+		return (event.type != END_DOCUMENT);
+	}
+
+	// ======================================================================
+	// クローズ
+	// ======================================================================
+	/**
+	 * このリーダーが使用しているリソースを解放します。入力ソースに指定されたストリームは
+	 * クローズしません。
+	 * <p>
+	 */
+	public void close() {
+		reader.close();
+		queue.clear();
+		eof = true;
+		return;
+	}
+
+	// ======================================================================
+	// 名前空間 URI の参照
+	// ======================================================================
+	/**
+	 * 現在のスコープで指定された接頭辞に割り当てられている名前空間 URI を参照します。
+	 * <p>
+	 * @param prefix 接頭辞
+	 * @return 名前空間 URI (割り当てられていない場合は null)
+	 */
+	public String getNamespaceURI(String prefix) {
+		if(prefix == null){
+			throw new IllegalArgumentException("prefix is null");
+		}
+		if(prefix.equals(XMLConstants.XML_NS_PREFIX)){
+			return XMLConstants.XML_NS_URI;
+		}
+		if(prefix.equals(XMLConstants.XMLNS_ATTRIBUTE)){
+			return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+		}
+		for(int i=scopeDepth-1; i>=0; i--){
+			String[] ns = scope[i].namespaces;
+			for(int j=0; j<ns.length; j+=2){
+				if(ns[j].equals(prefix)){
+					return ns[j + 1];
+				}
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// イベント種類の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントが要素の開始かを判定します。
+	 * <p>
+	 * @return 要素の開始の場合 true
+	 */
+	public boolean isStartElement() {
+		return (event.type == START_ELEMENT);
+	}
+
+	// ======================================================================
+	// イベント種類の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントが要素の終了かを判定します。
+	 * <p>
+	 * @return 要素の終了の場合 true
+	 */
+	public boolean isEndElement() {
+		return (event.type == END_ELEMENT);
+	}
+
+	// ======================================================================
+	// イベント種類の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントがテキストかを判定します。
+	 * <p>
+	 * @return テキストの場合 true
+	 */
+	public boolean isCharacters() {
+		return (event.type == CHARACTERS);
+	}
+
+	// ======================================================================
+	// 空白の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントが空白文字のみで構成されるテキストかを判定します。
+	 * <p>
+	 * @return 空白文字のみのテキストの場合 true
+	 */
+	public boolean isWhiteSpace() {
+		if(event.type != CHARACTERS && event.type != CDATA && event.type != SPACE){
+			return false;
+		}
+		String text = event.text;
+		for(int i=0; i<text.length(); i++){
+			if(! Xml.isWhitespace(text.charAt(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 指定された名前の属性値を参照します。
+	 * <p>
+	 * @param namespaceURI 名前空間 URI (null の場合は名前空間を比較しない)
+	 * @param localName ローカル名
+	 * @return 属性値 (存在しない場合は null)
+	 */
+	public String getAttributeValue(String namespaceURI, String localName) {
+		String[] attr = attributes();
+		for(int i=0; i<attr.length; i+=Event.ATTR_FIELDS){
+			if(namespaceURI != null && ! namespaceURI.equals(nonNull(attr[i + Event.ATTR_URI]))){
+				continue;
+			}
+			if(localName.equals(attr[i + Event.ATTR_LOCAL])){
+				return attr[i + Event.ATTR_VALUE];
+			}
+		}
+		return null;
+	}
+
+	// ======================================================================
+	// 属性数の参照
+	// ======================================================================
+	/**
+	 * 現在の要素の属性数を参照します。名前空間の宣言は含みません。
+	 * <p>
+	 * @return 属性数
+	 */
+	public int getAttributeCount() {
+		return attributes().length / Event.ATTR_FIELDS;
+	}
+
+	// ======================================================================
+	// 属性名の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性名を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 属性名
+	 */
+	public QName getAttributeName(int index) {
+		return new QName(nonNull(getAttributeNamespace(index)), getAttributeLocalName(index), getAttributePrefix(index));
+	}
+
+	// ======================================================================
+	// 属性の名前空間 URI の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性の名前空間 URI を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 名前空間 URI (名前空間に属さない場合は null)
+	 */
+	public String getAttributeNamespace(int index) {
+		return attribute(index, Event.ATTR_URI);
+	}
+
+	// ======================================================================
+	// 属性のローカル名の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性のローカル名を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return ローカル名
+	 */
+	public String getAttributeLocalName(int index) {
+		return attribute(index, Event.ATTR_LOCAL);
+	}
+
+	// ======================================================================
+	// 属性の接頭辞の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性の接頭辞を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 接頭辞 (存在しない場合は空文字列)
+	 */
+	public String getAttributePrefix(int index) {
+		return prefix(attribute(index, Event.ATTR_QNAME));
+	}
+
+	// ======================================================================
+	// 属性型の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性の型を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 属性の型
+	 */
+	public String getAttributeType(int index) {
+		return attribute(index, Event.ATTR_TYPE);
+	}
+
+	// ======================================================================
+	// 属性値の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性値を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 属性値
+	 */
+	public String getAttributeValue(int index) {
+		return attribute(index, Event.ATTR_VALUE);
+	}
+
+	// ======================================================================
+	// 属性指定の判定
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性がドキュメント上に記述されていたかを判定します。このリーダー
+	 * は DTD によるデフォルト値を補わないため常に true を返します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 常に true
+	 */
+	public boolean isAttributeSpecified(int index) {
+		attribute(index, Event.ATTR_QNAME);
+		return true;
+	}
+
+	// ======================================================================
+	// 名前空間宣言数の参照
+	// ======================================================================
+	/**
+	 * 現在の要素で宣言されている名前空間の数を参照します。
+	 * <p>
+	 * @return 名前空間宣言の数
+	 */
+	public int getNamespaceCount() {
+		if(event.type == END_ELEMENT){
+			return scope[scopeDepth - 1].namespaces.length / 2;
+		}
+		if(event.type != START_ELEMENT){
+			throw new IllegalStateException("not a start or end element");
+		}
+		return event.namespaces.length / 2;
+	}
+
+	// ======================================================================
+	// 名前空間宣言の接頭辞の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの名前空間宣言の接頭辞を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 接頭辞 (デフォルト名前空間の場合は null)
+	 */
+	public String getNamespacePrefix(int index) {
+		getNamespaceCount();
+		String prefix = scope[scopeDepth - 1].namespaces[index * 2];
+		return (prefix.length() == 0)? null: prefix;
+	}
+
+	// ======================================================================
+	// 名前空間宣言の URI の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの名前空間宣言の URI を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @return 名前空間 URI
+	 */
+	public String getNamespaceURI(int index) {
+		getNamespaceCount();
+		return scope[scopeDepth - 1].namespaces[index * 2 + 1];
+	}
+
+	// ======================================================================
+	// 名前空間コンテキストの参照
+	// ======================================================================
+	/**
+	 * 現在の名前空間コンテキストを参照します。返値は以降のイベントの移動によって内容が変化
+	 * します。
+	 * <p>
+	 * @return 名前空間コンテキスト
+	 */
+	public NamespaceContext getNamespaceContext() {
+		return new NamespaceContext(){
+			public String getNamespaceURI(String prefix) {
+				String uri = LooseXMLStreamReader.this.getNamespaceURI(prefix);
+				return nonNull(uri);
+			}
+			public String getPrefix(String namespaceURI) {
+				Iterator<?> it = getPrefixes(namespaceURI);
+				return it.hasNext()? (String)it.next(): null;
+			}
+			public Iterator<String> getPrefixes(String namespaceURI) {
+				List<String> prefixes = new ArrayList<String>();
+				for(int i=scopeDepth-1; i>=0; i--){
+					String[] ns = scope[i].namespaces;
+					for(int j=0; j<ns.length; j+=2){
+						if(ns[j + 1].equals(namespaceURI) && ! prefixes.contains(ns[j])
+						&& namespaceURI.equals(LooseXMLStreamReader.this.getNamespaceURI(ns[j]))){
+							prefixes.add(ns[j]);
+						}
+					}
+				}
+				return prefixes.iterator();
+			}
+		};
+	}
+
+	// ======================================================================
+	// イベント種類の参照
+	// ======================================================================
+	/**
+	 * 現在のイベントの種類を参照します。
+	 * <p>
+	 * @return イベントの種類
+	 */
+	public int getEventType() {
+		return event.type;
+	}
+
+	// ======================================================================
+	// テキストの参照
+	// ======================================================================
+	/**
+	 * 現在のイベントのテキストを参照します。
+	 * <p>
+	 * @return テキスト
+	 * @throws IllegalStateException テキストを持たないイベントの場合
+	 */
+	public String getText() {
+		if(! hasText()){
+			throw new IllegalStateException("event has no text: " + event.type);
+		}
+		return event.text;
+	}
+
+	// ======================================================================
+	// テキストの参照
+	// ======================================================================
+	/**
+	 * 現在のイベントのテキストを文字配列として参照します。返値はこのリーダーの内部バッファで
+	 * あり、次のイベントに移動するまでの間のみ有効です。テキストは {@link #getTextStart()}
+	 * の位置から {@link #getTextLength()} の長さで格納されています。
+	 * <p>
+	 * @return テキストの文字配列
+	 */
+	public char[] getTextCharacters() {
+		String text = getText();
+		if(charactersEvent != event){
+			if(characters.length < text.length()){
+				characters = new char[Math.max(text.length(), characters.length * 2)];
+			}
+			text.getChars(0, text.length(), characters, 0);
+			charactersEvent = event;
+		}
+		return characters;
+	}
+
+	// ======================================================================
+	// テキストの参照
+	// ======================================================================
+	/**
+	 * 現在のイベントのテキストを指定された配列に複写します。
+	 * <p>
+	 * @param sourceStart テキストの複写開始位置
+	 * @param target 複写先の配列
+	 * @param targetStart 複写先の開始位置
+	 * @param length 複写する最大の長さ
+	 * @return 複写した長さ
+	 */
+	public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) {
+		char[] text = getTextCharacters();
+		int textLength = getTextLength();
+		if(sourceStart < 0 || sourceStart > textLength){
+			throw new IndexOutOfBoundsException("sourceStart=" + sourceStart);
+		}
+		int len = Math.min(length, textLength - sourceStart);
+		System.arraycopy(text, sourceStart, target, targetStart, len);
+		return len;
+	}
+
+	// ======================================================================
+	// テキスト開始位置の参照
+	// ======================================================================
+	/**
+	 * {@link #getTextCharacters()} が返す配列内のテキストの開始位置を参照します。
+	 * <p>
+	 * @return 常に 0
+	 */
+	public int getTextStart() {
+		return 0;
+	}
+
+	// ======================================================================
+	// テキスト長の参照
+	// ======================================================================
+	/**
+	 * 現在のイベントのテキストの長さを参照します。
+	 * <p>
+	 * @return テキストの長さ
+	 */
+	public int getTextLength() {
+		return getText().length();
+	}
+
+	// ======================================================================
+	// エンコーディングの参照
+	// ======================================================================
+	/**
+	 * 入力ストリームのエンコーディングを参照します。
+	 * <p>
+	 * @return エンコーディング (不明な場合は null)
+	 */
+	public String getEncoding() {
+		return (locator instanceof Locator2)? ((Locator2)locator).getEncoding(): null;
+	}
+
+	// ======================================================================
+	// テキスト保持の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントがテキストを持つかを判定します。
+	 * <p>
+	 * @return テキストを持つ場合 true
+	 */
+	public boolean hasText() {
+		switch(event.type){
+		case CHARACTERS:
+		case CDATA:
+		case SPACE:
+		case COMMENT:
+		case DTD:
+		case ENTITY_REFERENCE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// ======================================================================
+	// 位置の参照
+	// ======================================================================
+	/**
+	 * 現在のイベントの位置を参照します。
+	 * <p>
+	 * @return 位置
+	 */
+	public Location getLocation() {
+		return event;
+	}
+
+	// ======================================================================
+	// 名前の参照
+	// ======================================================================
+	/**
+	 * 現在の要素の名前を参照します。
+	 * <p>
+	 * @return 要素名
+	 */
+	public QName getName() {
+		element();
+		return new QName(nonNull(event.uri), event.localName, prefix(event.qName));
+	}
+
+	// ======================================================================
+	// ローカル名の参照
+	// ======================================================================
+	/**
+	 * 現在の要素のローカル名を参照します。
+	 * <p>
+	 * @return ローカル名
+	 */
+	public String getLocalName() {
+		element();
+		return event.localName;
+	}
+
+	// ======================================================================
+	// 名前保持の判定
+	// ======================================================================
+	/**
+	 * 現在のイベントが名前を持つかを判定します。
+	 * <p>
+	 * @return 要素の開始または終了の場合 true
+	 */
+	public boolean hasName() {
+		return (event.type == START_ELEMENT || event.type == END_ELEMENT);
+	}
+
+	// ======================================================================
+	// 名前空間 URI の参照
+	// ======================================================================
+	/**
+	 * 現在の要素の名前空間 URI を参照します。
+	 * <p>
+	 * @return 名前空間 URI (名前空間に属さない場合は null)
+	 */
+	public String getNamespaceURI() {
+		return hasName()? event.uri: null;
+	}
+
+	// ======================================================================
+	// 接頭辞の参照
+	// ======================================================================
+	/**
+	 * 現在の要素の接頭辞を参照します。
+	 * <p>
+	 * @return 接頭辞 (存在しない場合は空文字列)
+	 */
+	public String getPrefix() {
+		return hasName()? prefix(event.qName): null;
+	}
+
+	// ======================================================================
+	// XML バージョンの参照
+	// ======================================================================
+	/**
+	 * XML 宣言に指定されたバージョンを参照します。
+	 * <p>
+	 * @return XML バージョン (宣言されていない場合は null)
+	 */
+	public String getVersion() {
+		return (locator instanceof Locator2)? ((Locator2)locator).getXMLVersion(): null;
+	}
+
+	// ======================================================================
+	// スタンドアロンの判定
+	// ======================================================================
+	/**
+	 * ドキュメントがスタンドアロンかを判定します。このリーダーは standalone 宣言を解釈しない
+	 * ため常に false を返します。
+	 * <p>
+	 * @return 常に false
+	 */
+	public boolean isStandalone() {
+		return false;
+	}
+
+	// ======================================================================
+	// スタンドアロン宣言の判定
+	// ======================================================================
+	/**
+	 * standalone 宣言が存在するかを判定します。
+	 * <p>
+	 * @return 常に false
+	 */
+	public boolean standaloneSet() {
+		return false;
+	}
+
+	// ======================================================================
+	// エンコーディング宣言の参照
+	// ======================================================================
+	/**
+	 * XML 宣言に指定されたエンコーディングを参照します。
+	 * <p>
+	 * @return エンコーディング
+	 */
+	public String getCharacterEncodingScheme() {
+		return getEncoding();
+	}
+
+	// ======================================================================
+	// 処理命令ターゲットの参照
+	// ======================================================================
+	/**
+	 * 現在の処理命令のターゲットを参照します。
+	 * <p>
+	 * @return ターゲット (処理命令でない場合は null)
+	 */
+	public String getPITarget() {
+		return (event.type == PROCESSING_INSTRUCTION)? event.localName: null;
+	}
+
+	// ======================================================================
+	// 処理命令データの参照
+	// ======================================================================
+	/**
+	 * 現在の処理命令のデータを参照します。
+	 * <p>
+	 * @return データ (処理命令でない場合は null)
+	 */
+	public String getPIData() {
+		return (event.type == PROCESSING_INSTRUCTION)? event.text: null;
+	}
+
+	// ======================================================================
+	// プロパティの参照
+	// ======================================================================
+	/**
+	 * SAX リーダーに設定されているプロパティを参照します。
+	 * <p>
+	 * @param name プロパティ名
+	 * @return プロパティの値
+	 */
+	public Object getProperty(String name) {
+		if(name == null){
+			throw new IllegalArgumentException("property name is null");
+		}
+		return reader.getProperty(name);
+	}
+
+	// ======================================================================
+	// 要素イベントの検証
+	// ======================================================================
+	/**
+	 * 現在のイベントが要素の開始または終了であることを検証します。
+	 * <p>
+	 * @throws IllegalStateException 要素の開始または終了でない場合
+	 */
+	private void element(){
+		if(! hasName()){
+			throw new IllegalStateException("not a start or end element: " + event.type);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 現在の要素の開始の属性を参照します。
+	 * <p>
+	 * @return 属性
+	 * @throws IllegalStateException 要素の開始でない場合
+	 */
+	private String[] attributes(){
+		if(event.type != START_ELEMENT){
+			throw new IllegalStateException("not a start element: " + event.type);
+		}
+		return event.attributes;
+	}
+
+	// ======================================================================
+	// 属性の参照
+	// ======================================================================
+	/**
+	 * 指定されたインデックスの属性の項目を参照します。
+	 * <p>
+	 * @param index インデックス
+	 * @param field 項目
+	 * @return 項目の値
+	 */
+	private String attribute(int index, int field){
+		String[] attr = attributes();
+		if(index < 0 || index >= attr.length / Event.ATTR_FIELDS){
+			throw new IndexOutOfBoundsException("index=" + index);
+		}
+		return attr[index * Event.ATTR_FIELDS + field];
+	}
+
+	// ======================================================================
+	// 要素の開始
+	// ======================================================================
+	/**
+	 * SAX リーダーから通知された要素の開始をキューに追加します。HTML 最適化が有効な場合は
+	 * 要素の親子関係から終了が省略された要素の終了を補います。
+	 * <p>
+	 * @param start 要素の開始イベント
+	 * @throws SAXException エラーハンドラによって中断された場合
+	 */
+	private void startElement(Event start) throws SAXException{
+
+		// 検出した要素の適切な挿入位置まで要素を終了
+		if(open.depth() > 0 && htmlOptimize){
+			int parent = open.getPreferredParent(start.localName);
+			if(parent != open.depth() - 1){
+				warn(null, "E0008", open.peek().qName);
+				while(open.depth() - 1 > parent){
+					Event e = open.peek();
+					warn(e, "E0004", e.qName);
+					pop();
+				}
+			}
+		}
+
+		// 要素の開始を通知
+		queue.add(start);
+		if(Toolkit.isEmptyElement(start.uri, start.localName, start.qName)){
+			queue.add(start.end());
+			lastEmpty = start.localName;
+			return;
+		}
+		lastEmpty = null;
+
+		// 入れ子の上限に達している場合は内容を持たない要素として終了
+		if(maxDepth > 0 && open.depth() >= maxDepth){
+			warn(start, "E0011", maxDepth, start.qName);
+			queue.add(start.end());
+			overflow.add(start.qName);
+			return;
+		}
+
+		// 開いている要素に追加
+		open.push(start, start.qName, start.localName);
+		return;
+	}
+
+	// ======================================================================
+	// 要素の終了
+	// ======================================================================
+	/**
+	 * SAX リーダーから通知された要素の終了を開いている要素に対応付けます。
+	 * <p>
+	 * @param localName ローカル名
+	 * @param qName 修飾名
+	 * @throws SAXException エラーハンドラによって中断された場合
+	 */
+	private void endElement(String localName, String qName) throws SAXException{
+
+		// 空要素の終了は直前の空要素に対応しなければ警告して無視
+		if(Toolkit.isEmptyElement(null, localName, qName)){
+			if(open.depth() == 0 || lastEmpty == null || ! lastEmpty.equals(localName)){
+				warn(null, "E0002", qName);
+			}
+			lastEmpty = null;
+			return;
+		}
+		lastEmpty = null;
+
+		// 上限を超えた要素の終了はその要素と内側の要素の終了として扱う
+		if(overflow.close(qName)){
+			return;
+		}
+
+		// 終了対象の要素を検出
+		int target = open.lastIndexOf(qName);
+
+		// 上位に定義されていない要素の終了が通知された場合
+		if(target < 0){
+			warn(null, "E0002", qName);
+			return;
+		}
+
+		// スキップしてさかのぼる要素の終了省略を警告
+		while(open.depth() - 1 > target){
+			Event e = open.peek();
+			warn(e, "E0004", e.qName);
+			pop();
+		}
+		pop();
+		return;
+	}
+
+	// ======================================================================
+	// 要素の終了
+	// ======================================================================
+	/**
+	 * 最も内側の開いている要素を終了し、要素の終了をキューに追加します。
+	 * <p>
+	 */
+	private void pop(){
+		Event start = open.pop();
+		queue.add(start.end());
+		overflow.clear();
+		return;
+	}
+
+	// ======================================================================
+	// テキストの通知
+	// ======================================================================
+	/**
+	 * テキストのイベントをキューに追加します。
+	 * <p>
+	 * @param type イベントの種類
+	 * @param text テキスト
+	 */
+	private void text(int type, String text){
+		Event e = new Event(type);
+		e.text = text;
+		queue.add(e);
+		return;
+	}
+
+	// ======================================================================
+	// 警告の通知
+	// ======================================================================
+	/**
+	 * エラーハンドラに対して警告を通知します。
+	 * <p>
+	 * @param pos 位置 (null の場合は現在の位置)
+	 * @param msgid メッセージ ID
+	 * @param args メッセージフォーマット用の引数
+	 * @throws SAXException ハンドラによって中断された場合
+	 */
+	private void warn(Event pos, String msgid, Object... args) throws SAXException{
+		if(errorHandler != null){
+			int line = (pos == null)? locator.getLineNumber(): pos.line;
+			int column = (pos == null)? locator.getColumnNumber(): pos.column;
+			String message = msgid + ":" + Toolkit.format("warn." + msgid, args);
+			SAXParseException ex = new SAXParseException(
+					message, locator.getPublicId(), locator.getSystemId(), line, column);
+			errorHandler.warning(ex);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 接頭辞の参照
+	// ======================================================================
+	/**
+	 * 指定された修飾名の接頭辞を参照します。
+	 * <p>
+	 * @param qName 修飾名
+	 * @return 接頭辞 (存在しない場合は空文字列)
+	 */
+	private static String prefix(String qName){
+		int sep = qName.indexOf(':');
+		return (sep < 0)? XMLConstants.DEFAULT_NS_PREFIX: qName.substring(0, sep);
+	}
+
+	// ======================================================================
+	// 空文字列への変換
+	// ======================================================================
+	/**
+	 * null を空文字列に変換します。
+	 * <p>
+	 * @param value 文字列
+	 * @return null の場合は空文字列
+	 */
+	private static String nonNull(String value){
+		return (value == null)? XMLConstants.NULL_NS_URI: value;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Event: イベント
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * キューに格納する 1 つのイベントです。イベントの位置を表します。
+	 * <p>
+	 */
+	private final class Event implements Location {
+
+		/** 属性 1 つあたりの項目数 */
+		static final int ATTR_FIELDS = 5;
+
+		/** 属性の名前空間 URI の位置 */
+		static final int ATTR_URI = 0;
+
+		/** 属性のローカル名の位置 */
+		static final int ATTR_LOCAL = 1;
+
+		/** 属性の修飾名の位置 */
+		static final int ATTR_QNAME = 2;
+
+		/** 属性の型の位置 */
+		static final int ATTR_TYPE = 3;
+
+		/** 属性値の位置 */
+		static final int ATTR_VALUE = 4;
+
+		/** イベントの種類 */
+		final int type;
+
+		/** 行番号 */
+		final int line;
+
+		/** 列番号 */
+		final int column;
+
+		/** 要素の名前空間 URI */
+		String uri = null;
+
+		/** 要素のローカル名または処理命令のターゲット */
+		String localName = null;
+
+		/** 要素の修飾名 */
+		String qName = null;
+
+		/** テキスト */
+		String text = null;
+
+		/** 名前空間宣言を除く属性 */
+		String[] attributes = EMPTY;
+
+		/** 接頭辞と名前空間 URI の組で表した名前空間宣言 */
+		String[] namespaces = EMPTY;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * イベントの種類を指定して構築を行います。位置は現在のロケーターから設定されます。
+		 * <p>
+		 * @param type イベントの種類
+		 */
+		Event(int type) {
+			this.type = type;
+			this.line = (locator == null)? -1: locator.getLineNumber();
+			this.column = (locator == null)? -1: locator.getColumnNumber();
+			return;
+		}
+
+		// ==================================================================
+		// 要素の終了の作成
+		// ==================================================================
+		/**
+		 * この要素の開始に対応する要素の終了イベントを作成します。
+		 * <p>
+		 * @return 要素の終了イベント
+		 */
+		Event end(){
+			Event e = new Event(END_ELEMENT);
+			e.uri = uri;
+			e.localName = localName;
+			e.qName = qName;
+			return e;
+		}
+
+		// ==================================================================
+		// 行番号の参照
+		// ==================================================================
+		/**
+		 * イベントの行番号を参照します。
+		 * <p>
+		 * @return 行番号
+		 */
+		public int getLineNumber() {
+			return line;
+		}
+
+		// ==================================================================
+		// 列番号の参照
+		// ==================================================================
+		/**
+		 * イベントの列番号を参照します。
+		 * <p>
+		 * @return 列番号
+		 */
+		public int getColumnNumber() {
+			return column;
+		}
+
+		// ==================================================================
+		// 文字位置の参照
+		// ==================================================================
+		/**
+		 * イベントの文字位置を参照します。
+		 * <p>
+		 * @return 常に -1
+		 */
+		public int getCharacterOffset() {
+			return -1;
+		}
+
+		// ==================================================================
+		// PUBLIC ID の参照
+		// ==================================================================
+		/**
+		 * 入力ソースの PUBLIC ID を参照します。
+		 * <p>
+		 * @return PUBLIC ID
+		 */
+		public String getPublicId() {
+			return (locator == null)? null: locator.getPublicId();
+		}
+
+		// ==================================================================
+		// SYSTEM ID の参照
+		// ==================================================================
+		/**
+		 * 入力ソースの SYSTEM ID を参照します。
+		 * <p>
+		 * @return SYSTEM ID
+		 */
+		public String getSystemId() {
+			return (locator == null)? null: locator.getSystemId();
+		}
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Handler: SAX ハンドラ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * SAX リーダーからの通知をイベントに変換してキューに追加するハンドラです。
+	 * <p>
+	 */
+	private final class Handler extends DefaultHandler2 implements BuilderLexicalHandler {
+
+		// ==================================================================
+		// ロケーターの設定
+		// ==================================================================
+		/**
+		 * SAX リーダーのロケーターを設定します。
+		 * <p>
+		 * @param l ロケーター
+		 */
+		@Override
+		public void setDocumentLocator(Locator l) {
+			locator = l;
+			return;
+		}
+
+		// ==================================================================
+		// 要素の開始
+		// ==================================================================
+		/**
+		 * 要素の開始をイベントに変換します。属性は名前空間宣言とそれ以外に分けて複製されます。
+		 * <p>
+		 * @param uri 名前空間 URI
+		 * @param localName ローカル名
+		 * @param qName 修飾名
+		 * @param attrs 属性
+		 * @throws SAXException エラーハンドラによって中断された場合
+		 */
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+			Event e = new Event(START_ELEMENT);
+			e.uri = (uri == null || uri.length() == 0)? null: uri;
+			e.localName = (localName == null || localName.length() == 0)? qName: localName;
+			e.qName = qName;
+
+			// 名前空間宣言の数を参照
+			int ns = 0;
+			for(int i=0; i<attrs.getLength(); i++){
+				if(isNamespaceDeclaration(attrs.getQName(i))){
+					ns ++;
+				}
+			}
+
+			// 属性を複製
+			if(attrs.getLength() > 0){
+				int a = 0;
+				int n = 0;
+				e.attributes = new String[(attrs.getLength() - ns) * Event.ATTR_FIELDS];
+				e.namespaces = (ns == 0)? EMPTY: new String[ns * 2];
+				for(int i=0; i<attrs.getLength(); i++){
+					String name = attrs.getQName(i);
+					if(isNamespaceDeclaration(name)){
+						e.namespaces[n ++] = (name.length() == 5)? XMLConstants.DEFAULT_NS_PREFIX: name.substring(6);
+						e.namespaces[n ++] = attrs.getValue(i);
+						continue;
+					}
+					String auri = attrs.getURI(i);
+					String alocal = attrs.getLocalName(i);
+					e.attributes[a + Event.ATTR_URI] = (auri == null || auri.length() == 0)? null: auri;
+					e.attributes[a + Event.ATTR_LOCAL] = (alocal == null || alocal.length() == 0)? name: alocal;
+					e.attributes[a + Event.ATTR_QNAME] = name;
+					e.attributes[a + Event.ATTR_TYPE] = attrs.getType(i);
+					e.attributes[a + Event.ATTR_VALUE] = attrs.getValue(i);
+					a += Event.ATTR_FIELDS;
+				}
+			}
+			LooseXMLStreamReader.this.startElement(e);
+			return;
+		}
+
+		// ==================================================================
+		// 要素の終了
+		// ==================================================================
+		/**
+		 * 要素の終了を開いている要素に対応付けます。
+		 * <p>
+		 * @param uri 名前空間 URI
+		 * @param localName ローカル名
+		 * @param qName 修飾名
+		 * @throws SAXException エラーハンドラによって中断された場合
+		 */
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if(localName == null || localName.length() == 0){
+				localName = qName;
+			}
+			LooseXMLStreamReader.this.endElement(localName, qName);
+			return;
+		}
+
+		// ==================================================================
+		// テキストの通知
+		// ==================================================================
+		/**
+		 * テキストをイベントに変換します。CDATA セクション内のテキストはセクションの終了まで
+		 * 連結されます。
+		 * <p>
+		 * @param ch 文字配列
+		 * @param start 開始位置
+		 * @param length 長さ
+		 */
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if(buffer != null){
+				buffer.append(ch, start, length);
+				return;
+			}
+			if(length > 0){
+				lastEmpty = (lastEmpty != null && isWhitespace(ch, start, length))? lastEmpty: null;
+				text(CHARACTERS, new String(ch, start, length));
+			}
+			return;
+		}
+
+		// ==================================================================
+		// 処理命令の通知
+		// ==================================================================
+		/**
+		 * 処理命令をイベントに変換します。
+		 * <p>
+		 * @param target ターゲット
+		 * @param data データ
+		 */
+		@Override
+		public void processingInstruction(String target, String data) {
+			Event e = new Event(PROCESSING_INSTRUCTION);
+			e.localName = target;
+			e.text = (data == null)? "": data;
+			queue.add(e);
+			lastEmpty = null;
+			return;
+		}
+
+		// ==================================================================
+		// DOCTYPE の通知
+		// ==================================================================
+		/**
+		 * DOCTYPE 宣言をイベントに変換します。
+		 * <p>
+		 * @param name ドキュメント型名
+		 * @param publicId PUBLIC ID
+		 * @param systemId SYSTEM ID
+		 */
+		@Override
+		public void notationDecl(String name, String publicId, String systemId) {
+			StringBuilder decl = new StringBuilder("<!DOCTYPE ").append(name);
+			if(publicId != null && publicId.length() > 0){
+				decl.append(" PUBLIC \"").append(publicId).append('\"');
+				if(systemId != null && systemId.length() > 0){
+					decl.append(" \"").append(systemId).append('\"');
+				}
+			} else if(systemId != null && systemId.length() > 0){
+				decl.append(" SYSTEM \"").append(systemId).append('\"');
+			}
+			decl.append('>');
+			text(DTD, decl.toString());
+			return;
+		}
+
+		// ==================================================================
+		// CDATA セクションの開始
+		// ==================================================================
+		/**
+		 * CDATA セクションのテキストの連結を開始します。
+		 * <p>
+		 */
+		@Override
+		public void startCDATA() {
+			buffer = new StringBuilder();
+			return;
+		}
+
+		// ==================================================================
+		// CDATA セクションの終了
+		// ==================================================================
+		/**
+		 * 連結した CDATA セクションをイベントに変換します。
+		 * <p>
+		 */
+		@Override
+		public void endCDATA() {
+			text(CDATA, buffer.toString());
+			buffer = null;
+			lastEmpty = null;
+			return;
+		}
+
+		// ==================================================================
+		// コメントの開始
+		// ==================================================================
+		/**
+		 * コメントのテキストの連結を開始します。
+		 * <p>
+		 */
+		public void startComment() {
+			buffer = new StringBuilder();
+			return;
+		}
+
+		// ==================================================================
+		// コメントの通知
+		// ==================================================================
+		/**
+		 * コメントのフラグメントを連結します。
+		 * <p>
+		 * @param ch 文字配列
+		 * @param start 開始位置
+		 * @param length 長さ
+		 */
+		@Override
+		public void comment(char[] ch, int start, int length) {
+			buffer.append(ch, start, length);
+			return;
+		}
+
+		// ==================================================================
+		// コメントの終了
+		// ==================================================================
+		/**
+		 * 連結したコメントをイベントに変換します。
+		 * <p>
+		 */
+		public void endComment() {
+			text(COMMENT, buffer.toString());
+			buffer = null;
+			lastEmpty = null;
+			return;
+		}
+
+		// ==================================================================
+		// ドキュメントの終了
+		// ==================================================================
+		/**
+		 * 開いている全ての要素の終了を補います。
+		 * <p>
+		 */
+		@Override
+		public void endDocument() {
+			while(open.depth() > 0){
+				pop();
+			}
+			return;
+		}
+
+	}
+
+	// ======================================================================
+	// 名前空間宣言の判定
+	// ======================================================================
+	/**
+	 * 指定された属性名が名前空間宣言かを判定します。
+	 * <p>
+	 * @param name 属性名
+	 * @return 名前空間宣言の場合 true
+	 */
+	private static boolean isNamespaceDeclaration(String name){
+		return name.startsWith(XMLConstants.XMLNS_ATTRIBUTE)
+			&& (name.length() == 5 || name.charAt(5) == ':');
+	}
+
+	// ======================================================================
+	// 空白の判定
+	// ======================================================================
+	/**
+	 * 指定された文字配列の範囲が空白文字のみで構成されているかを判定します。
+	 * <p>
+	 * @param ch 文字配列
+	 * @param start 開始位置
+	 * @param length 長さ
+	 * @return 空白文字のみの場合 true
+	 */
+	private static boolean isWhitespace(char[] ch, int start, int length){
+		for(int i=start; i<start+length; i++){
+			if(! Xml.isWhitespace(ch[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
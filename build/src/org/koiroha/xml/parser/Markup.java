@@ -9,8 +9,6 @@
  */
 package org.koiroha.xml.parser;
 
-import java.util.Map;
-
 import javax.xml.XMLConstants;
 
 import org.koiroha.xml.*;
@@ -68,10 +66,11 @@ class Markup {
 	// 属性値
 	// ======================================================================
 	/**
-	 * この要素の属性値です。
+	 * この要素の属性値です。パーサが再利用するインスタンスを参照しているため、内容は次の要素が
+	 * 読み込まれるまで有効です。
 	 * <p>
 	 */
-	private final AttributesImpl attr = new AttributesImpl();
+	private final AttributesImpl attr;
 
 	// ※Xerces 2.9 (XERCESJ-1261) バグ対応
 	//   Attributes2Impl#addAttributes() にはひどいバグがあり NullPointerException
@@ -115,13 +114,14 @@ class Markup {
 	 * @param ns 名前空間解析が有効な場合 true
 	 * @param parent 親要素
 	 * @param qName 修飾名
-	 * @param attrs 属性値
+	 * @param attrs 名前空間が未解決の属性値
 	 * @param empty 空要素の場合 true
 	 * @param end 要素の終了を示す場合 true
 	 */
-	public Markup(boolean ns, Markup parent, String qName, Map<String,String> attrs, boolean empty, boolean end) {
+	public Markup(boolean ns, Markup parent, String qName, AttributesImpl attrs, boolean empty, boolean end) {
 		this.parent = parent;
 		this.qName = qName;
+		this.attr = attrs;
 		this.end = end;
 
 		if(parent != null && ns){
@@ -131,7 +131,9 @@ class Markup {
 		}
 
 		// 属性値の解析 (名前空間解決の為に先に行う)
-		parseAttribute(ns, attrs);
+		if(ns){
+			parseAttribute();
+		}
 
 		// 名前空間 URI とローカル名を決定
 		String prefix = XMLConstants.DEFAULT_NS_PREFIX;
@@ -343,56 +345,39 @@ class Markup {
 	// 属性値の設定
 	// ======================================================================
 	/**
-	 * 要素の属性値を設定します。
+	 * 要素の属性に対して名前空間 URI とローカル名を設定します。
 	 * <p>
-	 * @param ns 名前空間の認識を行う場合 true
-	 * @param attrs 属性値
 	 */
-	private void parseAttribute(boolean ns, Map<String,String> attrs) {
+	private void parseAttribute() {
 
 		// 先に名前空間 URI を解析
-		if(ns){
-			for(Map.Entry<String,String> e: attrs.entrySet()){
-				String qName = e.getKey();
-				String value = e.getValue();
-				if(qName.equals(XMLConstants.XMLNS_ATTRIBUTE)){
-					namespace.setNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX, value);
-				} else if(qName.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":")){
-					int sep = qName.indexOf(':');
-					String localName = qName.substring(sep + 1);
-					namespace.setNamespaceURI(localName, value);
-				}
+		for(int i=0; i<attr.getLength(); i++){
+			String qName = attr.getQName(i);
+			String value = attr.getValue(i);
+			if(qName.equals(XMLConstants.XMLNS_ATTRIBUTE)){
+				namespace.setNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX, value);
+			} else if(qName.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":")){
+				int sep = qName.indexOf(':');
+				String localName = qName.substring(sep + 1);
+				namespace.setNamespaceURI(localName, value);
 			}
 		}
 
 		// 属性値の解析
-		for(Map.Entry<String,String> e: attrs.entrySet()){
-
-			// 属性の情報を参照
-			String qName = e.getKey();
-			String value = e.getValue();
-			String localName = qName;
-			String uri = XMLConstants.NULL_NS_URI;
-
-			// 名前空間が有効な場合
-			if(ns){
+		for(int i=0; i<attr.getLength(); i++){
 
-				// 接頭辞とローカル名に分解
-				int sep = qName.indexOf(':');
-				if(sep >= 0){
-					localName = qName.substring(sep + 1);
-					String prefix = qName.substring(0, sep);
-					uri = getNamespaceURI(prefix);
-				}
-
-				// 名前空間定義の設定
-				if(qName.equals(XMLConstants.XMLNS_ATTRIBUTE)){
-					uri = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
-				}
+			// 接頭辞とローカル名に分解
+			String qName = attr.getQName(i);
+			int sep = qName.indexOf(':');
+			if(sep >= 0){
+				attr.setLocalName(i, qName.substring(sep + 1));
+				attr.setURI(i, getNamespaceURI(qName.substring(0, sep)));
 			}
 
-			// 属性の追加
-			attr.addAttribute(uri, localName, qName, "CDATA", value);
+			// 名前空間定義の設定
+			if(qName.equals(XMLConstants.XMLNS_ATTRIBUTE)){
+				attr.setURI(i, XMLConstants.XMLNS_ATTRIBUTE_NS_URI);
+			}
 		}
 		return;
 	}
@@ -0,0 +1,171 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// OverflowElements: 上限を超えた要素
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 入れ子の上限に達したため開いている要素に追加しなかった要素の名前を出現順に保持します。
+ * これらの要素の終了タグが上位の同名の要素を終了しないよう、終了タグとの対応付けに使用
+ * します。
+ * <p>
+ * 同じ名前の連続は一つの項目と出現数にまとめて保持し、名前ごとの出現数を別に管理します。
+ * これにより対応する要素が存在しない終了タグの判定は保持している要素の数に依存せず、終了
+ * による項目の削除は削除される項目の数に比例した時間で行われます。このクラスはスレッド
+ * セーフではありません。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class OverflowElements {
+
+	// ======================================================================
+	// 要素名
+	// ======================================================================
+	/**
+	 * 各項目の要素名です。
+	 * <p>
+	 */
+	private String[] names = new String[8];
+
+	// ======================================================================
+	// 連続数
+	// ======================================================================
+	/**
+	 * 各項目の要素名が連続して出現した数です。
+	 * <p>
+	 */
+	private int[] runs = new int[8];
+
+	// ======================================================================
+	// 項目数
+	// ======================================================================
+	/**
+	 * 使用している項目の数です。
+	 * <p>
+	 */
+	private int size = 0;
+
+	// ======================================================================
+	// 名前ごとの出現数
+	// ======================================================================
+	/**
+	 * 保持している要素の名前ごとの出現数です。
+	 * <p>
+	 */
+	private final Map<String,Integer> counts = new HashMap<String,Integer>();
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 空の状態で構築します。
+	 * <p>
+	 */
+	public OverflowElements() {
+		return;
+	}
+
+	// ======================================================================
+	// 要素の追加
+	// ======================================================================
+	/**
+	 * 上限を超えた要素を最も内側の要素として追加します。
+	 * <p>
+	 * @param name 要素名
+	 */
+	public void add(String name){
+		if(size > 0 && names[size - 1].equals(name)){
+			runs[size - 1] ++;
+		} else {
+			if(size == names.length){
+				String[] n = new String[size * 2];
+				System.arraycopy(names, 0, n, 0, size);
+				names = n;
+				int[] r = new int[size * 2];
+				System.arraycopy(runs, 0, r, 0, size);
+				runs = r;
+			}
+			names[size] = name;
+			runs[size] = 1;
+			size ++;
+		}
+		Integer count = counts.get(name);
+		counts.put(name, (count == null)? 1: count + 1);
+		return;
+	}
+
+	// ======================================================================
+	// 要素の終了
+	// ======================================================================
+	/**
+	 * 指定された名前の最も内側の要素を、その内側の要素とともに終了します。
+	 * <p>
+	 * @param name 要素名
+	 * @return 該当する要素が存在し終了した場合 true
+	 */
+	public boolean close(String name){
+		if(! counts.containsKey(name)){
+			return false;
+		}
+		while(! names[size - 1].equals(name)){
+			size --;
+			decrement(names[size], runs[size]);
+			names[size] = null;
+		}
+		runs[size - 1] --;
+		if(runs[size - 1] == 0){
+			size --;
+			names[size] = null;
+		}
+		decrement(name, 1);
+		return true;
+	}
+
+	// ======================================================================
+	// 全要素の削除
+	// ======================================================================
+	/**
+	 * 保持している全ての要素を削除します。
+	 * <p>
+	 */
+	public void clear(){
+		if(size == 0){
+			return;
+		}
+		Arrays.fill(names, 0, size, null);
+		size = 0;
+		counts.clear();
+		return;
+	}
+
+	// ======================================================================
+	// 出現数の減算
+	// ======================================================================
+	/**
+	 * 指定された名前の出現数を減算します。
+	 * <p>
+	 * @param name 要素名
+	 * @param n 減算する数
+	 */
+	private void decrement(String name, int n){
+		int count = counts.get(name) - n;
+		if(count == 0){
+			counts.remove(name);
+		} else {
+			counts.put(name, count);
+		}
+		return;
+	}
+
+}
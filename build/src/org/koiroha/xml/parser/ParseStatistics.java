@@ -0,0 +1,463 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// ParseStatistics: 解析統計
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * SAX リーダーの解析処理に関する統計情報を集計するクラスです。インスタンスを
+ * {@link AbstractXMLReader#PROPERTY_STATISTICS} プロパティに設定すると、以降の解析で
+ * 読み込んだ文字数、通知したノード数、警告数、各段階の処理時間が加算されます。
+ * <p>
+ * <pre>ParseStatistics stats = new ParseStatistics();
+ * XMLReader reader = new HTMLParserFactory().newSAXParser().getXMLReader();
+ * reader.setProperty(AbstractXMLReader.PROPERTY_STATISTICS, stats);
+ * reader.parse(is);
+ * Map&lt;String,Long&gt; metrics = stats.toMap();</pre>
+ * <p>
+ * 統計はプロパティが設定されている場合にのみ集計され、ログ出力の設定には依存しません。この
+ * クラスはスレッドセーフではありません。複数のリーダーで同時に使用する場合はリーダーごとに
+ * インスタンスを用意し、呼び出し側で {@link #add(ParseStatistics)} により合算してください。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public class ParseStatistics {
+
+	// ======================================================================
+	// ドキュメント数
+	// ======================================================================
+	/**
+	 * 解析を開始したドキュメントの数です。
+	 * <p>
+	 */
+	private long documents = 0;
+
+	// ======================================================================
+	// 文字数
+	// ======================================================================
+	/**
+	 * 入力ストリームから読み込んだ文字数です。
+	 * <p>
+	 */
+	private long characters = 0;
+
+	// ======================================================================
+	// 要素数
+	// ======================================================================
+	/**
+	 * 開始を通知した要素の数です。
+	 * <p>
+	 */
+	private long elements = 0;
+
+	// ======================================================================
+	// テキスト数
+	// ======================================================================
+	/**
+	 * 通知したテキスト及び CDATA セクションの数です。
+	 * <p>
+	 */
+	private long texts = 0;
+
+	// ======================================================================
+	// コメント数
+	// ======================================================================
+	/**
+	 * 通知したコメントの数です。
+	 * <p>
+	 */
+	private long comments = 0;
+
+	// ======================================================================
+	// その他のノード数
+	// ======================================================================
+	/**
+	 * 通知した処理命令と DOCTYPE 宣言の数です。
+	 * <p>
+	 */
+	private long others = 0;
+
+	// ======================================================================
+	// 警告数
+	// ======================================================================
+	/**
+	 * 発生した警告の数です。エラーハンドラが設定されていない場合も計数されます。
+	 * <p>
+	 */
+	private long warnings = 0;
+
+	// ======================================================================
+	// 開始処理時間
+	// ======================================================================
+	/**
+	 * 入力ストリームの準備とドキュメント開始の通知に要した時間 (ナノ秒) です。
+	 * <p>
+	 */
+	private long openTime = 0;
+
+	// ======================================================================
+	// 解析処理時間
+	// ======================================================================
+	/**
+	 * マークアップの読み込みとハンドラへの通知に要した時間 (ナノ秒) です。
+	 * <p>
+	 */
+	private long parseTime = 0;
+
+	// ======================================================================
+	// 終了処理時間
+	// ======================================================================
+	/**
+	 * ドキュメント終了の通知に要した時間 (ナノ秒) です。
+	 * <p>
+	 */
+	private long endTime = 0;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 全ての値が 0 の統計情報を構築します。
+	 * <p>
+	 */
+	public ParseStatistics() {
+		return;
+	}
+
+	// ======================================================================
+	// ドキュメント数の参照
+	// ======================================================================
+	/**
+	 * 解析を開始したドキュメントの数を参照します。
+	 * <p>
+	 * @return ドキュメント数
+	 */
+	public long getDocuments() {
+		return documents;
+	}
+
+	// ======================================================================
+	// 文字数の参照
+	// ======================================================================
+	/**
+	 * 入力ストリームから読み込んだ文字数を参照します。改行コードは LF に正規化された後の
+	 * 文字数で計数されます。
+	 * <p>
+	 * @return 文字数
+	 */
+	public long getCharacters() {
+		return characters;
+	}
+
+	// ======================================================================
+	// 要素数の参照
+	// ======================================================================
+	/**
+	 * 開始を通知した要素の数を参照します。
+	 * <p>
+	 * @return 要素数
+	 */
+	public long getElements() {
+		return elements;
+	}
+
+	// ======================================================================
+	// テキスト数の参照
+	// ======================================================================
+	/**
+	 * 通知したテキスト及び CDATA セクションの数を参照します。一続きのテキストが分割して通知
+	 * された場合はそれぞれが計数されます。
+	 * <p>
+	 * @return テキスト数
+	 */
+	public long getTexts() {
+		return texts;
+	}
+
+	// ======================================================================
+	// コメント数の参照
+	// ======================================================================
+	/**
+	 * 通知したコメントの数を参照します。
+	 * <p>
+	 * @return コメント数
+	 */
+	public long getComments() {
+		return comments;
+	}
+
+	// ======================================================================
+	// ノード数の参照
+	// ======================================================================
+	/**
+	 * 要素、テキスト、コメント、処理命令、DOCTYPE 宣言を合わせた通知ノード数を参照します。
+	 * <p>
+	 * @return ノード数
+	 */
+	public long getNodes() {
+		return elements + texts + comments + others;
+	}
+
+	// ======================================================================
+	// 警告数の参照
+	// ======================================================================
+	/**
+	 * 発生した警告の数を参照します。
+	 * <p>
+	 * @return 警告数
+	 */
+	public long getWarnings() {
+		return warnings;
+	}
+
+	// ======================================================================
+	// 開始処理時間の参照
+	// ======================================================================
+	/**
+	 * 入力ストリームの準備とドキュメント開始の通知に要した時間を参照します。
+	 * <p>
+	 * @return 処理時間 (ナノ秒)
+	 */
+	public long getOpenTime() {
+		return openTime;
+	}
+
+	// ======================================================================
+	// 解析処理時間の参照
+	// ======================================================================
+	/**
+	 * マークアップの読み込みとハンドラへの通知に要した時間を参照します。
+	 * <p>
+	 * @return 処理時間 (ナノ秒)
+	 */
+	public long getParseTime() {
+		return parseTime;
+	}
+
+	// ======================================================================
+	// 終了処理時間の参照
+	// ======================================================================
+	/**
+	 * ドキュメント終了の通知に要した時間を参照します。
+	 * <p>
+	 * @return 処理時間 (ナノ秒)
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	// ======================================================================
+	// 統計の合算
+	// ======================================================================
+	/**
+	 * 指定された統計情報の値をこのインスタンスに加算します。
+	 * <p>
+	 * @param other 加算する統計情報
+	 */
+	public void add(ParseStatistics other){
+		documents += other.documents;
+		characters += other.characters;
+		elements += other.elements;
+		texts += other.texts;
+		comments += other.comments;
+		others += other.others;
+		warnings += other.warnings;
+		openTime += other.openTime;
+		parseTime += other.parseTime;
+		endTime += other.endTime;
+		return;
+	}
+
+	// ======================================================================
+	// 統計のクリア
+	// ======================================================================
+	/**
+	 * 全ての値を 0 に戻します。
+	 * <p>
+	 */
+	public void reset(){
+		documents = 0;
+		characters = 0;
+		elements = 0;
+		texts = 0;
+		comments = 0;
+		others = 0;
+		warnings = 0;
+		openTime = 0;
+		parseTime = 0;
+		endTime = 0;
+		return;
+	}
+
+	// ======================================================================
+	// マップへの変換
+	// ======================================================================
+	/**
+	 * メトリクスとして出力するために統計情報を名前と値のマップとして参照します。
+	 * <p>
+	 * @return 統計情報のマップ
+	 */
+	public Map<String,Long> toMap(){
+		Map<String,Long> map = new LinkedHashMap<String,Long>();
+		map.put("documents", documents);
+		map.put("characters", characters);
+		map.put("nodes", getNodes());
+		map.put("elements", elements);
+		map.put("texts", texts);
+		map.put("comments", comments);
+		map.put("warnings", warnings);
+		map.put("openNanos", openTime);
+		map.put("parseNanos", parseTime);
+		map.put("endNanos", endTime);
+		return map;
+	}
+
+	// ======================================================================
+	// インスタンスの文字列化
+	// ======================================================================
+	/**
+	 * このインスタンスを文字列化します。
+	 * <p>
+	 * @return インスタンスの文字列
+	 */
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * ドキュメントの解析開始を計数します。
+	 * <p>
+	 */
+	void countDocument(){
+		documents ++;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * 入力ストリームから読み込んだ文字数を加算します。
+	 * <p>
+	 * @param count 文字数
+	 */
+	void countCharacters(long count){
+		characters += count;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * 要素の開始を計数します。
+	 * <p>
+	 */
+	void countElement(){
+		elements ++;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * テキストを計数します。
+	 * <p>
+	 */
+	void countText(){
+		texts ++;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * コメントを計数します。
+	 * <p>
+	 */
+	void countComment(){
+		comments ++;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * 処理命令または DOCTYPE 宣言を計数します。
+	 * <p>
+	 */
+	void countOther(){
+		others ++;
+		return;
+	}
+
+	// ======================================================================
+	// 計数
+	// ======================================================================
+	/**
+	 * 警告を計数します。
+	 * <p>
+	 */
+	void countWarning(){
+		warnings ++;
+		return;
+	}
+
+	// ======================================================================
+	// 処理時間の加算
+	// ======================================================================
+	/**
+	 * 開始処理の時間を加算します。
+	 * <p>
+	 * @param nanos 処理時間 (ナノ秒)
+	 */
+	void addOpenTime(long nanos){
+		openTime += nanos;
+		return;
+	}
+
+	// ======================================================================
+	// 処理時間の加算
+	// ======================================================================
+	/**
+	 * 解析処理の時間を加算します。
+	 * <p>
+	 * @param nanos 処理時間 (ナノ秒)
+	 */
+	void addParseTime(long nanos){
+		parseTime += nanos;
+		return;
+	}
+
+	// ======================================================================
+	// 処理時間の加算
+	// ======================================================================
+	/**
+	 * 終了処理の時間を加算します。
+	 * <p>
+	 * @param nanos 処理時間 (ナノ秒)
+	 */
+	void addEndTime(long nanos){
+		endTime += nanos;
+		return;
+	}
+
+}
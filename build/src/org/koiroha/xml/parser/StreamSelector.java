@@ -0,0 +1,588 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+import java.util.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.*;
+
+import org.w3c.dom.*;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// StreamSelector: ストリーミング選択
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * {@link XMLStreamReader} から読み出したイベントのうち、登録したパスに一致する要素や属性
+ * のみを DOM ノードとして通知するクラスです。一致しない部分は名前のスタックを操作するのみで
+ * 読み飛ばされるため、DOM を構築せずに大きなドキュメントから必要な部分を抽出できます。
+ * <p>
+ * パスは XPath の省略構文のサブセットで、ルートからの子 (<code>/</code>) と子孫
+ * (<code>//</code>) のステップ、任意の名前を表す <code>*</code>、末尾の属性ステップ
+ * (<code>@name</code> または <code>@*</code>) を使用できます。名前は要素や属性のローカル
+ * 名と比較されます。
+ * <pre>
+ * StreamSelector selector = new StreamSelector();
+ * selector.add("/html//title");
+ * selector.add("//a/@href");
+ * selector.add("//meta");
+ * selector.select(factory.newXMLStreamReader(is, null), handler);</pre>
+ * <p>
+ * 要素に一致した場合は要素の終了を読み込んだ時点でその要素の部分木が通知されます。最も外側の
+ * 一致は新しいドキュメントのドキュメント要素として構築されます。一致した要素の内側で更に一致
+ * した要素は独立したドキュメントを持たず、外側の一致の部分木の一部として通知されます。従って
+ * 入れ子になった一致は内側の要素から順に通知され、通知された内側の要素は既に外側の要素の子孫
+ * であり、その後の兄弟ノードも同じドキュメントに追加されます。ハンドラ内で内側の要素を変更
+ * すると外側の要素にも反映されるため、個別に保持する場合は複製してください。属性に一致した
+ * 場合は要素の開始を読み込んだ時点で属性ノードが通知されます。一致した部分木の外では要素を
+ * 作成せず、一致した属性のみを所有者の要素を持たない属性ノードとして作成します。
+ * 保持する状態は要素の入れ子の深さと一致した部分木の大きさにのみ比例します。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+public final class StreamSelector {
+
+	// ======================================================================
+	// ログ出力先
+	// ======================================================================
+	/**
+	 * このクラスのログ出力先です。
+	 * <p>
+	 */
+	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(StreamSelector.class.getName());
+
+	// ======================================================================
+	// 要素パス
+	// ======================================================================
+	/**
+	 * 要素に一致するパスです。
+	 * <p>
+	 */
+	private final List<Path> elementPaths = new ArrayList<Path>();
+
+	// ======================================================================
+	// 属性パス
+	// ======================================================================
+	/**
+	 * 属性に一致するパスです。
+	 * <p>
+	 */
+	private final List<Path> attributePaths = new ArrayList<Path>();
+
+	// ======================================================================
+	// 作業用ドキュメントの上限
+	// ======================================================================
+	/**
+	 * 部分木の外で一致した属性を作成する作業用ドキュメントを置き換えるまでに作成する属性の
+	 * 数です。
+	 * <p>
+	 */
+	private static final int SCRATCH_LIMIT = 1024;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * パスが登録されていない状態で構築を行います。
+	 * <p>
+	 */
+	public StreamSelector() {
+		return;
+	}
+
+	// ======================================================================
+	// パスの登録
+	// ======================================================================
+	/**
+	 * 抽出する要素または属性のパスを登録します。
+	 * <p>
+	 * @param path パス
+	 * @throws IllegalArgumentException パスの書式が不正な場合
+	 */
+	public void add(String path) throws IllegalArgumentException{
+		Path p = new Path(path);
+		if(p.attribute == null){
+			elementPaths.add(p);
+		} else {
+			attributePaths.add(p);
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 選択の実行
+	// ======================================================================
+	/**
+	 * 指定されたリーダーをドキュメントの終端まで読み込み、登録されているパスに一致した要素と
+	 * 属性をハンドラに通知します。リーダーはクローズされません。
+	 * <p>
+	 * @param in 読み込むリーダー
+	 * @param handler 一致したノードを通知するハンドラ
+	 * @throws XMLStreamException 読み込みに失敗した場合やハンドラが例外を発生した場合
+	 */
+	public void select(XMLStreamReader in, Handler handler) throws XMLStreamException{
+
+		// 開いている要素の名前と、要素ごとに一致したパスのスタック
+		String[] names = new String[16];
+		Path[][] matches = new Path[16][];
+		boolean[] built = new boolean[16];
+		int depth = 0;
+
+		// 構築中の部分木
+		CompactDocument doc = null;
+		Node current = null;
+		int fragmentDepth = -1;
+
+		// 部分木の外で一致した属性を作成する作業用ドキュメント
+		CompactDocument scratch = null;
+		int scratchNodes = 0;
+
+		while(in.hasNext()){
+			switch(in.next()){
+			case XMLStreamConstants.START_ELEMENT:
+
+				// 名前をスタックに追加
+				if(depth == names.length){
+					names = Arrays.copyOf(names, depth * 2);
+					matches = Arrays.copyOf(matches, depth * 2);
+					built = Arrays.copyOf(built, depth * 2);
+				}
+				names[depth] = in.getLocalName();
+				matches[depth] = match(elementPaths, names, depth + 1);
+				depth ++;
+
+				// 部分木の構築を開始
+				if(fragmentDepth < 0 && matches[depth - 1] != null){
+					doc = new CompactDocument();
+					current = doc;
+					fragmentDepth = depth;
+				}
+
+				// 部分木に要素を追加 (DOM として不正な名前の要素は内容のみを追加)
+				Element elem = null;
+				if(fragmentDepth >= 0){
+					elem = createElement(doc, in);
+					if(elem != null && (current != doc || doc.getDocumentElement() == null)){
+						current.appendChild(elem);
+						current = elem;
+					} else {
+						elem = null;
+					}
+				}
+				built[depth - 1] = (elem != null);
+				if(fragmentDepth == depth && elem == null){
+					doc = null;
+					current = null;
+					fragmentDepth = -1;
+				}
+
+				// 一致した属性を通知
+				Path[] attrs = match(attributePaths, names, depth);
+				if(attrs != null && elem != null){
+					for(Path p: attrs){
+						NamedNodeMap map = elem.getAttributes();
+						for(int i=0; i<map.getLength(); i++){
+							Attr attr = (Attr)map.item(i);
+							if(p.attribute.equals("*") || p.attribute.equals(localName(attr))){
+								handler.selected(p.path, attr);
+							}
+						}
+					}
+				} else if(attrs != null){
+
+					// 部分木の外では要素を作成せず一致した属性のみをリーダーから作成
+					if(scratch == null || scratchNodes >= SCRATCH_LIMIT){
+						scratch = new CompactDocument();
+						scratchNodes = 0;
+					}
+					int nsCount = in.getNamespaceCount();
+					Attr[] created = new Attr[nsCount + in.getAttributeCount()];
+					for(Path p: attrs){
+						for(int i=0; i<created.length; i++){
+							String uri, qName, name;
+							if(i < nsCount){
+								String prefix = in.getNamespacePrefix(i);
+								uri = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+								qName = (prefix == null)? "xmlns": "xmlns:" + prefix;
+								name = (prefix == null)? "xmlns": prefix;
+							} else {
+								String prefix = in.getAttributePrefix(i - nsCount);
+								uri = in.getAttributeNamespace(i - nsCount);
+								name = in.getAttributeLocalName(i - nsCount);
+								qName = (prefix == null || prefix.length() == 0)? name: prefix + ":" + name;
+								if(uri == null || uri.length() == 0){
+									name = qName;
+								}
+							}
+							if(! p.attribute.equals("*") && ! p.attribute.equals(name)){
+								continue;
+							}
+							if(created[i] == null){
+								String value = (i < nsCount)? in.getNamespaceURI(i): in.getAttributeValue(i - nsCount);
+								created[i] = createAttribute(scratch, uri, qName, value);
+								scratchNodes ++;
+							}
+							if(created[i] != null){
+								handler.selected(p.path, created[i]);
+							}
+						}
+					}
+				}
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				if(depth == 0){
+					break;
+				}
+				depth --;
+
+				// 一致した要素を通知
+				if(fragmentDepth >= 0 && built[depth]){
+					Node node = current;
+					current = current.getParentNode();
+					if(matches[depth] != null){
+						for(Path p: matches[depth]){
+							handler.selected(p.path, node);
+						}
+					}
+					if(depth + 1 == fragmentDepth){
+						doc = null;
+						current = null;
+						fragmentDepth = -1;
+					}
+				}
+				names[depth] = null;
+				matches[depth] = null;
+				built[depth] = false;
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				if(fragmentDepth >= 0 && current != doc){
+					current.appendChild(doc.createTextNode(in.getText()));
+				}
+				break;
+
+			case XMLStreamConstants.CDATA:
+				if(fragmentDepth >= 0 && current != doc){
+					current.appendChild(doc.createCDATASection(in.getText()));
+				}
+				break;
+
+			case XMLStreamConstants.COMMENT:
+				if(fragmentDepth >= 0){
+					current.appendChild(doc.createComment(in.getText()));
+				}
+				break;
+
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				if(fragmentDepth >= 0){
+					try{
+						current.appendChild(doc.createProcessingInstruction(in.getPITarget(), in.getPIData()));
+					} catch(DOMException ex){
+						logger.finest(ex.toString());
+					}
+				}
+				break;
+
+			default:
+				break;
+			}
+		}
+		return;
+	}
+
+	// ======================================================================
+	// パスの照合
+	// ======================================================================
+	/**
+	 * 指定された名前のスタックに一致するパスを参照します。
+	 * <p>
+	 * @param paths 照合するパス
+	 * @param names 開いている要素の名前
+	 * @param depth 開いている要素の数
+	 * @return 一致したパス (一致しない場合は null)
+	 */
+	private static Path[] match(List<Path> paths, String[] names, int depth){
+		Path[] matched = null;
+		for(int i=0; i<paths.size(); i++){
+			Path p = paths.get(i);
+			if(p.matches(names, depth)){
+				if(matched == null){
+					matched = new Path[]{ p };
+				} else {
+					matched = Arrays.copyOf(matched, matched.length + 1);
+					matched[matched.length - 1] = p;
+				}
+			}
+		}
+		return matched;
+	}
+
+	// ======================================================================
+	// 要素の作成
+	// ======================================================================
+	/**
+	 * リーダーの現在の要素の開始から要素を作成します。
+	 * <p>
+	 * @param doc 要素を作成するドキュメント
+	 * @param in リーダー
+	 * @return 要素
+	 */
+	private static Element createElement(CompactDocument doc, XMLStreamReader in){
+		String uri = in.getNamespaceURI();
+		String prefix = in.getPrefix();
+		String qName = (prefix == null || prefix.length() == 0)? in.getLocalName(): prefix + ":" + in.getLocalName();
+
+		// 要素の作成
+		Element elem = null;
+		try{
+			if(uri == null){
+				elem = doc.createElement(qName);
+			} else {
+				elem = doc.createElementNS(uri, qName);
+			}
+		} catch(DOMException ex){
+			logger.finest(ex.toString());
+			return null;
+		}
+
+		// 名前空間宣言と属性の設定
+		for(int i=0; i<in.getNamespaceCount(); i++){
+			String nsPrefix = in.getNamespacePrefix(i);
+			String name = (nsPrefix == null)? "xmlns": "xmlns:" + nsPrefix;
+			setAttribute(elem, XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, in.getNamespaceURI(i));
+		}
+		for(int i=0; i<in.getAttributeCount(); i++){
+			String aprefix = in.getAttributePrefix(i);
+			String aname = in.getAttributeLocalName(i);
+			if(aprefix != null && aprefix.length() > 0){
+				aname = aprefix + ":" + aname;
+			}
+			setAttribute(elem, in.getAttributeNamespace(i), aname, in.getAttributeValue(i));
+		}
+		return elem;
+	}
+
+	// ======================================================================
+	// 属性の設定
+	// ======================================================================
+	/**
+	 * 要素に属性を設定します。DOM として不正な名前の属性は無視されます。
+	 * <p>
+	 * @param elem 要素
+	 * @param uri 名前空間 URI
+	 * @param name 属性名
+	 * @param value 属性値
+	 */
+	private static void setAttribute(Element elem, String uri, String name, String value){
+		try{
+			if(uri == null || uri.length() == 0){
+				elem.setAttribute(name, value);
+			} else {
+				elem.setAttributeNS(uri, name, value);
+			}
+		} catch(DOMException ex){
+			logger.finest(ex.toString());
+		}
+		return;
+	}
+
+	// ======================================================================
+	// 属性の作成
+	// ======================================================================
+	/**
+	 * 所有者の要素を持たない属性を作成します。DOM として不正な名前の場合は null を返します。
+	 * <p>
+	 * @param doc 属性を作成するドキュメント
+	 * @param uri 名前空間 URI
+	 * @param name 属性名
+	 * @param value 属性値
+	 * @return 属性
+	 */
+	private static Attr createAttribute(CompactDocument doc, String uri, String name, String value){
+		Attr attr = null;
+		try{
+			if(uri == null || uri.length() == 0){
+				attr = doc.createAttribute(name);
+			} else {
+				attr = doc.createAttributeNS(uri, name);
+			}
+		} catch(DOMException ex){
+			logger.finest(ex.toString());
+			return null;
+		}
+		attr.setValue(value);
+		return attr;
+	}
+
+	// ======================================================================
+	// ローカル名の参照
+	// ======================================================================
+	/**
+	 * 指定された属性のローカル名を参照します。
+	 * <p>
+	 * @param attr 属性
+	 * @return ローカル名
+	 */
+	private static String localName(Attr attr){
+		String name = attr.getLocalName();
+		return (name == null)? attr.getName(): name;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Handler: 選択ハンドラ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * パスに一致したノードを受け取るためのインターフェースです。
+	 * <p>
+	 */
+	public interface Handler {
+
+		// ==================================================================
+		// ノードの通知
+		// ==================================================================
+		/**
+		 * パスに一致したノードが検出された時に呼び出されます。要素の場合は一致した部分木
+		 * (外側の一致の内側であれば外側の部分木の一部)、属性の場合はその要素の属性ノード
+		 * です。要素の部分木の外で一致した属性は所有者の要素を持ちません。
+		 * <p>
+		 * @param path 一致したパス
+		 * @param node 一致した要素または属性
+		 * @throws XMLStreamException 処理を中断する場合
+		 */
+		public void selected(String path, Node node) throws XMLStreamException;
+
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Path: パス
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * 解析済みのパスです。
+	 * <p>
+	 */
+	private static final class Path {
+
+		/** 登録されたパス文字列 */
+		final String path;
+
+		/** 要素ステップの名前 */
+		final String[] names;
+
+		/** 要素ステップが子孫ステップの場合 true */
+		final boolean[] descendant;
+
+		/** 属性ステップの名前 (要素のパスの場合は null) */
+		final String attribute;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * 指定されたパス文字列を解析します。
+		 * <p>
+		 * @param path パス
+		 * @throws IllegalArgumentException パスの書式が不正な場合
+		 */
+		Path(String path) throws IllegalArgumentException{
+			if(path == null || ! path.startsWith("/")){
+				throw new IllegalArgumentException("path must start with '/': " + path);
+			}
+			this.path = path;
+
+			List<String> names = new ArrayList<String>();
+			List<Boolean> descendant = new ArrayList<Boolean>();
+			String attribute = null;
+			int i = 0;
+			while(i < path.length()){
+				boolean desc = path.startsWith("//", i);
+				i += desc? 2: 1;
+				int end = path.indexOf('/', i);
+				if(end < 0){
+					end = path.length();
+				}
+				String step = path.substring(i, end);
+				if(step.length() == 0){
+					throw new IllegalArgumentException("empty step: " + path);
+				}
+				if(step.startsWith("@")){
+					if(end != path.length() || desc || step.length() == 1){
+						throw new IllegalArgumentException("attribute step must be the last child step: " + path);
+					}
+					attribute = step.substring(1);
+				} else {
+					names.add(step);
+					descendant.add(desc);
+				}
+				i = end;
+			}
+			if(names.isEmpty()){
+				throw new IllegalArgumentException("no element step: " + path);
+			}
+
+			this.names = names.toArray(new String[names.size()]);
+			this.descendant = new boolean[descendant.size()];
+			for(int j=0; j<this.descendant.length; j++){
+				this.descendant[j] = descendant.get(j);
+			}
+			this.attribute = attribute;
+			return;
+		}
+
+		// ==================================================================
+		// パスの照合
+		// ==================================================================
+		/**
+		 * 指定された名前のスタックの末尾の要素がこのパスの要素ステップに一致するかを判定します。
+		 * <p>
+		 * @param stack 開いている要素の名前
+		 * @param depth 開いている要素の数
+		 * @return 一致する場合 true
+		 */
+		boolean matches(String[] stack, int depth){
+			return matches(names.length - 1, stack, depth - 1);
+		}
+
+		// ==================================================================
+		// パスの照合
+		// ==================================================================
+		/**
+		 * 指定されたステップ以前がスタックの指定位置以前に一致するかを判定します。
+		 * <p>
+		 * @param step 照合するステップ
+		 * @param stack 開いている要素の名前
+		 * @param pos ステップに一致させるスタックの位置
+		 * @return 一致する場合 true
+		 */
+		private boolean matches(int step, String[] stack, int pos){
+			if(pos < 0 || ! (names[step].equals("*") || names[step].equals(stack[pos]))){
+				return false;
+			}
+			if(step == 0){
+				return descendant[0] || pos == 0;
+			}
+
+			// 子ステップは直前の位置、子孫ステップはそれ以前の全ての位置と照合
+			if(! descendant[step]){
+				return matches(step - 1, stack, pos - 1);
+			}
+			for(int i=pos-1; i>=0; i--){
+				if(matches(step - 1, stack, i)){
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
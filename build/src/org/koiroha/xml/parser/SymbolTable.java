@@ -0,0 +1,174 @@
+/* **************************************************************************
+ * Copyright (C) 2011 BJoRFUAN. All Rights Reserved
+ * **************************************************************************
+ * This module, contains source code, binary and documentation, is in the
+ * Apache License Ver. 2.0, and comes with NO WARRANTY.
+ *
+ *                                           takami torao <koiroha@gmail.com>
+ *                                                   http://www.bjorfuan.com/
+ */
+package org.koiroha.xml.parser;
+
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// SymbolTable: シンボルテーブル
+// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+/**
+ * 要素名や属性名を共有するためのシンボルテーブルです。文字シーケンス上の範囲から名前を参照
+ * するため、既に登録されている名前であれば文字列の生成を行いません。小文字に変換した名前も
+ * 同時に保持します。
+ * <p>
+ * 不正な HTML に含まれる無意味な名前でテーブルが肥大化しないよう、登録数が上限に達した後は
+ * 新しい名前を登録せずに都度文字列を生成します。このクラスはスレッドセーフではありません。
+ * <p>
+ * @author torao
+ * @since 2026/10/18 Java SE 6
+ */
+final class SymbolTable {
+
+	// ======================================================================
+	// 最大登録数
+	// ======================================================================
+	/**
+	 * テーブルに登録するシンボルの最大数です。
+	 * <p>
+	 */
+	private static final int MAX_SYMBOLS = 4 * 1024;
+
+	// ======================================================================
+	// ハッシュバケット
+	// ======================================================================
+	/**
+	 * シンボルのハッシュバケットです。
+	 * <p>
+	 */
+	private final Entry[] buckets = new Entry[1024];
+
+	// ======================================================================
+	// 登録数
+	// ======================================================================
+	/**
+	 * テーブルに登録されているシンボルの数です。
+	 * <p>
+	 */
+	private int size = 0;
+
+	// ======================================================================
+	// コンストラクタ
+	// ======================================================================
+	/**
+	 * 空のシンボルテーブルを構築します。
+	 * <p>
+	 */
+	public SymbolTable() {
+		return;
+	}
+
+	// ======================================================================
+	// シンボルの参照
+	// ======================================================================
+	/**
+	 * 指定された文字シーケンスの範囲に対するシンボルを参照します。小文字変換を指定した場合は
+	 * {@link String#toLowerCase()} と同じ結果を返します。
+	 * <p>
+	 * @param text 文字シーケンス
+	 * @param begin 名前の開始位置
+	 * @param end 名前の終了位置
+	 * @param lowerCase 小文字に変換する場合 true
+	 * @return 名前
+	 */
+	public String get(CharSequence text, int begin, int end, boolean lowerCase){
+		int hash = 0;
+		for(int i=begin; i<end; i++){
+			hash = 31 * hash + text.charAt(i);
+		}
+
+		// 登録済みのシンボルを検索
+		int index = (hash & 0x7FFFFFFF) % buckets.length;
+		for(Entry e = buckets[index]; e != null; e = e.next){
+			if(e.hash == hash && e.matches(text, begin, end)){
+				return lowerCase? e.lowerCase: e.name;
+			}
+		}
+
+		// 新しいシンボルを登録 (小文字の名前も同じテーブルのシンボルを使用)
+		String name = text.subSequence(begin, end).toString();
+		String lower = name.toLowerCase();
+		if(lower.equals(name)){
+			lower = name;
+		} else {
+			lower = get(lower, 0, lower.length(), false);
+		}
+		Entry e = new Entry(hash, name, lower, buckets[index]);
+		if(size < MAX_SYMBOLS){
+			buckets[index] = e;
+			size ++;
+		}
+		return lowerCase? e.lowerCase: e.name;
+	}
+
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	// Entry: シンボルエントリ
+	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	/**
+	 * ハッシュバケットに格納するシンボルのエントリです。
+	 * <p>
+	 */
+	private static final class Entry {
+
+		/** 名前のハッシュ値 */
+		public final int hash;
+
+		/** 名前 */
+		public final String name;
+
+		/** 小文字に変換した名前 */
+		public final String lowerCase;
+
+		/** 同じバケットの次のエントリ */
+		public final Entry next;
+
+		// ==================================================================
+		// コンストラクタ
+		// ==================================================================
+		/**
+		 * エントリを構築します。
+		 * <p>
+		 * @param hash 名前のハッシュ値
+		 * @param name 名前
+		 * @param lowerCase 小文字に変換した名前
+		 * @param next 同じバケットの次のエントリ
+		 */
+		public Entry(int hash, String name, String lowerCase, Entry next){
+			this.hash = hash;
+			this.name = name;
+			this.lowerCase = lowerCase;
+			this.next = next;
+			return;
+		}
+
+		// ==================================================================
+		// 名前の比較
+		// ==================================================================
+		/**
+		 * このエントリの名前が指定された文字シーケンスの範囲と一致するかを判定します。
+		 * <p>
+		 * @param text 文字シーケンス
+		 * @param begin 名前の開始位置
+		 * @param end 名前の終了位置
+		 * @return 一致する場合 true
+		 */
+		public boolean matches(CharSequence text, int begin, int end){
+			if(name.length() != end - begin){
+				return false;
+			}
+			for(int i=0; i<name.length(); i++){
+				if(name.charAt(i) != text.charAt(begin + i)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -333,6 +333,32 @@ final class Toolkit {
 		return current;
 	}
 
+	// ======================================================================
+	// 親要素名の参照
+	// ======================================================================
+	/**
+	 * 指定された HTML 要素の直接の親となりうる要素の名前を参照します。
+	 * <p>
+	 * @param name 小文字の要素名
+	 * @return 親となりうる要素の名前 (親が特定できない要素の場合は null)
+	 */
+	static Set<String> getParentNames(String name){
+		return PARENT_RELATION.get(name);
+	}
+
+	// ======================================================================
+	// テキスト装飾要素の判定
+	// ======================================================================
+	/**
+	 * 指定された HTML 要素がテキスト装飾要素かを判定します。
+	 * <p>
+	 * @param name 小文字の要素名
+	 * @return テキスト装飾要素の場合 true
+	 */
+	static boolean isTextDecorationElement(String name){
+		return TEXT_DECORATION_ELEMENT.contains(name);
+	}
+
 	// ======================================================================
 	// 要素名の参照
 	// ======================================================================